@@ -0,0 +1,58 @@
+package uk.co.transputersystems.transputer.benchmarks;
+
+import org.antlr.v4.runtime.tree.ParseTree;
+import uk.co.transputersystems.occam.*;
+import uk.co.transputersystems.occam.il.ILBlock;
+import uk.co.transputersystems.occam.il.ILOp;
+import uk.co.transputersystems.occam.metadata.LibraryInformation;
+import uk.co.transputersystems.occam.open_transputer.ASMBlock;
+import uk.co.transputersystems.occam.open_transputer.ASMGenerator;
+import uk.co.transputersystems.occam.open_transputer.ASMGeneratorContext;
+import uk.co.transputersystems.transputer.assembler.Assembler;
+import uk.co.transputersystems.transputer.utils.ProgramImage;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Builds benchmark programs from classpath resources: `.s` files are assembled, and `.occ` files are compiled and
+ * then assembled.
+ */
+public class BenchmarkPrograms {
+
+    public static ProgramImage load(String resource) throws Exception {
+        String source = read(resource);
+        if (resource.endsWith(".occ")) {
+            source = compile(source, resource);
+        }
+        return Assembler.assembleImage(source, null, new PrintStream(new ByteArrayOutputStream()), false);
+    }
+
+    private static String read(String resource) throws IOException {
+        InputStream input = BenchmarkPrograms.class.getResourceAsStream(resource);
+        if (input == null) {
+            throw new FileNotFoundException("No benchmark program " + resource);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            return reader.lines().collect(Collectors.joining("\n", "", "\n"));
+        }
+    }
+
+    private static String compile(String source, String resource) throws Exception {
+        OccamCompiler compiler = new OccamCompiler();
+        ParseTree tree = compiler.makeParseTree(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)), OccamParser::file_input, new ErrorListener());
+
+        LibraryInformation libraryInfo = new LibraryInformation("BENCHMARK");
+        String fileName = resource.substring(resource.lastIndexOf('/') + 1);
+        List<ILBlock<UUID, ILOp<UUID>>> intermediate = compiler.generateTSIL(new TSILGenerator(libraryInfo), tree, resource, fileName);
+        List<ILBlock<Integer, ILOp<Integer>>> intermediateRef = compiler.generateReferencedTSIL(new ReferencedTSILGenerator<>(), intermediate);
+        List<ASMBlock> asmBlocks = compiler.generateASM(new ASMGenerator(), intermediateRef, new ASMGeneratorContext(libraryInfo), false);
+
+        StringWriter assembly = new StringWriter();
+        compiler.writeASMBlocks(assembly, asmBlocks);
+        return assembly.toString();
+    }
+}
@@ -0,0 +1,72 @@
+package uk.co.transputersystems.transputer.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import uk.co.transputersystems.transputer.simulator.ByteBufferMemory;
+import uk.co.transputersystems.transputer.simulator.PdesEngine;
+import uk.co.transputersystems.transputer.simulator.SimulationState;
+import uk.co.transputersystems.transputer.simulator.Simulator;
+import uk.co.transputersystems.transputer.simulator.Transputer;
+import uk.co.transputersystems.transputer.simulator.TransputerConstants;
+import uk.co.transputersystems.transputer.simulator.UnexpectedOverflowException;
+import uk.co.transputersystems.transputer.simulator.topology.RoutingTable;
+import uk.co.transputersystems.transputer.simulator.trace.NullTraceSink;
+import uk.co.transputersystems.transputer.utils.ProgramImage;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to run a network of busy transputers to completion, either with the simulator's main loop or with `--pdes` on
+ * a number of threads, to show how the parallel engine scales with the size of the network.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ParallelBenchmark {
+
+    private static final String PROGRAM = "/benchmarks/count.s";
+
+    @Param({"2", "4", "16", "64"})
+    public int cores;
+
+    // Threads to run --pdes on, or 0 for the main loop
+    @Param({"0", "1", "2", "4", "8"})
+    public int threads;
+
+    private ProgramImage program;
+    private RoutingTable routing;
+    private SimulationState state;
+
+    @Setup(Level.Trial)
+    public void assemble() throws Exception {
+        program = BenchmarkPrograms.load(PROGRAM);
+        routing = RoutingTable.fullyConnected(cores);
+    }
+
+    @Setup(Level.Invocation)
+    public void load() {
+        PrintWriter output = new PrintWriter(new StringWriter());
+        state = new SimulationState(new Transputer[cores]);
+        for (int i = 0; i < cores; i++) {
+            state.transputers[i] = new Transputer(i, output, output, NullTraceSink.INSTANCE, new ByteBufferMemory(TransputerConstants.MEMSIZE));
+            if (state.transputers[i].loadProgram(program) != TransputerConstants.SUCCESS) {
+                throw new IllegalStateException("Could not load " + PROGRAM);
+            }
+            state.active[i] = true;
+        }
+    }
+
+    @Benchmark
+    public long run() throws UnexpectedOverflowException {
+        if (threads == 0) {
+            while (Simulator.iterate(state, routing, NullTraceSink.INSTANCE, true, null)) {
+            }
+            return state.loopCount;
+        }
+        return new PdesEngine(state.transputers, routing, threads, true).run(state.active, 0);
+    }
+}
@@ -0,0 +1,70 @@
+package uk.co.transputersystems.transputer.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import uk.co.transputersystems.transputer.simulator.ByteBufferMemory;
+import uk.co.transputersystems.transputer.simulator.SimulationState;
+import uk.co.transputersystems.transputer.simulator.Simulator;
+import uk.co.transputersystems.transputer.simulator.Transputer;
+import uk.co.transputersystems.transputer.simulator.TransputerConstants;
+import uk.co.transputersystems.transputer.simulator.UnexpectedOverflowException;
+import uk.co.transputersystems.transputer.simulator.topology.RoutingTable;
+import uk.co.transputersystems.transputer.simulator.trace.NullTraceSink;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulator throughput in network steps per second: one step moves every transputer on by one instruction or
+ * microcode step and then runs the link switch, as the simulator's main loop does.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SimulatorBenchmark {
+
+    // Network steps per benchmark call
+    private static final int STEPS = 10000;
+
+    @Param
+    public Workload workload;
+
+    @Param({"false", "true"})
+    public boolean decodeCache;
+
+    private SimulationState state;
+    private RoutingTable routing;
+
+    @Setup(Level.Trial)
+    public void load() throws Exception {
+        PrintWriter output = new PrintWriter(new StringWriter());
+        int count = workload.programs.length;
+        state = new SimulationState(new Transputer[count]);
+        routing = RoutingTable.fullyConnected(count);
+        for (int i = 0; i < count; i++) {
+            Transputer transputer = new Transputer(i, output, output, NullTraceSink.INSTANCE, new ByteBufferMemory(TransputerConstants.MEMSIZE));
+            if (decodeCache) {
+                transputer.enableDecodeCache();
+            }
+            if (transputer.loadProgram(BenchmarkPrograms.load(workload.programs[i])) != TransputerConstants.SUCCESS) {
+                throw new IllegalStateException("Could not load " + workload.programs[i]);
+            }
+            state.transputers[i] = transputer;
+            state.active[i] = true;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public long step() throws UnexpectedOverflowException {
+        for (int step = 0; step < STEPS; step++) {
+            if (!Simulator.iterate(state, routing, NullTraceSink.INSTANCE, false, null)) {
+                throw new IllegalStateException("The " + workload + " workload stopped after " + state.transputers[0].getSteps() + " steps");
+            }
+        }
+        return state.transputers[0].getSteps();
+    }
+}
@@ -0,0 +1,20 @@
+package uk.co.transputersystems.transputer.benchmarks;
+
+/**
+ * The programs each benchmark runs, from `tss-occam-test-resources`. Every program loops forever, so the measured
+ * steps are never spent loading or finishing. Programs listed together run on a network, one per processor.
+ */
+public enum Workload {
+    ARITHMETIC("/benchmarks/arithmetic.s"),
+    ARITHMETIC_OCCAM("/benchmarks/arithmetic.occ"),
+    MOVE("/benchmarks/move.s"),
+    PAR_OCCAM("/benchmarks/par.occ"),
+    TIMERS("/benchmarks/timers.s"),
+    PING_PONG("/benchmarks/ping.s", "/benchmarks/pong.s");
+
+    public final String[] programs;
+
+    Workload(String... programs) {
+        this.programs = programs;
+    }
+}
@@ -56,7 +56,9 @@ public class OccamCompiler {
         for (ILBlock<UUID, ILOp<UUID>> ilBlock : ilBlocks) {
             ILBlock<Integer, ILOp<Integer>> newBlock = new ILBlock<>(ilBlock.getScopeId(), ilBlock.isFunctionBlock());
             for (ILOp<UUID> op : ilBlock.getAll()) {
-                newBlock.add(tsilGenerator.visit(op, ilBlock));
+                ILOp<Integer> newOp = tsilGenerator.visit(op, ilBlock);
+                newOp.setSourceLine(op.getSourceLine());
+                newBlock.add(newOp);
             }
             referencedIlBlocks.add(newBlock);
         }
@@ -1,5 +1,7 @@
 package uk.co.transputersystems.occam;
 
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.TerminalNode;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 import uk.co.transputersystems.occam.il.*;
@@ -26,6 +28,25 @@ public class TSILGenerator extends OccamBaseVisitor<List<ILBlock<UUID,ILOp<UUID>
         this.libraryInfo = libraryInfo;
     }
 
+    /**
+     * Visit a node, tagging the ops it produced with its source line unless a more deeply nested node already has.
+     */
+    @Override
+    public List<ILBlock<UUID,ILOp<UUID>>> visit(ParseTree tree) {
+        List<ILBlock<UUID,ILOp<UUID>>> result = super.visit(tree);
+        if (result != null && tree instanceof ParserRuleContext) {
+            int line = ((ParserRuleContext) tree).getStart().getLine();
+            for (ILBlock<UUID,ILOp<UUID>> block : result) {
+                for (ILOp<UUID> op : block.getAll()) {
+                    if (op.getSourceLine() == 0) {
+                        op.setSourceLine(line);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
     /*
 
     Sample function structure:
@@ -10,6 +10,7 @@ public abstract class ILOp<TIdentifier> implements VerifiableData {
     protected final TIdentifier id;
     protected final String opName;
     protected String comment;
+    protected int sourceLine = 0;
     protected boolean requiresLabel = false;
     protected boolean requiresPopAfterLabel = false;
     protected List<Integer> storeResultIndices = new ArrayList<>();
@@ -45,6 +46,17 @@ public abstract class ILOp<TIdentifier> implements VerifiableData {
         this.comment = value;
     };
 
+    /**
+     * @return The line of occam source this `ILOp` was generated from, or 0 if it is not known.
+     */
+    public final int getSourceLine() {
+        return this.sourceLine;
+    }
+
+    public final void setSourceLine(int value) {
+        this.sourceLine = value;
+    }
+
     /**
      * @return A list of static args to this `ILOp`.
      */
@@ -70,6 +70,11 @@ public class ASMGenerator {
             context.setCurrentASMBlock(asmBlock);
 
             for (ILOp<Integer> ilOp : block.getAll()) {
+                // Let the assembler map the ops that follow back to the occam source and TSIL
+                if (context.libraryInformation.getCurrentFileInfo() != null) {
+                    asmBlock.addOp(new SourceMarker(context.libraryInformation.getCurrentFileInfo().getFilePath(), ilOp.getSourceLine(),
+                            context.generateILOpLabel(ilOp) + " " + ilOp.getOpName()));
+                }
                 try {
                     process(ilOp, context, false);
                 } catch (InvalidObjectException e) {
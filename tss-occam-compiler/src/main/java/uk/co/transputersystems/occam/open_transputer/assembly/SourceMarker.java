@@ -0,0 +1,10 @@
+package uk.co.transputersystems.occam.open_transputer.assembly;
+
+/**
+ * A comment naming the occam source line and TSIL op that the following ops were generated from
+ */
+public class SourceMarker extends ASMOp {
+    public SourceMarker(String file, int line, String tsil) {
+        super("@source " + file + ":" + line + " " + tsil, "--");
+    }
+}
@@ -0,0 +1,23 @@
+--Goal
+--Keep the ALU busy with an endless loop of arithmetic on locals
+init:
+ajw -10
+ldc 1
+stl 1
+ldc 0
+stl 2
+loop:
+ldl 1
+ldc 3
+mul
+adc 7
+stl 1
+ldl 1
+ldc 5
+shr
+ldl 2
+xor
+ldl 1
+sum
+stl 2
+j loop-$0
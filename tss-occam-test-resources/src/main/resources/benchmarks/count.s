@@ -0,0 +1,20 @@
+--Goal
+--Count down from 20000 with some arithmetic on each pass, then stop, so a network of them runs to completion
+init:
+ajw -10
+ldc 20000
+stl 1
+loop:
+ldl 1
+ldc 3
+mul
+stl 2
+ldl 1
+adc -1
+stl 1
+ldl 1
+cj done-$0
+j loop-$0
+done:
+ajw 10
+ret
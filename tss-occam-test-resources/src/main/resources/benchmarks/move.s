@@ -0,0 +1,10 @@
+--Goal
+--Copy a 256 byte block between two workspace buffers forever
+init:
+ajw -150
+loop:
+ldlp 10
+ldlp 80
+ldc 256
+move
+j loop-$0
@@ -0,0 +1,33 @@
+--Goal
+--Run on processor 0 with pong.s on processor 1. A high priority process
+--sends a word to processor 1 and waits for it to come back, forever.
+--A transputer with nothing to run is stopped and cannot service its links,
+--so a low priority process keeps the processor busy with block moves.
+init:
+ajw -100
+ldc 0
+stl 21
+ldc pinger-$1
+ldpi
+stl 19
+ldlp 20
+runp
+busy:
+ldlp 40
+ldlp 70
+ldc 64
+move
+j busy-$0
+pinger:
+ldlp 1
+ldc 33
+ldc 4
+out
+ldlp 2
+ldc 33
+ldc 4
+in
+ldl 2
+adc 1
+stl 1
+j pinger-$0
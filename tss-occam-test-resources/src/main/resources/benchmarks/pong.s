@@ -0,0 +1,27 @@
+--Goal
+--Run on processor 1 with ping.s on processor 0. A high priority process
+--returns every word it receives from processor 0, while a low priority
+--process keeps the processor busy with block moves.
+init:
+ajw -100
+ldc ponger-$1
+ldpi
+stl 19
+ldlp 20
+runp
+busy:
+ldlp 40
+ldlp 70
+ldc 64
+move
+j busy-$0
+ponger:
+ldlp 1
+ldc 1
+ldc 4
+in
+ldlp 1
+ldc 1
+ldc 4
+out
+j ponger-$0
@@ -0,0 +1,26 @@
+--Goal
+--A high priority process waits a few ticks on the timer queue over and over,
+--interrupting a low priority process that reads the clock in a loop.
+--Only one process waits at a time: a timer that fires while another process
+--is part way through joining the queue corrupts it.
+init:
+ajw -40
+ldc waiter-$1
+ldpi
+stl 19
+ldlp 20
+runp
+ldc 0
+stl 1
+loop:
+ldtimer
+stl 2
+ldl 1
+adc 1
+stl 1
+j loop-$0
+waiter:
+ldtimer
+adc 5
+tin
+j waiter-$0
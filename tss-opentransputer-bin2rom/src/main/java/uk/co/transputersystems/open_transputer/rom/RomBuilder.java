@@ -1,34 +1,24 @@
 package uk.co.transputersystems.open_transputer.rom;
 
+import uk.co.transputersystems.transputer.utils.ProgramImage;
+
 import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Scanner;
 
 public class RomBuilder {
     public static void run(File input, File output) throws Exception {
 
-        FileReader inputStream = new FileReader(input);
-        Scanner inputScanner = new Scanner(inputStream);
-
-        // Skip over 'Start address: XXXXXXXX'
-        inputScanner.nextLine();
+        // Text object code or a binary program image; the start address is not needed
+        byte[] code = ProgramImage.load(input).flatten();
 
-        // Parse input
+        // Pack the bytes into little-endian words
         List<Integer> values = new ArrayList<>();
-        Integer currentVal = 0;
-        int bCount = 0;
-        while (inputScanner.hasNextInt(16)) {
-            currentVal = currentVal | ((inputScanner.nextInt(16) << (8 * bCount)) & (0xFF << (8 * bCount)));
-            bCount++;
-
-            if (bCount == 4) {
-                values.add(currentVal);
-                bCount = 0;
-                currentVal = 0;
+        for (int i = 0; i < code.length; i += 4) {
+            int currentVal = 0;
+            for (int bCount = 0; bCount < 4 && i + bCount < code.length; bCount++) {
+                currentVal |= (code[i + bCount] & 0xFF) << (8 * bCount);
             }
-        }
-        if (bCount != 0) {
             values.add(currentVal);
         }
 
@@ -20,7 +20,7 @@ public class RomBuilderApplication extends Application {
                 .withRequiredArg()
                 .required()
                 .ofType(File.class)
-                .describedAs("Transputer object code");
+                .describedAs("Transputer object code or program image");
 
         OptionSpec<File> outputArg = optionParser
                 .accepts("output")
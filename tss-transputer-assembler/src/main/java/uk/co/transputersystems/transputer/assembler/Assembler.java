@@ -5,6 +5,7 @@ import uk.co.transputersystems.transputer.assembler.config.AssemblerConfig;
 import uk.co.transputersystems.transputer.assembler.config.Connection;
 import uk.co.transputersystems.transputer.assembler.config.IOPin;
 import uk.co.transputersystems.transputer.assembler.expression.ExpressionEvaluator;
+import uk.co.transputersystems.transputer.utils.ProgramImage;
 import org.antlr.v4.runtime.ANTLRInputStream;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.misc.Pair;
@@ -13,6 +14,7 @@ import org.yaml.snakeyaml.Yaml;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.io.Reader;
 import java.util.*;
@@ -35,7 +37,12 @@ public class Assembler {
             "^\\h*((?<label>[0-9A-Za-z~\\._]+):)?\\h*((?<directive>(#data\\h+[0-9]+)|(#chan\\h+[0-9A-Za-z]+))?(\\h*--\\h*(?<comment>\\V*?))?)?\\h*$");
     // Match patterns $C, $0, $99 etc.
     // Last group ensures that we do not e.g. match $5 if the string is actually $52
+    // Labels made for `$` operands, which are left out of program image symbols
+    public final static String DOLLAR_LABEL_PREFIX = "__dollar";
     public final static Pattern dollarPattern = Pattern.compile("[$]((?<current>C)|(?<number>[0-9]+))([^\\p{Alnum}~_]|$)");
+    // A comment naming the source line and TSIL op the following instructions were compiled from, up to the next
+    // marker or blank line
+    public final static Pattern sourceMarkerPattern = Pattern.compile("^\\h*--\\h*@source\\h+(?<file>\\S+):(?<line>[0-9]+)(\\h+(?<tsil>\\V*?))?\\h*$");
 
     public static Map<String, Opcode> opcodes = new HashMap<>();
 
@@ -139,6 +146,43 @@ public class Assembler {
      * Convert an assembly file into object code.
      */
     public static List<String> assemble(@Nonnull String input, @Nullable AssemblerConfig config, @Nonnull PrintStream logger, boolean insertIOConfiguration) throws DuplicateLabelException {
+        Assembly finalAssembly = buildAssembly(input, config, logger, insertIOConfiguration);
+
+        List<String> machineCode = translateToMachineCode(finalAssembly);
+
+        logger.println("== Machine code ==");
+        logger.println(machineCode);
+
+        return machineCode;
+    }
+
+    /**
+     * Convert an assembly file into a binary program image. Every label written in the source becomes a symbol in
+     * the image.
+     */
+    public static ProgramImage assembleImage(@Nonnull String input, @Nullable AssemblerConfig config, @Nonnull PrintStream logger, boolean insertIOConfiguration) throws DuplicateLabelException {
+        return assembleImage(input, null, config, logger, insertIOConfiguration);
+    }
+
+    /**
+     * Convert an assembly file into a binary program image with a line table, recording the line each instruction
+     * came from in `assemblyFile` and any source marker covering it.
+     */
+    public static ProgramImage assembleImage(@Nonnull String input, @Nullable String assemblyFile, @Nullable AssemblerConfig config, @Nonnull PrintStream logger, boolean insertIOConfiguration) throws DuplicateLabelException {
+        Assembly finalAssembly = buildAssembly(input, config, logger, insertIOConfiguration);
+
+        ProgramImage image = translateToImage(finalAssembly, assemblyFile, findSourceMarkers(input));
+
+        logger.println("== Machine code ==");
+        logger.println(image.toText());
+
+        return image;
+    }
+
+    /**
+     * Run every assembly pass up to (but not including) translation to machine code.
+     */
+    private static Assembly buildAssembly(@Nonnull String input, @Nullable AssemblerConfig config, @Nonnull PrintStream logger, boolean insertIOConfiguration) throws DuplicateLabelException {
         List<Instruction> assembly = parseAssembly(input);
 
         logger.println("== Assembly ==");
@@ -186,14 +230,7 @@ public class Assembler {
 
         Assembly initJumpAssembly = addInitJump(patchedLabelAssembly);
 
-        Assembly finalAssembly = addAbsoluteLabels(initJumpAssembly, absoluteLabelMap);
-
-        List<String> machineCode = translateToMachineCode(finalAssembly);
-
-        logger.println("== Machine code ==");
-        logger.println(machineCode);
-
-        return machineCode;
+        return addAbsoluteLabels(initJumpAssembly, absoluteLabelMap);
     }
 
     /**
@@ -233,6 +270,29 @@ public class Assembler {
         return instructions;
     }
 
+    /**
+     * Find the source marker, if any, that applies to each line of an assembly source file.
+     * @return matchers for the markers, keyed by the lines they apply to
+     */
+    @Nonnull
+    public static Map<Long, Matcher> findSourceMarkers(@Nonnull String input) {
+        Map<Long, Matcher> markers = new HashMap<>();
+        Matcher current = null;
+        long currentLine = 0;
+        for (String line : input.split("\\R")) {
+            currentLine++;
+            Matcher markerMatcher = sourceMarkerPattern.matcher(line);
+            if (markerMatcher.matches()) {
+                current = markerMatcher;
+            } else if (line.trim().isEmpty()) {
+                current = null;
+            } else if (current != null) {
+                markers.put(currentLine, current);
+            }
+        }
+        return markers;
+    }
+
     /**
      * Given a list of instructions and a config, find the init instruction and insert IOPin intialisation just after it
      */
@@ -308,26 +368,26 @@ public class Assembler {
                     nextLabelIndex++;
 
                     if (dollarMatcher.group("current") != null) {
-                        processedAssembly.add(new Instruction(InstructionType.INSTRUCTION, "__dollar" + nextLabelIndex, null, null, null, null, null, instruction.originalLine));
+                        processedAssembly.add(new Instruction(InstructionType.INSTRUCTION, DOLLAR_LABEL_PREFIX + nextLabelIndex, null, null, null, null, null, instruction.originalLine));
                         substitutedInstruction = new Instruction(
                                 substitutedInstruction.type,
                                 substitutedInstruction.label,
                                 substitutedInstruction.opcode,
                                 substitutedInstruction.constantOperand,
-                                substitutedInstruction.labelOperand.replace("$C", "__dollar" + nextLabelIndex),
+                                substitutedInstruction.labelOperand.replace("$C", DOLLAR_LABEL_PREFIX + nextLabelIndex),
                                 substitutedInstruction.comment,
                                 substitutedInstruction.directive,
                                 substitutedInstruction.originalLine);
                     } else if (dollarMatcher.group("number") != null) {
                         Long maybeNumber = tryParse(dollarMatcher.group("number"));
                         if (maybeNumber != null) {
-                            labelsToInsert.add(new Pair<>(instructionNumber + 1 + maybeNumber, "__dollar" + nextLabelIndex));
+                            labelsToInsert.add(new Pair<>(instructionNumber + 1 + maybeNumber, DOLLAR_LABEL_PREFIX + nextLabelIndex));
                             substitutedInstruction = new Instruction(
                                     substitutedInstruction.type,
                                     substitutedInstruction.label,
                                     substitutedInstruction.opcode,
                                     substitutedInstruction.constantOperand,
-                                    substitutedInstruction.labelOperand.replace("$" + maybeNumber, "__dollar" + nextLabelIndex),
+                                    substitutedInstruction.labelOperand.replace("$" + maybeNumber, DOLLAR_LABEL_PREFIX + nextLabelIndex),
                                     substitutedInstruction.comment,
                                     substitutedInstruction.directive,
                                     substitutedInstruction.originalLine);
@@ -595,43 +655,78 @@ public class Assembler {
         // The line/byte number from which the code should start executing
         machineCode.add("Start address: " + String.format("%08x", assembly.labelMap.get("init")));
 
-        int actualLine = 0;
-
         for (Instruction instruction : assembly.instructions) {
-
-            // Convert the opcode to its hex representation
-            List<Byte> instructionBytes = new ArrayList<>();
-
-            // Generate the correct bytes for the opcode based on whether it is direct or indirect and what kind of
-            // operand it has (integer/label)
-            if (instruction.opcode.type == OpcodeType.DIRECT) {
-                if (instruction.constantOperand != null) {
-                    instructionBytes = Collections.singletonList(processDirectInstructionWithConstantOperand(instruction));
-                } else if (instruction.labelOperand != null) {
-                    instructionBytes = new ArrayList<>(processDirectInstructionWithLabelOperand(instruction, assembly.labelMap));
-                }
-            } else if (instruction.opcode.type == OpcodeType.INDIRECT) {
-                // Indirect opcodes cannot have operands
-                if (instruction.constantOperand != null || instruction.labelOperand != null) {
-                    throw new IllegalArgumentException("Indirect instructions cannot have any operand: '" + instruction + "'");
-                }
-
-                instructionBytes = new ArrayList<>(processIndirectInstruction(instruction));
-            }
-
             // Map the list of bytes to their two-digit hex representations and append them to the machine code
-            machineCode.addAll(instructionBytes
+            machineCode.addAll(translateInstruction(instruction, assembly.labelMap)
                     .stream()
                     .map(b -> String.format("%02x", b))
                     .collect(Collectors.toList()));
-
-            // Increment the line number by the number of instructionPattern bytes added
-            actualLine += instructionBytes.size();
         }
 
         return machineCode;
     }
 
+    /**
+     * Take some assembly and a label map and translate it to a program image with a single code section. The same
+     * caveats apply as for `translateToMachineCode`.
+     */
+    private static ProgramImage translateToImage(Assembly assembly, @Nullable String assemblyFile, Map<Long, Matcher> sourceMarkers) {
+        if (!assembly.labelMap.containsKey("init")) {
+            throw new IllegalArgumentException("No init label specified.");
+        }
+
+        ByteArrayOutputStream code = new ByteArrayOutputStream();
+        List<ProgramImage.Line> lines = new ArrayList<>();
+        for (Instruction instruction : assembly.instructions) {
+            // The init jump has no line, and data takes up space without being executed
+            if (instruction.originalLine > 0 && !"#empty".equals(instruction.opcode.opcode)) {
+                Matcher marker = sourceMarkers.get(instruction.originalLine);
+                lines.add(marker == null
+                        ? new ProgramImage.Line(code.size(), (int) instruction.originalLine, null, 0, null)
+                        : new ProgramImage.Line(code.size(), (int) instruction.originalLine, marker.group("file"), Integer.parseInt(marker.group("line")), marker.group("tsil")));
+            }
+            for (Byte b : translateInstruction(instruction, assembly.labelMap)) {
+                code.write(b);
+            }
+        }
+
+        Map<String, Integer> symbols = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> label : assembly.labelMap.entrySet()) {
+            if (!label.getKey().startsWith(DOLLAR_LABEL_PREFIX)) {
+                symbols.put(label.getKey(), label.getValue().intValue());
+            }
+        }
+
+        return new ProgramImage(
+                assembly.labelMap.get("init").intValue(),
+                Collections.singletonList(new ProgramImage.Section(ProgramImage.CODE_SECTION, 0, code.toByteArray())),
+                symbols,
+                assemblyFile,
+                lines);
+    }
+
+    /**
+     * Generate the bytes for a single instruction, based on whether it is direct or indirect and what kind of
+     * operand it has (integer/label).
+     */
+    private static List<Byte> translateInstruction(Instruction instruction, Map<String, Long> labelMap) {
+        if (instruction.opcode.type == OpcodeType.DIRECT) {
+            if (instruction.constantOperand != null) {
+                return Collections.singletonList(processDirectInstructionWithConstantOperand(instruction));
+            } else if (instruction.labelOperand != null) {
+                return processDirectInstructionWithLabelOperand(instruction, labelMap);
+            }
+        } else if (instruction.opcode.type == OpcodeType.INDIRECT) {
+            // Indirect opcodes cannot have operands
+            if (instruction.constantOperand != null || instruction.labelOperand != null) {
+                throw new IllegalArgumentException("Indirect instructions cannot have any operand: '" + instruction + "'");
+            }
+
+            return processIndirectInstruction(instruction);
+        }
+        return Collections.emptyList();
+    }
+
     /**
      * Convert an indirect opcode to either one or two machine instructions (depends on whether the opcode is a nibble
      * or a byte)
@@ -7,12 +7,14 @@ import joptsimple.OptionException;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import joptsimple.OptionSpec;
+import uk.co.transputersystems.transputer.utils.ProgramImage;
 
 import java.io.*;
 import java.nio.file.Files;
 import java.util.List;
 
 import static uk.co.transputersystems.transputer.assembler.Assembler.assemble;
+import static uk.co.transputersystems.transputer.assembler.Assembler.assembleImage;
 import static uk.co.transputersystems.transputer.assembler.Assembler.loadConfig;
 
 public class AssemblerApplication extends Application {
@@ -49,6 +51,8 @@ public class AssemblerApplication extends Application {
 
         OptionSpec insertIOConfigurationArg = optionParser.accepts("insert-io-configuration");
 
+        OptionSpec imageArg = optionParser.accepts("image", "write a binary program image instead of text object code");
+
         try {
             OptionSet options = optionParser.parse(args);
 
@@ -61,14 +65,19 @@ public class AssemblerApplication extends Application {
 
             PrintStream logger = new PrintStream(System.out);
 
-            List<String> output = assemble(input, loadConfig(configFileReader), logger, options.has(insertIOConfigurationArg));
-
-            FileWriter outputWriter = new FileWriter(outputFile);
-            for (String line : output) {
-                outputWriter.append(line);
-                outputWriter.append('\n');
+            if (options.has(imageArg)) {
+                ProgramImage image = assembleImage(input, inputFile.getPath(), loadConfig(configFileReader), logger, options.has(insertIOConfigurationArg));
+                image.write(outputFile);
+            } else {
+                List<String> output = assemble(input, loadConfig(configFileReader), logger, options.has(insertIOConfigurationArg));
+
+                FileWriter outputWriter = new FileWriter(outputFile);
+                for (String line : output) {
+                    outputWriter.append(line);
+                    outputWriter.append('\n');
+                }
+                outputWriter.close();
             }
-            outputWriter.close();
 
         } catch (OptionException e) {
             optionParser.printHelpOn(System.out);
@@ -1,9 +1,13 @@
 package uk.co.transputersystems.transputer.assembler.config;
 
+import javax.annotation.Nullable;
+import java.util.Map;
+
 public class IOPin {
     private int addr;
     private String channel;
     private int config;
+    @Nullable private Map<String, Object> device;
 
     public int getAddr() {
         return addr;
@@ -33,6 +37,18 @@ public class IOPin {
         this.config = config;
     }
 
+    @Nullable
+    public Map<String, Object> getDevice() {
+        return device;
+    }
+
+    /**
+     * Set the device model the simulator attaches to the pin. Not used by the assembler.
+     */
+    public void setDevice(@Nullable Map<String, Object> device) {
+        this.device = device;
+    }
+
     public IOPin() {
         addr = 0;
         channel = "";
@@ -1,5 +1,7 @@
 package uk.co.transputersystems.transputer.disassembler;
 
+import uk.co.transputersystems.transputer.utils.ProgramImage;
+
 import javax.annotation.Nonnull;
 import java.io.OutputStream;
 import java.util.*;
@@ -105,6 +107,18 @@ public class Disassembler {
                 .collect(Collectors.toList());
     }
 
+    public static List<String> disassemble(@Nonnull ProgramImage image, @Nonnull OutputStream logger) {
+        byte[] code = image.flatten();
+        List<MachineInstruction> machineInstructions = new ArrayList<>(code.length);
+        for (byte b : code) {
+            machineInstructions.add(new MachineInstruction((byte)((b >> 4) & 0xF), (byte)(b & 0xF)));
+        }
+        List<AssemblyInstruction> assemblyInstructions = toAssemblyInstructions(machineInstructions);
+        return assemblyInstructions.stream()
+                .map(Disassembler::showAssemblyInstruction)
+                .collect(Collectors.toList());
+    }
+
     public static MachineInstruction parseMachineInstruction(String rawMachineInstruction) {
         int opcode = Character.digit(rawMachineInstruction.charAt(0), 16);
         int operand = Character.digit(rawMachineInstruction.charAt(1), 16);
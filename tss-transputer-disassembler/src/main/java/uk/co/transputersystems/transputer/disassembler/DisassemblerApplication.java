@@ -7,9 +7,9 @@ import joptsimple.OptionException;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import joptsimple.OptionSpec;
+import uk.co.transputersystems.transputer.utils.ProgramImage;
 
 import java.io.*;
-import java.nio.file.Files;
 import java.util.List;
 
 import static uk.co.transputersystems.transputer.disassembler.Disassembler.disassemble;
@@ -31,14 +31,14 @@ public class DisassemblerApplication extends Application {
                 .withRequiredArg()
                 .required()
                 .ofType(File.class)
-                .describedAs("transputer assembly");
+                .describedAs("transputer object code or program image");
 
         OptionSpec<File> outputArg = optionParser
                 .accepts("output")
                 .withRequiredArg()
                 .required()
                 .ofType(File.class)
-                .describedAs("transputer object code");
+                .describedAs("transputer assembly");
 
         try {
             OptionSet options = optionParser.parse(args);
@@ -46,7 +46,7 @@ public class DisassemblerApplication extends Application {
             File inputFile = options.valueOf(inputArg);
             File outputFile = options.valueOf(outputArg);
 
-            String input = new String(Files.readAllBytes(inputFile.toPath()));
+            ProgramImage input = ProgramImage.load(inputFile);
 
             PrintStream logger = new PrintStream(System.out);
 
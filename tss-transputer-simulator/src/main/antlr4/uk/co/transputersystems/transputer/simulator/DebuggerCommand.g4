@@ -4,6 +4,7 @@ command : HELP                                                          #help
         | TRANSPUTERS                                                   #transputers
         | transputer_list EXAMINE EXAMINE_FLAG? address                 #examine
         | transputer_list INFO MEM                                      #info_mem
+        | transputer_list INFO CHANGED                                  #info_changed
         | transputer_list INFO REG                                      #info_reg
         | transputer_list INFO SREG                                     #info_s_reg
         | transputer_list INFO CREG                                     #info_c_reg
@@ -12,9 +13,17 @@ command : HELP                                                          #help
         | transputer_list INFO BREAK                                    #info_break
         | transputer_list INFO MEMSIZE                                  #info_memsize
         | transputer_list INFO PROCESSES                                #info_processes
-        | transputer_list BREAK address                                 #break
+        | transputer_list INFO WATCH                                    #info_watch
+        | transputer_list BREAK address (IF condition)?                 #break
         | transputer_list DELETE address                                #delete
+        | transputer_list watch_kind address NUMBER? (IF condition)?    #watch
+        | transputer_list UNWATCH address                               #unwatch
+        | CHECKPOINT SAVE STRING                                         #checkpoint_save
+        | CHECKPOINT RESTORE STRING                                     #checkpoint_restore
+        | METRICS STRING?                                               #metrics
         | STEP                                                          #step
+        | REVERSE_STEP                                                  #reverse_step
+        | REVERSE_CONTINUE                                              #reverse_continue
         | CONTINUE                                                      #continue
         ;
 
@@ -22,8 +31,16 @@ transputer_list: NUMBER (',' NUMBER)* ;
 
 address: NUMBER | HEXNUMBER ;
 
+watch_kind: WATCH | RWATCH | AWATCH ;
+
+condition: operand COMPARISON operand ;
+
+operand: REGISTER | address | '[' address ']' ;
+
 EXAMINE_FLAG: '/' NUMBER UNIT FORMAT ;
 
+STRING: '"' ~["\r\n]* '"' ;
+
 NUMBER: DIGIT+ ;
 HEXNUMBER: '0x' HEXDIGIT+ ;
 
@@ -32,6 +49,7 @@ TRANSPUTERS:    T R A N S P U T E R S | T ;
 EXAMINE:        E X A M I N E | X ;
 INFO:           I N F O | I ;
 MEM:            M E M  | M ;
+CHANGED:        C H A N G E D ;
 REG:            R E G ;
 SREG:           S '-' R E G ;
 CREG:           C '-' R E G ;
@@ -41,8 +59,21 @@ BREAK:          B R E A K | B ;
 MEMSIZE:        M E M S I Z E ;
 PROCESSES:      P R O C E S S E S | P ;
 STEP:           S T E P | S ;
+REVERSE_STEP:   R E V E R S E '-' S T E P | R S ;
+REVERSE_CONTINUE: R E V E R S E '-' C O N T I N U E | R C ;
 CONTINUE:       C O N T I N U E | C ;
 DELETE:         D E L E T E ;
+CHECKPOINT:     C H E C K P O I N T ;
+SAVE:           S A V E ;
+RESTORE:        R E S T O R E ;
+METRICS:        M E T R I C S ;
+WATCH:          W A T C H ;
+RWATCH:         R W A T C H ;
+AWATCH:         A W A T C H ;
+UNWATCH:        U N W A T C H ;
+IF:             I F ;
+REGISTER:       A R E G | B R E G | C R E G | O R E G | W P T R | I P T R ;
+COMPARISON:     '==' | '!=' | '<=' | '>=' | '<' | '>' ;
 
 UNIT: B | H | W | G ;
 FORMAT: X | D | O | A | C | F | S | I ;
@@ -0,0 +1,83 @@
+package uk.co.transputersystems.transputer.simulator;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Transputer memory held in one little-endian ByteBuffer for the lifetime of the transputer, so loads and stores
+ * allocate nothing.
+ */
+public class ByteBufferMemory implements MemoryModel {
+    private final ByteBuffer buffer;
+    private final int size;
+
+    public ByteBufferMemory(int size) {
+        this(size, false);
+    }
+
+    /**
+     * @param direct whether to allocate the memory outside the Java heap
+     */
+    public ByteBufferMemory(int size, boolean direct) {
+        if (size % TransputerConstants.BYTESPERWORD != 0 || size <= 2 * TransputerConstants.MEMSTART) {
+            throw new IllegalArgumentException(String.format(
+                    "Memory size must be a whole number of words larger than %d bytes, not %d.",
+                    2 * TransputerConstants.MEMSTART, size));
+        }
+        this.buffer = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+        this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.size = size;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int readWord(int address) {
+        checkBounds(address, TransputerConstants.BYTESPERWORD);
+        return buffer.getInt(address);
+    }
+
+    @Override
+    public void writeWord(int address, int value) {
+        checkBounds(address, TransputerConstants.BYTESPERWORD);
+        buffer.putInt(address, value);
+    }
+
+    @Override
+    public byte readByte(int address) {
+        checkBounds(address, 1);
+        return buffer.get(address);
+    }
+
+    @Override
+    public void writeByte(int address, byte value) {
+        checkBounds(address, 1);
+        buffer.put(address, value);
+    }
+
+    @Override
+    public void read(int address, byte[] data, int offset, int length) {
+        checkBounds(address, length);
+        ByteBuffer source = buffer.duplicate();
+        source.position(address);
+        source.get(data, offset, length);
+    }
+
+    @Override
+    public void write(int address, byte[] data, int offset, int length) {
+        checkBounds(address, length);
+        ByteBuffer target = buffer.duplicate();
+        target.position(address);
+        target.put(data, offset, length);
+    }
+
+    private void checkBounds(int address, int length) {
+        if (address < 0 || address > size - length) {
+            throw new IndexOutOfBoundsException(String.format(
+                    "Address 0x%08X is outside memory of %d bytes", address, size));
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package uk.co.transputersystems.transputer.simulator;
+
+import javax.annotation.Nonnull;
+import java.io.*;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Saves and restores the complete machine state of a network, so that a simulation can be resumed later from the
+ * same point. The file starts with a small header; the rest may be deflate-compressed. Memory is stored as runs of
+ * non-zero words, so mostly empty memories stay small even without compression.
+ */
+public class Checkpoint {
+
+    private static final int MAGIC = 0x5453434B; // "TSCK"
+    private static final byte VERSION = 4;
+    private static final byte COMPRESSED = 1;
+
+    private static final int END_OF_MEMORY = -1;
+
+    public static void save(@Nonnull SimulationState state, @Nonnull File file, boolean compress) throws IOException {
+        try (OutputStream output = new FileOutputStream(file)) {
+            save(state, output, compress);
+        }
+    }
+
+    public static void save(@Nonnull SimulationState state, @Nonnull OutputStream output, boolean compress) throws IOException {
+        DataOutputStream header = new DataOutputStream(output);
+        header.writeInt(MAGIC);
+        header.writeByte(VERSION);
+        header.writeByte(compress ? COMPRESSED : 0);
+        header.flush();
+
+        DeflaterOutputStream deflater = null;
+        OutputStream body = output;
+        if (compress) {
+            deflater = new DeflaterOutputStream(output, new Deflater(Deflater.BEST_SPEED));
+            body = deflater;
+        }
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(body, 1 << 16));
+        data.writeInt(state.transputers.length);
+        for (Transputer transputer : state.transputers) {
+            data.writeInt(transputer.getMemory().size());
+        }
+        data.writeLong(state.loopCount);
+        for (int i = 0; i < state.transputers.length; i++) {
+            data.writeBoolean(state.active[i]);
+            state.transputers[i].saveState(data);
+        }
+        data.flush();
+        if (deflater != null) {
+            deflater.finish();
+        }
+    }
+
+    /**
+     * Replace the state of a network with a saved one. The network must have the same number of transputers, with
+     * the same memory sizes, as the one that was saved.
+     */
+    public static void restore(@Nonnull SimulationState state, @Nonnull File file) throws IOException {
+        try (InputStream input = new FileInputStream(file)) {
+            restore(state, input);
+        }
+    }
+
+    public static void restore(@Nonnull SimulationState state, @Nonnull InputStream input) throws IOException {
+        DataInputStream header = new DataInputStream(input);
+        if (header.readInt() != MAGIC) {
+            throw new IOException("Not a checkpoint");
+        }
+        byte version = header.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported checkpoint version " + version);
+        }
+        boolean compressed = (header.readByte() & COMPRESSED) != 0;
+
+        InputStream body = compressed ? new InflaterInputStream(input) : input;
+        DataInputStream data = new DataInputStream(new BufferedInputStream(body, 1 << 16));
+        int count = data.readInt();
+        if (count != state.transputers.length) {
+            throw new IOException(String.format("Checkpoint has %d transputers, but the network has %d.", count, state.transputers.length));
+        }
+        // Check every memory size before anything is overwritten
+        for (int i = 0; i < count; i++) {
+            int size = data.readInt();
+            if (size != state.transputers[i].getMemory().size()) {
+                throw new IOException(String.format("Checkpoint has %d bytes of memory for transputer %d, but it has %d.", size, i, state.transputers[i].getMemory().size()));
+            }
+        }
+        long loopCount = data.readLong();
+        for (int i = 0; i < count; i++) {
+            state.active[i] = data.readBoolean();
+            state.transputers[i].restoreState(data);
+        }
+        state.loopCount = loopCount;
+        if (state.history != null) {
+            state.history.reset();
+        }
+    }
+
+    /**
+     * Write the memory size followed by each run of non-zero words as an address, a length and the bytes.
+     */
+    static void writeMemory(DataOutput output, MemoryModel mem) throws IOException {
+        byte[] contents = new byte[mem.size()];
+        mem.read(0, contents, 0, contents.length);
+        output.writeInt(contents.length);
+
+        int word = 0;
+        while (word < contents.length) {
+            if (isZeroWord(contents, word)) {
+                word += TransputerConstants.BYTESPERWORD;
+                continue;
+            }
+            int start = word;
+            while (word < contents.length && !isZeroWord(contents, word)) {
+                word += TransputerConstants.BYTESPERWORD;
+            }
+            output.writeInt(start);
+            output.writeInt(word - start);
+            output.write(contents, start, word - start);
+        }
+        output.writeInt(END_OF_MEMORY);
+    }
+
+    static void readMemory(DataInput input, MemoryModel mem, int id) throws IOException {
+        int size = input.readInt();
+        if (size != mem.size()) {
+            throw new IOException(String.format("Checkpoint has %d bytes of memory for transputer %d, but it has %d.", size, id, mem.size()));
+        }
+        byte[] contents = new byte[size];
+        int start;
+        while ((start = input.readInt()) != END_OF_MEMORY) {
+            int length = input.readInt();
+            if (start < 0 || length < 0 || start > size - length) {
+                throw new IOException(String.format("Corrupt memory run at 0x%08X in checkpoint", start));
+            }
+            input.readFully(contents, start, length);
+        }
+        mem.write(0, contents, 0, size);
+    }
+
+    private static boolean isZeroWord(byte[] contents, int address) {
+        for (int i = 0; i < TransputerConstants.BYTESPERWORD; i++) {
+            if (contents[address + i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,89 @@
+package uk.co.transputersystems.transputer.simulator;
+
+import java.util.Arrays;
+
+/**
+ * Instructions decoded from transputer memory, keyed by address. Any pfix/nfix chain starting at an address is folded
+ * into the instruction that ends it, so the whole chain can be executed as one step with its full operand.
+ */
+public class DecodeCache {
+
+    /**
+     * The longest prefix chain (including the final instruction) that will be folded.
+     */
+    public static final int MAX_LENGTH = 16;
+
+    private final MemoryModel mem;
+    // 0 means not decoded yet, -1 means the chain could not be folded
+    private final byte[] lengths;
+    private final byte[] opcodes;
+    private final int[] operands;
+
+    public DecodeCache(MemoryModel mem) {
+        this.mem = mem;
+        this.lengths = new byte[mem.size()];
+        this.opcodes = new byte[mem.size()];
+        this.operands = new int[mem.size()];
+    }
+
+    /**
+     * Decode the instruction at an address, if it has not been decoded already.
+     * @return the number of bytes in the instruction including its prefixes, or 0 if it could not be folded
+     */
+    public int decode(int address) {
+        int length = lengths[address];
+        if (length == 0) {
+            length = fill(address);
+        }
+        return length < 0 ? 0 : length;
+    }
+
+    /**
+     * @return the primary opcode of the decoded instruction at an address
+     */
+    public byte opcode(int address) {
+        return opcodes[address];
+    }
+
+    /**
+     * @return the full operand of the decoded instruction at an address, as Oreg will hold it on execution
+     */
+    public int operand(int address) {
+        return operands[address];
+    }
+
+    /**
+     * Forget any decoded instructions that overlap the given bytes of memory.
+     */
+    public void invalidate(int address, int count) {
+        int first = Math.max(address - MAX_LENGTH + 1, 0);
+        int last = Math.min(address + count, lengths.length);
+        for (int i = first; i < last; i++) {
+            lengths[i] = 0;
+        }
+    }
+
+    public void invalidateAll() {
+        Arrays.fill(lengths, (byte) 0);
+    }
+
+    private int fill(int address) {
+        int oreg = 0;
+        for (int i = address; i < mem.size() && i - address < MAX_LENGTH; i++) {
+            byte opcode = TransputerHelpers.extractOpcode(mem.readByte(i));
+            oreg = TransputerHelpers.extractDirectOperand(mem.readByte(i)) | oreg;
+            if (opcode == TransputerConstants.PFIX) {
+                oreg = oreg << 4;
+            } else if (opcode == TransputerConstants.NFIX) {
+                oreg = (~oreg) << 4;
+            } else {
+                lengths[address] = (byte) (i - address + 1);
+                opcodes[address] = opcode;
+                operands[address] = oreg;
+                return lengths[address];
+            }
+        }
+        lengths[address] = -1;
+        return -1;
+    }
+}
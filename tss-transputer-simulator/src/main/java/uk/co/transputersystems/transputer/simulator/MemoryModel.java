@@ -0,0 +1,31 @@
+package uk.co.transputersystems.transputer.simulator;
+
+/**
+ * The memory of a single transputer. Words are little-endian. Every access is bounds-checked and throws an
+ * IndexOutOfBoundsException naming the address if it falls outside the memory.
+ */
+public interface MemoryModel {
+
+    /**
+     * @return the size of the memory in bytes
+     */
+    int size();
+
+    int readWord(int address);
+
+    void writeWord(int address, int value);
+
+    byte readByte(int address);
+
+    void writeByte(int address, byte value);
+
+    /**
+     * Copy `length` bytes of memory, starting at `address`, into `data` starting at `offset`.
+     */
+    void read(int address, byte[] data, int offset, int length);
+
+    /**
+     * Copy `length` bytes of `data`, starting at `offset`, into memory starting at `address`.
+     */
+    void write(int address, byte[] data, int offset, int length);
+}
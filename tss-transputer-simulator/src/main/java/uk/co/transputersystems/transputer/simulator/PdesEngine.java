@@ -0,0 +1,299 @@
+package uk.co.transputersystems.transputer.simulator;
+
+import uk.co.transputersystems.transputer.simulator.topology.RoutingTable;
+import uk.co.transputersystems.transputer.simulator.trace.NullTraceSink;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a network of transputers as a conservative parallel discrete event simulation. Each transputer keeps its own
+ * count of the loop iterations it has completed, and runs ahead of the others for as long as none of them can still
+ * send it anything for the iterations it has not yet reached. Transputers only affect one another through the
+ * switch, and a byte or acknowledgement takes at least two iterations to pass through a link that is not already
+ * busy, so every transputer publishes the earliest iteration at which its switch could next write to another
+ * (a null message). The state of every transputer, and the number of iterations, end up as they would be after the
+ * sequential loop in {@link Simulator#run}.
+ * <p>
+ * Threads own fixed, contiguous ranges of transputers, and take turns advancing each.
+ */
+public class PdesEngine {
+
+    private static final int SPINS_BEFORE_YIELD = 1000;
+    private static final int SPINS_BEFORE_PARK = 100000;
+    // Iterations to run one transputer for before moving on to the next in the range
+    private static final int BATCH = 64;
+    // Iteration count of a transputer that will never step or send anything again
+    private static final long FINISHED = Long.MAX_VALUE / 4;
+
+    private static class Core {
+        final int index;
+        // Transputers whose switch could write to this one, not counting itself
+        final int[] writers;
+        // Iterations whose step, and whose switch, this transputer has completed
+        volatile long stepped;
+        volatile long switched;
+        // The earliest iteration in which this transputer's switch could next write to another
+        volatile long promise;
+        // Only touched by the thread that owns the transputer
+        boolean active;
+        long lastActive;
+        long horizon;
+
+        Core(int index, int[] writers) {
+            this.index = index;
+            this.writers = writers;
+        }
+    }
+
+    private final Transputer[] transputers;
+    private final RoutingTable routing;
+    private final boolean idleSkip;
+    private final Core[] cores;
+    private final int[] rangeStarts;
+
+    private final boolean[] worked;
+    private final boolean[] inRange;
+
+    private volatile boolean aborted;
+    private volatile Throwable failure;
+
+    public PdesEngine(Transputer[] transputers, RoutingTable routing, int threads, boolean idleSkip) {
+        this.transputers = transputers;
+        this.routing = routing;
+        this.idleSkip = idleSkip;
+        threads = Math.max(1, Math.min(threads, transputers.length));
+
+        rangeStarts = new int[threads + 1];
+        for (int i = 0; i <= threads; i++) {
+            rangeStarts[i] = (int) ((long) transputers.length * i / threads);
+        }
+
+        List<List<Integer>> writers = new ArrayList<>();
+        for (int target = 0; target < transputers.length; target++) {
+            writers.add(new ArrayList<>());
+        }
+        for (int source = 0; source < transputers.length; source++) {
+            for (int processor = 0; processor < routing.getSize(); processor++) {
+                if (routing.isConnected(source, processor) && routing.route(source, processor) != source) {
+                    // Sources are visited in order, so a repeat can only be the last writer added
+                    List<Integer> targetWriters = writers.get(routing.route(source, processor));
+                    if (targetWriters.isEmpty() || targetWriters.get(targetWriters.size() - 1) != source) {
+                        targetWriters.add(source);
+                    }
+                }
+            }
+        }
+        cores = new Core[transputers.length];
+        for (int target = 0; target < transputers.length; target++) {
+            List<Integer> targetWriters = writers.get(target);
+            int[] indices = new int[targetWriters.size()];
+            for (int i = 0; i < indices.length; i++) {
+                indices[i] = targetWriters.get(i);
+            }
+            cores[target] = new Core(target, indices);
+        }
+
+        worked = new boolean[transputers.length];
+        inRange = new boolean[transputers.length];
+    }
+
+    public int getThreads() {
+        return rangeStarts.length - 1;
+    }
+
+    /**
+     * Run every active transputer until it stops, as the sequential loop would.
+     * @param active which transputers are active; all are inactive on return
+     * @param iterations the number of loop iterations already completed
+     * @return the number of loop iterations completed when the last transputer stopped
+     */
+    public long run(boolean[] active, long iterations) throws UnexpectedOverflowException {
+        for (Core core : cores) {
+            core.active = active[core.index];
+            core.lastActive = iterations;
+            core.horizon = iterations;
+            if (core.active) {
+                core.stepped = iterations;
+                core.switched = iterations;
+                core.promise = iterations + 1;
+            } else {
+                core.stepped = FINISHED;
+                core.switched = FINISHED;
+                core.promise = FINISHED;
+            }
+        }
+
+        Thread[] workers = new Thread[getThreads() - 1];
+        for (int i = 0; i < workers.length; i++) {
+            final int range = i + 1;
+            workers[i] = new Thread(() -> work(range), "transputer-pdes-" + range);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        work(0);
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                aborted = true;
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        Throwable error = failure;
+        if (error != null) {
+            if (error instanceof UnexpectedOverflowException) {
+                throw (UnexpectedOverflowException) error;
+            } else if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else {
+                throw new RuntimeException(error);
+            }
+        }
+
+        long result = iterations;
+        for (Core core : cores) {
+            result = Math.max(result, core.lastActive);
+            active[core.index] = false;
+        }
+        return result;
+    }
+
+    private void work(int range) {
+        int[] targets = new int[TransputerConstants.IN_PORTS + 1];
+        try {
+            int spins = 0;
+            boolean running = true;
+            while (running && !aborted) {
+                running = false;
+                boolean progressed = false;
+                for (int i = rangeStarts[range]; i < rangeStarts[range + 1]; i++) {
+                    Core core = cores[i];
+                    if (core.switched != FINISHED) {
+                        progressed |= advance(core, targets);
+                        running = true;
+                    }
+                }
+                spins = progressed ? 0 : backOff(spins);
+            }
+        } catch (Throwable e) {
+            failure = e;
+            aborted = true;
+        }
+    }
+
+    /**
+     * Run one transputer for as many iterations as are safe, up to a batch.
+     * @return true if it completed any part of an iteration
+     */
+    private boolean advance(Core core, int[] targets) throws UnexpectedOverflowException {
+        Transputer transputer = transputers[core.index];
+        boolean progressed = false;
+        for (int n = 0; n < BATCH; n++) {
+            long iteration = core.switched;
+            if (iteration == FINISHED) {
+                break;
+            }
+
+            if (core.stepped == iteration) {
+                if (core.horizon <= iteration) {
+                    core.horizon = horizon(core);
+                    if (core.horizon <= iteration) {
+                        break;
+                    }
+                }
+
+                // Nothing can reach an idle transputer before the horizon, so the steps it would spend waiting
+                // for its timer can be skipped without changing when it next interacts with the others
+                if (idleSkip && transputer.isWaitingForTimer() && !transputer.hasLinkActivity()) {
+                    long skip = Math.min(transputer.stepsUntilTimer(), core.horizon - iteration);
+                    if (skip > 0) {
+                        transputer.skipSteps(skip);
+                        core.lastActive = iteration + skip;
+                        core.stepped = iteration + skip;
+                        publish(core, transputer, iteration + skip);
+                        progressed = true;
+                        continue;
+                    }
+                }
+
+                Simulator.stepTransputer(transputer, core.index, worked, inRange);
+                core.lastActive = iteration + 1;
+                if (!inRange[core.index]) {
+                    core.active = false;
+                } else if (!worked[core.index] && transputer.hasNothingToDo()) {
+                    // The sequential loop goes round once more after a transputer stops for want of work
+                    core.active = false;
+                    core.lastActive = iteration + 2;
+                }
+                core.stepped = iteration + 1;
+                progressed = true;
+            }
+
+            // The switch may only write to a transputer between its step for this iteration and its next one
+            int count = transputer.switchTargets(core.index, routing, targets);
+            for (int i = 0; i < count; i++) {
+                if (cores[targets[i]].stepped <= iteration) {
+                    return progressed;
+                }
+            }
+            Transputer.switchFrom(transputers, core.index, routing, NullTraceSink.INSTANCE);
+
+            if (core.active) {
+                publish(core, transputer, iteration + 1);
+            } else {
+                // Inactive transputers are never stepped again, so there is nothing left for their switch to send
+                core.promise = FINISHED;
+                core.stepped = FINISHED;
+                core.switched = FINISHED;
+            }
+            progressed = true;
+        }
+        return progressed;
+    }
+
+    /**
+     * @return the last iteration that the transputer can step through before another could write to it
+     */
+    private long horizon(Core core) {
+        long horizon = FINISHED;
+        for (int writer : core.writers) {
+            Core other = cores[writer];
+            long switched = other.switched;
+            horizon = Math.min(horizon, Math.max(other.promise, switched + 1));
+        }
+        return horizon;
+    }
+
+    /**
+     * Record that the transputer has completed an iteration, after working out how soon its switch could write to
+     * another transputer. An output or input needs an iteration to be requested and another to move a byte, and
+     * anything written to the transputer needs two iterations to be answered.
+     */
+    private void publish(Core core, Transputer transputer, long iteration) {
+        long local;
+        if (transputer.hasLinkActivity()) {
+            local = iteration + 1;
+        } else if (transputer.isWaitingForTimer()) {
+            local = iteration + 2 + Math.min(transputer.stepsUntilTimer(), FINISHED);
+        } else {
+            local = iteration + 2;
+        }
+        long promise = Math.min(local, core.horizon + 2);
+        if (promise > core.promise) {
+            core.promise = promise;
+        }
+        core.switched = iteration;
+    }
+
+    private static int backOff(int spins) {
+        if (spins > SPINS_BEFORE_PARK) {
+            LockSupport.parkNanos(50000);
+        } else if (spins > SPINS_BEFORE_YIELD) {
+            Thread.yield();
+        }
+        return spins + 1;
+    }
+}
@@ -0,0 +1,190 @@
+package uk.co.transputersystems.transputer.simulator;
+
+/**
+ * A bounded log of what every step of the network changed, so the debugger can run it backwards. Each loop
+ * iteration adds one record holding the old value of every register, link field and memory word it changed,
+ * and whether each transputer was still running. Records are kept in a ring of ints of fixed size; once it is full
+ * the oldest records are dropped.
+ *
+ * Every record is laid out as `n`, then `n` entries of (owner, key, old value), then `n` again so the ring can be
+ * walked from either end. The owner is a transputer index, or -1 for the network's list of running transputers. A
+ * key of 0 or more indexes the transputer's register state; a negative key is the complement of a memory address.
+ */
+public class ReverseHistory {
+    private static final int NETWORK = -1;
+    // Keeps every position in the ring below 2^31 even with a record pending
+    public static final long MAX_BUDGET = 4L << 30;
+
+    private final SimulationState state;
+    private final int[] ring;
+    // State of every transputer at the end of the last recorded step
+    private final int[][] shadows;
+    private final boolean[] activeShadow;
+    private final int[] current;
+
+    private int oldest;
+    private int used;
+    private int records;
+    // The record being built, which starts at oldest + used
+    private int pending;
+    private boolean overflowed;
+
+    public ReverseHistory(SimulationState state, long budgetBytes) {
+        if (budgetBytes < 16 || budgetBytes > MAX_BUDGET) {
+            throw new IllegalArgumentException("The reverse history budget must be between 16 bytes and 4GB.");
+        }
+        this.state = state;
+        this.ring = new int[(int) (budgetBytes / 4)];
+        // Every transputer saves the same fields
+        int size = state.transputers[0].getRegisterStateSize();
+        this.current = new int[size];
+        this.shadows = new int[state.transputers.length][size];
+        this.activeShadow = new boolean[state.transputers.length];
+        for (Transputer transputer : state.transputers) {
+            transputer.enableWriteLog();
+        }
+        reset();
+    }
+
+    /**
+     * Forget all history, e.g. after a checkpoint has been restored. Stepping back stops at the current state.
+     */
+    public void reset() {
+        oldest = 0;
+        used = 0;
+        records = 0;
+        pending = 0;
+        overflowed = false;
+        for (int i = 0; i < state.transputers.length; i++) {
+            state.transputers[i].saveRegisterState(shadows[i]);
+            state.transputers[i].getWriteLog().clear();
+            activeShadow[i] = state.active[i];
+        }
+    }
+
+    /**
+     * @return the number of steps that can currently be undone
+     */
+    public int size() {
+        return records;
+    }
+
+    /**
+     * Record everything that changed in the step that has just finished.
+     */
+    public void commit() {
+        pending = 0;
+        overflowed = false;
+        append(0);
+
+        int entries = 0;
+        for (int i = 0; i < state.transputers.length; i++) {
+            Transputer transputer = state.transputers[i];
+            WriteLog writes = transputer.getWriteLog();
+            for (int j = 0; j < writes.size(); j++) {
+                appendEntry(i, ~writes.address(j), writes.oldValue(j));
+                entries++;
+            }
+            writes.clear();
+
+            int[] shadow = shadows[i];
+            transputer.saveRegisterState(current);
+            for (int key = 0; key < current.length; key++) {
+                if (current[key] != shadow[key]) {
+                    appendEntry(i, key, shadow[key]);
+                    shadow[key] = current[key];
+                    entries++;
+                }
+            }
+
+            if (state.active[i] != activeShadow[i]) {
+                appendEntry(NETWORK, i, activeShadow[i] ? 1 : 0);
+                activeShadow[i] = state.active[i];
+                entries++;
+            }
+        }
+        append(entries);
+
+        if (overflowed) {
+            // The step changed more than the whole budget can hold, so nothing before it can be undone
+            oldest = 0;
+            used = 0;
+            records = 0;
+        } else {
+            ring[index(0)] = entries;
+            used += pending;
+            records++;
+        }
+    }
+
+    /**
+     * Undo the most recent step.
+     * @return false if there was no step to undo
+     */
+    public boolean stepBack() {
+        if (records == 0) {
+            return false;
+        }
+        int end = used;
+        int entries = ring[wrap(oldest + end - 1)];
+        int position = end - 1 - 3 * entries;
+        for (int entry = entries - 1; entry >= 0; entry--) {
+            int owner = ring[wrap(oldest + position + 3 * entry)];
+            int key = ring[wrap(oldest + position + 3 * entry + 1)];
+            int oldValue = ring[wrap(oldest + position + 3 * entry + 2)];
+            if (owner == NETWORK) {
+                activeShadow[key] = oldValue != 0;
+            } else if (key >= 0) {
+                shadows[owner][key] = oldValue;
+            } else {
+                state.transputers[owner].undoWrite(~key, oldValue);
+            }
+        }
+        used -= 3 * entries + 2;
+        records--;
+
+        for (int i = 0; i < state.transputers.length; i++) {
+            state.transputers[i].restoreRegisterState(shadows[i]);
+            state.active[i] = activeShadow[i];
+        }
+        state.loopCount--;
+        return true;
+    }
+
+    private void appendEntry(int owner, int key, int oldValue) {
+        append(owner);
+        append(key);
+        append(oldValue);
+    }
+
+    private void append(int value) {
+        if (overflowed) {
+            return;
+        }
+        while (used + pending >= ring.length) {
+            if (records == 0) {
+                overflowed = true;
+                return;
+            }
+            dropOldest();
+        }
+        ring[index(pending)] = value;
+        pending++;
+    }
+
+    private void dropOldest() {
+        int length = 3 * ring[oldest] + 2;
+        oldest = wrap(oldest + length);
+        used -= length;
+        records--;
+    }
+
+    // Position in the ring of an offset into the pending record
+    private int index(int offset) {
+        return wrap(oldest + used + offset);
+    }
+
+    private int wrap(int position) {
+        return position % ring.length;
+    }
+}
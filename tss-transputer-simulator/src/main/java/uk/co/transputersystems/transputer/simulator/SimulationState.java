@@ -0,0 +1,27 @@
+package uk.co.transputersystems.transputer.simulator;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * The state of a running network that is not held by the transputers themselves.
+ */
+public class SimulationState {
+    @Nonnull public final Transputer[] transputers;
+    // Transputers that have not yet stopped
+    @Nonnull public final boolean[] active;
+    // Whether each transputer stepped in the last iteration did any work, and was still inside its program after it
+    @Nonnull public final boolean[] worked;
+    @Nonnull public final boolean[] inRange;
+    // Iterations of the simulation loop so far
+    public long loopCount;
+    // Set when steps are recorded so they can be undone
+    @Nullable public ReverseHistory history;
+
+    public SimulationState(@Nonnull Transputer[] transputers) {
+        this.transputers = transputers;
+        this.active = new boolean[transputers.length];
+        this.worked = new boolean[transputers.length];
+        this.inRange = new boolean[transputers.length];
+    }
+}
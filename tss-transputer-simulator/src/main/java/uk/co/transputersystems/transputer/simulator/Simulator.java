@@ -1,5 +1,8 @@
 package uk.co.transputersystems.transputer.simulator;
 
+import uk.co.transputersystems.transputer.simulator.checker.CheckerFormat;
+import uk.co.transputersystems.transputer.simulator.checker.CheckerLevel;
+import uk.co.transputersystems.transputer.simulator.checker.CheckerLogWriter;
 import uk.co.transputersystems.transputer.simulator.debugger.CommandExecutor;
 import uk.co.transputersystems.transputer.simulator.debugger.CommandResult;
 import joptsimple.OptionParser;
@@ -9,19 +12,35 @@ import org.antlr.v4.runtime.ANTLRInputStream;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.ConsoleErrorListener;
 import org.antlr.v4.runtime.tree.ParseTree;
-
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.HashSet;
+import uk.co.transputersystems.transputer.simulator.io.IoPins;
+import uk.co.transputersystems.transputer.simulator.coverage.Coverage;
+import uk.co.transputersystems.transputer.simulator.coverage.CoverageData;
+import uk.co.transputersystems.transputer.simulator.coverage.CoverageHtml;
+import uk.co.transputersystems.transputer.simulator.metrics.Metrics;
+import uk.co.transputersystems.transputer.simulator.metrics.MetricsFormat;
+import uk.co.transputersystems.transputer.simulator.metrics.MetricsReport;
+import uk.co.transputersystems.transputer.simulator.profile.ProfileReport;
+import uk.co.transputersystems.transputer.simulator.profile.Profiler;
+import uk.co.transputersystems.transputer.simulator.timing.CycleTable;
+import uk.co.transputersystems.transputer.simulator.topology.Network;
+import uk.co.transputersystems.transputer.simulator.topology.RoutingTable;
+import uk.co.transputersystems.transputer.simulator.trace.*;
+import uk.co.transputersystems.transputer.utils.ProgramImage;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.util.Arrays;
 import java.util.Scanner;
 
 import static java.io.File.pathSeparatorChar;
 
 public class Simulator {
 
-    private static CommandResult executeCommand(String command, Transputer[] transputers, PrintWriter output, PrintWriter errOutput) {
+    // Instructions listed for each transputer in the profile
+    private static final int PROFILE_INSTRUCTIONS = 40;
+
+    private static CommandResult executeCommand(String command, SimulationState state, PrintWriter output, PrintWriter errOutput) {
         DebuggerCommandLexer commandLexer = new DebuggerCommandLexer(new ANTLRInputStream(command));
         commandLexer.removeErrorListener(ConsoleErrorListener.INSTANCE);
 
@@ -39,18 +58,18 @@ public class Simulator {
             return CommandResult.NOT_RECOGNISED;
         }
 
-        CommandExecutor executor = new CommandExecutor(transputers, output, errOutput);
+        CommandExecutor executor = new CommandExecutor(state, output, errOutput);
         return executor.visit(commandTree);
     }
 
-    private static boolean interact(Transputer[] transputers, Scanner input, PrintWriter output, PrintWriter errOutput) {
+    private static boolean interact(SimulationState state, Scanner input, PrintWriter output, PrintWriter errOutput) {
         String command;
         CommandResult result;
         while (true) {
             System.out.printf("> ");
             command = input.nextLine();
             output.printf("\n");
-            switch (executeCommand(command, transputers, output, errOutput)) {
+            switch (executeCommand(command, state, output, errOutput)) {
                 case CONTINUE:
                     return false;
                 case STEP:
@@ -85,140 +104,609 @@ public class Simulator {
                 .ofType(File.class)
                 .describedAs("generate test checking including timer registers");
 
+        OptionSpec<String> checkerFormatArg = optionParser
+                .accepts("checker-format")
+                .withRequiredArg()
+                .defaultsTo(CheckerFormat.TEXT.name())
+                .describedAs("format of test checking files: text, binary or delta");
+
+        OptionSpec<String> traceArg = optionParser
+                .accepts("trace")
+                .withRequiredArg()
+                .defaultsTo(TraceLevel.OFF.name())
+                .describedAs("trace level: off, instruction, scheduler, links or full");
+
+        OptionSpec<File> traceFileArg = optionParser
+                .accepts("trace-file")
+                .withRequiredArg()
+                .ofType(File.class)
+                .describedAs("write the trace to a file instead of standard output");
+
+        OptionSpec binaryTraceArg = optionParser.accepts("binary-trace");
+
+        OptionSpec decodeCacheArg = optionParser.accepts("decode-cache");
+
+        OptionSpec noIdleSkipArg = optionParser.accepts("no-idle-skip");
+
+        OptionSpec messageLinksArg = optionParser.accepts("message-links");
+
+        OptionSpec jitArg = optionParser.accepts("jit");
+
+        OptionSpec<Integer> jitThresholdArg = optionParser
+                .accepts("jit-threshold")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(100)
+                .describedAs("entries to a block before it is translated");
+
+        OptionSpec noMemoryTrackingArg = optionParser.accepts("no-memory-tracking");
+
+        OptionSpec processHistoryArg = optionParser.accepts("process-history");
+
+        OptionSpec pdesArg = optionParser.accepts("pdes");
+
+        OptionSpec<Integer> threadsArg = optionParser
+                .accepts("threads")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(1)
+                .describedAs("number of threads to run --pdes on");
+
+        OptionSpec<Integer> memorySizeArg = optionParser
+                .accepts("memory-size")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(TransputerConstants.MEMSIZE)
+                .describedAs("bytes of memory for each transputer not sized by the topology");
+
         OptionSpec<File> binariesArg = optionParser
                 .accepts("binaries")
                 .withRequiredArg()
-                .required()
                 .ofType(File.class)
                 .withValuesSeparatedBy(pathSeparatorChar);
 
+        OptionSpec<File> topologyArg = optionParser
+                .accepts("topology")
+                .withRequiredArg()
+                .ofType(File.class)
+                .describedAs("load the network of binaries and links from a yaml file");
+
+        OptionSpec<File> restoreCheckpointArg = optionParser
+                .accepts("restore-checkpoint")
+                .withRequiredArg()
+                .ofType(File.class)
+                .describedAs("resume the network from a checkpoint after loading it");
+
+        OptionSpec<File> saveCheckpointArg = optionParser
+                .accepts("save-checkpoint")
+                .withRequiredArg()
+                .ofType(File.class)
+                .describedAs("save a checkpoint of the network");
+
+        OptionSpec<Long> checkpointStepArg = optionParser
+                .accepts("checkpoint-step")
+                .withRequiredArg()
+                .ofType(Long.class)
+                .describedAs("step at which to save the checkpoint instead of at the end of the run");
+
+        OptionSpec compressCheckpointArg = optionParser.accepts("compress-checkpoint");
+
+        OptionSpec<Integer> reverseHistoryArg = optionParser
+                .accepts("reverse-history")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .describedAs("megabytes of recent steps to keep so the debugger can step backwards");
+
+        OptionSpec<String> timingArg = optionParser
+                .accepts("timing")
+                .withRequiredArg()
+                .describedAs("count cycles with a built in timing model (unit or t414) or a timing yaml file");
+
+        OptionSpec<Double> clockMhzArg = optionParser
+                .accepts("clock-mhz")
+                .withRequiredArg()
+                .ofType(Double.class)
+                .describedAs("clock frequency for turning cycles into time, instead of the timing model's");
+
+        OptionSpec<File> profileArg = optionParser
+                .accepts("profile")
+                .withRequiredArg()
+                .ofType(File.class)
+                .describedAs("write a table of the functions, instructions and processes that took the most steps");
+
+        OptionSpec<File> profileStacksArg = optionParser
+                .accepts("profile-stacks")
+                .withRequiredArg()
+                .ofType(File.class)
+                .describedAs("write the profile as collapsed stacks for flame graph tools");
+
+        OptionSpec<Integer> profileIntervalArg = optionParser
+                .accepts("profile-interval")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(1)
+                .describedAs("profile one step in every n instead of every step");
+
+        OptionSpec<File> metricsArg = optionParser
+                .accepts("metrics")
+                .withOptionalArg()
+                .ofType(File.class)
+                .describedAs("count process switches, timer queue steps, link traffic and instructions, writing them to the file at exit");
+
+        OptionSpec<File> ioConfigArg = optionParser
+                .accepts("io-config")
+                .withRequiredArg()
+                .ofType(File.class)
+                .describedAs("model the I/O pins and pin devices in an assembler configuration, for the processor it names");
+
+        OptionSpec<File> coverageArg = optionParser
+                .accepts("coverage")
+                .withRequiredArg()
+                .ofType(File.class)
+                .describedAs("record the instructions executed, writing the assembly and occam lines they came from as an LCOV tracefile");
+
+        OptionSpec<File> coverageHtmlArg = optionParser
+                .accepts("coverage-html")
+                .withRequiredArg()
+                .ofType(File.class)
+                .describedAs("record the instructions executed, writing an HTML coverage report to a directory");
+
+        OptionSpec<String> metricsFormatArg = optionParser
+                .accepts("metrics-format")
+                .withRequiredArg()
+                .describedAs("format of the metrics file: json or prometheus, by default json for .json files and prometheus otherwise");
+
         OptionSet options = optionParser.parse(args);
 
-        SimulatorConfig config = new SimulatorConfig(options.has(interactiveArg), options.valueOf(verilogTestbenchArg), options.valueOf(schedulerArg), options.valueOf(timerArg), options.valuesOf(binariesArg), options.has(printWorkspaceMemArg));
+        TraceLevel traceLevel;
+        try {
+            traceLevel = TraceLevel.parse(options.valueOf(traceArg));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown trace level: " + options.valueOf(traceArg));
+        }
+
+        CheckerFormat checkerFormat;
+        try {
+            checkerFormat = CheckerFormat.parse(options.valueOf(checkerFormatArg));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown checker log format: " + options.valueOf(checkerFormatArg));
+        }
+
+        MetricsFormat metricsFormat = null;
+        if (options.has(metricsFormatArg)) {
+            try {
+                metricsFormat = MetricsFormat.parse(options.valueOf(metricsFormatArg));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown metrics format: " + options.valueOf(metricsFormatArg));
+            }
+        }
+
+        Network network;
+        if (options.has(topologyArg)) {
+            if (options.has(binariesArg)) {
+                throw new IllegalArgumentException("Binaries cannot be supplied as well as a topology.");
+            }
+            try {
+                network = Network.load(options.valueOf(topologyArg), options.valueOf(memorySizeArg));
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Could not read topology: " + e.getMessage());
+            }
+        } else {
+            network = Network.fullyConnected(options.valuesOf(binariesArg), options.valueOf(memorySizeArg));
+        }
+
+        CycleTable timing = null;
+        if (options.has(timingArg)) {
+            try {
+                timing = CycleTable.forName(options.valueOf(timingArg), options.has(clockMhzArg) ? options.valueOf(clockMhzArg) : 0);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Could not read timing model: " + e.getMessage());
+            }
+        } else if (options.has(clockMhzArg)) {
+            throw new IllegalArgumentException("--clock-mhz needs a timing model, given with --timing.");
+        }
+
+        // Checker logs and scheduler traces have a record for every step, so idle time is only skipped without them
+        boolean idleSkip = !options.has(noIdleSkipArg) && !options.has(verilogTestbenchArg) && !options.has(schedulerArg) &&
+                !options.has(timerArg) && !traceLevel.includes(TraceLevel.SCHEDULER);
+
+        SimulatorConfig config = new SimulatorConfig.Builder(Arrays.asList(network.binaries))
+                .interactive(options.has(interactiveArg))
+                .testChecker(options.valueOf(verilogTestbenchArg))
+                .schedChecker(options.valueOf(schedulerArg))
+                .timerChecker(options.valueOf(timerArg))
+                .printWorkspaceMemory(options.has(printWorkspaceMemArg))
+                .traceLevel(traceLevel)
+                .traceFile(options.valueOf(traceFileArg))
+                .binaryTrace(options.has(binaryTraceArg))
+                .decodeCache(options.has(decodeCacheArg))
+                .threads(options.valueOf(threadsArg))
+                .routing(network.routing)
+                .memorySizes(network.memorySizes)
+                .memoryTracking(!options.has(noMemoryTrackingArg))
+                .processHistory(options.has(processHistoryArg))
+                .restoreCheckpoint(options.valueOf(restoreCheckpointArg))
+                .saveCheckpoint(options.valueOf(saveCheckpointArg))
+                .checkpointStep(options.has(checkpointStepArg) ? options.valueOf(checkpointStepArg) : -1)
+                .compressCheckpoint(options.has(compressCheckpointArg))
+                .reverseHistory(options.has(reverseHistoryArg) ? (long) options.valueOf(reverseHistoryArg) << 20 : 0)
+                .idleSkip(idleSkip)
+                .timing(timing)
+                .profile(options.valueOf(profileArg))
+                .profileStacks(options.valueOf(profileStacksArg))
+                .profileInterval(options.valueOf(profileIntervalArg))
+                .messageLinks(options.has(messageLinksArg))
+                .jitThreshold(options.has(jitArg) ? options.valueOf(jitThresholdArg) : 0)
+                .pdes(options.has(pdesArg))
+                .checkerFormat(checkerFormat)
+                .metrics(options.has(metricsArg))
+                .metricsFile(options.valueOf(metricsArg))
+                .metricsFormat(metricsFormat)
+                .ioConfigs(options.valuesOf(ioConfigArg))
+                .coverage(options.valueOf(coverageArg))
+                .coverageHtml(options.valueOf(coverageHtmlArg))
+                .build();
+
+        if (config.threads < 1) {
+            throw new IllegalArgumentException("At least one thread is needed.");
+        }
+        if (config.threads > 1 && !config.pdes) {
+            throw new IllegalArgumentException("The network is only run on several threads with --pdes.");
+        }
+        if (config.messageLinks && (config.testChecker != null || config.schedChecker != null || config.timerChecker != null)) {
+            throw new IllegalArgumentException("Checker logs follow links byte by byte, so cannot be written with --message-links.");
+        }
+        if (options.has(jitArg) && config.jitThreshold < 1) {
+            throw new IllegalArgumentException("The JIT threshold must be at least 1.");
+        }
+        if (config.jitThreshold > 0 && (config.testChecker != null || config.schedChecker != null || config.timerChecker != null)) {
+            throw new IllegalArgumentException("Checker logs record every instruction, so cannot be written with --jit.");
+        }
+
+        if (config.pdes && (config.interactive || config.reverseHistory > 0)) {
+            throw new IllegalArgumentException("The debugger stops the whole network at once, so cannot be used with --pdes.");
+        }
+        if (config.pdes && (config.testChecker != null || config.schedChecker != null || config.timerChecker != null || config.traceLevel != TraceLevel.OFF)) {
+            throw new IllegalArgumentException("Checker logs and traces are written step by step across the network, so cannot be written with --pdes.");
+        }
+        if (config.pdes && config.saveCheckpoint != null) {
+            throw new IllegalArgumentException("Checkpoints are taken with the whole network at one step, so cannot be saved with --pdes.");
+        }
+
+        if (config.restoreCheckpoint != null && !config.ioConfigs.isEmpty()) {
+            throw new IllegalArgumentException("Checkpoints do not hold the state of I/O pins, so cannot be restored with --io-config.");
+        }
+
+        if (config.profileInterval < 1) {
+            throw new IllegalArgumentException("The profile interval must be at least 1.");
+        }
+
+        if (config.metricsFormat != null && config.metricsFile == null) {
+            throw new IllegalArgumentException("--metrics-format needs a file to write to, given with --metrics.");
+        }
+
+        if (config.binaryTrace && config.traceFile == null) {
+            throw new IllegalArgumentException("A binary trace must be written to a file given with --trace-file.");
+        }
 
         if (config.binaries.size() == 0) {
             throw new IllegalArgumentException("At least one binary must be supplied.");
-        } else if (config.binaries.size() > 4) {
-            // TODO: lift this restriction?
-            throw new IllegalArgumentException("At most four binaries can be supplied.");
+        }
+
+        if (options.has(checkpointStepArg) && config.saveCheckpoint == null) {
+            throw new IllegalArgumentException("--checkpoint-step needs a file to save to, given with --save-checkpoint.");
+        }
+
+        if (config.reverseHistory < 0 || config.reverseHistory > ReverseHistory.MAX_BUDGET) {
+            throw new IllegalArgumentException("The reverse history must be between 0 and 4096 megabytes.");
+        }
+
+        if (config.checkpointStep < -1) {
+            throw new IllegalArgumentException("The checkpoint step cannot be negative.");
         }
 
         return config;
     }
 
-    public static void run(String[] args) throws Exception {
+    private static TraceSink createTraceSink(SimulatorConfig config, PrintWriter stdout) throws IOException {
+        if (config.traceLevel == TraceLevel.OFF) {
+            return NullTraceSink.INSTANCE;
+        } else if (config.binaryTrace) {
+            return new BinaryTraceSink(new FileOutputStream(config.traceFile), config.traceLevel);
+        } else if (config.traceFile != null) {
+            return new TextTraceSink(new PrintWriter(new FileWriter(config.traceFile, false)), config.traceLevel);
+        } else {
+            return new TextTraceSink(stdout, config.traceLevel);
+        }
+    }
+
+    private static String formatMhz(double clockMhz) {
+        return clockMhz == Math.rint(clockMhz) ? String.valueOf((long) clockMhz) : String.valueOf(clockMhz);
+    }
+
+    /**
+     * If every active transputer is waiting for a timer and no link activity could start a process sooner, advance
+     * them all to the step at which the first timer is due. The whole network moves together so that the order of
+     * events between transputers is the same as stepping through the idle time.
+     * @return the number of steps skipped
+     */
+    public static long skipIdleSteps(Transputer[] transputers, boolean[] active) {
+        long skip = Long.MAX_VALUE;
+        for (int i = 0; i < transputers.length; i++) {
+            if (active[i]) {
+                if (!transputers[i].isWaitingForTimer() || transputers[i].hasLinkActivity()) {
+                    return 0;
+                }
+                skip = Math.min(skip, transputers[i].stepsUntilTimer());
+            }
+        }
+        if (skip == Long.MAX_VALUE || skip == 0) {
+            return 0;
+        }
+        for (int i = 0; i < transputers.length; i++) {
+            if (active[i]) {
+                transputers[i].skipSteps(skip);
+            }
+        }
+        return skip;
+    }
+
+    /**
+     * Count the steps the network took as if every step had been made one at a time. Each transputer counts its own
+     * steps, including the bytes of folded prefix chains and skipped idle time, and the network runs for as long as
+     * the transputer that takes the most. The loop goes round once more after a transputer stops for want of work,
+     * before it notices, which is counted as well.
+     */
+    public static long architecturalSteps(Transputer[] transputers) {
+        long steps = 0;
+        for (Transputer transputer : transputers) {
+            boolean inRange = transputer.registers.Iptr <= transputer.programEndPtr && transputer.registers.Iptr >= transputer.getCodeStart();
+            steps = Math.max(steps, transputer.getSteps() + (inRange ? 1 : 0));
+        }
+        return steps;
+    }
+
+    /**
+     * Perform one step of a transputer and service its links.
+     * @param worked receives the result of performStep at index i
+     * @param inRange receives whether Iptr is still inside the program at index i
+     */
+    public static void stepTransputer(Transputer transputer, int i, boolean[] worked, boolean[] inRange) throws UnexpectedOverflowException {
+        worked[i] = transputer.performStep();
+        transputer.traceRegisters();
+        transputer.incrementClock();
+        if (transputer.programEndPtr < transputer.registers.Iptr ||
+                transputer.registers.Iptr < transputer.getCodeStart()) {
+            inRange[i] = false;
+        } else {
+            inRange[i] = true;
+            // Check LinkIn
+            for (int j = 0; j < TransputerConstants.IN_PORTS; j++) {
+                transputer.processInputLink(transputer.inputLinks[j]);
+            }
+            // Check LinkOut
+            transputer.processOutputLink();
+        }
+    }
+
+    /**
+     * One iteration of the main loop: step every active transputer, mark those that have left their program or have
+     * nothing to do as inactive, move link data and skip any time that the whole network would spend waiting for a
+     * timer. The iteration is counted in `state.loopCount` before any transputer is stepped, and recorded in
+     * `state.history` once it is done.
+     * @param idleSkip skip idle time; without it the network steps through idle time one step at a time
+     * @param listener told about every active transputer once it has been stepped, or null
+     * @return true if any transputer stepped is still inside its program
+     */
+    public static boolean iterate(@Nonnull SimulationState state, @Nonnull RoutingTable routing, @Nonnull TraceSink trace,
+                                  boolean idleSkip, @Nullable StepListener listener)
+            throws UnexpectedOverflowException {
+        Transputer[] transputers = state.transputers;
+        boolean[] active = state.active;
+        boolean[] worked = state.worked;
+        boolean[] inRange = state.inRange;
+
+        state.loopCount += 1;
+        for (int i = 0; i < transputers.length; i++) {
+            if (active[i]) {
+                stepTransputer(transputers[i], i, worked, inRange);
+            }
+        }
+
+        boolean anyActive = false;
+        for (int i = 0; i < transputers.length; i++) {
+            if (active[i]) {
+                anyActive |= inRange[i];
+                if (listener != null) {
+                    listener.stepped(i, transputers[i], worked[i], inRange[i]);
+                }
+                if (!inRange[i] || (!worked[i] && transputers[i].hasNothingToDo())) {
+                    active[i] = false;
+                }
+            }
+        }
+        Transputer.switchStep(transputers, routing, trace);
+        if (idleSkip) {
+            skipIdleSteps(transputers, active);
+        }
+        if (state.history != null) {
+            state.history.commit();
+        }
+        return anyActive;
+    }
+
+    /**
+     * @return the exit status: 0 if the run ended normally, or 1 if a transputer reached an instruction that is not
+     * implemented
+     */
+    public static int run(String[] args) throws Exception {
         SimulatorConfig config = parseOptions(args);
 
         Transputer[] transputers;
-        HashSet<Transputer> activeTransputers;
+        SimulationState state;
+        boolean[] activeTransputers;
         boolean anyTransputerActive = true;
         boolean hitBreak;
         boolean currentlyInteractive = config.interactive;
-        long loopCount = 0;
+        int status = 0;
         PrintWriter stdout = new PrintWriter(System.out);
         PrintWriter stderr = new PrintWriter(System.err);
         Scanner stdin = new Scanner(System.in);
+        TraceSink trace = createTraceSink(config, stdout);
 
-        FileWriter testCheckerFileWriter = null;
-        PrintWriter testCheckerPrintWriter = null;
-        FileWriter schedCheckerFileWriter = null;
-        PrintWriter schedCheckerPrintWriter = null;
-        FileWriter timerCheckerFileWriter = null;
-        PrintWriter timerCheckerPrintWriter = null;
+        CheckerLogWriter testChecker = null;
+        CheckerLogWriter schedChecker = null;
+        CheckerLogWriter timerChecker = null;
         //int i, j;
-        boolean worked;
 
         if (config.testChecker != null) {
             // Open output file and write initial state
-            testCheckerFileWriter = new FileWriter(config.testChecker, false);
-            testCheckerPrintWriter = new PrintWriter(testCheckerFileWriter);
+            testChecker = CheckerLogWriter.open(config.testChecker, CheckerLevel.STATE, config.checkerFormat);
         }
         if (config.schedChecker != null) {
             // Open output file and write initial state
-            schedCheckerFileWriter = new FileWriter(config.schedChecker, false);
-            schedCheckerPrintWriter = new PrintWriter(schedCheckerFileWriter);
+            schedChecker = CheckerLogWriter.open(config.schedChecker, CheckerLevel.SCHEDULER, config.checkerFormat);
         }
         if (config.timerChecker != null) {
-            timerCheckerFileWriter = new FileWriter(config.timerChecker, false);
-            timerCheckerPrintWriter = new PrintWriter(timerCheckerFileWriter);
+            timerChecker = CheckerLogWriter.open(config.timerChecker, CheckerLevel.TIMER, config.checkerFormat);
         }
 
 
         stdout.printf("# Loading\n");
         transputers = new Transputer[config.binaries.size()];
-        activeTransputers = new HashSet<>();
+        state = new SimulationState(transputers);
+        activeTransputers = state.active;
         for (int i = 0; i < config.binaries.size(); i++) {
-            transputers[i] = new Transputer((byte) i, stdout, stderr);
+            MemoryModel memory = new ByteBufferMemory(config.memorySizes[i]);
+            transputers[i] = new Transputer(i, stdout, stderr, trace, memory);
+            transputers[i].debuggerState.memAccessed.setEnabled(config.memoryTracking);
+            // Workspaces of finished processes are printed at exit, so keep them
+            transputers[i].debuggerState.processes.setHistoryEnabled(config.processHistory || config.printWorkspaceMemory);
+            if (config.decodeCache) {
+                transputers[i].enableDecodeCache();
+            }
+            if (config.timing != null) {
+                transputers[i].setTimingModel(config.timing);
+            }
+            transputers[i].setMessageLinks(config.messageLinks);
+            if (config.jitThreshold > 0) {
+                transputers[i].enableJit(config.jitThreshold);
+            }
+            if (config.profile != null || config.profileStacks != null) {
+                transputers[i].setProfiler(new Profiler(config.memorySizes[i], config.profileInterval));
+            }
+            if (config.metrics) {
+                transputers[i].setMetrics(new Metrics());
+            }
+            if (config.coverage != null || config.coverageHtml != null) {
+                transputers[i].setCoverage(new Coverage(config.memorySizes[i]));
+            }
             transputers[i].loadProgram(config.binaries.get(i));
             transputers[i].printRecentMemory(stdout);
             transputers[i].printRegisters(stdout);
             if (config.testChecker != null) {
-                transputers[i].logState(0, testCheckerPrintWriter);
+                testChecker.log(i, transputers[i], 0);
             }
             if (config.schedChecker != null) {
-                transputers[i].logSched(0, schedCheckerPrintWriter);
+                schedChecker.log(i, transputers[i], 0);
             }
             if (config.timerChecker != null) {
-                transputers[i].logTimer(0, timerCheckerPrintWriter);
+                timerChecker.log(i, transputers[i], 0);
             }
-            activeTransputers.add(transputers[i]);
+            activeTransputers[i] = true;
         }
 
+        for (File ioConfig : config.ioConfigs) {
+            IoPins ioPins = IoPins.load(ioConfig);
+            if (ioPins.processor < 0 || ioPins.processor >= transputers.length) {
+                ioPins.close();
+                throw new IllegalArgumentException(String.format("%s is for processor %d, which does not exist.", ioConfig, ioPins.processor));
+            }
+            if (transputers[ioPins.processor].getIoPins() != null) {
+                ioPins.close();
+                throw new IllegalArgumentException(String.format("Processor %d has more than one I/O configuration.", ioPins.processor));
+            }
+            transputers[ioPins.processor].setIoPins(ioPins);
+        }
+
+        if (config.restoreCheckpoint != null) {
+            Checkpoint.restore(state, config.restoreCheckpoint);
+            stdout.printf("# Restored checkpoint from step %d\n", state.loopCount);
+            anyTransputerActive = false;
+            for (boolean active : activeTransputers) {
+                anyTransputerActive |= active;
+            }
+            for (Transputer transputer : transputers) {
+                transputer.printRegisters(stdout);
+            }
+        }
+
+        if (config.reverseHistory > 0) {
+            state.history = new ReverseHistory(state, config.reverseHistory);
+        }
+
+        CheckerListener listener = new CheckerListener(testChecker, schedChecker, timerChecker, stdout);
+
         stdout.printf("# Starting\n");
         stdout.flush();
         stderr.flush();
 
-        while (anyTransputerActive) {
-            // Check if we hit any breakpoint
-            hitBreak = false;
-            for (Transputer transputer : transputers) {
-                if (activeTransputers.contains(transputer)) {
-                    hitBreak = hitBreak || transputer.debuggerState.breakpoints.contains(transputer.registers.Iptr);
-                }
+        try {
+            if (config.pdes && anyTransputerActive) {
+                PdesEngine engine = new PdesEngine(transputers, config.routing, config.threads, config.idleSkip);
+                state.loopCount = engine.run(activeTransputers, state.loopCount);
+                anyTransputerActive = false;
             }
 
-            if (currentlyInteractive || hitBreak) {
-                currentlyInteractive = interact(transputers, stdin, stdout, stderr);
-            }
+            while (anyTransputerActive) {
+                if (config.saveCheckpoint != null && state.loopCount == config.checkpointStep) {
+                    Checkpoint.save(state, config.saveCheckpoint, config.compressCheckpoint);
+                    stdout.printf("# Saved checkpoint at step %d\n", state.loopCount);
+                }
 
-            anyTransputerActive = false;
-            loopCount += 1;
-            for (Transputer transputer : transputers) {
-                if (activeTransputers.contains(transputer)) {
-                    worked = transputer.performStep();
-                    transputer.printRegisters(stdout);
-                    transputer.incrementClock(loopCount);
-                    if (transputer.programEndPtr < transputer.registers.Iptr ||
-                            transputer.registers.Iptr < TransputerConstants.CODESTART) {
-                        activeTransputers.remove(transputer);
-                    } else {
-                        anyTransputerActive = true;
-                        // Check LinkIn
-                        for (int j = 0; j < TransputerConstants.IN_PORTS; j++) {
-                            transputer.processInputLink(transputer.inputLinks[j]);
-                        }
-                        // Check LinkOut
-                        transputer.processOutputLink();
-                    }
-                    if (config.testChecker != null) {
-                        transputer.logState(loopCount - 1, testCheckerPrintWriter);
-                    }
-                    if (config.schedChecker != null) {
-                        transputer.logSched(loopCount - 1, schedCheckerPrintWriter);
-                    }
-                    if (worked && config.timerChecker != null) {
-                        transputer.logTimer(loopCount - 1, timerCheckerPrintWriter);
+                // Check if we hit any breakpoint
+                hitBreak = false;
+                for (int i = 0; i < transputers.length; i++) {
+                    if (activeTransputers[i]) {
+                        // Every transputer at a breakpoint counts a hit
+                        hitBreak = transputers[i].debuggerState.breakpoints.hit(transputers[i]) || hitBreak;
                     }
+                }
 
-                    if (!worked) {
-                        activeTransputers.remove(transputer);
+                if (currentlyInteractive || hitBreak) {
+                    trace.flush();
+                    stdout.flush();
+                    stderr.flush();
+                    currentlyInteractive = interact(state, stdin, stdout, stderr);
+                    for (Transputer transputer : transputers) {
+                        transputer.debuggerState.memAccessed.snapshot();
                     }
                 }
-            }
-            Transputer.switchStep(transputers, stdout);
 
+                anyTransputerActive = iterate(state, config.routing, trace, config.idleSkip, listener);
+                if (listener.watchpointsFired) {
+                    currentlyInteractive = true;
+                    listener.watchpointsFired = false;
+                }
+            }
+        } catch (UnimplementedInstructionException | UnlinkedChannelException e) {
+            // The rest of the network stops with it, and is reported as it stands
             stdout.flush();
+            stderr.printf("%s\n", e.getMessage());
             stderr.flush();
+            status = 1;
+        }
+
+        if (config.saveCheckpoint != null && config.checkpointStep < 0) {
+            Checkpoint.save(state, config.saveCheckpoint, config.compressCheckpoint);
+            stdout.printf("# Saved checkpoint at step %d\n", state.loopCount);
+        } else if (config.saveCheckpoint != null && config.checkpointStep >= state.loopCount) {
+            stdout.printf("# No checkpoint saved: the run ended before step %d\n", config.checkpointStep);
+        }
+
+        trace.flush();
+        if (config.traceFile != null && trace instanceof Closeable) {
+            ((Closeable) trace).close();
         }
 
         for (Transputer transputer : transputers) {
@@ -226,16 +714,59 @@ public class Simulator {
             transputer.printRecentMemory(stdout);
         }
 
+        if (config.profile != null) {
+            try (PrintWriter profileWriter = new PrintWriter(new BufferedWriter(new FileWriter(config.profile)))) {
+                ProfileReport.writeHotSpots(transputers, profileWriter, PROFILE_INSTRUCTIONS);
+            }
+            stdout.printf("# Wrote profile to %s\n", config.profile);
+        }
+        if (config.profileStacks != null) {
+            try (PrintWriter stacksWriter = new PrintWriter(new BufferedWriter(new FileWriter(config.profileStacks)))) {
+                ProfileReport.writeCollapsedStacks(transputers, stacksWriter);
+            }
+            stdout.printf("# Wrote collapsed stacks to %s\n", config.profileStacks);
+        }
+        if (config.metricsFile != null) {
+            MetricsFormat format = config.metricsFormat != null ? config.metricsFormat : MetricsFormat.forFile(config.metricsFile);
+            try (Writer metricsWriter = new BufferedWriter(new FileWriter(config.metricsFile))) {
+                MetricsReport.write(transputers, metricsWriter, format);
+            }
+            stdout.printf("# Wrote metrics to %s\n", config.metricsFile);
+        }
+        if (config.coverage != null || config.coverageHtml != null) {
+            CoverageData coverage = new CoverageData();
+            for (int i = 0; i < transputers.length; i++) {
+                if (!coverage.add(transputers[i].getCoverage(), ProgramImage.load(config.binaries.get(i)), transputers[i].getCodeStart())) {
+                    stderr.printf("# %s has no line table, so its coverage is not reported\n", config.binaries.get(i));
+                }
+            }
+            if (config.coverage != null) {
+                try (Writer coverageWriter = new BufferedWriter(new FileWriter(config.coverage))) {
+                    coverage.writeLcov(coverageWriter);
+                }
+                stdout.printf("# Wrote coverage to %s\n", config.coverage);
+            }
+            if (config.coverageHtml != null) {
+                CoverageHtml.write(coverage, config.coverageHtml);
+                stdout.printf("# Wrote coverage report to %s\n", config.coverageHtml);
+            }
+        }
+        for (Transputer transputer : transputers) {
+            if (transputer.getIoPins() != null) {
+                transputer.getIoPins().close();
+            }
+        }
+
         if (config.testChecker != null) {
-            testCheckerFileWriter.close();
+            testChecker.close();
             stdout.printf("# Closed log file for testing\n");
         }
         if (config.schedChecker != null) {
-            schedCheckerFileWriter.close();
+            schedChecker.close();
             stdout.printf("# Closed log file for scheduler checking\n");
         }
         if (config.timerChecker != null) {
-            timerCheckerFileWriter.close();
+            timerChecker.close();
             stdout.printf("# Closed log file for timer checking\n");
         }
 
@@ -247,11 +778,72 @@ public class Simulator {
         }
 
         stdout.println();
-        stdout.printf("# Total steps: %d\n", loopCount);
+        boolean uncountedSteps = false;
+        for (Transputer transputer : transputers) {
+            uncountedSteps |= transputer.getFoldedSteps() > 0 || transputer.getIdleSteps() > 0;
+        }
+        if (config.decodeCache || uncountedSteps) {
+            stdout.printf("# Total steps: %d\n", architecturalSteps(transputers));
+            stdout.printf("# Simulator iterations: %d\n", state.loopCount);
+        } else {
+            stdout.printf("# Total steps: %d\n", state.loopCount);
+        }
+        if (config.timing != null) {
+            // Transputers run side by side, so the network takes as long as the busiest one
+            long cycles = 0;
+            for (int i = 0; i < transputers.length; i++) {
+                cycles = Math.max(cycles, transputers[i].getCycles());
+                if (transputers.length > 1) {
+                    stdout.printf("# Transputer %d cycles: %d\n", i, transputers[i].getCycles());
+                }
+            }
+            stdout.printf("# Simulated cycles: %d\n", cycles);
+            stdout.printf("# Simulated time: %.3f us at %s MHz\n", cycles / config.timing.clockMhz(), formatMhz(config.timing.clockMhz()));
+        }
         stdout.printf("\n==DONE==\n");
 
         stdout.flush();
         stderr.flush();
+        return status;
     }
 
+
+    /**
+     * Writes a record to each checker log for every step, and notes any watchpoints that fired.
+     */
+    private static class CheckerListener implements StepListener {
+        @Nullable private final CheckerLogWriter testChecker;
+        @Nullable private final CheckerLogWriter schedChecker;
+        @Nullable private final CheckerLogWriter timerChecker;
+        private final PrintWriter stdout;
+        boolean watchpointsFired;
+
+        CheckerListener(@Nullable CheckerLogWriter testChecker, @Nullable CheckerLogWriter schedChecker,
+                        @Nullable CheckerLogWriter timerChecker, PrintWriter stdout) {
+            this.testChecker = testChecker;
+            this.schedChecker = schedChecker;
+            this.timerChecker = timerChecker;
+            this.stdout = stdout;
+        }
+
+        @Override
+        public void stepped(int index, Transputer transputer, boolean worked, boolean inRange) {
+            try {
+                if (testChecker != null) {
+                    testChecker.log(index, transputer, transputer.getSteps() - 1);
+                }
+                if (schedChecker != null) {
+                    schedChecker.log(index, transputer, transputer.getSteps() - 1);
+                }
+                if (worked && timerChecker != null) {
+                    timerChecker.log(index, transputer, transputer.getSteps() - 1);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (transputer.printFiredWatchpoints(stdout)) {
+                watchpointsFired = true;
+            }
+        }
+    }
 }
@@ -10,17 +10,22 @@ import java.io.IOException;
  * Created by Ed on 08/05/2016.
  */
 public class SimulatorApplication extends Application {
+    private static volatile int status;
+
     @Override
     public void start(Stage primaryStage) throws Exception {
 
         String[] args = new String[getParameters().getRaw().size()];
         args = getParameters().getRaw().toArray(args);
 
-        Simulator.run(args);
+        status = Simulator.run(args);
 
         Platform.exit();
     }
     public static void main(String[] args) throws IOException, UnexpectedOverflowException {
         Application.launch(args);
+        if (status != 0) {
+            System.exit(status);
+        }
     }
 }
@@ -1,8 +1,16 @@
 package uk.co.transputersystems.transputer.simulator;
 
+import uk.co.transputersystems.transputer.simulator.checker.CheckerFormat;
+import uk.co.transputersystems.transputer.simulator.metrics.MetricsFormat;
+import uk.co.transputersystems.transputer.simulator.timing.TimingModel;
+import uk.co.transputersystems.transputer.simulator.topology.RoutingTable;
+import uk.co.transputersystems.transputer.simulator.trace.TraceLevel;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 public class SimulatorConfig {
@@ -12,13 +20,324 @@ public class SimulatorConfig {
     @Nullable public final File timerChecker;
     @Nonnull public final List<File> binaries;
     public final boolean printWorkspaceMemory;
+    @Nonnull public final TraceLevel traceLevel;
+    @Nullable public final File traceFile;
+    public final boolean binaryTrace;
+    public final boolean decodeCache;
+    public final int threads;
+    @Nonnull public final RoutingTable routing;
+    @Nonnull public final int[] memorySizes;
+    public final boolean memoryTracking;
+    public final boolean processHistory;
+    @Nullable public final File restoreCheckpoint;
+    @Nullable public final File saveCheckpoint;
+    // Loop iteration at which to save the checkpoint, or -1 to save it when the run ends
+    public final long checkpointStep;
+    public final boolean compressCheckpoint;
+    // Bytes to spend on recording steps for reverse execution, or 0 to record nothing
+    public final long reverseHistory;
+    // Skip ahead to the next timer when every transputer is waiting for one
+    public final boolean idleSkip;
+    // Counts simulated cycles when set
+    @Nullable public final TimingModel timing;
+    // Files to write the profile to, if any
+    @Nullable public final File profile;
+    @Nullable public final File profileStacks;
+    // Profile one step in every profileInterval
+    public final int profileInterval;
+    // Copy whole link messages at once rather than byte by byte
+    public final boolean messageLinks;
+    // Translate blocks to JVM classes once entered this many times, or 0 to always interpret
+    public final int jitThreshold;
+    // Let each transputer run ahead of the others as far as its links allow, rather than stepping them together
+    public final boolean pdes;
+    // How the checker logs are written
+    @Nonnull public final CheckerFormat checkerFormat;
+    // Collect scheduler, timer, link and instruction counts, writing them to metricsFile at exit if given
+    public final boolean metrics;
+    @Nullable public final File metricsFile;
+    // How the metrics file is written, or null to go by its extension
+    @Nullable public final MetricsFormat metricsFormat;
+    // Assembler configurations whose I/O pins and pin devices are modelled
+    @Nonnull public final List<File> ioConfigs;
+    // Record executed instructions, writing their lines as an LCOV tracefile and an HTML report if given
+    @Nullable public final File coverage;
+    @Nullable public final File coverageHtml;
 
     public SimulatorConfig(boolean interactive, @Nullable File testChecker, @Nullable File schedChecker, @Nullable File timerChecker, @Nonnull List<File> binaries, boolean printWorkspaceMemory) {
-        this.interactive = interactive;
-        this.testChecker = testChecker;
-        this.schedChecker = schedChecker;
-        this.timerChecker = timerChecker;
-        this.binaries = binaries;
-        this.printWorkspaceMemory = printWorkspaceMemory;
+        this(new Builder(binaries)
+                .interactive(interactive)
+                .testChecker(testChecker)
+                .schedChecker(schedChecker)
+                .timerChecker(timerChecker)
+                .printWorkspaceMemory(printWorkspaceMemory));
+    }
+
+    private SimulatorConfig(Builder builder) {
+        this.interactive = builder.interactive;
+        this.testChecker = builder.testChecker;
+        this.schedChecker = builder.schedChecker;
+        this.timerChecker = builder.timerChecker;
+        this.binaries = builder.binaries;
+        this.printWorkspaceMemory = builder.printWorkspaceMemory;
+        this.traceLevel = builder.traceLevel;
+        this.traceFile = builder.traceFile;
+        this.binaryTrace = builder.binaryTrace;
+        this.decodeCache = builder.decodeCache;
+        this.threads = builder.threads;
+        this.routing = builder.routing;
+        this.memorySizes = builder.memorySizes;
+        this.memoryTracking = builder.memoryTracking;
+        this.processHistory = builder.processHistory;
+        this.restoreCheckpoint = builder.restoreCheckpoint;
+        this.saveCheckpoint = builder.saveCheckpoint;
+        this.checkpointStep = builder.checkpointStep;
+        this.compressCheckpoint = builder.compressCheckpoint;
+        this.reverseHistory = builder.reverseHistory;
+        this.idleSkip = builder.idleSkip;
+        this.timing = builder.timing;
+        this.profile = builder.profile;
+        this.profileStacks = builder.profileStacks;
+        this.profileInterval = builder.profileInterval;
+        this.messageLinks = builder.messageLinks;
+        this.jitThreshold = builder.jitThreshold;
+        this.pdes = builder.pdes;
+        this.checkerFormat = builder.checkerFormat;
+        this.metrics = builder.metrics;
+        this.metricsFile = builder.metricsFile;
+        this.metricsFormat = builder.metricsFormat;
+        this.ioConfigs = builder.ioConfigs;
+        this.coverage = builder.coverage;
+        this.coverageHtml = builder.coverageHtml;
+    }
+
+    /**
+     * Collects the options of a run. Anything not set keeps the value the simulator uses when the option is not given.
+     */
+    public static class Builder {
+        private boolean interactive;
+        @Nullable private File testChecker;
+        @Nullable private File schedChecker;
+        @Nullable private File timerChecker;
+        private final List<File> binaries;
+        private boolean printWorkspaceMemory;
+        private TraceLevel traceLevel = TraceLevel.OFF;
+        @Nullable private File traceFile;
+        private boolean binaryTrace;
+        private boolean decodeCache;
+        private int threads = 1;
+        private RoutingTable routing;
+        private int[] memorySizes;
+        private boolean memoryTracking = true;
+        private boolean processHistory;
+        @Nullable private File restoreCheckpoint;
+        @Nullable private File saveCheckpoint;
+        private long checkpointStep = -1;
+        private boolean compressCheckpoint;
+        private long reverseHistory;
+        private boolean idleSkip = true;
+        @Nullable private TimingModel timing;
+        @Nullable private File profile;
+        @Nullable private File profileStacks;
+        private int profileInterval = 1;
+        private boolean messageLinks;
+        private int jitThreshold;
+        private boolean pdes;
+        private CheckerFormat checkerFormat = CheckerFormat.TEXT;
+        private boolean metrics;
+        @Nullable private File metricsFile;
+        @Nullable private MetricsFormat metricsFormat;
+        private List<File> ioConfigs = Collections.emptyList();
+        @Nullable private File coverage;
+        @Nullable private File coverageHtml;
+
+        /**
+         * A fully connected network of the binaries, each with the default memory size.
+         */
+        public Builder(@Nonnull List<File> binaries) {
+            this.binaries = binaries;
+            this.routing = RoutingTable.fullyConnected(binaries.size());
+            this.memorySizes = defaultMemorySizes(binaries.size());
+        }
+
+        public Builder interactive(boolean interactive) {
+            this.interactive = interactive;
+            return this;
+        }
+
+        public Builder testChecker(@Nullable File testChecker) {
+            this.testChecker = testChecker;
+            return this;
+        }
+
+        public Builder schedChecker(@Nullable File schedChecker) {
+            this.schedChecker = schedChecker;
+            return this;
+        }
+
+        public Builder timerChecker(@Nullable File timerChecker) {
+            this.timerChecker = timerChecker;
+            return this;
+        }
+
+        public Builder printWorkspaceMemory(boolean printWorkspaceMemory) {
+            this.printWorkspaceMemory = printWorkspaceMemory;
+            return this;
+        }
+
+        public Builder traceLevel(@Nonnull TraceLevel traceLevel) {
+            this.traceLevel = traceLevel;
+            return this;
+        }
+
+        public Builder traceFile(@Nullable File traceFile) {
+            this.traceFile = traceFile;
+            return this;
+        }
+
+        public Builder binaryTrace(boolean binaryTrace) {
+            this.binaryTrace = binaryTrace;
+            return this;
+        }
+
+        public Builder decodeCache(boolean decodeCache) {
+            this.decodeCache = decodeCache;
+            return this;
+        }
+
+        public Builder threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        public Builder routing(@Nonnull RoutingTable routing) {
+            this.routing = routing;
+            return this;
+        }
+
+        public Builder memorySizes(@Nonnull int[] memorySizes) {
+            this.memorySizes = memorySizes;
+            return this;
+        }
+
+        public Builder memoryTracking(boolean memoryTracking) {
+            this.memoryTracking = memoryTracking;
+            return this;
+        }
+
+        public Builder processHistory(boolean processHistory) {
+            this.processHistory = processHistory;
+            return this;
+        }
+
+        public Builder restoreCheckpoint(@Nullable File restoreCheckpoint) {
+            this.restoreCheckpoint = restoreCheckpoint;
+            return this;
+        }
+
+        public Builder saveCheckpoint(@Nullable File saveCheckpoint) {
+            this.saveCheckpoint = saveCheckpoint;
+            return this;
+        }
+
+        public Builder checkpointStep(long checkpointStep) {
+            this.checkpointStep = checkpointStep;
+            return this;
+        }
+
+        public Builder compressCheckpoint(boolean compressCheckpoint) {
+            this.compressCheckpoint = compressCheckpoint;
+            return this;
+        }
+
+        public Builder reverseHistory(long reverseHistory) {
+            this.reverseHistory = reverseHistory;
+            return this;
+        }
+
+        public Builder idleSkip(boolean idleSkip) {
+            this.idleSkip = idleSkip;
+            return this;
+        }
+
+        public Builder timing(@Nullable TimingModel timing) {
+            this.timing = timing;
+            return this;
+        }
+
+        public Builder profile(@Nullable File profile) {
+            this.profile = profile;
+            return this;
+        }
+
+        public Builder profileStacks(@Nullable File profileStacks) {
+            this.profileStacks = profileStacks;
+            return this;
+        }
+
+        public Builder profileInterval(int profileInterval) {
+            this.profileInterval = profileInterval;
+            return this;
+        }
+
+        public Builder messageLinks(boolean messageLinks) {
+            this.messageLinks = messageLinks;
+            return this;
+        }
+
+        public Builder jitThreshold(int jitThreshold) {
+            this.jitThreshold = jitThreshold;
+            return this;
+        }
+
+        public Builder pdes(boolean pdes) {
+            this.pdes = pdes;
+            return this;
+        }
+
+        public Builder checkerFormat(@Nonnull CheckerFormat checkerFormat) {
+            this.checkerFormat = checkerFormat;
+            return this;
+        }
+
+        public Builder metrics(boolean metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public Builder metricsFile(@Nullable File metricsFile) {
+            this.metricsFile = metricsFile;
+            return this;
+        }
+
+        public Builder metricsFormat(@Nullable MetricsFormat metricsFormat) {
+            this.metricsFormat = metricsFormat;
+            return this;
+        }
+
+        public Builder ioConfigs(@Nonnull List<File> ioConfigs) {
+            this.ioConfigs = ioConfigs;
+            return this;
+        }
+
+        public Builder coverage(@Nullable File coverage) {
+            this.coverage = coverage;
+            return this;
+        }
+
+        public Builder coverageHtml(@Nullable File coverageHtml) {
+            this.coverageHtml = coverageHtml;
+            return this;
+        }
+
+        public SimulatorConfig build() {
+            return new SimulatorConfig(this);
+        }
+    }
+
+    private static int[] defaultMemorySizes(int count) {
+        int[] memorySizes = new int[count];
+        Arrays.fill(memorySizes, TransputerConstants.MEMSIZE);
+        return memorySizes;
     }
 }
@@ -0,0 +1,180 @@
+package uk.co.transputersystems.transputer.simulator;
+
+import uk.co.transputersystems.transputer.simulator.models.InputLink;
+import uk.co.transputersystems.transputer.simulator.models.OutputLink;
+import uk.co.transputersystems.transputer.simulator.models.Registers;
+import uk.co.transputersystems.transputer.simulator.models.StatusRegister;
+
+import javax.annotation.Nullable;
+
+/**
+ * Packs the state of a transputer's registers and links into a flat array of ints, one int per field, so that it
+ * can be saved in a checkpoint or compared field by field against an earlier copy. A vector without an array only
+ * counts the ints put into it.
+ */
+class StateVector {
+    @Nullable final int[] values;
+    private int position;
+
+    StateVector(@Nullable int[] values) {
+        this.values = values;
+    }
+
+    int position() {
+        return position;
+    }
+
+    void put(int value) {
+        if (values != null) {
+            values[position] = value;
+        }
+        position++;
+    }
+
+    void put(boolean value) {
+        put(value ? 1 : 0);
+    }
+
+    void put(long value) {
+        put((int) (value >>> 32));
+        put((int) value);
+    }
+
+    int getInt() {
+        return values[position++];
+    }
+
+    boolean getBoolean() {
+        return values[position++] != 0;
+    }
+
+    byte getByte() {
+        return (byte) values[position++];
+    }
+
+    long getLong() {
+        long high = values[position++];
+        return (high << 32) | (values[position++] & 0xFFFFFFFFL);
+    }
+
+    void put(Registers registers) {
+        put(registers.Iptr);
+        put(registers.Wptr);
+        put(registers.Areg);
+        put(registers.Breg);
+        put(registers.Creg);
+        put(registers.Oreg);
+    }
+
+    void get(Registers registers) {
+        registers.Iptr = getInt();
+        registers.Wptr = getInt();
+        registers.Areg = getInt();
+        registers.Breg = getInt();
+        registers.Creg = getInt();
+        registers.Oreg = getInt();
+    }
+
+    void put(StatusRegister sreg) {
+        put((sreg.errorFlag ? 1 : 0)
+                | (sreg.moveBit ? 1 << 1 : 0)
+                | (sreg.haltOnErr ? 1 << 2 : 0)
+                | (sreg.gotoStartNewProcess ? 1 << 3 : 0)
+                | (sreg.ioBit ? 1 << 4 : 0)
+                | (sreg.timeIns ? 1 << 5 : 0)
+                | (sreg.timeDel ? 1 << 6 : 0)
+                | (sreg.distAndIns ? 1 << 7 : 0));
+    }
+
+    void get(StatusRegister sreg) {
+        int bits = getInt();
+        sreg.errorFlag = (bits & 1) != 0;
+        sreg.moveBit = (bits & (1 << 1)) != 0;
+        sreg.haltOnErr = (bits & (1 << 2)) != 0;
+        sreg.gotoStartNewProcess = (bits & (1 << 3)) != 0;
+        sreg.ioBit = (bits & (1 << 4)) != 0;
+        sreg.timeIns = (bits & (1 << 5)) != 0;
+        sreg.timeDel = (bits & (1 << 6)) != 0;
+        sreg.distAndIns = (bits & (1 << 7)) != 0;
+    }
+
+    void put(InputLink link) {
+        put(link.Wptr);
+        put(link.WptrToProcessor);
+        put(link.messageLength);
+        put(link.messagePointer);
+        put(link.fromProcessor);
+        put(link.toProcessor);
+        put(link.hasData);
+        put(link.pendingData);
+        put(link.pointer);
+        put(link.count);
+        put(link.inChannel);
+        put(link.readData);
+        put(link.ready);
+        put(link.requested);
+        put(link.enabled);
+        put(link.ack);
+    }
+
+    void get(InputLink link) {
+        link.Wptr = getInt();
+        link.WptrToProcessor = getInt();
+        link.messageLength = getInt();
+        link.messagePointer = getInt();
+        link.fromProcessor = getInt();
+        link.toProcessor = getInt();
+        link.hasData = getBoolean();
+        link.pendingData = getByte();
+        link.pointer = getInt();
+        link.count = getInt();
+        link.inChannel = getInt();
+        link.readData = getByte();
+        link.ready = getBoolean();
+        link.requested = getBoolean();
+        link.enabled = getBoolean();
+        link.ack = getByte();
+    }
+
+    void put(OutputLink link) {
+        put(link.Wptr);
+        put(link.WptrToProcessor);
+        put(link.WptrPrivate);
+        put(link.messageLength);
+        put(link.FptrReg);
+        put(link.BptrReg);
+        put(link.fromProcessor);
+        put(link.toProcessor);
+        put(link.hasData);
+        put(link.outData);
+        put(link.outPointer);
+        put(link.outCount);
+        put(link.outChannel);
+        put(link.outByte);
+        put(link.ready);
+        put(link.requested);
+        put(link.enabled);
+        put(link.ack);
+    }
+
+    void get(OutputLink link) {
+        link.Wptr = getInt();
+        link.WptrToProcessor = getInt();
+        link.WptrPrivate = getInt();
+        link.messageLength = getInt();
+        link.FptrReg = getInt();
+        link.BptrReg = getInt();
+        link.fromProcessor = getInt();
+        link.toProcessor = getInt();
+        link.hasData = getBoolean();
+        link.outData = getByte();
+        link.outPointer = getInt();
+        link.outCount = getInt();
+        link.outChannel = getInt();
+        link.outByte = getByte();
+        link.ready = getBoolean();
+        link.requested = getBoolean();
+        link.enabled = getBoolean();
+        link.ack = getByte();
+    }
+}
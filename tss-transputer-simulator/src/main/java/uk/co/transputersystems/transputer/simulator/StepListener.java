@@ -0,0 +1,9 @@
+package uk.co.transputersystems.transputer.simulator;
+
+/**
+ * Told about every active transputer as the main loop steps it, before a transputer that has stopped is marked
+ * inactive.
+ */
+public interface StepListener {
+    void stepped(int index, Transputer transputer, boolean worked, boolean inRange);
+}
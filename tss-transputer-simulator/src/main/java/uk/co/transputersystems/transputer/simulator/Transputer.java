@@ -1,28 +1,49 @@
 package uk.co.transputersystems.transputer.simulator;
 
+import uk.co.transputersystems.transputer.simulator.checker.CheckerLevel;
+import uk.co.transputersystems.transputer.simulator.checker.CheckerRecord;
+import uk.co.transputersystems.transputer.simulator.coverage.Coverage;
+import uk.co.transputersystems.transputer.simulator.debugger.Breakpoints;
+import uk.co.transputersystems.transputer.simulator.debugger.Condition;
 import uk.co.transputersystems.transputer.simulator.debugger.DebuggerRecordedState;
 import uk.co.transputersystems.transputer.simulator.debugger.Process;
 import uk.co.transputersystems.transputer.simulator.debugger.ProcessStatus;
+import uk.co.transputersystems.transputer.simulator.debugger.Watchpoints;
+import uk.co.transputersystems.transputer.simulator.jit.BlockCache;
+import uk.co.transputersystems.transputer.simulator.jit.BlockContext;
+import uk.co.transputersystems.transputer.simulator.jit.BlockExit;
+import uk.co.transputersystems.transputer.simulator.jit.CompiledBlock;
+import uk.co.transputersystems.transputer.simulator.io.IoPins;
+import uk.co.transputersystems.transputer.simulator.metrics.Metrics;
 import uk.co.transputersystems.transputer.simulator.models.*;
-
+import uk.co.transputersystems.transputer.simulator.profile.Profiler;
+import uk.co.transputersystems.transputer.simulator.timing.TimingModel;
+import uk.co.transputersystems.transputer.simulator.topology.RoutingTable;
+import uk.co.transputersystems.transputer.simulator.trace.NullTraceSink;
+import uk.co.transputersystems.transputer.simulator.trace.SchedulerEvent;
+import uk.co.transputersystems.transputer.simulator.trace.TraceLevel;
+import uk.co.transputersystems.transputer.simulator.trace.TraceSink;
+import uk.co.transputersystems.transputer.utils.ProgramImage;
+
+import javax.annotation.Nullable;
 import java.io.*;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.List;
-import java.util.Scanner;
+import java.util.Map;
 
 import static uk.co.transputersystems.transputer.simulator.models.Priority.HIGH;
 import static uk.co.transputersystems.transputer.simulator.models.Priority.LOW;
 
 public class Transputer {
-    private final byte id;
+    private final int id;
     public final Registers registers = new Registers();
     private final StatusRegister sreg = new StatusRegister();
     private final int[] FptrReg = new int[2];
     private final int[] BptrReg = new int[2];
     private int Ereg;
     private final int[] ClockReg = new int[2];
-    private final byte[] mem;
+    private final MemoryModel mem;
+    // Start of the code area, half way through the memory above the reserved words
+    private final int codeStart;
     public int programEndPtr;
     // It seems that this is actually a memory
     // Location in the reserved memory space
@@ -31,57 +52,211 @@ public class Transputer {
     private final boolean[] TEnabled = new boolean[2];
     private int BMbuffer;
 
+    // Set when prefix chains are folded into single steps
+    private DecodeCache decodeCache;
+    // Set when hot blocks are translated to JVM classes
+    private BlockCache blockCache;
+    private BlockContext blockContext;
+    private CompiledBlock runningBlock;
+    // Set when the old value of every written word is kept so that steps can be undone
+    private WriteLog writeLog;
+    // The number of architectural steps taken by the last call to performStep
+    private int lastStepLength = 1;
+    private long steps;
+    private long foldedSteps;
+    private long idleSteps;
+    // Set when simulated cycles are counted
+    private TimingModel timing;
+    private long cycles;
+    // Set when steps are counted by address and process
+    private Profiler profiler;
+    // Set when scheduler, timer, link and instruction counts are kept
+    private Metrics metrics;
+    // Set when memory-mapped I/O pins are modelled
+    private IoPins ioPins;
+    // Set when executed addresses are recorded
+    private Coverage coverage;
+
+    /**
+     * Executes one secondary instruction
+     */
+    private interface SecondaryHandler {
+        void execute(Transputer transputer) throws UnexpectedOverflowException;
+    }
+
+    private static final SecondaryHandler[] PLAIN_SECONDARY_HANDLERS = plainSecondaryHandlers();
+    // The plain handlers, or the plain handlers wrapped for tracing and cycle counting
+    private SecondaryHandler[] secondaryHandlers = PLAIN_SECONDARY_HANDLERS;
+
     public final InputLink[] inputLinks = new InputLink[TransputerConstants.IN_PORTS];
     private final OutputLink outputLink = new OutputLink();
+    // One bit per input port with an acknowledgement waiting for the switch
+    private int pendingAcks;
+    // Copy the rest of a message in one go once the receiver is waiting for it
+    private boolean messageLinks;
 
-    public final DebuggerRecordedState debuggerState = new DebuggerRecordedState();
+    public final DebuggerRecordedState debuggerState;
 
     public final PrintWriter stdout;
     public final PrintWriter stderr;
+    private final TraceSink trace;
+
+    public static void switchStep(Transputer transputers[], TraceSink trace) {
+        switchStep(transputers, RoutingTable.fullyConnected(transputers.length), trace);
+    }
+
+    /**
+     * Move link data and acknowledgements between transputers. Only transputers with a byte to send or an
+     * acknowledgement to return are visited, and channel targets are looked up in the routing table.
+     */
+    public static void switchStep(Transputer transputers[], RoutingTable routing, TraceSink trace) {
+        for (int i = 0; i < transputers.length; i++) {
+            switchFrom(transputers, i, routing, trace);
+        }
+    }
+
+    /**
+     * Move the link data and acknowledgements that transputer i has to send. Each transputer only writes the input
+     * links, output link and memory of the transputers it sends to, so the order in which sources are visited does
+     * not matter.
+     */
+    static void switchFrom(Transputer transputers[], int i, RoutingTable routing, TraceSink trace) {
+        int j;
+        Transputer source = transputers[i];
+        if (!source.outputLink.hasData && source.pendingAcks == 0) {
+            return;
+        }
+
+        // Output loop
+        // Transfer outData to pendingData on the receiving site
+        // Only transfer if link_out has data
+        if (source.outputLink.hasData) {
+            // Decode target processor and port
+            int targetChannel = source.outputLink.outChannel;
+            int targetProcessor = routing.route(i, targetChannel >> (TransputerConstants.SHIFT_IN_PORTS + 1));
+            byte targetPort = (byte)((targetChannel >> 1) & ((1 << TransputerConstants.SHIFT_IN_PORTS) - 1));
+            trace.link(i, targetProcessor, targetPort);
+
+            InputLink targetLink = transputers[targetProcessor].inputLinks[targetPort];
+            if (source.metrics != null) {
+                source.metrics.linkBytesOut(targetPort, 1);
+            }
+            if (source.messageLinks) {
+                transferMessage(source, transputers[targetProcessor], targetLink);
+            }
+
+            // First reset in case anything went wrong before
+            targetLink.pendingData = source.outputLink.outData;
+            targetLink.hasData = true;
+
+            // Sender has no more data to send
+            source.outputLink.hasData = false;
+        }
+
+        // Input loop, check every port for data that has been received and
+        // let sender know
+        while (source.pendingAcks != 0) {
+            j = Integer.numberOfTrailingZeros(source.pendingAcks);
+            source.pendingAcks &= source.pendingAcks - 1;
+
+            // Check if there's an acknowledgement
+            if (source.inputLinks[j].ack == TransputerConstants.ACKDATA) {
+                // Decode the source processor of the data that was sent.
+                // Don't need port as there's only one ouput channel
+                int sourceChannel = source.inputLinks[j].inChannel;
+                int sourceProcessor = routing.route(i, sourceChannel >> (TransputerConstants.SHIFT_IN_PORTS + 1));
 
-    public static void switchStep(Transputer transputers[], PrintWriter stdout) {
-        int i, j;
-
-        for (i = 0; i < transputers.length; i++) {
-            // Output loop
-            // Transfer outData to pendingData on the receiving site
-            // Only transfer if link_out has data
-            if (transputers[i].outputLink.hasData) {
-                // Decode target processor and port
-                int targetChannel = transputers[i].outputLink.outChannel;
-                int targetProcessor = (targetChannel >> (TransputerConstants.SHIFT_IN_PORTS + 1));
-                byte targetPort = (byte)((targetChannel >> 1) & ((1 << TransputerConstants.SHIFT_IN_PORTS) - 1));
-                stdout.printf("Switch passed information from transputer %d to %d port %d\n",
-                        i, targetProcessor, targetPort);
-
-                // First reset in case anything went wrong before
-                transputers[targetProcessor].inputLinks[targetPort].pendingData = transputers[i].outputLink.outData;
-                transputers[targetProcessor].inputLinks[targetPort].hasData = true;
-
-                // Sender has no more data to send
-                transputers[i].outputLink.hasData = false;
+                transputers[sourceProcessor].outputLink.ack = TransputerConstants.ACKDATA;
+
+                // Reset ack
+                source.inputLinks[j].ack = TransputerConstants.NOIO;
             }
+        }
+    }
 
-            // Input loop, check every port for data that has been received and
-            // let sender know
-            for (j = 0; j < TransputerConstants.IN_PORTS; j++) {
-                // Check if there's an acknowledgement
-                if (transputers[i].inputLinks[j].ack == TransputerConstants.ACKDATA) {
-                    // Decode the source processor of the data that was sent.
-                    // Don't need port as there's only one ouput channel
-                    int sourceChannel = transputers[i].inputLinks[j].inChannel;
-                    int sourceProcessor = (sourceChannel >> (TransputerConstants.SHIFT_IN_PORTS + 1));
-                    //                byte source_port = (source_port >> 1) & ((1 << SHIFT_IN_PORTS) - 1);
-
-                    transputers[sourceProcessor].outputLink.ack = TransputerConstants.ACKDATA;
-
-                    // Reset ack
-                    transputers[i].inputLinks[j].ack = TransputerConstants.NOIO;
-                }
+    /**
+     * Find the transputers that the next switch step will write to on behalf of transputer i.
+     * @param targets receives the indices, possibly repeated; needs room for one more than the number of input ports
+     * @return the number of targets
+     */
+    int switchTargets(int i, RoutingTable routing, int[] targets) {
+        int count = 0;
+        if (outputLink.hasData) {
+            targets[count++] = routing.route(i, outputLink.outChannel >> (TransputerConstants.SHIFT_IN_PORTS + 1));
+        }
+        for (int acks = pendingAcks; acks != 0; acks &= acks - 1) {
+            InputLink inputLink = inputLinks[Integer.numberOfTrailingZeros(acks)];
+            if (inputLink.ack == TransputerConstants.ACKDATA) {
+                targets[count++] = routing.route(i, inputLink.inChannel >> (TransputerConstants.SHIFT_IN_PORTS + 1));
             }
         }
+        return count;
+    }
+
+
+    /**
+     * Copy all but the last byte of the message being output by `source` straight into the memory of `target`, if
+     * the input process at the other end is already waiting for it. The byte in `outData` and those that follow it
+     * are written where the receiver expects them, and the last byte to be copied is left in `outData` so that it,
+     * and the acknowledgement that lets both processes continue, still go through the link handshake.
+     */
+    private static void transferMessage(Transputer source, Transputer target, InputLink targetLink) {
+        OutputLink outputLink = source.outputLink;
+        if (!targetLink.requested || targetLink.ready || targetLink.hasData ||
+                targetLink.count < 2 || outputLink.outCount < 1) {
+            return;
+        }
+        int length = Math.min(outputLink.outCount, targetLink.count - 1);
+
+        // The byte already sent, the bytes to copy, then the byte to leave in flight
+        byte[] message = new byte[length + 1];
+        message[0] = outputLink.outData;
+        source.readMessage(outputLink.outPointer, message, 1, length);
+        outputLink.outByte = message[length];
+        outputLink.outData = message[length];
+        outputLink.outPointer = atByte(outputLink.outPointer, length);
+        outputLink.outCount -= length;
+        if (source.timing != null) {
+            source.cycles += length * (long) source.timing.linkByteCycles();
+        }
+
+        target.writeMessage(targetLink.pointer, message, length);
+        targetLink.pointer = atByte(targetLink.pointer, length);
+        targetLink.count -= length;
+        if (source.metrics != null) {
+            source.metrics.linkBytesOut(targetLink.port, length);
+        }
+        if (target.metrics != null) {
+            target.metrics.linkBytesIn(targetLink.port, length);
+        }
+    }
+
+    /**
+     * Read the body of a message from memory for the link, as `RIndexByte` would one byte at a time.
+     */
+    private void readMessage(int address, byte[] data, int offset, int length) {
+        mem.read(address, data, offset, length);
+        if (debuggerState.watchpoints.isWatching()) {
+            debuggerState.watchpoints.access(this, address, length, false);
+        }
     }
 
+    /**
+     * Write a message received by a link into memory, as `WIndexByte` would one byte at a time.
+     */
+    private void writeMessage(int address, byte[] data, int length) {
+        if (writeLog != null) {
+            for (int word = TransputerHelpers.extractWordSelector(address); word < address + length; word += TransputerConstants.BYTESPERWORD) {
+                writeLog.add(word, mem.readWord(word));
+            }
+        }
+        mem.write(address, data, 0, length);
+        codeWritten(address, length);
+        debuggerState.memAccessed.markRange(address, length);
+        if (debuggerState.watchpoints.isWatching()) {
+            debuggerState.watchpoints.access(this, address, length, true);
+        }
+    }
 
     /**
      * @return the nth word after base
@@ -133,9 +308,10 @@ public class Transputer {
      * @return The word that was read
      */
     private int RIndexWord(int base, int nth) {
-        ByteBuffer bb = ByteBuffer.wrap(mem, AtWord(base, nth), TransputerConstants.BYTESPERWORD);
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-        return bb.getInt();
+        if (debuggerState.watchpoints.isWatching()) {
+            debuggerState.watchpoints.access(this, AtWord(base, nth), TransputerConstants.BYTESPERWORD, false);
+        }
+        return mem.readWord(AtWord(base, nth));
     }
 
     /**
@@ -145,7 +321,10 @@ public class Transputer {
      * @return The byte that was read
      */
     private byte RIndexByte(int base, int nth) {
-        return mem[atByte(base, nth)];
+        if (debuggerState.watchpoints.isWatching()) {
+            debuggerState.watchpoints.access(this, atByte(base, nth), 1, false);
+        }
+        return mem.readByte(atByte(base, nth));
     }
 
     /**
@@ -154,13 +333,16 @@ public class Transputer {
      * @param nth The array index
      */
     private void WIndexWord(int base, int nth, int x) {
-        ByteBuffer bb = ByteBuffer.wrap(mem, AtWord(base, nth), TransputerConstants.BYTESPERWORD);
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-        bb.putInt(x);
-        debuggerState.memAccessed.add(base);
-        debuggerState.memAccessed.add(base + 1);
-        debuggerState.memAccessed.add(base + 2);
-        debuggerState.memAccessed.add(base + 3);
+        if (writeLog != null) {
+            writeLog.add(AtWord(base, nth), mem.readWord(AtWord(base, nth)));
+        }
+        mem.writeWord(AtWord(base, nth), x);
+        codeWritten(AtWord(base, nth), TransputerConstants.BYTESPERWORD);
+        debuggerState.memAccessed.markWord(AtWord(base, nth));
+        // Checked after the write so that conditions see the new value
+        if (debuggerState.watchpoints.isWatching()) {
+            debuggerState.watchpoints.access(this, AtWord(base, nth), TransputerConstants.BYTESPERWORD, true);
+        }
     }
 
     /**
@@ -169,8 +351,42 @@ public class Transputer {
      * @param nth The array index
      */
     private void WIndexByte(int base, int nth, byte x) {
-        mem[base + nth] = x;
-        debuggerState.memAccessed.add(base + nth);
+        if (writeLog != null) {
+            int word = TransputerHelpers.extractWordSelector(base + nth);
+            writeLog.add(word, mem.readWord(word));
+        }
+        mem.writeByte(base + nth, x);
+        codeWritten(base + nth, 1);
+        debuggerState.memAccessed.markByte(base + nth);
+        if (debuggerState.watchpoints.isWatching()) {
+            debuggerState.watchpoints.access(this, base + nth, 1, true);
+        }
+    }
+
+    /**
+     * Forget any decoded or translated code that overlaps bytes which have just been written.
+     */
+    private void codeWritten(int address, int count) {
+        if (address + count > codeStart) {
+            if (decodeCache != null) {
+                decodeCache.invalidate(address, count);
+            }
+            if (blockCache != null) {
+                blockCache.invalidate(address, count);
+            }
+        }
+    }
+
+    /**
+     * Forget all decoded and translated code, once memory has been loaded anew.
+     */
+    private void codeReplaced() {
+        if (decodeCache != null) {
+            decodeCache.invalidateAll();
+        }
+        if (blockCache != null) {
+            blockCache.invalidateAll();
+        }
     }
 
     private void saveRegistersPendingSoftIO() {
@@ -179,8 +395,18 @@ public class Transputer {
         WIndexWord(registers.Wptr, TransputerConstants.POINTER_S, registers.Creg);
     }
 
-    public Transputer(byte id, PrintWriter stdout, PrintWriter stderr) {
-        mem = new byte[TransputerConstants.MEMSIZE];
+    public Transputer(int id, PrintWriter stdout, PrintWriter stderr) {
+        this(id, stdout, stderr, NullTraceSink.INSTANCE);
+    }
+
+    public Transputer(int id, PrintWriter stdout, PrintWriter stderr, TraceSink trace) {
+        this(id, stdout, stderr, trace, new ByteBufferMemory(TransputerConstants.MEMSIZE));
+    }
+
+    public Transputer(int id, PrintWriter stdout, PrintWriter stderr, TraceSink trace, MemoryModel mem) {
+        this.mem = mem;
+        this.codeStart = TransputerHelpers.codeStart(mem.size());
+        this.debuggerState = new DebuggerRecordedState(mem.size());
 
         FptrReg[0] = TransputerConstants.NOTPROCESS_P;
         FptrReg[1] = TransputerConstants.NOTPROCESS_P;
@@ -191,6 +417,8 @@ public class Transputer {
         this.id = id;
         this.stdout = stdout;
         this.stderr = stderr;
+        this.trace = trace;
+        installSecondaryHandlers();
 
         // Link initialisation
 
@@ -198,6 +426,7 @@ public class Transputer {
         int i;
         for (i = 0; i < TransputerConstants.IN_PORTS; i++) {
             inputLinks[i] = new InputLink();
+            inputLinks[i].port = i;
             inputLinks[i].fromProcessor = TransputerConstants.NOIO;
             inputLinks[i].toProcessor = TransputerConstants.NOIO;
             inputLinks[i].hasData = false;
@@ -218,6 +447,166 @@ public class Transputer {
         outputLink.BptrReg = TransputerConstants.NOTPROCESS_P;
     }
 
+    /**
+     * Fold pfix/nfix chains into the instruction they prefix, so that each chain is executed in a single call to
+     * performStep. The clocks and step count still advance by one for every byte of the chain.
+     */
+    public void enableDecodeCache() {
+        decodeCache = new DecodeCache(mem);
+    }
+
+    /**
+     * Translate blocks of straight-line code to JVM classes once the interpreter has entered them `threshold` times,
+     * and run the translations from then on. Each block runs as a single call to performStep, like a folded prefix
+     * chain, so timers and links are only serviced between blocks.
+     */
+    public void enableJit(int threshold) {
+        blockCache = new BlockCache(mem, threshold);
+        blockCache.setTimingModel(timing);
+        blockContext = new TransputerBlockContext();
+    }
+
+    /**
+     * @return the number of blocks translated to JVM classes so far
+     */
+    public int getTranslatedBlocks() {
+        return blockCache == null ? 0 : blockCache.getTranslated();
+    }
+
+    /**
+     * Copy whole messages between transputers once both ends of a link are ready, instead of one byte per step of
+     * the network. Processes see the same values in the same order, but fewer steps pass while messages are sent.
+     */
+    public void setMessageLinks(boolean messageLinks) {
+        this.messageLinks = messageLinks;
+    }
+
+    /**
+     * Count the processor cycles each step would take on hardware, as given by a timing model.
+     */
+    public void setTimingModel(TimingModel timing) {
+        this.timing = timing;
+        installSecondaryHandlers();
+        if (blockCache != null) {
+            blockCache.setTimingModel(timing);
+        }
+    }
+
+    /**
+     * Count the steps taken at each instruction address and by each process.
+     */
+    public void setProfiler(Profiler profiler) {
+        this.profiler = profiler;
+    }
+
+    public Profiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Count process switches, run queue lengths, timer queue work, block moves, link traffic and instructions.
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Model the memory-mapped I/O pins, which `in` and `out` on a pin's address then use instead of a channel.
+     */
+    public void setIoPins(IoPins ioPins) {
+        this.ioPins = ioPins;
+    }
+
+    public IoPins getIoPins() {
+        return ioPins;
+    }
+
+    /**
+     * Record the address of every instruction executed, including those run as part of a translated block.
+     */
+    public void setCoverage(Coverage coverage) {
+        this.coverage = coverage;
+    }
+
+    public Coverage getCoverage() {
+        return coverage;
+    }
+
+    /**
+     * Log the old value of every word written, for `ReverseHistory`.
+     */
+    void enableWriteLog() {
+        if (writeLog == null) {
+            writeLog = new WriteLog();
+        }
+    }
+
+    WriteLog getWriteLog() {
+        return writeLog;
+    }
+
+    /**
+     * Put back a word that was overwritten by a step being undone.
+     */
+    void undoWrite(int address, int oldValue) {
+        mem.writeWord(address, oldValue);
+        codeWritten(address, TransputerConstants.BYTESPERWORD);
+    }
+
+    /**
+     * @return the number of architectural steps taken so far, counting each byte of a folded prefix chain
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return the number of architectural steps that were skipped by executing prefix chains as a single step
+     */
+    public long getFoldedSteps() {
+        return foldedSteps;
+    }
+
+    /**
+     * @return the number of architectural steps that were skipped while waiting for a timer
+     */
+    public long getIdleSteps() {
+        return idleSteps;
+    }
+
+    /**
+     * @return the number of processor cycles taken so far, or 0 if there is no timing model
+     */
+    public long getCycles() {
+        return cycles;
+    }
+
+    /**
+     * @return true if the error flag is set
+     */
+    public boolean hasError() {
+        return sreg.errorFlag;
+    }
+
+    public MemoryModel getMemory() {
+        return mem;
+    }
+
+    public int getCodeStart() {
+        return codeStart;
+    }
+
+    /**
+     * Pass the current register values to the trace sink
+     */
+    public void traceRegisters() {
+        trace.registers(id, registers);
+    }
+
     public void printRegisters(PrintWriter output) {
         output.printf("ID: %d \tAreg: %08X \tBreg: %08X \tCreg: %08X\n\t\tOreg: %08X \tWptr: %08X \tIptr: %08X \tPriority: %01X\n\n",
                 id, registers.Areg, registers.Breg, registers.Creg, registers.Oreg, TransputerHelpers.extractWorkspacePointer(registers.Wptr), registers.Iptr, TransputerHelpers.extractPriorityBit(registers.Wptr));
@@ -229,7 +618,7 @@ public class Transputer {
         for (int unitSelector = 0; unitSelector < numberUnits; unitSelector++) {
             long unit = 0;
             for (int byteSelector = 0; byteSelector < bytesPerUnit; byteSelector++) {
-                unit |= ((long)mem[address + (unitSelector*bytesPerUnit) + byteSelector] & 0xFF) << (byteSelector*8);
+                unit |= ((long)mem.readByte(address + (unitSelector*bytesPerUnit) + byteSelector) & 0xFF) << (byteSelector*8);
             }
             output.printf("0x%08x\t", address + (unitSelector*bytesPerUnit));
             switch (format) {
@@ -268,35 +657,51 @@ public class Transputer {
         int i;
         output.printf("## Transputer %d\n", id);
         output.printf("%-12s    +3 +2 +1 +0\n", "Address");
-        for (i = 0; i < TransputerConstants.MEMSIZE; i += 4) {
-            if (debuggerState.memAccessed.contains(i) || debuggerState.memAccessed.contains(i + 1) ||
-                    debuggerState.memAccessed.contains(i + 2) || debuggerState.memAccessed.contains(i + 3)) {
-                output.printf("0d%04d/0x%03X    %02X %02X %02X %02X\n", i, i,
-                        mem[i + 3], mem[i + 2],
-                        mem[i + 1], mem[i]);
-                debuggerState.memAccessed.remove(i);
-                debuggerState.memAccessed.remove(i + 1);
-                debuggerState.memAccessed.remove(i + 2);
-                debuggerState.memAccessed.remove(i + 3);
-            }
+        for (i = debuggerState.memAccessed.nextRecent(0); i != -1; i = debuggerState.memAccessed.nextRecent(i + 4)) {
+            output.printf("0d%04d/0x%03X    %02X %02X %02X %02X\n", i, i,
+                    mem.readByte(i + 3), mem.readByte(i + 2),
+                    mem.readByte(i + 1), mem.readByte(i));
+            debuggerState.memAccessed.clearRecent(i);
+        }
+        output.printf("\n");
+    }
+
+    /**
+     * Print the words written since execution last resumed from the debugger.
+     */
+    public void printChangedMemory(PrintWriter output) {
+        int i;
+        output.printf("## Transputer %d\n", id);
+        output.printf("%-12s    +3 +2 +1 +0\n", "Address");
+        for (i = debuggerState.memAccessed.nextChanged(0); i != -1; i = debuggerState.memAccessed.nextChanged(i + 4)) {
+            output.printf("0d%04d/0x%03X    %02X %02X %02X %02X\n", i, i,
+                    mem.readByte(i + 3), mem.readByte(i + 2),
+                    mem.readByte(i + 1), mem.readByte(i));
         }
         output.printf("\n");
     }
 
     public void printWorkspaceMemory(PrintWriter output) {
         output.printf("## Transputer %d\n", id);
-        for (Process process : debuggerState.processes) {
-            output.printf("### Process %08X - %s\n", process.getCurrentWptr(), process.status.name());
-            List<Integer> wptrs = process.getWptrs();
-            for (int i = AtWord(process.getTopWptr(),0); i <= AtWord(wptrs.get(0),0); i += 4) {
-                if (wptrs.contains(i) || wptrs.contains(i|1)) {
-                    output.printf("-- Workspace %d --\n", wptrs.indexOf(i));
-                }
-                output.printf("0d%04d/0x%03X    %02X %02X %02X %02X\n", i, i,
-                        mem[i + 3], mem[i + 2],
-                        mem[i + 1], mem[i]);
+        for (Process process : debuggerState.processes.getHistory()) {
+            printWorkspaceMemory(process, output);
+        }
+        for (Process process : debuggerState.processes.getLive()) {
+            printWorkspaceMemory(process, output);
+        }
+        output.printf("\n");
+    }
+
+    private void printWorkspaceMemory(Process process, PrintWriter output) {
+        output.printf("### Process %08X - %s\n", process.getCurrentWptr(), process.status.name());
+        List<Integer> wptrs = process.getWptrs();
+        for (int i = AtWord(process.getTopWptr(),0); i <= AtWord(wptrs.get(0),0); i += 4) {
+            if (wptrs.contains(i) || wptrs.contains(i|1)) {
+                output.printf("-- Workspace %d --\n", wptrs.indexOf(i));
             }
-            output.printf("\n");
+            output.printf("0d%04d/0x%03X    %02X %02X %02X %02X\n", i, i,
+                    mem.readByte(i + 3), mem.readByte(i + 2),
+                    mem.readByte(i + 1), mem.readByte(i));
         }
         output.printf("\n");
     }
@@ -345,8 +750,7 @@ public class Transputer {
     }
 
     /**
-     * Loads a program from a file into memory
-     * @throws FileNotFoundException
+     * Loads a program from a file into memory, either a program image or text object code
      * @throws IOException
      */
     public int loadProgram(File fp) throws IOException {
@@ -355,43 +759,64 @@ public class Transputer {
             return TransputerConstants.ERROR;
         }
 
-        byte instruction;
-        int i = TransputerConstants.CODESTART;
-
-        FileInputStream fInput = new FileInputStream(fp);
-        Scanner fScanner = new Scanner(fInput);
-
-        // Load entry point address from file first
-        fScanner.next("Start");
-        fScanner.next("address:");
-
-        if(!fScanner.hasNextInt(16)) {
+        ProgramImage image;
+        try {
+            image = ProgramImage.load(fp);
+        } catch (IOException e) {
             stderr.printf("## Transputer %d\n", id);
-            stderr.printf("Error reading start address\n");
+            stderr.printf("%s\n", e.getMessage());
             return TransputerConstants.ERROR;
-        } else {
-            int initPointer = fScanner.nextInt(16);
+        }
+        return loadProgram(image);
+    }
 
-            if (!fScanner.hasNext()) {
+    /**
+     * Load a program image, copying each section into memory in one go.
+     */
+    public int loadProgram(ProgramImage image) {
+        if (image.sections.isEmpty()) {
+            stderr.printf("## Transputer %d\n", id);
+            stderr.printf("Program image has no sections\n");
+            return TransputerConstants.ERROR;
+        }
+        for (ProgramImage.Section section : image.sections) {
+            if (section.offset < 0) {
                 stderr.printf("## Transputer %d\n", id);
-                stderr.printf("Error reading start address value\n");
+                stderr.printf("Section %s has a negative offset\n", section.name);
+                return TransputerConstants.ERROR;
+            }
+            if ((long) codeStart + section.offset + section.data.length > mem.size()) {
+                stderr.printf("## Transputer %d\n", id);
+                stderr.printf("Program of %d bytes does not fit in memory\n", (long) section.offset + section.data.length);
                 return TransputerConstants.ERROR;
-            } else {
-                registers.Iptr = TransputerConstants.CODESTART + initPointer;
             }
         }
 
-        while (fScanner.hasNextInt(16)) {
-            instruction = (byte)fScanner.nextInt(16);
-            mem[i] = instruction;
-            debuggerState.memAccessed.add(i++);
+        for (ProgramImage.Section section : image.sections) {
+            int start = codeStart + section.offset;
+            mem.write(start, section.data, 0, section.data.length);
+            debuggerState.memAccessed.markRange(start, section.data.length);
+        }
+
+        debuggerState.symbols.clear();
+        for (Map.Entry<String, Integer> symbol : image.symbols.entrySet()) {
+            debuggerState.symbols.add(symbol.getKey(), codeStart + symbol.getValue());
         }
 
-        programEndPtr = i - 1;
+        registers.Iptr = codeStart + image.entryPoint;
+        return boot(codeStart + image.getEnd() - 1);
+    }
+
+    /**
+     * Set up the initial process and reserved memory once a program has been loaded.
+     */
+    private int boot(int programEnd) {
+        programEndPtr = programEnd;
+        codeReplaced();
         // First word after boot preogram
         // Start processor in low priority
-        registers.Wptr = TransputerHelpers.makeWorkspaceDescriptor(TransputerConstants.CODESTART - TransputerConstants.BYTESPERWORD, LOW);
-        debuggerState.processes.add(new Process(registers.Wptr, ProcessStatus.RUNNING));
+        registers.Wptr = TransputerHelpers.makeWorkspaceDescriptor(codeStart - TransputerConstants.BYTESPERWORD, LOW);
+        debuggerState.processes.schedule(registers.Wptr, ProcessStatus.RUNNING);
 
         // set the WDESCINTSAVE to nothing
         WIndexWord(TransputerConstants.SAVEBASE, TransputerConstants.WDESCINTSAVE, TransputerConstants.NOTPROCESS_P);
@@ -400,11 +825,111 @@ public class Transputer {
         WIndexWord(TransputerConstants.TIMERBASE, 0, TransputerConstants.NOTPROCESS_P);
         WIndexWord(TransputerConstants.TIMERBASE, 1, TransputerConstants.NOTPROCESS_P);
 
-        fInput.close();
-
         return TransputerConstants.SUCCESS;
     }
 
+    /**
+     * @return the number of ints `saveRegisterState` writes
+     */
+    public int getRegisterStateSize() {
+        StateVector vector = new StateVector(null);
+        putRegisterState(vector);
+        return vector.position();
+    }
+
+    /**
+     * Copy everything but memory into `state`, which must hold `getRegisterStateSize()` ints: registers, timers,
+     * scheduler queues, links and step counts.
+     */
+    public void saveRegisterState(int[] state) {
+        putRegisterState(new StateVector(state));
+    }
+
+    private void putRegisterState(StateVector vector) {
+        vector.put(registers);
+        vector.put(sreg);
+        for (int i = 0; i < 2; i++) {
+            vector.put(FptrReg[i]);
+            vector.put(BptrReg[i]);
+            vector.put(ClockReg[i]);
+            vector.put(TNextReg[i]);
+            vector.put(TEnabled[i]);
+        }
+        vector.put(Ereg);
+        vector.put(BMbuffer);
+        vector.put(programEndPtr);
+        vector.put(lastStepLength);
+        vector.put(steps);
+        vector.put(foldedSteps);
+        vector.put(idleSteps);
+        vector.put(cycles);
+        vector.put(pendingAcks);
+        for (InputLink inputLink : inputLinks) {
+            vector.put(inputLink);
+        }
+        vector.put(outputLink);
+    }
+
+    /**
+     * Replace everything but memory with a copy made by `saveRegisterState`.
+     */
+    public void restoreRegisterState(int[] state) {
+        StateVector vector = new StateVector(state);
+        vector.get(registers);
+        vector.get(sreg);
+        for (int i = 0; i < 2; i++) {
+            FptrReg[i] = vector.getInt();
+            BptrReg[i] = vector.getInt();
+            ClockReg[i] = vector.getInt();
+            TNextReg[i] = vector.getInt();
+            TEnabled[i] = vector.getBoolean();
+        }
+        Ereg = vector.getInt();
+        BMbuffer = vector.getInt();
+        programEndPtr = vector.getInt();
+        lastStepLength = vector.getInt();
+        steps = vector.getLong();
+        foldedSteps = vector.getLong();
+        idleSteps = vector.getLong();
+        cycles = vector.getLong();
+        pendingAcks = vector.getInt();
+        for (InputLink inputLink : inputLinks) {
+            vector.get(inputLink);
+        }
+        vector.get(outputLink);
+    }
+
+    /**
+     * Write the complete machine state: registers, timers, links, memory and the processes the debugger knows
+     * about, including those that have terminated. Breakpoints are not included.
+     */
+    public void saveState(DataOutputStream output) throws IOException {
+        int[] state = new int[getRegisterStateSize()];
+        saveRegisterState(state);
+        for (int value : state) {
+            output.writeInt(value);
+        }
+        Checkpoint.writeMemory(output, mem);
+
+        debuggerState.processes.save(output);
+    }
+
+    /**
+     * Replace the machine state with one written by `saveState`. The memory size must match.
+     */
+    public void restoreState(DataInputStream input) throws IOException {
+        int[] state = new int[getRegisterStateSize()];
+        for (int i = 0; i < state.length; i++) {
+            state[i] = input.readInt();
+        }
+        restoreRegisterState(state);
+        Checkpoint.readMemory(input, mem, id);
+        codeReplaced();
+        debuggerState.memAccessed.clear();
+
+        debuggerState.processes.restore(input);
+    }
+
     /**
      * Perform an overflow check
      */
@@ -438,7 +963,7 @@ public class Transputer {
     }
 
     private void blockMoveFinalStep() {
-        stdout.printf("Block_move_final_step\n");
+        trace.scheduler(id, SchedulerEvent.BLOCK_MOVE_FINAL_STEP);
         if (sreg.ioBit) {
             sreg.moveBit = false;
             sreg.ioBit = false;
@@ -452,7 +977,7 @@ public class Transputer {
      * Areg - length, Breg - destination, Creg - source
      */
     private void blockMoveMiddleStep() {
-        stdout.printf("Block_move_middle_step\n");
+        trace.scheduler(id, SchedulerEvent.BLOCK_MOVE_MIDDLE_STEP);
         if (registers.Areg == 0) {
             blockMoveFinalStep();
         } else {
@@ -492,7 +1017,7 @@ public class Transputer {
      * Areg - length, Breg - destination, Creg - source
      */
     private void blockMoveFirstStep() {
-        stdout.printf("move_first_step=> src:%08X dest:%08X len:%08X\n", registers.Creg, registers.Breg, registers.Areg);
+        trace.blockMove(id, registers.Creg, registers.Breg, registers.Areg);
         if (registers.Areg == 0) {
             blockMoveFinalStep();
         } else {
@@ -538,11 +1063,14 @@ public class Transputer {
             WIndexWord(BptrReg[processPriorityBit], TransputerConstants.LINK_S, Wptr);
         }
         BptrReg[processPriorityBit] = Wptr;
+        if (metrics != null) {
+            metrics.enqueued(processPriorityBit, FptrReg[processPriorityBit] == Wptr);
+        }
 
-        debuggerState.processes.stream()
-                .filter(p -> p.getCurrentWptr() == Wptr)
-                .filter(p -> p.status != ProcessStatus.QUEUED)
-                .forEach(p -> p.status = ProcessStatus.QUEUED);
+        Process process = debuggerState.processes.get(Wptr);
+        if (process != null) {
+            process.status = ProcessStatus.QUEUED;
+        }
     }
 
     /**
@@ -551,10 +1079,10 @@ public class Transputer {
     private void activateProcess() {
         registers.Oreg = 0;
         registers.Iptr = RIndexWord(registers.Wptr, TransputerConstants.IPTR_S);
-        debuggerState.processes.stream()
-                .filter(p -> p.getCurrentWptr() == registers.Wptr)
-                .filter(p -> p.status == ProcessStatus.QUEUED)
-                .forEach(p -> p.status = ProcessStatus.RUNNING);
+        debuggerState.processes.transition(registers.Wptr, ProcessStatus.QUEUED, ProcessStatus.RUNNING);
+        if (metrics != null) {
+            metrics.processSwitch(TransputerHelpers.extractPriorityBit(registers.Wptr));
+        }
     }
 
     private void hardChannelInputAction(int channelNumber) {
@@ -587,19 +1115,23 @@ public class Transputer {
     private void performInput() {
         //int channelNumber = ChanOffset(registers.Breg);
         int channelNumber = registers.Breg;
+        if (ioPins != null && ioPins.isPin(channelNumber)) {
+            pinInput(channelNumber);
+            return;
+        }
         //if (channelNumber >= LINKCHANS) {
         if ((channelNumber & 1) == 0) {
-            stdout.printf("channelNumber >= LINKCHANS\n");
+            trace.scheduler(id, SchedulerEvent.SOFT_INPUT);
             int processDescriptor = RIndexWord(registers.Breg, 0);
             if (processDescriptor == TransputerConstants.NOTPROCESS_P) {
-                stdout.printf("processDescriptor == NOTPROCESS_P\n");
+                trace.scheduler(id, SchedulerEvent.SOFT_INPUT_WAIT);
                 // not ready to transfer, wait
                 saveRegistersPendingSoftIO();
                 sreg.gotoStartNewProcess = true;
             } else {
                 // ready to transfer
                 registers.Iptr += 1;
-                stdout.printf("ready to transfer\n");
+                trace.scheduler(id, SchedulerEvent.SOFT_INPUT_READY);
                 WIndexWord(registers.Breg, 0, TransputerConstants.NOTPROCESS_P);
                 int processPointer = TransputerHelpers.extractWorkspacePointer(processDescriptor);
                 int sourcePtr = TransputerHelpers.extractWorkspacePointer(RIndexWord(processPointer, TransputerConstants.POINTER_S));
@@ -622,6 +1154,10 @@ public class Transputer {
     private void performOutput() {
         //int channelNumber = ChanOffset(registers.Breg);
         int channelNumber = registers.Breg;
+        if (ioPins != null && ioPins.isPin(channelNumber)) {
+            pinOutput(channelNumber);
+            return;
+        }
         //if (channelNumber >= LINKCHANS) {
         if ((channelNumber & 1) == 0) {
             // Internal channel
@@ -664,6 +1200,29 @@ public class Transputer {
         }
     }
 
+    /**
+     * Input from an I/O pin, which completes at once with the value on the pin, least significant byte first
+     */
+    private void pinInput(int address) {
+        int value = ioPins.read(address, steps);
+        for (int i = 0; i < registers.Areg; i++) {
+            WIndexByte(registers.Creg, i, i < TransputerConstants.BYTESPERWORD ? (byte) (value >>> (8 * i)) : 0);
+        }
+        registers.Iptr += 1;
+    }
+
+    /**
+     * Output to an I/O pin, which completes at once with the first word of the message, least significant byte first
+     */
+    private void pinOutput(int address) {
+        int value = 0;
+        for (int i = 0; i < registers.Areg && i < TransputerConstants.BYTESPERWORD; i++) {
+            value |= (RIndexByte(registers.Creg, i) & 0xFF) << (8 * i);
+        }
+        ioPins.write(address, steps, value);
+        registers.Iptr += 1;
+    }
+
     // Documentation says that we should tell whether DMA is in use
     private void saveRegisters() {
         WIndexWord(TransputerConstants.SAVEBASE, TransputerConstants.WDESCINTSAVE, registers.Wptr);
@@ -690,39 +1249,39 @@ public class Transputer {
         Priority newProcessPriority = TransputerHelpers.extractPriority(Wptr);
         Priority currentProcessPriority = TransputerHelpers.extractPriority(registers.Wptr);
         int processPointer = TransputerHelpers.extractWorkspacePointer(Wptr);
-        stdout.printf("run_proc\n");
+        trace.scheduler(id, SchedulerEvent.RUN_PROCESS);
 
         switch (currentProcessPriority) {
             case HIGH:
                 // If the current process is high priority, queue up the new process
-                stdout.printf("run_proc.enqueue_pri0\n");
+                trace.scheduler(id, SchedulerEvent.RUN_PROCESS_ENQUEUE_HIGH);
                 enqueueProcess(processPointer, newProcessPriority);
-                debuggerState.processes.add(new Process(Wptr, ProcessStatus.QUEUED));
+                debuggerState.processes.schedule(Wptr, ProcessStatus.QUEUED);
                 break;
             case LOW:
                 switch (newProcessPriority) {
                     case HIGH:
                         // If the current process is low priority and the new process high priority, switch immediately
-                        stdout.printf("run_proc changing priority\n");
+                        trace.scheduler(id, SchedulerEvent.RUN_PROCESS_CHANGE_PRIORITY);
                         saveRegisters();
                         registers.Wptr = Wptr;
                         // TODO: Error flag stuff
                         // probable nothing has to change though
                         activateProcess();
-                        debuggerState.processes.add(new Process(registers.Wptr, ProcessStatus.RUNNING));
+                        debuggerState.processes.schedule(registers.Wptr, ProcessStatus.RUNNING);
                         break;
                     case LOW:
                         // If the current process is low priority and the new process high priority, queue the new process
-                        stdout.printf("run_proc.proc_pri==1\n");
+                        trace.scheduler(id, SchedulerEvent.RUN_PROCESS_LOW);
                         if (TransputerHelpers.extractWorkspacePointer(registers.Wptr) == TransputerConstants.NOTPROCESS_P) {
-                            stdout.printf("run_proc-.No proc running\n");
+                            trace.scheduler(id, SchedulerEvent.RUN_PROCESS_IDLE);
                             registers.Wptr = Wptr;
                             activateProcess();
-                            debuggerState.processes.add(new Process(Wptr, ProcessStatus.RUNNING));
+                            debuggerState.processes.schedule(Wptr, ProcessStatus.RUNNING);
                         } else {
-                            stdout.printf("runproc.enqueue_pri1\n");
+                            trace.scheduler(id, SchedulerEvent.RUN_PROCESS_ENQUEUE_LOW);
                             enqueueProcess(processPointer, LOW);
-                            debuggerState.processes.add(new Process(Wptr, ProcessStatus.QUEUED));
+                            debuggerState.processes.schedule(Wptr, ProcessStatus.QUEUED);
                         }
                         break;
                 }
@@ -730,8 +1289,16 @@ public class Transputer {
         }
     }
 
+    /**
+     * @return the debugger's record of the current process, if it is known to be running
+     */
+    private Process runningProcess() {
+        Process process = debuggerState.processes.get(registers.Wptr);
+        return process != null && process.status == ProcessStatus.RUNNING ? process : null;
+    }
+
     private void dequeueProcess(Priority processPriority) {
-        debuggerState.processes.stream().filter(p -> p.getCurrentWptr() == registers.Wptr).findFirst().get().status = ProcessStatus.TERMINATED;
+        debuggerState.processes.terminate(registers.Wptr);
         int processPriorityBit = TransputerHelpers.priorityToBit(processPriority);
         registers.Wptr = FptrReg[processPriorityBit] | processPriorityBit;
         if (FptrReg[processPriorityBit] == BptrReg[processPriorityBit]) {
@@ -739,10 +1306,13 @@ public class Transputer {
         } else {
             FptrReg[processPriorityBit] = RIndexWord(FptrReg[processPriorityBit], TransputerConstants.LINK_S);
         }
+        if (metrics != null) {
+            metrics.dequeued(processPriorityBit, FptrReg[processPriorityBit] == TransputerConstants.NOTPROCESS_P);
+        }
     }
 
     private void restoreRegisters() {
-        stdout.printf("restore_registers\n");
+        trace.scheduler(id, SchedulerEvent.RESTORE_REGISTERS);
         registers.Wptr = RIndexWord(TransputerConstants.SAVEBASE, TransputerConstants.WDESCINTSAVE);
         if (registers.Wptr != (TransputerConstants.NOTPROCESS_P | 1)){
             registers.Iptr = RIndexWord(TransputerConstants.SAVEBASE, TransputerConstants.IPTRINTSAVE);
@@ -761,16 +1331,16 @@ public class Transputer {
         Priority currentProcessPriority = TransputerHelpers.extractPriority(registers.Wptr);
         switch (currentProcessPriority) {
             case HIGH:
-                stdout.printf("priority 0\n");
+                trace.scheduler(id, SchedulerEvent.START_HIGH);
                 if (FptrReg[0] != TransputerConstants.NOTPROCESS_P) {
-                    stdout.printf("!=NOTPROCESS_P\n");
+                    trace.scheduler(id, SchedulerEvent.START_HIGH_DEQUEUE);
                     dequeueProcess(HIGH);
                     activateProcess();
                 } else {
-                    stdout.printf("NOTPROCESS_P\n");
+                    trace.scheduler(id, SchedulerEvent.START_HIGH_EMPTY);
                     restoreRegisters();
                     if (TransputerHelpers.extractWorkspacePointer(registers.Wptr) == TransputerConstants.NOTPROCESS_P && FptrReg[1] != TransputerConstants.NOTPROCESS_P) {
-                        stdout.printf("no interrupted process\n");
+                        trace.scheduler(id, SchedulerEvent.START_NO_INTERRUPTED_PROCESS);
                         dequeueProcess(LOW);
                         activateProcess();
                     } else if (TransputerHelpers.extractWorkspacePointer(registers.Wptr) == TransputerConstants.NOTPROCESS_P) {
@@ -781,12 +1351,12 @@ public class Transputer {
                 }
                 break;
             case LOW:
-                stdout.printf("priority 1\n");
+                trace.scheduler(id, SchedulerEvent.START_LOW);
                 if (FptrReg[1] != TransputerConstants.NOTPROCESS_P) {
                     dequeueProcess(LOW);
                     activateProcess();
                 } else {
-                    stdout.printf("Wptr = NOTPROCESS_P\n");
+                    trace.scheduler(id, SchedulerEvent.START_LOW_EMPTY);
                     registers.Wptr = TransputerConstants.NOTPROCESS_P | 1;
                 }
                 break;
@@ -798,13 +1368,13 @@ public class Transputer {
      */
     private void isThisSelProcess() {
         int disableStat = RIndexWord(registers.Wptr, 0);
-        stdout.printf("is_this_sel_proc\n");
+        trace.scheduler(id, SchedulerEvent.IS_THIS_SELECTED_PROCESS);
         if (disableStat == TransputerConstants.NONESELECTED_O) {
-            stdout.printf("Noneselected\n");
+            trace.scheduler(id, SchedulerEvent.NONE_SELECTED);
             WIndexWord(registers.Wptr, 0, registers.Areg);
             registers.Areg = 1; // TRUE
         } else {
-            stdout.printf("else\n");
+            trace.scheduler(id, SchedulerEvent.ALREADY_SELECTED);
             registers.Areg = 0; // FALSE
         }
     }
@@ -865,7 +1435,11 @@ public class Transputer {
             // Acknowledge and store byte
             // Acknowledge
             inputLink.ack = TransputerConstants.ACKDATA;
+            pendingAcks |= 1 << inputLink.port;
             WIndexByte(inputLink.pointer, 0, inputLink.readData);
+            if (metrics != null) {
+                metrics.linkBytesIn(inputLink.port, 1);
+            }
             inputLink.pointer = atByte(inputLink.pointer, 1);
             inputLink.count = inputLink.count - 1;
             if (inputLink.count == 0) {
@@ -962,6 +1536,9 @@ public class Transputer {
                 // LinkOutData ! outputLink.outByte
                 outputLink.hasData = true;
                 outputLink.outData = outputLink.outByte;
+                if (timing != null) {
+                    cycles += timing.linkByteCycles();
+                }
                 outputLink.ready = false;
             }
         } else if ((outputLink.ready) && !(outputLink.requested) && (outputLink.FptrReg != TransputerConstants.NOTPROCESS_P)) {
@@ -970,28 +1547,31 @@ public class Transputer {
         } else if ((token = outputLink.ack) != TransputerConstants.NOIO) {
             outputLink.ack = TransputerConstants.NOIO;
             outputLink.ready = true;
+        } else if (metrics != null && outputLink.requested) {
+            // A byte has been sent and its acknowledgement has not arrived
+            metrics.linkAckStall((outputLink.outChannel >> 1) & ((1 << TransputerConstants.SHIFT_IN_PORTS) - 1));
         }
     }
 
     private void disableChannel() throws UnexpectedOverflowException {
         if (registers.Breg != 0 /*FALSE*/) {
-            stdout.printf("Breg != FALSE\n");
+            trace.scheduler(id, SchedulerEvent.DISABLE_CHANNEL);
             //int chan_num = ChanOffset(registers.Creg);
             int channelNumber = registers.Creg;
 
             //if (chan_num >= LINKCHANS) {
             if ((channelNumber & 1) == 0) {
-                stdout.printf("Soft channel\n");
+                trace.scheduler(id, SchedulerEvent.DISABLE_SOFT_CHANNEL);
                 registers.Breg = RIndexWord(registers.Creg, 0);
                 if (registers.Breg == TransputerConstants.NOTPROCESS_P) {
-                    stdout.printf("Breg == NOTPROCESS_P\n");
+                    trace.scheduler(id, SchedulerEvent.DISABLE_CHANNEL_EMPTY);
                     registers.Areg = 0; // FALSE
                 } else if (registers.Breg == registers.Wptr) {
-                    stdout.printf("Breg == Wdescreg\n");
+                    trace.scheduler(id, SchedulerEvent.DISABLE_CHANNEL_SELF);
                     WIndexWord(registers.Creg, 0, TransputerConstants.NOTPROCESS_P);
                     registers.Areg = 0; // FALSE
                 } else {
-                    stdout.printf("Breg else\n");
+                    trace.scheduler(id, SchedulerEvent.DISABLE_CHANNEL_OTHER);
                     isThisSelProcess();
                 }
             } else { // link-channel
@@ -1074,7 +1654,10 @@ public class Transputer {
      * Areg - time, Breg - previous, Creg - subsequent
      */
     private void timerQueueInsertFirstStep() {
-        stdout.printf("insert_first_step\n");
+        trace.scheduler(id, SchedulerEvent.TIMER_INSERT_FIRST_STEP);
+        if (metrics != null) {
+            metrics.timerInsertStep();
+        }
         sreg.timeIns = true;
         WIndexWord(registers.Wptr, TransputerConstants.STATE_S, TransputerConstants.WAITING_P);
         WIndexWord(registers.Wptr, TransputerConstants.TIME_S, registers.Areg);
@@ -1087,7 +1670,10 @@ public class Transputer {
      * Areg - time, Breg - previous, Creg - subsequent
      */
     private void timerQueueInsertMiddleStep() {
-        stdout.printf("insert_middle_step\n");
+        trace.scheduler(id, SchedulerEvent.TIMER_INSERT_MIDDLE_STEP);
+        if (metrics != null) {
+            metrics.timerInsertStep();
+        }
         registers.Breg = AtWord(registers.Creg, TransputerConstants.TLINK_S);
         timerQueueInsertTest();
     }
@@ -1096,7 +1682,7 @@ public class Transputer {
      * Areg - time, Breg - previous, Creg - subsequent
      */
     private void timerQueueInsertTest() {
-        stdout.printf("insert_test\n");
+        trace.scheduler(id, SchedulerEvent.TIMER_INSERT_TEST);
         registers.Creg = RIndexWord(registers.Breg, 0);
         if (registers.Creg == TransputerConstants.NOTPROCESS_P) {
             timerQueueInsertFinalStep();
@@ -1113,7 +1699,10 @@ public class Transputer {
      * Areg - time, Breg - previous, Creg - subsequent
      */
     private void timerQueueInsertFinalStep() {
-        stdout.printf("insert_final_step\n");
+        trace.scheduler(id, SchedulerEvent.TIMER_INSERT_FINAL_STEP);
+        if (metrics != null) {
+            metrics.timerInsertDone();
+        }
         WIndexWord(registers.Breg, 0, TransputerHelpers.extractWorkspacePointer(registers.Wptr));
         WIndexWord(registers.Wptr, TransputerConstants.TLINK_S, registers.Creg);
         WIndexWord(registers.Wptr, TransputerConstants.IPTR_S, registers.Iptr + 1);
@@ -1133,7 +1722,10 @@ public class Transputer {
      * Breg - previous, Creg - subsequent
      */
     private void timerQueueDeleteFirstStep() {
-        stdout.printf("delete_first_step\n");
+        trace.scheduler(id, SchedulerEvent.TIMER_DELETE_FIRST_STEP);
+        if (metrics != null) {
+            metrics.timerDeleteStep();
+        }
         sreg.timeDel = true;
         TEnabled[TransputerHelpers.extractPriorityBit(registers.Wptr)] = false;
 
@@ -1146,7 +1738,10 @@ public class Transputer {
      * Breg - previous, Creg - subsequent
      */
     private void timerQueueDeleteMiddleStep() {
-        stdout.printf("delete_middle_step\n");
+        trace.scheduler(id, SchedulerEvent.TIMER_DELETE_MIDDLE_STEP);
+        if (metrics != null) {
+            metrics.timerDeleteStep();
+        }
         registers.Breg = AtWord(registers.Creg, TransputerConstants.TLINK_S);
         timerQueueDeleteTest();
     }
@@ -1155,7 +1750,7 @@ public class Transputer {
      * Breg - previous, Creg - subsequent
      */
     private void timerQueueDeleteTest() {
-        stdout.printf("delete_test\n");
+        trace.scheduler(id, SchedulerEvent.TIMER_DELETE_TEST);
         registers.Creg = RIndexWord(registers.Breg, 0);
         if (registers.Creg == TransputerHelpers.extractWorkspacePointer(registers.Wptr)) {
             timerQueueDeleteFinalStep();
@@ -1166,7 +1761,10 @@ public class Transputer {
      * Breg - previous, Creg - subsequent
      */
     private void timerQueueDeleteFinalStep() {
-        stdout.printf("delete_final_step\n");
+        trace.scheduler(id, SchedulerEvent.TIMER_DELETE_FINAL_STEP);
+        if (metrics != null) {
+            metrics.timerDeleteDone();
+        }
         registers.Creg = RIndexWord(registers.Wptr, TransputerConstants.TLINK_S);
         WIndexWord(registers.Breg, 0, registers.Creg);
         WIndexWord(registers.Wptr, TransputerConstants.TLINK_S, TransputerConstants.TIMENOTSET_P);
@@ -1187,6 +1785,9 @@ public class Transputer {
     private void handleTimerRequest(Priority priorityQueue) {
         int priorityBit = TransputerHelpers.priorityToBit(priorityQueue);
         TEnabled[priorityBit] = false;
+        if (metrics != null) {
+            metrics.timerFired(priorityBit);
+        }
         //int frontproc = RIndexWord(TPtrLoc[queue_id], 0);
         int frontproc = RIndexWord(TransputerConstants.TIMERBASE, priorityBit);
         int secondproc = RIndexWord(frontproc, TransputerConstants.TLINK_S);
@@ -1194,7 +1795,7 @@ public class Transputer {
         WIndexWord(TransputerConstants.TIMERBASE, priorityBit, secondproc);
         //WIndexWord(TPtrLoc[queue_id], 0, secondproc);
         if (secondproc != TransputerConstants.NOTPROCESS_P) {
-            stdout.printf("secondproc != NOTPROCESS_P\n");
+            trace.scheduler(id, SchedulerEvent.TIMER_SECOND_PROCESS);
             TNextReg[priorityBit] = RIndexWord(secondproc, TransputerConstants.TIME_S);
             TEnabled[priorityBit] = true;
         }
@@ -1225,456 +1826,572 @@ public class Transputer {
      * Execute a secondary instruction, i.e. one where the actual opcode is in the operand register
      */
     private void executeSecondaryInstruction() throws UnexpectedOverflowException {
-        byte opcode = (byte)(registers.Oreg & 0xFF);
-        int tmp;
-        boolean laterFlag;
-        int shift_val;
-        int op0, op1;
-        Process processToUpdate;
-
+        int opcode = registers.Oreg & 0xFF;
         registers.Oreg = 0;
+        if (metrics != null) {
+            metrics.secondaryInstruction(opcode);
+        }
+        secondaryHandlers[opcode].execute(this);
+    }
 
-        switch(opcode) {
-            case(TransputerConstants.REV):
-                stdout.printf("rev\n");
-                tmp = registers.Areg;
-                registers.Areg = registers.Breg;
-                registers.Breg = tmp;
-                registers.Iptr += 1;
-                break;
-            case(TransputerConstants.ADD):
-                stdout.printf("add\n");
-                overflowCheck(TransputerConstants.ADD, registers.Breg, registers.Areg);
-                registers.Areg = registers.Areg + registers.Breg;
-                registers.Breg = registers.Creg;
-                registers.Iptr += 1;
-                // TODO: OverflowCheck()
-                break;
-            case(TransputerConstants.SUB):
-                stdout.printf("sub\n");
-                overflowCheck(TransputerConstants.SUB, registers.Breg, registers.Areg);
-                registers.Areg = registers.Breg - registers.Areg;
-                registers.Breg = registers.Creg;
-                registers.Iptr += 1;
-                // TODO: OverflowCheck()
-                break;
-            case(TransputerConstants.MUL):
-                stdout.printf("mul\n");
-                overflowCheck(TransputerConstants.MUL, registers.Breg, registers.Areg);
-                registers.Areg = registers.Breg * registers.Areg;
-                registers.Breg = registers.Creg;
-                registers.Iptr += 1;
-                // TODO: OverflowCheck()
-                break;
-            case(TransputerConstants.DIV):
-                stdout.printf("div\n");
-                if ((registers.Breg == TransputerConstants.MININT && registers.Areg == -1) ||
-                        registers.Areg == 0) {
-                    setErrorFlag();
-                } else {
-                    registers.Areg = registers.Breg / registers.Areg;
-                }
-                registers.Breg = registers.Creg;
-                registers.Iptr += 1;
-                break;
-            case(TransputerConstants.DIFF):
-                stdout.printf("diff\n");
-                registers.Areg = (registers.Breg - registers.Areg);
-                registers.Breg = registers.Creg;
-                registers.Iptr += 1;
-                break;
-            case(TransputerConstants.SUM):
-                stdout.printf("sum\n");
-                registers.Areg = registers.Breg + registers.Areg;
-                registers.Breg = registers.Creg;
-                registers.Iptr += 1;
-                break;
-            case(TransputerConstants.AND):
-                stdout.printf("and\n");
-                registers.Areg = registers.Areg & registers.Breg;
-                registers.Breg = registers.Creg;
-                registers.Iptr += 1;
-                break;
-            case(TransputerConstants.OR):
-                stdout.printf("or\n");
-                registers.Areg = registers.Areg | registers.Breg;
-                registers.Breg = registers.Creg;
-                registers.Iptr += 1;
-                break;
-            case(TransputerConstants.XOR):
-                stdout.printf("xor\n");
-                registers.Areg = registers.Areg ^ registers.Breg;
-                registers.Breg = registers.Creg;
-                registers.Iptr += 1;
-                break;
-            case(TransputerConstants.NOT):
-                stdout.printf("not\n");
-                registers.Areg = ~registers.Areg;
-                registers.Iptr += 1;
-                break;
-            case(TransputerConstants.SHL):
-                stdout.printf("shl\n");
-                // TODO: verify this works correctly
-                shift_val = registers.Areg;
-                if (shift_val < TransputerConstants.BITSPERWORD) {
-                    registers.Areg = registers.Breg << registers.Areg;
-                } else {
-                    registers.Areg = 0;
-                }
-                registers.Breg = registers.Creg;
-                registers.Iptr += 1;
-                break;
-            case(TransputerConstants.SHR):
-                stdout.printf("shr\n");
-                // Logical shift right
-                shift_val = registers.Areg;
-                if (shift_val < TransputerConstants.BITSPERWORD) {
-                    registers.Areg = registers.Breg >> registers.Areg;
-                } else {
-                    registers.Areg = 0;
-                }
-                registers.Breg = registers.Creg;
-                registers.Iptr += 1;
-                break;
-            case(TransputerConstants.GT):
-                stdout.printf("gt\n");
-                if (registers.Breg > registers.Areg) {
-                    registers.Areg = 1; // TRUE
-                } else {
-                    registers.Areg = 0; // FALSE
-                }
-                registers.Breg = registers.Creg;
-                registers.Iptr += 1;
-                break;
-            case(TransputerConstants.LEND):
-                stdout.printf("lend\n");
-                // registers.Creg holds the loop counter
-                registers.Creg = RIndexWord(registers.Breg, 1);
-                registers.Creg = registers.Creg - 1;
-                WIndexWord(registers.Breg, 1, registers.Creg);
-                if (registers.Creg > 0) {
-                    registers.Creg = RIndexWord(registers.Breg, 0);
-                    registers.Creg = registers.Creg + 1;
-                    WIndexWord(registers.Breg, 0, registers.Creg);
-                    registers.Iptr = atByte(registers.Iptr + 1, -(registers.Areg));
-                } else if (registers.Creg <= 0) {
-                    registers.Iptr += 1;
-                }
-                // TODO: TimeSlice()
-            case(TransputerConstants.BSUB):
-                stdout.printf("bsub\n");
-                registers.Areg = atByte(registers.Areg, registers.Breg);
-                registers.Breg = registers.Creg;
-                registers.Iptr += 1;
-                break;
-            case(TransputerConstants.WSUB):
-                stdout.printf("wsub\n");
-                registers.Areg = AtWord(registers.Areg, registers.Breg);
-                registers.Breg = registers.Creg;
-                registers.Iptr += 1;
-                break;
-            case(TransputerConstants.BCNT):
-                stdout.printf("bcnt\n");
-                registers.Areg = registers.Areg * TransputerConstants.BYTESPERWORD;
-                registers.Iptr += 1;
-                break;
-            case(TransputerConstants.WCNT):
-                stdout.printf("wcnt\n");
-                registers.Creg = registers.Breg;
-                registers.Breg = TransputerHelpers.extractByteSelector(registers.Areg);
-                registers.Areg = registers.Areg >> TransputerConstants.BYTESELLEN;
-                registers.Iptr += 1;
-                break;
-            case(TransputerConstants.LDPI):
-                stdout.printf("ldpi\n");
-                registers.Areg = atByte(registers.Iptr + 1, registers.Areg);
-                registers.Iptr += 1;
-                break;
-            case(TransputerConstants.MOVE):
-                stdout.printf("move\n");
-                blockMoveFirstStep();
-                registers.Iptr += 1;
-                break;
-            case(TransputerConstants.GCALL):
-                stdout.printf("gcall\n");
-                tmp = registers.Areg;
-                registers.Areg = registers.Iptr + 1;
-                registers.Iptr = tmp;
-                break;
-            case(TransputerConstants.GAJW):
-                stdout.printf("gajw\n");
-                processToUpdate = debuggerState.processes.stream()
-                        .filter(p -> p.status == ProcessStatus.RUNNING)
-                        .filter(p -> p.getCurrentWptr() == registers.Wptr)
-                        .findFirst().get();
-                tmp = TransputerHelpers.extractWorkspacePointer(registers.Wptr);
-                registers.Wptr = TransputerHelpers.extractWorkspacePointer(registers.Areg) | TransputerHelpers.extractPriorityBit(registers.Wptr);
-                registers.Areg = tmp & 0xFFFFFFFC;
-                registers.Iptr += 1;
-                processToUpdate.updateWptr(registers.Wptr);
-                break;
-            case(TransputerConstants.RET):
-                stdout.printf("ret\n");
-                processToUpdate = debuggerState.processes.stream()
-                        .filter(p -> p.status == ProcessStatus.RUNNING)
-                        .filter(p -> p.getCurrentWptr() == registers.Wptr)
-                        .findFirst().get();
-                registers.Iptr = RIndexWord(registers.Wptr, 0);
-                registers.Wptr = AtWord(TransputerHelpers.extractWorkspacePointer(registers.Wptr), 4) | TransputerHelpers.extractPriorityBit(registers.Wptr);
-                processToUpdate.updateWptr(registers.Wptr);
-                break;
-            case(TransputerConstants.STARTP):
-                stdout.printf("startp\n");
-                registers.Iptr += 1;
-                tmp = atByte(registers.Iptr, registers.Breg);
-                WIndexWord(registers.Areg, TransputerConstants.IPTR_S, tmp);
-                runProcess(registers.Areg | TransputerHelpers.extractPriorityBit(registers.Wptr));
-                break;
-            case(TransputerConstants.ENDP):
-                stdout.printf("endp\n");
-                processToUpdate = debuggerState.processes.stream()
-                        .filter(p -> p.status == ProcessStatus.RUNNING)
-                        .filter(p -> p.getCurrentWptr() == registers.Wptr)
-                        .findFirst().get();
-                tmp = RIndexWord(registers.Areg, 1);
-                if (tmp == 1) {
-                    // continue as process with waiting workspace Areg
-                    registers.Iptr = RIndexWord(registers.Areg, 0);
-                    registers.Wptr = registers.Areg | TransputerHelpers.extractPriorityBit(registers.Wptr);
-                    processToUpdate.updateWptr(registers.Wptr);
-                } else {
-                    // start next waiting process
-                    stdout.printf("ENDP elseA\n");
-                    WIndexWord(registers.Areg, 1, tmp - 1);
-                    sreg.gotoStartNewProcess = true;
-                    processToUpdate.status = ProcessStatus.TERMINATED;
+    /**
+     * Build the table of secondary instruction handlers, indexed by the low byte of the operand register. Opcodes
+     * with no instruction throw an {@link UnimplementedInstructionException}. Each handler works on the registers
+     * of the transputer it is given.
+     */
+    private static SecondaryHandler[] plainSecondaryHandlers() {
+        SecondaryHandler[] handlers = new SecondaryHandler[256];
+        for (int i = 0; i < handlers.length; i++) {
+            byte opcode = (byte) i;
+            handlers[i] = transputer -> transputer.notImplemented(opcode);
+        }
+        handlers[TransputerConstants.REV & 0xFF] = Transputer::rev;
+        handlers[TransputerConstants.ADD & 0xFF] = Transputer::add;
+        handlers[TransputerConstants.SUB & 0xFF] = Transputer::sub;
+        handlers[TransputerConstants.MUL & 0xFF] = Transputer::mul;
+        handlers[TransputerConstants.DIV & 0xFF] = Transputer::div;
+        handlers[TransputerConstants.DIFF & 0xFF] = Transputer::diff;
+        handlers[TransputerConstants.SUM & 0xFF] = Transputer::sum;
+        handlers[TransputerConstants.AND & 0xFF] = Transputer::and;
+        handlers[TransputerConstants.OR & 0xFF] = Transputer::or;
+        handlers[TransputerConstants.XOR & 0xFF] = Transputer::xor;
+        handlers[TransputerConstants.NOT & 0xFF] = Transputer::not;
+        handlers[TransputerConstants.SHL & 0xFF] = Transputer::shl;
+        handlers[TransputerConstants.SHR & 0xFF] = Transputer::shr;
+        handlers[TransputerConstants.GT & 0xFF] = Transputer::gt;
+        handlers[TransputerConstants.LEND & 0xFF] = Transputer::lend;
+        handlers[TransputerConstants.BSUB & 0xFF] = Transputer::bsub;
+        handlers[TransputerConstants.WSUB & 0xFF] = Transputer::wsub;
+        handlers[TransputerConstants.BCNT & 0xFF] = Transputer::bcnt;
+        handlers[TransputerConstants.WCNT & 0xFF] = Transputer::wcnt;
+        handlers[TransputerConstants.LDPI & 0xFF] = Transputer::ldpi;
+        handlers[TransputerConstants.MOVE & 0xFF] = Transputer::move;
+        handlers[TransputerConstants.GCALL & 0xFF] = Transputer::gcall;
+        handlers[TransputerConstants.GAJW & 0xFF] = Transputer::gajw;
+        handlers[TransputerConstants.RET & 0xFF] = Transputer::ret;
+        handlers[TransputerConstants.STARTP & 0xFF] = Transputer::startp;
+        handlers[TransputerConstants.ENDP & 0xFF] = Transputer::endp;
+        handlers[TransputerConstants.RUNP & 0xFF] = Transputer::runp;
+        handlers[TransputerConstants.STOPP & 0xFF] = Transputer::stopp;
+        handlers[TransputerConstants.LDPRI & 0xFF] = Transputer::ldpri;
+        handlers[TransputerConstants.MINT & 0xFF] = Transputer::mint;
+        handlers[TransputerConstants.ALT & 0xFF] = Transputer::alt;
+        handlers[TransputerConstants.ALTWT & 0xFF] = Transputer::altwt;
+        handlers[TransputerConstants.ALTEND & 0xFF] = Transputer::altend;
+        handlers[TransputerConstants.LDTIMER & 0xFF] = Transputer::ldtimer;
+        handlers[TransputerConstants.TIN & 0xFF] = Transputer::tin;
+        handlers[TransputerConstants.TALT & 0xFF] = Transputer::talt;
+        handlers[TransputerConstants.TALTWT & 0xFF] = Transputer::taltwt;
+        handlers[TransputerConstants.ENBS & 0xFF] = Transputer::ignored;
+        handlers[TransputerConstants.DISS & 0xFF] = Transputer::ignored;
+        handlers[TransputerConstants.ENBC & 0xFF] = Transputer::enbc;
+        handlers[TransputerConstants.DISC & 0xFF] = Transputer::disc;
+        handlers[TransputerConstants.ENBT & 0xFF] = Transputer::enbt;
+        handlers[TransputerConstants.DIST & 0xFF] = Transputer::dist;
+        handlers[TransputerConstants.CSUB & 0xFF] = Transputer::csub;
+        handlers[TransputerConstants.CCNT & 0xFF] = Transputer::ccnt;
+        handlers[TransputerConstants.TESTERR & 0xFF] = Transputer::testerr;
+        handlers[TransputerConstants.SETERR & 0xFF] = Transputer::seterr;
+        handlers[TransputerConstants.STOPERR & 0xFF] = Transputer::stoperr;
+        handlers[TransputerConstants.CLRHALTERR & 0xFF] = Transputer::clrhalterr;
+        handlers[TransputerConstants.SETHALTERR & 0xFF] = Transputer::sethalterr;
+        handlers[TransputerConstants.TESTHALTERR & 0xFF] = Transputer::testhalterr;
+        handlers[TransputerConstants.RESETCH & 0xFF] = Transputer::resetch;
+        handlers[TransputerConstants.STHF & 0xFF] = Transputer::ignored;
+        handlers[TransputerConstants.STLF & 0xFF] = Transputer::ignored;
+        handlers[TransputerConstants.STTIMER & 0xFF] = Transputer::ignored;
+        handlers[TransputerConstants.STHB & 0xFF] = Transputer::ignored;
+        handlers[TransputerConstants.STLB & 0xFF] = Transputer::ignored;
+        handlers[TransputerConstants.SAVEH & 0xFF] = Transputer::ignored;
+        handlers[TransputerConstants.SAVEL & 0xFF] = Transputer::ignored;
+        handlers[TransputerConstants.IN & 0xFF] = Transputer::in;
+        handlers[TransputerConstants.OUT & 0xFF] = Transputer::out;
+        handlers[TransputerConstants.CONFIO & 0xFF] = Transputer::confio;
+        handlers[TransputerConstants.OUTWORD & 0xFF] = Transputer::outword;
+        return handlers;
+    }
+
+    /**
+     * Wrap each handler so that it is traced and its cycles counted. Only installed when instructions are traced or a
+     * timing model is set, so the plain table stays free of both.
+     */
+    private SecondaryHandler[] instrumentedSecondaryHandlers() {
+        boolean traced = trace.getLevel().includes(TraceLevel.INSTRUCTION);
+        SecondaryHandler[] handlers = new SecondaryHandler[PLAIN_SECONDARY_HANDLERS.length];
+        for (int i = 0; i < handlers.length; i++) {
+            byte opcode = (byte) i;
+            SecondaryHandler handler = PLAIN_SECONDARY_HANDLERS[i];
+            handlers[i] = transputer -> {
+                if (traced) {
+                    transputer.trace.instruction(transputer.id, transputer.registers.Iptr, opcode, true);
                 }
-                break;
-            case(TransputerConstants.RUNP):
-                stdout.printf("runp\n");
-                registers.Iptr += 1;
-                runProcess(registers.Areg);
-                break;
-            case(TransputerConstants.STOPP):
-                stdout.printf("stopp\n");
-                registers.Iptr += 1;
-                WIndexWord(registers.Wptr, TransputerConstants.IPTR_S, registers.Iptr);
-                sreg.gotoStartNewProcess = true;
-                break;
-            case(TransputerConstants.LDPRI):
-                stdout.printf("ldpri\n");
-                registers.Creg = registers.Breg;
-                registers.Breg = registers.Areg;
-                registers.Areg = TransputerHelpers.extractPriorityBit(registers.Wptr);
-                registers.Iptr += 1;
-                break;
-            case(TransputerConstants.MINT):
-                stdout.printf("mint\n");
-                registers.Creg = registers.Breg;
-                registers.Breg = registers.Areg;
-                registers.Areg = TransputerConstants.MININT;
-                registers.Iptr += 1;
-                break;
-            case(TransputerConstants.ALT):
-                stdout.printf("alt\n");
-                registers.Iptr += 1;
-                WIndexWord(registers.Wptr, TransputerConstants.STATE_S, TransputerConstants.ENABLING_P);
-                break;
-            case(TransputerConstants.ALTWT):
-                stdout.printf("altwt\n");
-                registers.Iptr += 1;
-                WIndexWord(registers.Wptr, 0, TransputerConstants.NONESELECTED_O);
-                registers.Areg = RIndexWord(registers.Wptr, TransputerConstants.STATE_S);
-                if (registers.Areg == TransputerConstants.READY_P) {
-                    // Do nothing
-                } else {
-                    initiateWait();
+                if (transputer.timing != null) {
+                    transputer.cycles += transputer.timing.secondaryCycles(opcode);
                 }
-                break;
-            case(TransputerConstants.ALTEND):
-                stdout.printf("altend\n");
-                registers.Iptr += 1;
-                tmp = RIndexWord(registers.Wptr, 0);
-                registers.Iptr = atByte(registers.Iptr, tmp);
-                break;
-            case(TransputerConstants.LDTIMER):
-                stdout.printf("ldtimer\n");
-                registers.Creg = registers.Breg;
-                registers.Breg = registers.Areg;
-                registers.Areg = ClockReg[TransputerHelpers.extractPriorityBit(registers.Wptr)];
-                registers.Iptr += 1;
-                break;
-            case(TransputerConstants.TIN):
-                stdout.printf("tin\n");
+                handler.execute(transputer);
+            };
+        }
+        return handlers;
+    }
+
+    private void installSecondaryHandlers() {
+        if (trace.getLevel().includes(TraceLevel.INSTRUCTION) || timing != null) {
+            secondaryHandlers = instrumentedSecondaryHandlers();
+        } else {
+            secondaryHandlers = PLAIN_SECONDARY_HANDLERS;
+        }
+    }
+
+    private void notImplemented(byte opcode) {
+        throw new UnimplementedInstructionException(id, opcode, registers.Iptr);
+    }
+
+    /**
+     * Instructions that are accepted but do nothing, not even move on to the next instruction
+     */
+    private void ignored() {
+    }
+
+    private void rev() {
+        int tmp = registers.Areg;
+        registers.Areg = registers.Breg;
+        registers.Breg = tmp;
+        registers.Iptr += 1;
+    }
+
+    private void add() throws UnexpectedOverflowException {
+        overflowCheck(TransputerConstants.ADD, registers.Breg, registers.Areg);
+        registers.Areg = registers.Areg + registers.Breg;
+        registers.Breg = registers.Creg;
+        registers.Iptr += 1;
+        // TODO: OverflowCheck()
+    }
+
+    private void sub() throws UnexpectedOverflowException {
+        overflowCheck(TransputerConstants.SUB, registers.Breg, registers.Areg);
+        registers.Areg = registers.Breg - registers.Areg;
+        registers.Breg = registers.Creg;
+        registers.Iptr += 1;
+        // TODO: OverflowCheck()
+    }
+
+    private void mul() throws UnexpectedOverflowException {
+        overflowCheck(TransputerConstants.MUL, registers.Breg, registers.Areg);
+        registers.Areg = registers.Breg * registers.Areg;
+        registers.Breg = registers.Creg;
+        registers.Iptr += 1;
+        // TODO: OverflowCheck()
+    }
+
+    private void div() {
+        if ((registers.Breg == TransputerConstants.MININT && registers.Areg == -1) ||
+                registers.Areg == 0) {
+            setErrorFlag();
+        } else {
+            registers.Areg = registers.Breg / registers.Areg;
+        }
+        registers.Breg = registers.Creg;
+        registers.Iptr += 1;
+    }
+
+    private void diff() {
+        registers.Areg = (registers.Breg - registers.Areg);
+        registers.Breg = registers.Creg;
+        registers.Iptr += 1;
+    }
+
+    private void sum() {
+        registers.Areg = registers.Breg + registers.Areg;
+        registers.Breg = registers.Creg;
+        registers.Iptr += 1;
+    }
+
+    private void and() {
+        registers.Areg = registers.Areg & registers.Breg;
+        registers.Breg = registers.Creg;
+        registers.Iptr += 1;
+    }
+
+    private void or() {
+        registers.Areg = registers.Areg | registers.Breg;
+        registers.Breg = registers.Creg;
+        registers.Iptr += 1;
+    }
+
+    private void xor() {
+        registers.Areg = registers.Areg ^ registers.Breg;
+        registers.Breg = registers.Creg;
+        registers.Iptr += 1;
+    }
+
+    private void not() {
+        registers.Areg = ~registers.Areg;
+        registers.Iptr += 1;
+    }
+
+    private void shl() {
+        // TODO: verify this works correctly
+        int shift_val = registers.Areg;
+        if (shift_val < TransputerConstants.BITSPERWORD) {
+            registers.Areg = registers.Breg << registers.Areg;
+        } else {
+            registers.Areg = 0;
+        }
+        registers.Breg = registers.Creg;
+        registers.Iptr += 1;
+    }
+
+    private void shr() {
+        // Logical shift right
+        int shift_val = registers.Areg;
+        if (shift_val < TransputerConstants.BITSPERWORD) {
+            registers.Areg = registers.Breg >> registers.Areg;
+        } else {
+            registers.Areg = 0;
+        }
+        registers.Breg = registers.Creg;
+        registers.Iptr += 1;
+    }
+
+    private void gt() {
+        if (registers.Breg > registers.Areg) {
+            registers.Areg = 1; // TRUE
+        } else {
+            registers.Areg = 0; // FALSE
+        }
+        registers.Breg = registers.Creg;
+        registers.Iptr += 1;
+    }
+
+    private void lend() {
+        // registers.Creg holds the loop counter
+        registers.Creg = RIndexWord(registers.Breg, 1);
+        registers.Creg = registers.Creg - 1;
+        WIndexWord(registers.Breg, 1, registers.Creg);
+        if (registers.Creg > 0) {
+            registers.Creg = RIndexWord(registers.Breg, 0);
+            registers.Creg = registers.Creg + 1;
+            WIndexWord(registers.Breg, 0, registers.Creg);
+            registers.Iptr = atByte(registers.Iptr + 1, -(registers.Areg));
+        } else if (registers.Creg <= 0) {
+            registers.Iptr += 1;
+        }
+        // TODO: TimeSlice()
+        // The instruction switch this replaced had no break here, so lend carried on into bsub
+        bsub();
+    }
+
+    private void bsub() {
+        registers.Areg = atByte(registers.Areg, registers.Breg);
+        registers.Breg = registers.Creg;
+        registers.Iptr += 1;
+    }
+
+    private void wsub() {
+        registers.Areg = AtWord(registers.Areg, registers.Breg);
+        registers.Breg = registers.Creg;
+        registers.Iptr += 1;
+    }
+
+    private void bcnt() {
+        registers.Areg = registers.Areg * TransputerConstants.BYTESPERWORD;
+        registers.Iptr += 1;
+    }
+
+    private void wcnt() {
+        registers.Creg = registers.Breg;
+        registers.Breg = TransputerHelpers.extractByteSelector(registers.Areg);
+        registers.Areg = registers.Areg >> TransputerConstants.BYTESELLEN;
+        registers.Iptr += 1;
+    }
+
+    private void ldpi() {
+        registers.Areg = atByte(registers.Iptr + 1, registers.Areg);
+        registers.Iptr += 1;
+    }
+
+    private void move() {
+        if (metrics != null) {
+            metrics.blockMove(registers.Areg);
+        }
+        blockMoveFirstStep();
+        registers.Iptr += 1;
+    }
+
+    private void gcall() {
+        int tmp = registers.Areg;
+        registers.Areg = registers.Iptr + 1;
+        registers.Iptr = tmp;
+    }
+
+    private void gajw() {
+        Process processToUpdate = runningProcess();
+        int tmp = TransputerHelpers.extractWorkspacePointer(registers.Wptr);
+        registers.Wptr = TransputerHelpers.extractWorkspacePointer(registers.Areg) | TransputerHelpers.extractPriorityBit(registers.Wptr);
+        registers.Areg = tmp & 0xFFFFFFFC;
+        registers.Iptr += 1;
+        if (processToUpdate != null) {
+            debuggerState.processes.move(processToUpdate, registers.Wptr);
+        }
+    }
+
+    private void ret() {
+        Process processToUpdate = runningProcess();
+        registers.Iptr = RIndexWord(registers.Wptr, 0);
+        registers.Wptr = AtWord(TransputerHelpers.extractWorkspacePointer(registers.Wptr), 4) | TransputerHelpers.extractPriorityBit(registers.Wptr);
+        if (processToUpdate != null) {
+            debuggerState.processes.move(processToUpdate, registers.Wptr);
+        }
+    }
+
+    private void startp() {
+        registers.Iptr += 1;
+        int tmp = atByte(registers.Iptr, registers.Breg);
+        WIndexWord(registers.Areg, TransputerConstants.IPTR_S, tmp);
+        runProcess(registers.Areg | TransputerHelpers.extractPriorityBit(registers.Wptr));
+    }
+
+    private void endp() {
+        Process processToUpdate = runningProcess();
+        int tmp = RIndexWord(registers.Areg, 1);
+        if (tmp == 1) {
+            // continue as process with waiting workspace Areg
+            registers.Iptr = RIndexWord(registers.Areg, 0);
+            registers.Wptr = registers.Areg | TransputerHelpers.extractPriorityBit(registers.Wptr);
+            if (processToUpdate != null) {
+                debuggerState.processes.move(processToUpdate, registers.Wptr);
+            }
+        } else {
+            // start next waiting process
+            trace.scheduler(id, SchedulerEvent.END_PROCESS_WAIT);
+            WIndexWord(registers.Areg, 1, tmp - 1);
+            sreg.gotoStartNewProcess = true;
+            if (processToUpdate != null) {
+                debuggerState.processes.terminate(processToUpdate);
+            }
+        }
+    }
+
+    private void runp() {
+        registers.Iptr += 1;
+        runProcess(registers.Areg);
+    }
+
+    private void stopp() {
+        registers.Iptr += 1;
+        WIndexWord(registers.Wptr, TransputerConstants.IPTR_S, registers.Iptr);
+        sreg.gotoStartNewProcess = true;
+    }
+
+    private void ldpri() {
+        registers.Creg = registers.Breg;
+        registers.Breg = registers.Areg;
+        registers.Areg = TransputerHelpers.extractPriorityBit(registers.Wptr);
+        registers.Iptr += 1;
+    }
+
+    private void mint() {
+        registers.Creg = registers.Breg;
+        registers.Breg = registers.Areg;
+        registers.Areg = TransputerConstants.MININT;
+        registers.Iptr += 1;
+    }
+
+    private void alt() {
+        registers.Iptr += 1;
+        WIndexWord(registers.Wptr, TransputerConstants.STATE_S, TransputerConstants.ENABLING_P);
+    }
+
+    private void altwt() {
+        registers.Iptr += 1;
+        WIndexWord(registers.Wptr, 0, TransputerConstants.NONESELECTED_O);
+        registers.Areg = RIndexWord(registers.Wptr, TransputerConstants.STATE_S);
+        if (registers.Areg == TransputerConstants.READY_P) {
+            // Do nothing
+        } else {
+            initiateWait();
+        }
+    }
+
+    private void altend() {
+        registers.Iptr += 1;
+        int tmp = RIndexWord(registers.Wptr, 0);
+        registers.Iptr = atByte(registers.Iptr, tmp);
+    }
+
+    private void ldtimer() {
+        registers.Creg = registers.Breg;
+        registers.Breg = registers.Areg;
+        registers.Areg = ClockReg[TransputerHelpers.extractPriorityBit(registers.Wptr)];
+        registers.Iptr += 1;
+    }
+
+    private void tin() {
+        boolean laterFlag = Later(ClockReg[TransputerHelpers.extractPriorityBit(registers.Wptr)],
+                registers.Areg);
+        if (!laterFlag) {
+            registers.Areg += 1;
+            timerQueueInsertFirstStep();
+        }
+    }
+
+    private void talt() {
+        WIndexWord(registers.Wptr, TransputerConstants.TLINK_S, TransputerConstants.TIMENOTSET_P);
+        WIndexWord(registers.Wptr, TransputerConstants.STATE_S, TransputerConstants.ENABLING_P);
+        registers.Iptr += 1;
+    }
+
+    private void taltwt() {
+        boolean laterFlag;
+        registers.Iptr += 1;
+        WIndexWord(registers.Wptr, 0, TransputerConstants.NONESELECTED_O);
+        registers.Creg = RIndexWord(registers.Wptr, TransputerConstants.STATE_S);
+        if (registers.Creg == TransputerConstants.READY_P) {
+            WIndexWord(registers.Wptr, TransputerConstants.TIME_S, ClockReg[TransputerHelpers.extractPriorityBit(registers.Wptr)]);
+        } else {
+            registers.Breg = RIndexWord(registers.Wptr, TransputerConstants.TLINK_S);
+            if (registers.Breg == TransputerConstants.TIMENOTSET_P) {
+                initiateWait();
+            } else if (registers.Breg == TransputerConstants.TIMESET_P) {
+                registers.Areg = RIndexWord(registers.Wptr, TransputerConstants.TIME_S);
                 laterFlag = Later(ClockReg[TransputerHelpers.extractPriorityBit(registers.Wptr)],
                         registers.Areg);
-                if (!laterFlag) {
-                    registers.Areg += 1;
-                    timerQueueInsertFirstStep();
-                }
-                break;
-            case(TransputerConstants.TALT):
-                stdout.printf("talt\n");
-                WIndexWord(registers.Wptr, TransputerConstants.TLINK_S, TransputerConstants.TIMENOTSET_P);
-                WIndexWord(registers.Wptr, TransputerConstants.STATE_S, TransputerConstants.ENABLING_P);
-                registers.Iptr += 1;
-                break;
-            case(TransputerConstants.TALTWT):
-                stdout.printf("taltwt\n");
-                registers.Iptr += 1;
-                WIndexWord(registers.Wptr, 0, TransputerConstants.NONESELECTED_O);
-                registers.Creg = RIndexWord(registers.Wptr, TransputerConstants.STATE_S);
-                if (registers.Creg == TransputerConstants.READY_P) {
+                if (laterFlag) {
+                    WIndexWord(registers.Wptr, TransputerConstants.STATE_S, TransputerConstants.READY_P);
                     WIndexWord(registers.Wptr, TransputerConstants.TIME_S, ClockReg[TransputerHelpers.extractPriorityBit(registers.Wptr)]);
                 } else {
-                    registers.Breg = RIndexWord(registers.Wptr, TransputerConstants.TLINK_S);
-                    if (registers.Breg == TransputerConstants.TIMENOTSET_P) {
-                        initiateWait();
-                    } else if (registers.Breg == TransputerConstants.TIMESET_P) {
-                        registers.Areg = RIndexWord(registers.Wptr, TransputerConstants.TIME_S);
-                        laterFlag = Later(ClockReg[TransputerHelpers.extractPriorityBit(registers.Wptr)],
-                                registers.Areg);
-                        if (laterFlag) {
-                            WIndexWord(registers.Wptr, TransputerConstants.STATE_S, TransputerConstants.READY_P);
-                            WIndexWord(registers.Wptr, TransputerConstants.TIME_S, ClockReg[TransputerHelpers.extractPriorityBit(registers.Wptr)]);
-                        } else {
-                            registers.Areg += 1;
-                            registers.Iptr -= 1;
-                            timerQueueInsertFirstStep();
-                        }
-                    }
+                    registers.Areg += 1;
+                    registers.Iptr -= 1;
+                    timerQueueInsertFirstStep();
                 }
-                break;
-            case(TransputerConstants.ENBS):
-                stdout.printf("enbs\n");
-                break;
-            case(TransputerConstants.DISS):
-                stdout.printf("diss\n");
-                break;
-            case(TransputerConstants.ENBC):
-                stdout.printf("enbc\n");
-                enableChannel();
-                registers.Iptr += 1;
-                break;
-            case(TransputerConstants.DISC):
-                stdout.printf("disc\n");
-                disableChannel();
-                registers.Iptr += 1;
-                break;
-            case(TransputerConstants.ENBT):
-                stdout.printf("enbt\n");
-                if (registers.Areg != 0 /*FALSE*/) {
-                    tmp = RIndexWord(registers.Wptr, TransputerConstants.TLINK_S);
-                    if (tmp == TransputerConstants.TIMENOTSET_P) {
-                        WIndexWord(registers.Wptr, TransputerConstants.TLINK_S, TransputerConstants.TIMESET_P);
-                        WIndexWord(registers.Wptr, TransputerConstants.TIME_S, registers.Breg);
-                    } else if (tmp == TransputerConstants.TIMESET_P) {
-                        tmp = RIndexWord(registers.Wptr, TransputerConstants.TIME_S);
-                        laterFlag = Later(tmp, registers.Breg);
-                        if (laterFlag) {
-                            WIndexWord(registers.Wptr, TransputerConstants.TIME_S, registers.Breg);
-                        }
-                    }
-                } else if(registers.Areg == 0 /*FALSE*/) {
-                    // Do nothing...
+            }
+        }
+    }
+
+    private void enbc() throws UnexpectedOverflowException {
+        enableChannel();
+        registers.Iptr += 1;
+    }
+
+    private void disc() throws UnexpectedOverflowException {
+        disableChannel();
+        registers.Iptr += 1;
+    }
+
+    private void enbt() {
+        int tmp;
+        boolean laterFlag;
+        if (registers.Areg != 0 /*FALSE*/) {
+            tmp = RIndexWord(registers.Wptr, TransputerConstants.TLINK_S);
+            if (tmp == TransputerConstants.TIMENOTSET_P) {
+                WIndexWord(registers.Wptr, TransputerConstants.TLINK_S, TransputerConstants.TIMESET_P);
+                WIndexWord(registers.Wptr, TransputerConstants.TIME_S, registers.Breg);
+            } else if (tmp == TransputerConstants.TIMESET_P) {
+                tmp = RIndexWord(registers.Wptr, TransputerConstants.TIME_S);
+                laterFlag = Later(tmp, registers.Breg);
+                if (laterFlag) {
+                    WIndexWord(registers.Wptr, TransputerConstants.TIME_S, registers.Breg);
                 }
-                registers.Breg = registers.Creg;
-                registers.Iptr += 1;
-                break;
-            case(TransputerConstants.DIST):
-                stdout.printf("dist\n");
-                registers.Iptr += 1;
-                if (registers.Breg != 0 /*FALSE*/) {
-                    registers.Oreg = RIndexWord(registers.Wptr, TransputerConstants.TLINK_S);
-                    if (registers.Oreg == TransputerConstants.TIMENOTSET_P) {
-                        registers.Areg = 0 /*FALSE*/;
-                    } else if (registers.Oreg == TransputerConstants.TIMESET_P) {
-                        registers.Oreg = RIndexWord(registers.Wptr, TransputerConstants.TIME_S);
-                        laterFlag = Later(registers.Oreg, registers.Creg);
-                        if (laterFlag) {
-                            isThisSelProcess();
-                        } else {
-                            registers.Areg = 0; // FALSE
-                        }
-                    } else {
-                        timerQueueDeleteFirstStep();
-                        registers.Areg = 0; // FALSE
-                    }
-                } else if (registers.Breg == 0 /*FALSE*/) {
+            }
+        } else if(registers.Areg == 0 /*FALSE*/) {
+            // Do nothing...
+        }
+        registers.Breg = registers.Creg;
+        registers.Iptr += 1;
+    }
+
+    private void dist() {
+        boolean laterFlag;
+        registers.Iptr += 1;
+        if (registers.Breg != 0 /*FALSE*/) {
+            registers.Oreg = RIndexWord(registers.Wptr, TransputerConstants.TLINK_S);
+            if (registers.Oreg == TransputerConstants.TIMENOTSET_P) {
+                registers.Areg = 0 /*FALSE*/;
+            } else if (registers.Oreg == TransputerConstants.TIMESET_P) {
+                registers.Oreg = RIndexWord(registers.Wptr, TransputerConstants.TIME_S);
+                laterFlag = Later(registers.Oreg, registers.Creg);
+                if (laterFlag) {
+                    isThisSelProcess();
+                } else {
                     registers.Areg = 0; // FALSE
                 }
-                registers.Oreg = 0;
-                break;
+            } else {
+                timerQueueDeleteFirstStep();
+                registers.Areg = 0; // FALSE
+            }
+        } else if (registers.Breg == 0 /*FALSE*/) {
+            registers.Areg = 0; // FALSE
+        }
+        registers.Oreg = 0;
+    }
 
-            case(TransputerConstants.CSUB):
-                stdout.printf("csub\n");
-                op0 = registers.Areg;
-                op1 = registers.Breg;
-                if(op1 >= op0) {
-                    sreg.errorFlag = true;
-                }
-                registers.Areg = registers.Breg;
-                registers.Breg = registers.Creg;
-                registers.Iptr += 1;
-                break;
-            case(TransputerConstants.CCNT):
-                stdout.printf("ccnt\n");
-                op0 = registers.Areg;
-                op1 = registers.Breg;
-                if(op1 == 0 || op1 > op0) {
-                    sreg.errorFlag = true;
-                }
-                registers.Areg = registers.Breg;
-                registers.Breg = registers.Creg;
-                registers.Iptr += 1;
-                break;
-            case(TransputerConstants.TESTERR):
-                stdout.printf("testerr\n");
-                registers.Creg = registers.Breg;
-                registers.Breg = registers.Areg;
-                registers.Areg = !sreg.errorFlag ? 1 /*TRUE*/ : 0 /*FALSE*/;
-                sreg.errorFlag = false;
-                registers.Iptr += 1;
-                break;
-            case(TransputerConstants.SETERR):
-                stdout.printf("seterr\n");
-                registers.Iptr += 1;
-                sreg.errorFlag = true;
-                break;
-            case(TransputerConstants.STOPERR):
-                stdout.printf("stoperr\n");
-                registers.Iptr += 1;
-                if (sreg.errorFlag) {
-                    WIndexWord(registers.Wptr, TransputerConstants.IPTR_S, registers.Iptr);
-                    sreg.gotoStartNewProcess = true;
-                }
-                break;
-            case(TransputerConstants.CLRHALTERR):
-                stdout.printf("clrhalterr\n");
-                registers.Iptr += 1;
-                sreg.haltOnErr = false;
-                break;
-            case(TransputerConstants.SETHALTERR):
-                stdout.printf("sethalterr\n");
-                registers.Iptr += 1;
-                sreg.haltOnErr = true;
-                break;
-            case(TransputerConstants.TESTHALTERR):
-                stdout.printf("testhalterr");
-                registers.Creg = registers.Breg;
-                registers.Breg = registers.Areg;
-                registers.Areg = (sreg.haltOnErr) ? 1 /*TRUE*/ : 0 /*FALSE*/;
-                registers.Iptr += 1;
-                break;
+    private void csub() {
+        int op0 = registers.Areg;
+        int op1 = registers.Breg;
+        if(op1 >= op0) {
+            sreg.errorFlag = true;
+        }
+        registers.Areg = registers.Breg;
+        registers.Breg = registers.Creg;
+        registers.Iptr += 1;
+    }
+
+    private void ccnt() {
+        int op0 = registers.Areg;
+        int op1 = registers.Breg;
+        if(op1 == 0 || op1 > op0) {
+            sreg.errorFlag = true;
+        }
+        registers.Areg = registers.Breg;
+        registers.Breg = registers.Creg;
+        registers.Iptr += 1;
+    }
 
-            // This is very specific and complicates matters with the input and
-            // output link so we decided against using it.
-            // It is intended to be used in setups that provide special
-            // redundancy.
-            // The commented out implementation assumes that inputLinks have
-            // ports 0-14 and that the outputLink has port 15.
-            case(TransputerConstants.RESETCH):
-                stdout.printf("resetch\n");
+    private void testerr() {
+        registers.Creg = registers.Breg;
+        registers.Breg = registers.Areg;
+        registers.Areg = !sreg.errorFlag ? 1 /*TRUE*/ : 0 /*FALSE*/;
+        sreg.errorFlag = false;
+        registers.Iptr += 1;
+    }
+
+    private void seterr() {
+        registers.Iptr += 1;
+        sreg.errorFlag = true;
+    }
+
+    private void stoperr() {
+        registers.Iptr += 1;
+        if (sreg.errorFlag) {
+            WIndexWord(registers.Wptr, TransputerConstants.IPTR_S, registers.Iptr);
+            sreg.gotoStartNewProcess = true;
+        }
+    }
+
+    private void clrhalterr() {
+        registers.Iptr += 1;
+        sreg.haltOnErr = false;
+    }
+
+    private void sethalterr() {
+        registers.Iptr += 1;
+        sreg.haltOnErr = true;
+    }
+
+    private void testhalterr() {
+        registers.Creg = registers.Breg;
+        registers.Breg = registers.Areg;
+        registers.Areg = (sreg.haltOnErr) ? 1 /*TRUE*/ : 0 /*FALSE*/;
+        registers.Iptr += 1;
+    }
+
+    // This is very specific and complicates matters with the input and
+    // output link so we decided against using it.
+    // It is intended to be used in setups that provide special
+    // redundancy.
+    // The commented out implementation assumes that inputLinks have
+    // ports 0-14 and that the outputLink has port 15.
+    private void resetch() {
 ////        int chan_num;
 //        tmp = RIndexWord(registers.Areg, 0);
 //        WIndexWord(registers.Areg, 0, NOTPROCESS_P);
@@ -1700,47 +2417,33 @@ public class Transputer {
 //
 //        registers.Areg = tmp;
 //        registers.Iptr += 1;
-                break;
-            case(TransputerConstants.STHF):
-                stdout.printf("sthf\n");
-                break;
-            case(TransputerConstants.STLF):
-                stdout.printf("stlf\n");
-                break;
-            case(TransputerConstants.STTIMER):
-                stdout.printf("sttimer\n");
-                break;
-            case(TransputerConstants.STHB):
-                stdout.printf("sthb\n");
-                break;
-            case(TransputerConstants.STLB):
-                stdout.printf("stlb\n");
-                break;
-            case(TransputerConstants.SAVEH):
-                stdout.printf("saveh\n");
-                break;
-            case(TransputerConstants.SAVEL):
-                stdout.printf("savel\n");
-                break;
-            case(TransputerConstants.IN):
-                stdout.printf("in\n");
-                performInput();
-                break;
-            case(TransputerConstants.OUT):
-                stdout.printf("out\n");
-                performOutput();
-                break;
-            case(TransputerConstants.OUTWORD):
-                stdout.printf("outword\n");
-                WIndexWord(registers.Wptr, 0, registers.Areg);
-                registers.Areg = TransputerConstants.BYTESPERWORD;
-                registers.Creg = TransputerHelpers.extractWorkspacePointer(registers.Wptr);
-                performOutput();
-                break;
-            default:
-                System.err.printf("Instruction opcode '%02X' not implemented at Iptr '%08X'\n", opcode, registers.Iptr);
-                System.exit(1);
+    }
+
+    private void in() {
+        performInput();
+    }
+
+    private void out() {
+        performOutput();
+    }
+
+    /**
+     * Configure the I/O pin at the address in Breg as an output if Areg is 1, or an input if it is 0
+     */
+    private void confio() {
+        if (ioPins == null) {
+            ioPins = new IoPins(id);
         }
+        ioPins.configure(registers.Breg, registers.Areg == 1);
+        registers.Areg = registers.Creg;
+        registers.Iptr += 1;
+    }
+
+    private void outword() {
+        WIndexWord(registers.Wptr, 0, registers.Areg);
+        registers.Areg = TransputerConstants.BYTESPERWORD;
+        registers.Creg = TransputerHelpers.extractWorkspacePointer(registers.Wptr);
+        performOutput();
     }
 
     public void printNextInstruction(PrintWriter output) {
@@ -1825,35 +2528,35 @@ public class Transputer {
     public void printProcessList(PrintWriter output) {
         output.printf("## Transputer %d\n", id);
         output.printf("ID Wptr    \t\tStatus\n");
-        int i = 0;
-        for (Process process : debuggerState.processes) {
-            output.printf("%02d 0x%08X\t%s\n", i++, process.getCurrentWptr(), process.status.name());
+        for (Process process : debuggerState.processes.getLive()) {
+            output.printf("%02d 0x%08X\t%s\n", process.getId(), process.getCurrentWptr(), process.status.name());
+        }
+        for (Process process : debuggerState.processes.getHistory()) {
+            output.printf("%02d 0x%08X\t%s\n", process.getId(), process.getCurrentWptr(), process.status.name());
         }
     }
 
     public void printBreakpoints(PrintWriter output) {
-        int i;
-        boolean has_breaks = false;
         output.printf("## Transputer %d\n", id);
-        output.printf("%8s\t%8s\t%8s\n", "Hex addr", "Dec addr", "Value");
-        for (i = 0; i < TransputerConstants.MEMSIZE; i++) {
-            if (debuggerState.breakpoints.contains(i)) {
-                output.printf("%08X\t%8d\t%02X\n", i, i, mem[i]);
-                has_breaks = true;
-            }
-        }
-        if(!has_breaks) {
+        if (debuggerState.breakpoints.isEmpty()) {
             output.printf("There are no set breakpoints\n");
+            return;
+        }
+        output.printf("%8s\t%8s\t%8s\t%8s\t%s\n", "Hex addr", "Dec addr", "Value", "Hits", "Condition");
+        for (Breakpoints.Breakpoint breakpoint : debuggerState.breakpoints.getAll()) {
+            int i = breakpoint.address;
+            output.printf("%08X\t%8d\t%02X\t%8d\t%s\n", i, i, mem.readByte(i), breakpoint.getHits(),
+                    breakpoint.condition == null ? "" : breakpoint.condition);
         }
     }
 
     public void unsetBreakpoint(int addr, PrintWriter output) {
         output.printf("## Transputer %d\n", id);
-        if (addr < 0 || addr >= TransputerConstants.MEMSIZE) {
+        if (addr < 0 || addr >= mem.size()) {
             output.printf("Invalid address\n");
         } else if (!debuggerState.breakpoints.contains(addr)) {
             output.printf("No breakpoint found at Hex_addr:%08X Dec_addr:%-8d Value:%08X\n",
-                    addr, addr, mem[addr]);
+                    addr, addr, mem.readByte(addr));
         } else {
             debuggerState.breakpoints.remove(addr);
             output.printf("Unset breakpoint successful\n");
@@ -1861,46 +2564,201 @@ public class Transputer {
     }
 
     public void setBreakpoint(int addr, PrintWriter output) {
+        setBreakpoint(addr, null, output);
+    }
+
+    /**
+     * @param condition the breakpoint only stops the simulator when this holds, or always if null
+     */
+    public void setBreakpoint(int addr, @Nullable Condition condition, PrintWriter output) {
         output.printf("## Transputer %d\n", id);
-        if (addr < 0 || addr >= TransputerConstants.MEMSIZE) {
+        if (addr < 0 || addr >= mem.size()) {
             output.printf("Invalid address\n");
-        } else if (debuggerState.breakpoints.contains(addr)) {
+        } else if (debuggerState.breakpoints.contains(addr) && condition == null) {
             output.printf("Breakpoint already exists at Hex_addr:%08X Dec_addr:%-8d Value:%08X\n",
-                    addr, addr, mem[addr]);
+                    addr, addr, mem.readByte(addr));
         } else {
-            debuggerState.breakpoints.add(addr);
+            debuggerState.breakpoints.add(new Breakpoints.Breakpoint(addr, condition));
             output.printf("Set breakpoint successful\n");
         }
     }
 
+    public void printWatchpoints(PrintWriter output) {
+        output.printf("## Transputer %d\n", id);
+        if (!debuggerState.watchpoints.isWatching()) {
+            output.printf("There are no set watchpoints\n");
+            return;
+        }
+        output.printf("%8s\t%8s\t%8s\t%8s\t%s\n", "Hex addr", "Length", "Kind", "Hits", "Condition");
+        for (Watchpoints.Watchpoint watchpoint : debuggerState.watchpoints.getAll()) {
+            output.printf("%08X\t%8d\t%8s\t%8d\t%s\n", watchpoint.start, watchpoint.length,
+                    watchpoint.kind.description, watchpoint.getHits(),
+                    watchpoint.condition == null ? "" : watchpoint.condition);
+        }
+    }
+
+    public void unsetWatchpoint(int addr, PrintWriter output) {
+        output.printf("## Transputer %d\n", id);
+        if (debuggerState.watchpoints.remove(addr)) {
+            output.printf("Unset watchpoint successful\n");
+        } else {
+            output.printf("No watchpoint found at Hex_addr:%08X\n", addr);
+        }
+    }
+
+    public void setWatchpoint(int addr, int length, Watchpoints.Kind kind, @Nullable Condition condition,
+                              PrintWriter output) {
+        output.printf("## Transputer %d\n", id);
+        if (addr < 0 || length < 1 || addr > mem.size() - length) {
+            output.printf("Invalid address\n");
+        } else {
+            debuggerState.watchpoints.add(new Watchpoints.Watchpoint(addr, length, kind, condition));
+            output.printf("Set watchpoint successful\n");
+        }
+    }
+
+    /**
+     * Print the watchpoints that fired during the last step.
+     * @return true if any had
+     */
+    public boolean printFiredWatchpoints(PrintWriter output) {
+        if (!debuggerState.watchpoints.hasFired()) {
+            return false;
+        }
+        for (Watchpoints.Watchpoint watchpoint : debuggerState.watchpoints.takeFired()) {
+            output.printf("Transputer %d: watchpoint 0x%08X hit %d times: %s of 0x%08X, next Iptr 0x%08X\n",
+                    id, watchpoint.start, watchpoint.getHits(), watchpoint.wasLastWrite() ? "write" : "read",
+                    watchpoint.getLastAddress(), registers.Iptr);
+        }
+        return true;
+    }
+
+    /**
+     * Run a translated block as one step, counting a step for every byte of it
+     */
+    private void runBlock(CompiledBlock block) throws UnexpectedOverflowException {
+        int end = block.start + block.length;
+        long blockCycles = block.cycles;
+        runningBlock = block;
+        try {
+            block.code.run(registers, blockContext);
+        } catch (BlockExit exit) {
+            // A store overwrote code later in the block, so carry on in the interpreter after it
+            registers.Areg = exit.Areg;
+            registers.Breg = exit.Breg;
+            registers.Creg = exit.Creg;
+            end = exit.Iptr;
+            blockCycles = block.cyclesBefore(end);
+        } finally {
+            runningBlock = null;
+        }
+        registers.Iptr = end;
+        lastStepLength = end - block.start;
+        if (timing != null) {
+            cycles += blockCycles;
+        }
+        if (metrics != null) {
+            metrics.translatedSteps(lastStepLength);
+        }
+        if (coverage != null) {
+            coverage.markRange(block.start, end);
+        }
+    }
+
+    /**
+     * Gives translated blocks access to the workspace and memory of this transputer
+     */
+    private class TransputerBlockContext extends BlockContext {
+        @Override
+        public int workspace() {
+            return TransputerHelpers.extractWorkspacePointer(registers.Wptr);
+        }
+
+        @Override
+        public int readWord(int base, int nth) {
+            return RIndexWord(base, nth);
+        }
+
+        @Override
+        public void writeWord(int base, int nth, int value, int areg, int breg, int creg, int next) {
+            WIndexWord(base, nth, value);
+            int address = AtWord(base, nth);
+            if (address < runningBlock.start + runningBlock.length && address + TransputerConstants.BYTESPERWORD > next) {
+                throw new BlockExit(next, areg, breg, creg);
+            }
+        }
+
+        @Override
+        public void overflowCheck(int opcode, int a, int b) throws UnexpectedOverflowException {
+            Transputer.this.overflowCheck((byte) opcode, a, b);
+        }
+    }
+
     /**
      * Executes a primary instruction, i.e. an instruction which uses the operand as a parameter
      */
     private void executePrimaryInstruction() throws UnexpectedOverflowException {
-        byte opcode = TransputerHelpers.extractOpcode(mem[registers.Iptr]);
-        byte operand = TransputerHelpers.extractDirectOperand(mem[registers.Iptr]);
+        byte opcode;
         Process processToUpdate;
 
-        registers.Oreg = operand | registers.Oreg;
+        if (coverage != null) {
+            coverage.mark(registers.Iptr);
+        }
+
+        if (blockCache != null && registers.Oreg == 0 && debuggerState.breakpoints.isEmpty() &&
+                !debuggerState.watchpoints.isWatching() && !trace.getLevel().includes(TraceLevel.INSTRUCTION) &&
+                registers.Iptr >= codeStart && registers.Iptr < mem.size()) {
+            CompiledBlock block = blockCache.lookup(registers.Iptr);
+            if (block != null) {
+                runBlock(block);
+                return;
+            }
+        }
+
+        int length = 0;
+        if (decodeCache != null && registers.Oreg == 0 && debuggerState.breakpoints.isEmpty()) {
+            length = decodeCache.decode(registers.Iptr);
+        }
+
+        if (length > 0) {
+            // Jump to the last byte of the chain with the whole operand already in Oreg
+            opcode = decodeCache.opcode(registers.Iptr);
+            registers.Oreg = decodeCache.operand(registers.Iptr);
+            registers.Iptr += length - 1;
+            lastStepLength = length;
+            if (timing != null) {
+                cycles += (length - 1) * timing.primaryCycles(TransputerConstants.PFIX);
+            }
+            if (metrics != null) {
+                metrics.foldedPrefixes(length - 1);
+            }
+        } else {
+            opcode = TransputerHelpers.extractOpcode(mem.readByte(registers.Iptr));
+            registers.Oreg = TransputerHelpers.extractDirectOperand(mem.readByte(registers.Iptr)) | registers.Oreg;
+        }
 
-        stdout.printf("Executed ");
+        if (opcode != TransputerConstants.OPR) {
+            trace.instruction(id, registers.Iptr, opcode, false);
+            if (timing != null) {
+                cycles += timing.primaryCycles(opcode);
+            }
+        }
+        if (metrics != null) {
+            metrics.primaryInstruction(opcode);
+        }
         switch(opcode) {
             case(TransputerConstants.PFIX):
-                stdout.printf("pfix\n");
                 registers.Oreg = registers.Oreg << 4;
                 registers.Iptr += 1;
                 break;
             case(TransputerConstants.NFIX):
-                stdout.printf("nfix\n");
                 registers.Oreg = (~registers.Oreg) << 4;
                 registers.Iptr += 1;
                 break;
             case(TransputerConstants.OPR):
-                stdout.printf("opr ");
                 executeSecondaryInstruction();
                 break;
             case(TransputerConstants.LDC):
-                stdout.printf("ldc\n");
                 registers.Creg = registers.Breg;
                 registers.Breg = registers.Areg;
                 registers.Areg = registers.Oreg;
@@ -1908,7 +2766,6 @@ public class Transputer {
                 registers.Iptr += 1;
                 break;
             case(TransputerConstants.LDL):
-                stdout.printf("ldl\n");
                 registers.Creg = registers.Breg;
                 registers.Breg = registers.Areg;
                 registers.Areg = RIndexWord(TransputerHelpers.extractWorkspacePointer(registers.Wptr), registers.Oreg);
@@ -1916,7 +2773,6 @@ public class Transputer {
                 registers.Iptr += 1;
                 break;
             case(TransputerConstants.STL):
-                stdout.printf("stl\n");
                 WIndexWord(TransputerHelpers.extractWorkspacePointer(registers.Wptr), registers.Oreg, registers.Areg);
                 registers.Areg = registers.Breg;
                 registers.Breg = registers.Creg;
@@ -1924,7 +2780,6 @@ public class Transputer {
                 registers.Iptr += 1;
                 break;
             case(TransputerConstants.LDLP):
-                stdout.printf("ldlp\n");
                 registers.Creg = registers.Breg;
                 registers.Breg = registers.Areg;
                 registers.Areg = AtWord(TransputerHelpers.extractWorkspacePointer(registers.Wptr), registers.Oreg);
@@ -1932,7 +2787,6 @@ public class Transputer {
                 registers.Iptr += 1;
                 break;
             case(TransputerConstants.ADC):
-                stdout.printf("adc\n");
                 overflowCheck(TransputerConstants.ADD, registers.Oreg, registers.Areg);
                 registers.Areg = registers.Areg + registers.Oreg;
                 // TODO: OverflowCheck();
@@ -1940,7 +2794,6 @@ public class Transputer {
                 registers.Iptr += 1;
                 break;
             case(TransputerConstants.EQC):
-                stdout.printf("eqc\n");
                 if (registers.Areg == registers.Oreg) {
                     registers.Areg = 1;
                 }
@@ -1951,14 +2804,12 @@ public class Transputer {
                 registers.Iptr += 1;
                 break;
             case(TransputerConstants.J):
-                stdout.printf("j\n");
                 registers.Iptr = atByte(registers.Iptr + 1, registers.Oreg);
                 // TODO
                 //TimeSlice();
                 registers.Oreg = 0;
                 break;
             case(TransputerConstants.CJ):
-                stdout.printf("cj\n");
                 if (registers.Areg == 0) {
                     registers.Iptr = atByte(registers.Iptr + 1, registers.Oreg);
                 }
@@ -1971,55 +2822,47 @@ public class Transputer {
                 registers.Oreg = 0;
                 break;
             case(TransputerConstants.LDNL):
-                stdout.printf("ldnl\n");
                 registers.Areg = RIndexWord(registers.Areg, registers.Oreg);
                 registers.Oreg = 0;
                 registers.Iptr += 1;
                 break;
             case(TransputerConstants.STNL):
-                stdout.printf("stnl\n");
                 WIndexWord(registers.Areg, registers.Oreg, registers.Breg);
                 registers.Areg = registers.Creg;
                 registers.Oreg = 0;
                 registers.Iptr += 1;
                 break;
             case(TransputerConstants.LDNLP):
-                stdout.printf("ldnlp\n");
                 // TODO: Not sure if AtWord is word aligned only!
                 registers.Areg = AtWord(registers.Areg, registers.Oreg);
                 registers.Oreg = 0;
                 registers.Iptr += 1;
                 break;
             case(TransputerConstants.CALL):
-                stdout.printf("call\n");
                 WIndexWord(TransputerHelpers.extractWorkspacePointer(registers.Wptr), -1, registers.Creg);
                 WIndexWord(TransputerHelpers.extractWorkspacePointer(registers.Wptr), -2, registers.Breg);
                 WIndexWord(TransputerHelpers.extractWorkspacePointer(registers.Wptr), -3, registers.Areg);
                 WIndexWord(TransputerHelpers.extractWorkspacePointer(registers.Wptr), -4, registers.Iptr + 1);
-                processToUpdate = debuggerState.processes.stream()
-                        .filter(p -> p.status == ProcessStatus.RUNNING)
-                        .filter(p -> p.getCurrentWptr() == registers.Wptr)
-                        .findFirst().get();
+                processToUpdate = runningProcess();
                 registers.Areg = registers.Iptr + 1;
                 registers.Wptr = AtWord(TransputerHelpers.extractWorkspacePointer(registers.Wptr), -4) | TransputerHelpers.extractPriorityBit(registers.Wptr);
                 registers.Iptr = atByte(registers.Iptr + 1, registers.Oreg);
                 registers.Oreg = 0;
-                processToUpdate.updateWptr(registers.Wptr);
+                if (processToUpdate != null) {
+                    debuggerState.processes.move(processToUpdate, registers.Wptr);
+                }
                 break;
             case(TransputerConstants.AJW):
-                stdout.printf("ajw\n");
-                processToUpdate = debuggerState.processes.stream()
-                        .filter(p -> p.status == ProcessStatus.RUNNING)
-                        .filter(p -> p.getCurrentWptr() == registers.Wptr)
-                        .findFirst().get();
+                processToUpdate = runningProcess();
                 registers.Wptr = AtWord(TransputerHelpers.extractWorkspacePointer(registers.Wptr), registers.Oreg) | TransputerHelpers.extractPriorityBit(registers.Wptr);
                 registers.Oreg = 0;
                 registers.Iptr += 1;
-                processToUpdate.updateWptr(registers.Wptr);
+                if (processToUpdate != null) {
+                    debuggerState.processes.move(processToUpdate, registers.Wptr);
+                }
                 break;
             default:
-                System.err.printf("Instruction opcode '%02X' not implemented at Iptr '%08X'\n", opcode, registers.Iptr);
-                System.exit(1);
+                throw new UnimplementedInstructionException(id, opcode, registers.Iptr);
         }
 
     }
@@ -2118,47 +2961,80 @@ public class Transputer {
      * @return true if the process is valid, false otherwise
      */
     public boolean performStep() throws UnexpectedOverflowException {
-        // completed indicates if current instruction has terminated
-        boolean completed = sreg.gotoStartNewProcess || sreg.ioBit || sreg.moveBit || sreg.timeIns || sreg.timeDel;
+        if (profiler == null) {
+            return step();
+        }
+        int Iptr = registers.Iptr;
+        int Wptr = registers.Wptr;
+        boolean worked = step();
+        if (TransputerHelpers.extractWorkspacePointer(Wptr) == TransputerConstants.NOTPROCESS_P) {
+            profiler.recordIdle(lastStepLength);
+        } else {
+            profiler.record(Iptr, debuggerState.processes.get(Wptr), lastStepLength);
+        }
+        return worked;
+    }
+
+    private boolean step() throws UnexpectedOverflowException {
+        // completed indicates if current instruction has terminated. An idle processor is always between
+        // instructions, so it can still service link requests and low priority timers.
+        boolean completed = sreg.gotoStartNewProcess || sreg.ioBit || sreg.moveBit || sreg.timeIns || sreg.timeDel ||
+                TransputerHelpers.extractWorkspacePointer(registers.Wptr) == TransputerConstants.NOTPROCESS_P;
+        lastStepLength = 1;
 
         if (sreg.gotoStartNewProcess) {
-            stdout.printf("performStep => startNewProcess\n");
+            trace.scheduler(id, SchedulerEvent.STEP_START_NEW_PROCESS);
             startNewProcess();
+            if (timing != null) {
+                cycles += timing.processSwitchCycles();
+            }
             return true;
             // For the timers I think we need to condition on TEnabled as well because
             // otherwise we might find ourselves in an infinite loop comparing the
             // "head" of the timer list to the clock
         } else if (TEnabled[0] && TransputerHelpers.extractPriorityBit(registers.Wptr) == 0 && completed &&
                 Later(ClockReg[0], TNextReg[0])) {
-            stdout.printf("performStep => handleTimerRequest(0), PRIORITY(0)\n");
+            trace.scheduler(id, SchedulerEvent.STEP_TIMER_HIGH);
             handleTimerRequest(HIGH);
+            chargeSchedulerStep();
             return true;
         } else if (completed && checkChannels()) {
+            chargeSchedulerStep();
             return true;
         } else if (TEnabled[0] && TransputerHelpers.extractPriorityBit(registers.Wptr) == 1 &&
                 Later(ClockReg[0], TNextReg[0])) {
-            stdout.printf("performStep => transputer_handle_timer_reg(0), PRIORITY(1)\n");
+            trace.scheduler(id, SchedulerEvent.STEP_TIMER_HIGH_FROM_LOW);
             handleTimerRequest(HIGH);
+            chargeSchedulerStep();
             return true;
         } else if (TEnabled[1] && TransputerHelpers.extractPriorityBit(registers.Wptr) == 1 && completed &&
                 Later(ClockReg[1], TNextReg[1])) {
-            stdout.printf("performStep => transputer_handle_timer_reg(1), PRIORITY(1)\n");
+            trace.scheduler(id, SchedulerEvent.STEP_TIMER_LOW);
             handleTimerRequest(LOW);
+            chargeSchedulerStep();
             return true;
         }
 
         if (TransputerHelpers.extractWorkspacePointer(registers.Wptr) == TransputerConstants.NOTPROCESS_P) {
             // Not sure how to use this
-            stdout.printf("WARNING: performStep() 'Wptr' == NOTPROCESS_P\n");
+            trace.scheduler(id, SchedulerEvent.STEP_NO_PROCESS);
+            if (timing != null) {
+                cycles += timing.idleStepCycles();
+            }
             return false;
         }
 
         if (sreg.timeDel) {
             timerQueueDeleteMiddleStep();
+            chargeSchedulerStep();
         } else if (sreg.timeIns) {
             timerQueueInsertMiddleStep();
+            chargeSchedulerStep();
         } else if (sreg.moveBit) {
             blockMoveMiddleStep();
+            if (timing != null) {
+                cycles += timing.blockMoveStepCycles();
+            }
         } else {
             executePrimaryInstruction();
         }
@@ -2166,6 +3042,103 @@ public class Transputer {
         return true;
     }
 
+    private void chargeSchedulerStep() {
+        if (timing != null) {
+            cycles += timing.schedulerStepCycles();
+        }
+    }
+
+    /**
+     * Advance the clocks and step count by the number of architectural steps the last step took. Steps are only
+     * counted here, so instructions run by a link while it waits for the processor are not counted, with or without
+     * folding.
+     */
+    public void incrementClock() {
+        foldedSteps += lastStepLength - 1;
+        for (int i = 0; i < lastStepLength; i++) {
+            steps += 1;
+            incrementClock(steps);
+        }
+    }
+
+    private boolean isIdle() {
+        return TransputerHelpers.extractWorkspacePointer(registers.Wptr) == TransputerConstants.NOTPROCESS_P &&
+                !sreg.gotoStartNewProcess && !sreg.ioBit && !sreg.moveBit && !sreg.timeIns && !sreg.timeDel &&
+                FptrReg[0] == TransputerConstants.NOTPROCESS_P && FptrReg[1] == TransputerConstants.NOTPROCESS_P;
+    }
+
+    /**
+     * @return true if no process is running or waiting to run, but a timer queue is waiting for the clock. Steps
+     * may then be skipped until the first timer is due, provided no link activity could start a process first.
+     */
+    public boolean isWaitingForTimer() {
+        return isIdle() && (TEnabled[0] || TEnabled[1]);
+    }
+
+    /**
+     * @return true if no process is running or waiting to run, and no timer queue is waiting for the clock. A
+     * process that a link wakes at the end of a step is waiting to run.
+     */
+    public boolean hasNothingToDo() {
+        return isIdle() && !TEnabled[0] && !TEnabled[1];
+    }
+
+    /**
+     * @return true if a message or acknowledgement is being sent or received, or a process is waiting on a link
+     */
+    public boolean hasLinkActivity() {
+        if (pendingAcks != 0 || outputLink.hasData || outputLink.requested ||
+                outputLink.FptrReg != TransputerConstants.NOTPROCESS_P ||
+                outputLink.fromProcessor != TransputerConstants.NOIO ||
+                outputLink.toProcessor != TransputerConstants.NOIO || outputLink.ack != TransputerConstants.NOIO) {
+            return true;
+        }
+        for (InputLink inputLink : inputLinks) {
+            if (inputLink.hasData || inputLink.requested || inputLink.enabled ||
+                    inputLink.fromProcessor != TransputerConstants.NOIO ||
+                    inputLink.toProcessor != TransputerConstants.NOIO || inputLink.ack != TransputerConstants.NOIO) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of steps after which the first enabled timer queue is due, or 0 if one already is. The low
+     * priority clock only ticks on steps that are a multiple of 4.
+     */
+    public long stepsUntilTimer() {
+        long result = Long.MAX_VALUE;
+        if (TEnabled[0]) {
+            result = Math.min(result, ticksUntil(ClockReg[0], TNextReg[0]));
+        }
+        if (TEnabled[1]) {
+            long ticks = ticksUntil(ClockReg[1], TNextReg[1]);
+            result = Math.min(result, ticks == 0 ? 0 : (steps / 4 + ticks) * 4 - steps);
+        }
+        return result;
+    }
+
+    private static long ticksUntil(int clock, int next) {
+        return Later(clock, next) ? 0 : (next - clock) + 1L;
+    }
+
+    /**
+     * Advance the clocks and step count as if `count` idle steps had been taken
+     */
+    public void skipSteps(long count) {
+        ClockReg[0] += (int) count;
+        ClockReg[1] += (int) ((steps + count) / 4 - steps / 4);
+        steps += count;
+        idleSteps += count;
+        if (timing != null) {
+            cycles += count * timing.idleStepCycles();
+        }
+        if (profiler != null) {
+            profiler.recordIdle(count);
+        }
+    }
+
     public void incrementClock(long loopCount) {
         // Increment high priority clock by 1
         ClockReg[0] += 1;
@@ -2176,30 +3149,55 @@ public class Transputer {
         }
     }
 
+    /**
+     * Fill in a checker log record with the registers after the given step.
+     */
+    public void captureChecker(long index, CheckerRecord record) {
+        int[] v = record.values;
+        record.index = index;
+        v[0] = registers.Areg;
+        v[1] = registers.Breg;
+        v[2] = registers.Creg;
+        v[3] = registers.Oreg;
+        v[4] = registers.Iptr;
+        v[5] = registers.Wptr;
+        v[6] = sreg.errorFlag ? 1 : 0;
+        v[7] = sreg.haltOnErr ? 1 : 0;
+        v[8] = FptrReg[0];
+        v[9] = BptrReg[0];
+        v[10] = FptrReg[1];
+        v[11] = BptrReg[1];
+        v[12] = Ereg;
+        v[13] = sreg.gotoStartNewProcess ? 1 : 0;
+        v[14] = sreg.moveBit ? 1 : 0;
+        v[15] = sreg.ioBit ? 1 : 0;
+        v[16] = TNextReg[0];
+        v[17] = TNextReg[1];
+        v[18] = TEnabled[0] ? 1 : 0;
+        v[19] = TEnabled[1] ? 1 : 0;
+        v[20] = sreg.timeIns ? 1 : 0;
+        v[21] = sreg.timeDel ? 1 : 0;
+    }
+
     public void logState(long index, PrintWriter wr) {
         // Dump register values to a file
-        wr.printf("%10X %08X %08X %08X %08X %08X %08X %01b %01b\n",
-                index, registers.Areg, registers.Breg, registers.Creg,
-                registers.Oreg, registers.Iptr, registers.Wptr,
-                sreg.errorFlag, sreg.haltOnErr);
+        logChecker(index, CheckerLevel.STATE, wr);
     }
 
     public void logSched(long index, PrintWriter wr) {
-        // Log the state of the normal registers
-        logState(index, wr);
-        // Log the state of the shceduler registers and status register bits
-        wr.printf("%08X %08X %08X %08X %08X %01b %01b %01b\n",
-                FptrReg[0], BptrReg[0], FptrReg[1], BptrReg[1],
-                Ereg, sreg.gotoStartNewProcess, sreg.moveBit,
-                sreg.ioBit);
+        // Log the state of the normal registers, the scheduler registers and status register bits
+        logChecker(index, CheckerLevel.SCHEDULER, wr);
     }
 
     public void logTimer(long index, PrintWriter wr) {
-        // Log state of the normal and scheduler registers
-        logSched(index, wr);
-        // Log state of the timer registers and status register bits
-        wr.printf("%08X %08X %08b %08b %01b %01b\n",
-                TNextReg[0], TNextReg[1], TEnabled[0],
-                TEnabled[1], sreg.timeIns, sreg.timeDel);
+        // Log state of the normal and scheduler registers, the timer registers and status register bits
+        logChecker(index, CheckerLevel.TIMER, wr);
+    }
+
+    private void logChecker(long index, CheckerLevel level, PrintWriter wr) {
+        CheckerRecord record = new CheckerRecord();
+        record.level = level;
+        captureChecker(index, record);
+        record.print(wr);
     }
 }
@@ -58,6 +58,7 @@ public class TransputerConstants {
     public static final byte IN = 0x07;
     public static final byte OUT = 0x0B;
     public static final byte OUTWORD = 0x0F;
+    public static final byte CONFIO = 0x08;
     public static final byte GCALL = 0x06;
     public static final byte GAJW = 0x3C;
     public static final byte RET = 0x20;
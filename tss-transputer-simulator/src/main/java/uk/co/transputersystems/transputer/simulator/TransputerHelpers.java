@@ -6,6 +6,13 @@ import static uk.co.transputersystems.transputer.simulator.models.Priority.HIGH;
 import static uk.co.transputersystems.transputer.simulator.models.Priority.LOW;
 
 public class TransputerHelpers {
+    /**
+     * The start of the code area in a memory of the given size, as CODESTART is for the default size.
+     */
+    public static int codeStart(int memSize) {
+        return TransputerConstants.MEMSTART + ((memSize - TransputerConstants.MEMSTART) / 2);
+    }
+
     /**
       * Extract Wptr from Wdesc by masking out the priority bit
       */
@@ -0,0 +1,20 @@
+package uk.co.transputersystems.transputer.simulator;
+
+/**
+ * Thrown when a transputer reaches an instruction that the simulator does not implement. The transputer is left at
+ * the instruction and cannot usefully be stepped again.
+ */
+public class UnimplementedInstructionException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    public final int transputer;
+    public final int opcode;
+    public final int iptr;
+
+    public UnimplementedInstructionException(int transputer, int opcode, int iptr) {
+        super(String.format("Instruction opcode '%02X' not implemented at Iptr '%08X' on transputer %d", opcode & 0xFF, iptr, transputer));
+        this.transputer = transputer;
+        this.opcode = opcode & 0xFF;
+        this.iptr = iptr;
+    }
+}
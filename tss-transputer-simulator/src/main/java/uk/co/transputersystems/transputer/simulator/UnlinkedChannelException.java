@@ -0,0 +1,18 @@
+package uk.co.transputersystems.transputer.simulator;
+
+/**
+ * Thrown when a transputer uses a channel to a processor that it is not linked to. The byte or acknowledgement is
+ * not delivered, so the network cannot usefully be stepped again.
+ */
+public class UnlinkedChannelException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    public final int transputer;
+    public final int processor;
+
+    public UnlinkedChannelException(int transputer, int processor) {
+        super(String.format("Transputer %d used a channel to processor %d, but they are not linked", transputer, processor));
+        this.transputer = transputer;
+        this.processor = processor;
+    }
+}
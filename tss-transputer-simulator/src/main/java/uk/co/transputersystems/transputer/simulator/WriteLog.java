@@ -0,0 +1,35 @@
+package uk.co.transputersystems.transputer.simulator;
+
+import java.util.Arrays;
+
+/**
+ * The old contents of every memory word a transputer writes during one step, in the order they were written.
+ */
+class WriteLog {
+    private int[] entries = new int[64];
+    private int size;
+
+    void add(int address, int oldValue) {
+        if (size + 2 > entries.length) {
+            entries = Arrays.copyOf(entries, entries.length * 2);
+        }
+        entries[size++] = address;
+        entries[size++] = oldValue;
+    }
+
+    int size() {
+        return size / 2;
+    }
+
+    int address(int index) {
+        return entries[index * 2];
+    }
+
+    int oldValue(int index) {
+        return entries[index * 2 + 1];
+    }
+
+    void clear() {
+        size = 0;
+    }
+}
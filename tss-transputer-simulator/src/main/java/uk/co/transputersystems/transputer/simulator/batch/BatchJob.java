@@ -0,0 +1,25 @@
+package uk.co.transputersystems.transputer.simulator.batch;
+
+import uk.co.transputersystems.transputer.simulator.topology.Network;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+
+/**
+ * One simulation in a batch: a network to run and, optionally, the output it is expected to produce.
+ */
+public class BatchJob {
+    @Nonnull public final String name;
+    @Nonnull public final Network network;
+    @Nullable public final File expected;
+    // Most loop iterations the job may take, or 0 to use the runner's budget
+    public final long stepBudget;
+
+    public BatchJob(@Nonnull String name, @Nonnull Network network, @Nullable File expected, long stepBudget) {
+        this.name = name;
+        this.network = network;
+        this.expected = expected;
+        this.stepBudget = stepBudget;
+    }
+}
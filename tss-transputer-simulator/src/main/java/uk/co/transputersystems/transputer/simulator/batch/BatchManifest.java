@@ -0,0 +1,22 @@
+package uk.co.transputersystems.transputer.simulator.batch;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchManifest {
+    @Nonnull private List<BatchManifestJob> jobs;
+
+    @Nonnull
+    public List<BatchManifestJob> getJobs() {
+        return jobs;
+    }
+
+    public void setJobs(List<BatchManifestJob> jobs) {
+        this.jobs = jobs == null ? new ArrayList<>() : jobs;
+    }
+
+    public BatchManifest() {
+        jobs = new ArrayList<>();
+    }
+}
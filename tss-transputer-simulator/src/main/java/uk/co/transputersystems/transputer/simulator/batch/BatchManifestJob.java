@@ -0,0 +1,62 @@
+package uk.co.transputersystems.transputer.simulator.batch;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A job in a batch manifest. Either `binaries` or `topology` must be given; paths are relative to the manifest.
+ */
+public class BatchManifestJob {
+    private String name;
+    @Nonnull private List<String> binaries;
+    private String topology;
+    private String expected;
+    private long step_budget;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    @Nonnull
+    public List<String> getBinaries() {
+        return binaries;
+    }
+
+    public void setBinaries(List<String> binaries) {
+        this.binaries = binaries == null ? new ArrayList<>() : binaries;
+    }
+
+    public String getTopology() {
+        return topology;
+    }
+
+    public void setTopology(String topology) {
+        this.topology = topology;
+    }
+
+    public String getExpected() {
+        return expected;
+    }
+
+    public void setExpected(String expected) {
+        this.expected = expected;
+    }
+
+    public long getStep_budget() {
+        return step_budget;
+    }
+
+    public void setStep_budget(long step_budget) {
+        this.step_budget = step_budget;
+    }
+
+    public BatchManifestJob() {
+        binaries = new ArrayList<>();
+        step_budget = 0;
+    }
+}
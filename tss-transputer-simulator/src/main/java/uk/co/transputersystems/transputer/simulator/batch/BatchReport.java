@@ -0,0 +1,123 @@
+package uk.co.transputersystems.transputer.simulator.batch;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Summaries of a batch run for continuous integration: JUnit XML, which most CI servers can display, and JSON.
+ */
+public class BatchReport {
+
+    public static long count(List<BatchResult> results, BatchStatus status) {
+        return results.stream().filter(result -> result.status == status).count();
+    }
+
+    private static long totalNanos(List<BatchResult> results) {
+        return results.stream().mapToLong(result -> result.elapsedNanos).sum();
+    }
+
+    private static String seconds(long nanos) {
+        return String.format("%.3f", nanos / 1e9);
+    }
+
+    /**
+     * Jobs that failed or ran out of steps are reported as failures; jobs that could not be run are errors.
+     */
+    public static void writeJUnitXml(@Nonnull List<BatchResult> results, @Nonnull Writer writer, @Nonnull String suiteName) throws IOException {
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        writer.write(String.format("<testsuite name=\"%s\" tests=\"%d\" failures=\"%d\" errors=\"%d\" skipped=\"0\" time=\"%s\">\n",
+                xml(suiteName), results.size(),
+                count(results, BatchStatus.FAILED) + count(results, BatchStatus.BUDGET_EXCEEDED),
+                count(results, BatchStatus.ERROR), seconds(totalNanos(results))));
+        for (BatchResult result : results) {
+            writer.write(String.format("  <testcase name=\"%s\" classname=\"%s\" time=\"%s\"",
+                    xml(result.job.name), xml(suiteName), seconds(result.elapsedNanos)));
+            switch (result.status) {
+                case PASSED:
+                    writer.write("/>\n");
+                    continue;
+                case FAILED:
+                case BUDGET_EXCEEDED:
+                    writer.write(String.format(">\n    <failure type=\"%s\" message=\"%s\">", result.status.name(), xml(result.message)));
+                    writer.write(xml(result.output));
+                    writer.write("</failure>\n");
+                    break;
+                case ERROR:
+                    writer.write(String.format(">\n    <error type=\"%s\" message=\"%s\">", result.status.name(), xml(result.message)));
+                    writer.write(xml(result.output));
+                    writer.write("</error>\n");
+                    break;
+            }
+            writer.write("  </testcase>\n");
+        }
+        writer.write("</testsuite>\n");
+        writer.flush();
+    }
+
+    public static void writeJson(@Nonnull List<BatchResult> results, @Nonnull Writer writer) throws IOException {
+        writer.write("{\n");
+        writer.write(String.format("  \"total\": %d,\n", results.size()));
+        for (BatchStatus status : BatchStatus.values()) {
+            writer.write(String.format("  \"%s\": %d,\n", status.name().toLowerCase(), count(results, status)));
+        }
+        writer.write(String.format("  \"seconds\": %s,\n", seconds(totalNanos(results))));
+        writer.write("  \"jobs\": [");
+        for (int i = 0; i < results.size(); i++) {
+            BatchResult result = results.get(i);
+            writer.write(i == 0 ? "\n" : ",\n");
+            writer.write(String.format("    {\"name\": %s, \"status\": \"%s\", \"steps\": %d, \"seconds\": %s, \"message\": %s}",
+                    json(result.job.name), result.status.name(), result.steps, seconds(result.elapsedNanos), json(result.message)));
+        }
+        writer.write(results.isEmpty() ? "]\n" : "\n  ]\n");
+        writer.write("}\n");
+        writer.flush();
+    }
+
+    private static String xml(@Nullable String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (char c : text.toCharArray()) {
+            switch (c) {
+                case '<': escaped.append("&lt;"); break;
+                case '>': escaped.append("&gt;"); break;
+                case '&': escaped.append("&amp;"); break;
+                case '"': escaped.append("&quot;"); break;
+                case '\'': escaped.append("&apos;"); break;
+                default:
+                    // Control characters other than whitespace are not allowed in XML 1.0
+                    if (c >= 0x20 || c == '\n' || c == '\r' || c == '\t') {
+                        escaped.append(c);
+                    }
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static String json(@Nullable String text) {
+        if (text == null) {
+            return "null";
+        }
+        StringBuilder escaped = new StringBuilder(text.length() + 2).append('"');
+        for (char c : text.toCharArray()) {
+            switch (c) {
+                case '"': escaped.append("\\\""); break;
+                case '\\': escaped.append("\\\\"); break;
+                case '\n': escaped.append("\\n"); break;
+                case '\r': escaped.append("\\r"); break;
+                case '\t': escaped.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        escaped.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        escaped.append(c);
+                    }
+            }
+        }
+        return escaped.append('"').toString();
+    }
+}
@@ -0,0 +1,24 @@
+package uk.co.transputersystems.transputer.simulator.batch;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+public class BatchResult {
+    @Nonnull public final BatchJob job;
+    @Nonnull public final BatchStatus status;
+    public final long steps;
+    public final long elapsedNanos;
+    // The final state of every transputer
+    @Nonnull public final String output;
+    // Why the job did not pass
+    @Nullable public final String message;
+
+    public BatchResult(@Nonnull BatchJob job, @Nonnull BatchStatus status, long steps, long elapsedNanos, @Nonnull String output, @Nullable String message) {
+        this.job = job;
+        this.status = status;
+        this.steps = steps;
+        this.elapsedNanos = elapsedNanos;
+        this.output = output;
+        this.message = message;
+    }
+}
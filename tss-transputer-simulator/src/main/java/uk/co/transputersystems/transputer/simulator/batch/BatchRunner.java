@@ -0,0 +1,316 @@
+package uk.co.transputersystems.transputer.simulator.batch;
+
+import org.yaml.snakeyaml.Yaml;
+import uk.co.transputersystems.transputer.simulator.ByteBufferMemory;
+import uk.co.transputersystems.transputer.simulator.SimulationState;
+import uk.co.transputersystems.transputer.simulator.Simulator;
+import uk.co.transputersystems.transputer.simulator.Transputer;
+import uk.co.transputersystems.transputer.simulator.TransputerConstants;
+import uk.co.transputersystems.transputer.simulator.UnimplementedInstructionException;
+import uk.co.transputersystems.transputer.simulator.UnlinkedChannelException;
+import uk.co.transputersystems.transputer.simulator.coverage.Coverage;
+import uk.co.transputersystems.transputer.simulator.coverage.CoverageData;
+import uk.co.transputersystems.transputer.simulator.topology.Network;
+import uk.co.transputersystems.transputer.simulator.trace.NullTraceSink;
+import uk.co.transputersystems.transputer.utils.ProgramImage;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs many independent simulations at once on a work-stealing pool. Each job gets its own transputers and
+ * writes nothing to the console; its result holds the final registers and the memory written by every transputer,
+ * in the same form the simulator prints when a run ends.
+ */
+public class BatchRunner {
+    public static final String EXPECTED_SUFFIX = ".expected";
+
+    private final int threads;
+    private final long stepBudget;
+    private final boolean record;
+    private final int jitThreshold;
+    // The coverage of every job run so far, if it is being recorded
+    @Nullable private final CoverageData coverage;
+
+    private BatchRunner(Builder builder) {
+        if (builder.threads < 1) {
+            throw new IllegalArgumentException("At least one thread is needed.");
+        }
+        if (builder.stepBudget < 1) {
+            throw new IllegalArgumentException("The step budget must be positive.");
+        }
+        this.threads = builder.threads;
+        this.stepBudget = builder.stepBudget;
+        this.record = builder.record;
+        this.jitThreshold = builder.jitThreshold;
+        this.coverage = builder.coverage ? new CoverageData() : null;
+    }
+
+    /**
+     * Collects the options of a batch. Anything not set keeps the value the batch simulator uses when the option is
+     * not given.
+     */
+    public static class Builder {
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private long stepBudget = BatchSimulator.DEFAULT_STEP_BUDGET;
+        private boolean record;
+        private int jitThreshold;
+        private boolean coverage;
+
+        public Builder threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * @param stepBudget most loop iterations a job may take unless it sets its own budget
+         */
+        public Builder stepBudget(long stepBudget) {
+            this.stepBudget = stepBudget;
+            return this;
+        }
+
+        /**
+         * @param record write each job's output as its expected output instead of comparing against it
+         */
+        public Builder record(boolean record) {
+            this.record = record;
+            return this;
+        }
+
+        /**
+         * @param jitThreshold entries to a block before it is translated to a JVM class, or 0 to always interpret.
+         *                     Outputs recorded by the interpreter can then be checked against translated code.
+         */
+        public Builder jitThreshold(int jitThreshold) {
+            this.jitThreshold = jitThreshold;
+            return this;
+        }
+
+        /**
+         * @param coverage record the instructions each job executes, merging them into `getCoverage()`
+         */
+        public Builder coverage(boolean coverage) {
+            this.coverage = coverage;
+            return this;
+        }
+
+        public BatchRunner build() {
+            return new BatchRunner(this);
+        }
+    }
+
+    /**
+     * @return the merged coverage of every job run, or null if coverage is not being recorded
+     */
+    @Nullable
+    public CoverageData getCoverage() {
+        return coverage;
+    }
+
+    /**
+     * @return a result for every job, in the same order as the jobs
+     */
+    public List<BatchResult> run(@Nonnull List<BatchJob> jobs) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<ForkJoinTask<BatchResult>> tasks = new ArrayList<>(jobs.size());
+            for (BatchJob job : jobs) {
+                tasks.add(pool.submit(() -> runJob(job)));
+            }
+            return tasks.stream().map(ForkJoinTask::join).collect(Collectors.toList());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public BatchResult runJob(@Nonnull BatchJob job) {
+        long start = System.nanoTime();
+        long budget = job.stepBudget > 0 ? job.stepBudget : stepBudget;
+        Network network = job.network;
+        StringWriter output = new StringWriter();
+        PrintWriter writer = new PrintWriter(output);
+
+        Transputer[] transputers = new Transputer[network.binaries.length];
+        SimulationState state = new SimulationState(transputers);
+        try {
+            for (int i = 0; i < transputers.length; i++) {
+                transputers[i] = new Transputer(i, writer, writer, NullTraceSink.INSTANCE, new ByteBufferMemory(network.memorySizes[i]));
+                if (jitThreshold > 0) {
+                    transputers[i].enableJit(jitThreshold);
+                }
+                if (coverage != null) {
+                    transputers[i].setCoverage(new Coverage(network.memorySizes[i]));
+                }
+                if (transputers[i].loadProgram(network.binaries[i]) != TransputerConstants.SUCCESS) {
+                    writer.flush();
+                    return new BatchResult(job, BatchStatus.ERROR, 0, System.nanoTime() - start, output.toString(),
+                            "Could not load " + network.binaries[i]);
+                }
+                // Only report memory written while running, as the simulator does
+                transputers[i].debuggerState.memAccessed.clearRecent();
+                state.active[i] = true;
+            }
+
+            boolean anyActive = true;
+            while (anyActive) {
+                if (state.loopCount == budget) {
+                    addCoverage(network, transputers);
+                    return new BatchResult(job, BatchStatus.BUDGET_EXCEEDED, state.loopCount, System.nanoTime() - start,
+                            describe(transputers, output, writer), String.format("Still running after %d steps", state.loopCount));
+                }
+                anyActive = Simulator.iterate(state, network.routing, NullTraceSink.INSTANCE, true, null);
+            }
+            addCoverage(network, transputers);
+        } catch (UnimplementedInstructionException | UnlinkedChannelException e) {
+            // Only this job stops, with its registers as they were at the instruction
+            return new BatchResult(job, BatchStatus.ERROR, state.loopCount, System.nanoTime() - start,
+                    describe(transputers, output, writer), e.getMessage());
+        } catch (Exception e) {
+            writer.flush();
+            return new BatchResult(job, BatchStatus.ERROR, state.loopCount, System.nanoTime() - start, output.toString(), e.toString());
+        }
+
+        String result = describe(transputers, output, writer);
+        String message = null;
+        BatchStatus status = BatchStatus.PASSED;
+        try {
+            if (job.expected != null && record) {
+                Files.write(job.expected.toPath(), result.getBytes(StandardCharsets.UTF_8));
+            } else if (job.expected != null) {
+                if (!job.expected.exists()) {
+                    status = BatchStatus.FAILED;
+                    message = "Expected output " + job.expected + " does not exist";
+                } else {
+                    message = compare(new String(Files.readAllBytes(job.expected.toPath()), StandardCharsets.UTF_8), result);
+                    status = message == null ? BatchStatus.PASSED : BatchStatus.FAILED;
+                }
+            }
+        } catch (IOException e) {
+            status = BatchStatus.ERROR;
+            message = e.toString();
+        }
+        return new BatchResult(job, status, state.loopCount, System.nanoTime() - start, result, message);
+    }
+
+    private void addCoverage(Network network, Transputer[] transputers) throws IOException {
+        if (coverage == null) {
+            return;
+        }
+        for (int i = 0; i < transputers.length; i++) {
+            coverage.add(transputers[i].getCoverage(), ProgramImage.load(network.binaries[i]), transputers[i].getCodeStart());
+        }
+    }
+
+    private static String describe(Transputer[] transputers, StringWriter output, PrintWriter writer) {
+        // Anything written while loading or running comes first
+        for (Transputer transputer : transputers) {
+            if (transputer != null) {
+                transputer.printRegisters(writer);
+                transputer.printRecentMemory(writer);
+            }
+        }
+        writer.flush();
+        return output.toString();
+    }
+
+    /**
+     * @return a description of the first line that differs, or null if the outputs match
+     */
+    private static String compare(String expected, String actual) {
+        if (expected.equals(actual)) {
+            return null;
+        }
+        String[] expectedLines = expected.split("\n", -1);
+        String[] actualLines = actual.split("\n", -1);
+        for (int i = 0; i < Math.min(expectedLines.length, actualLines.length); i++) {
+            if (!expectedLines[i].equals(actualLines[i])) {
+                return String.format("Line %d: expected \"%s\" but was \"%s\"", i + 1, expectedLines[i], actualLines[i]);
+            }
+        }
+        return String.format("Expected %d lines but there were %d", expectedLines.length, actualLines.length);
+    }
+
+    /**
+     * One job for every binary under a directory, named by its path relative to the directory. A binary's expected
+     * output is the file next to it with `.expected` appended to its name.
+     */
+    public static List<BatchJob> fromDirectory(@Nonnull File directory) throws IOException {
+        Path root = directory.toPath();
+        List<Path> binaries;
+        try (Stream<Path> paths = Files.walk(root)) {
+            binaries = paths
+                    .filter(Files::isRegularFile)
+                    .filter(path -> !path.toString().endsWith(EXPECTED_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        List<BatchJob> jobs = new ArrayList<>();
+        for (Path path : binaries) {
+            File binary = path.toFile();
+            if (isBinary(binary)) {
+                jobs.add(new BatchJob(root.relativize(path).toString(), Network.fullyConnected(Collections.singletonList(binary)),
+                        new File(binary.getPath() + EXPECTED_SUFFIX), 0));
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * Load the jobs listed in a manifest `yaml` file.
+     */
+    public static List<BatchJob> fromManifest(@Nonnull File manifest) throws IOException {
+        BatchManifest config;
+        try (Reader reader = Files.newBufferedReader(manifest.toPath())) {
+            config = new Yaml().loadAs(reader, BatchManifest.class);
+        }
+        File directory = manifest.getAbsoluteFile().getParentFile();
+
+        List<BatchJob> jobs = new ArrayList<>();
+        for (int i = 0; i < config.getJobs().size(); i++) {
+            BatchManifestJob job = config.getJobs().get(i);
+            String name = job.getName() == null ? "job" + i : job.getName();
+            Network network;
+            if (job.getTopology() != null) {
+                if (!job.getBinaries().isEmpty()) {
+                    throw new IOException("Job " + name + " has both binaries and a topology");
+                }
+                network = Network.load(new File(directory, job.getTopology()));
+            } else if (!job.getBinaries().isEmpty()) {
+                network = Network.fullyConnected(job.getBinaries().stream()
+                        .map(binary -> new File(directory, binary))
+                        .collect(Collectors.toList()));
+            } else {
+                throw new IOException("Job " + name + " has no binaries");
+            }
+            File expected = job.getExpected() == null ? null : new File(directory, job.getExpected());
+            jobs.add(new BatchJob(name, network, expected, job.getStep_budget()));
+        }
+        return jobs;
+    }
+
+    private static boolean isBinary(File file) throws IOException {
+        if (ProgramImage.isImage(file)) {
+            return true;
+        }
+        byte[] start = "Start address:".getBytes(StandardCharsets.US_ASCII);
+        byte[] header = new byte[start.length];
+        try (InputStream input = new FileInputStream(file)) {
+            int read = input.read(header);
+            return read == header.length && Arrays.equals(header, start);
+        }
+    }
+}
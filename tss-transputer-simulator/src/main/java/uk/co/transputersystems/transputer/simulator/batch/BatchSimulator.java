@@ -0,0 +1,167 @@
+package uk.co.transputersystems.transputer.simulator.batch;
+
+import joptsimple.OptionException;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import uk.co.transputersystems.transputer.simulator.coverage.CoverageData;
+import uk.co.transputersystems.transputer.simulator.coverage.CoverageHtml;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Headless command line entry point for running a regression corpus. The exit status is 0 if every job passed,
+ * 1 if any did not, and 2 if the options were wrong.
+ */
+public class BatchSimulator {
+
+    public static final long DEFAULT_STEP_BUDGET = 10000000;
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    public static int run(String[] args) {
+        OptionParser optionParser = new OptionParser();
+
+        OptionSpec<File> dirArg = optionParser
+                .accepts("dir")
+                .withRequiredArg()
+                .ofType(File.class)
+                .describedAs("run every binary under a directory, comparing against <binary>.expected");
+
+        OptionSpec<File> manifestArg = optionParser
+                .accepts("manifest")
+                .withRequiredArg()
+                .ofType(File.class)
+                .describedAs("run the jobs listed in a yaml file");
+
+        OptionSpec<Integer> threadsArg = optionParser
+                .accepts("threads")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(Runtime.getRuntime().availableProcessors())
+                .describedAs("number of jobs to run at once");
+
+        OptionSpec<Long> stepBudgetArg = optionParser
+                .accepts("step-budget")
+                .withRequiredArg()
+                .ofType(Long.class)
+                .defaultsTo(DEFAULT_STEP_BUDGET)
+                .describedAs("steps a job may take before it is stopped, unless the manifest says otherwise");
+
+        OptionSpec<File> junitXmlArg = optionParser
+                .accepts("junit-xml")
+                .withRequiredArg()
+                .ofType(File.class)
+                .describedAs("write a JUnit XML report");
+
+        OptionSpec<File> jsonArg = optionParser
+                .accepts("json")
+                .withRequiredArg()
+                .ofType(File.class)
+                .describedAs("write a JSON report");
+
+        OptionSpec<Void> recordArg = optionParser.accepts("record");
+
+        OptionSpec<Void> jitArg = optionParser.accepts("jit");
+
+        OptionSpec<Integer> jitThresholdArg = optionParser
+                .accepts("jit-threshold")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(100)
+                .describedAs("entries to a block before it is translated");
+
+        OptionSpec<File> coverageArg = optionParser
+                .accepts("coverage")
+                .withRequiredArg()
+                .ofType(File.class)
+                .describedAs("write the merged coverage of every job as an LCOV tracefile");
+
+        OptionSpec<File> coverageHtmlArg = optionParser
+                .accepts("coverage-html")
+                .withRequiredArg()
+                .ofType(File.class)
+                .describedAs("write an HTML report of the merged coverage of every job to a directory");
+
+        List<BatchResult> results;
+        CoverageData coverage;
+        OptionSet options;
+        try {
+            options = optionParser.parse(args);
+            if (!options.has(dirArg) && !options.has(manifestArg)) {
+                throw new IllegalArgumentException("A directory or a manifest must be supplied.");
+            }
+
+            List<BatchJob> jobs = new ArrayList<>();
+            for (File directory : options.valuesOf(dirArg)) {
+                jobs.addAll(BatchRunner.fromDirectory(directory));
+            }
+            for (File manifest : options.valuesOf(manifestArg)) {
+                jobs.addAll(BatchRunner.fromManifest(manifest));
+            }
+
+            if (options.has(jitArg) && options.valueOf(jitThresholdArg) < 1) {
+                throw new IllegalArgumentException("The JIT threshold must be at least 1.");
+            }
+            BatchRunner runner = new BatchRunner.Builder()
+                    .threads(options.valueOf(threadsArg))
+                    .stepBudget(options.valueOf(stepBudgetArg))
+                    .record(options.has(recordArg))
+                    .jitThreshold(options.has(jitArg) ? options.valueOf(jitThresholdArg) : 0)
+                    .coverage(options.has(coverageArg) || options.has(coverageHtmlArg))
+                    .build();
+            results = runner.run(jobs);
+            coverage = runner.getCoverage();
+        } catch (OptionException | IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            try {
+                optionParser.printHelpOn(System.err);
+            } catch (IOException ignored) {
+            }
+            return 2;
+        } catch (IOException e) {
+            System.err.println("Could not load jobs: " + e.getMessage());
+            return 2;
+        }
+
+        try {
+            if (options.has(junitXmlArg)) {
+                try (Writer writer = new FileWriter(options.valueOf(junitXmlArg))) {
+                    BatchReport.writeJUnitXml(results, writer, "transputer-simulator");
+                }
+            }
+            if (options.has(jsonArg)) {
+                try (Writer writer = new FileWriter(options.valueOf(jsonArg))) {
+                    BatchReport.writeJson(results, writer);
+                }
+            }
+            if (options.has(coverageArg)) {
+                try (Writer writer = new BufferedWriter(new FileWriter(options.valueOf(coverageArg)))) {
+                    coverage.writeLcov(writer);
+                }
+            }
+            if (options.has(coverageHtmlArg)) {
+                CoverageHtml.write(coverage, options.valueOf(coverageHtmlArg));
+            }
+        } catch (IOException e) {
+            System.err.println("Could not write report: " + e.getMessage());
+        }
+
+        for (BatchResult result : results) {
+            if (result.status != BatchStatus.PASSED) {
+                System.out.printf("%s %s: %s\n", result.status, result.job.name, result.message);
+            }
+        }
+        long passed = BatchReport.count(results, BatchStatus.PASSED);
+        System.out.printf("# %d of %d jobs passed\n", passed, results.size());
+        return passed == results.size() ? 0 : 1;
+    }
+}
@@ -0,0 +1,8 @@
+package uk.co.transputersystems.transputer.simulator.batch;
+
+public enum BatchStatus {
+    PASSED,         // Ran to completion and matched the expected output, if there was one
+    FAILED,         // Ran to completion but the output differed from the expected output
+    BUDGET_EXCEEDED,// Still running when the step budget ran out
+    ERROR           // Could not be loaded or stopped with an exception
+}
@@ -0,0 +1,95 @@
+package uk.co.transputersystems.transputer.simulator.checker;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static uk.co.transputersystems.transputer.simulator.checker.CheckerLogFormat.*;
+
+/**
+ * Reads checker logs written by {@link BinaryCheckerLogWriter}.
+ */
+public class BinaryCheckerLogReader extends CheckerLogReader {
+
+    private static final CheckerLevel[] LEVELS = CheckerLevel.values();
+
+    private final DataInputStream input;
+    private final CheckerLevel level;
+    private final boolean delta;
+    private CheckerRecord[] previous = new CheckerRecord[0];
+
+    public BinaryCheckerLogReader(@Nonnull InputStream input) throws IOException {
+        this.input = new DataInputStream(input instanceof BufferedInputStream ? input : new BufferedInputStream(input, 1 << 16));
+        if (this.input.readInt() != MAGIC) {
+            throw new IOException("Not a binary checker log.");
+        }
+        int version = this.input.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported checker log version " + version + ".");
+        }
+        int level = this.input.readUnsignedByte();
+        if (level >= LEVELS.length) {
+            throw new IOException("Malformed checker log: unknown level " + level + ".");
+        }
+        this.level = LEVELS[level];
+        this.delta = this.input.readBoolean();
+    }
+
+    public CheckerLevel getLevel() {
+        return level;
+    }
+
+    @Override
+    public boolean next(@Nonnull CheckerRecord record) throws IOException {
+        int first = input.read();
+        if (first < 0) {
+            return false;
+        }
+        record.level = level;
+        if (delta) {
+            readDelta(record, first);
+        } else {
+            record.transputer = (first << 8) | input.readUnsignedByte();
+            record.index = input.readLong();
+            for (int i = 0; i < level.fields; i++) {
+                record.values[i] = CheckerRecord.isFlag(i) ? input.readUnsignedByte() : input.readInt();
+            }
+        }
+        return true;
+    }
+
+    private void readDelta(CheckerRecord record, int first) throws IOException {
+        long transputer = readVarint(input, first);
+        if (transputer > 0xFFFF) {
+            throw new IOException("Malformed checker log: transputer " + transputer + ".");
+        }
+        if (transputer >= previous.length) {
+            int length = previous.length;
+            previous = Arrays.copyOf(previous, (int) transputer + 1);
+            for (int i = length; i < previous.length; i++) {
+                previous[i] = new CheckerRecord();
+            }
+        }
+        CheckerRecord last = previous[(int) transputer];
+
+        last.index += unzigzag(readVarint(input));
+        long changed = readVarint(input);
+        for (int i = 0; i < level.fields; i++) {
+            if ((changed & (1L << i)) != 0) {
+                last.values[i] += (int) unzigzag(readVarint(input));
+            }
+        }
+
+        record.transputer = (int) transputer;
+        record.index = last.index;
+        System.arraycopy(last.values, 0, record.values, 0, level.fields);
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
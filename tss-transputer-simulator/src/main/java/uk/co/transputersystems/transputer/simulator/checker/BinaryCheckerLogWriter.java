@@ -0,0 +1,87 @@
+package uk.co.transputersystems.transputer.simulator.checker;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import static uk.co.transputersystems.transputer.simulator.checker.CheckerLogFormat.*;
+
+/**
+ * Writes checker logs as binary records, which are far smaller and quicker to write than text. Use
+ * {@link CheckerLogReader} to read them back, e.g. to print them in the text format.
+ */
+public class BinaryCheckerLogWriter extends CheckerLogWriter {
+
+    private final DataOutputStream output;
+    private final boolean delta;
+    // The last record written for each transputer, when delta encoding
+    private CheckerRecord[] previous = new CheckerRecord[0];
+
+    public BinaryCheckerLogWriter(@Nonnull OutputStream output, @Nonnull CheckerLevel level, boolean delta) throws IOException {
+        super(level);
+        this.output = new DataOutputStream(new BufferedOutputStream(output, 1 << 16));
+        this.delta = delta;
+
+        this.output.writeInt(MAGIC);
+        this.output.writeByte(VERSION);
+        this.output.writeByte(level.ordinal());
+        this.output.writeBoolean(delta);
+    }
+
+    @Override
+    public void write(@Nonnull CheckerRecord record) throws IOException {
+        if (record.transputer < 0 || record.transputer > 0xFFFF) {
+            throw new IllegalArgumentException("Binary checker logs need a transputer between 0 and 65535.");
+        }
+        if (delta) {
+            writeDelta(record);
+        } else {
+            output.writeShort(record.transputer);
+            output.writeLong(record.index);
+            for (int i = 0; i < level.fields; i++) {
+                if (CheckerRecord.isFlag(i)) {
+                    output.writeByte(record.values[i]);
+                } else {
+                    output.writeInt(record.values[i]);
+                }
+            }
+        }
+    }
+
+    private void writeDelta(CheckerRecord record) throws IOException {
+        if (record.transputer >= previous.length) {
+            int length = previous.length;
+            previous = Arrays.copyOf(previous, record.transputer + 1);
+            for (int i = length; i < previous.length; i++) {
+                previous[i] = new CheckerRecord();
+            }
+        }
+        CheckerRecord last = previous[record.transputer];
+
+        int changed = 0;
+        for (int i = 0; i < level.fields; i++) {
+            if (record.values[i] != last.values[i]) {
+                changed |= 1 << i;
+            }
+        }
+        writeVarint(output, record.transputer);
+        writeVarint(output, zigzag(record.index - last.index));
+        writeVarint(output, changed);
+        for (int i = 0; i < level.fields; i++) {
+            if ((changed & (1 << i)) != 0) {
+                writeVarint(output, zigzag(record.values[i] - last.values[i]));
+            }
+        }
+
+        last.index = record.index;
+        System.arraycopy(record.values, 0, last.values, 0, level.fields);
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+}
@@ -0,0 +1,17 @@
+package uk.co.transputersystems.transputer.simulator.checker;
+
+/**
+ * How a checker log is written to its file.
+ */
+public enum CheckerFormat {
+    TEXT,           // One printf formatted line per level, as read by the Verilog testbench
+    BINARY,         // Fixed-size binary records
+    DELTA;          // Binary records holding only the registers that changed since the transputer's last record
+
+    /**
+     * Parse a format name as given on the command line, ignoring case.
+     */
+    public static CheckerFormat parse(String name) {
+        return CheckerFormat.valueOf(name.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,24 @@
+package uk.co.transputersystems.transputer.simulator.checker;
+
+/**
+ * Which registers a checker log records. Each level includes the registers of the levels before it, and adds one
+ * line to every record of the text format.
+ */
+public enum CheckerLevel {
+    STATE(8),           // Areg to Wptr and the error flags, as written by --verilog-testbench-gen
+    SCHEDULER(16),      // Process queues, Ereg and scheduler status bits, as written by --scheduler-test
+    TIMER(22);          // Timer queues and timer status bits, as written by --timer-test
+
+    /**
+     * The number of values recorded at this level, not counting the step index.
+     */
+    public final int fields;
+
+    CheckerLevel(int fields) {
+        this.fields = fields;
+    }
+
+    public boolean includes(CheckerLevel level) {
+        return this.compareTo(level) >= 0;
+    }
+}
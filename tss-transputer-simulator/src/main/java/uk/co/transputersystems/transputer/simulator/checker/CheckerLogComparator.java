@@ -0,0 +1,76 @@
+package uk.co.transputersystems.transputer.simulator.checker;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Compares two checker logs record by record, e.g. a log written by the simulator against one captured from the
+ * hardware. Neither log is held in memory, so logs of any size can be compared.
+ */
+public class CheckerLogComparator {
+
+    private CheckerLogComparator() {
+    }
+
+    /**
+     * @param maxReported the number of differing records to describe; later ones are only counted
+     * @return the number of records that differ, counting a log that ends early as one more
+     */
+    public static long compare(@Nonnull CheckerLogReader expected, @Nonnull CheckerLogReader actual,
+                               @Nonnull PrintWriter output, long maxReported) throws IOException {
+        CheckerRecord expectedRecord = new CheckerRecord();
+        CheckerRecord actualRecord = new CheckerRecord();
+        StringBuilder difference = new StringBuilder();
+        long records = 0;
+        long differences = 0;
+
+        while (true) {
+            boolean hasExpected = expected.next(expectedRecord);
+            boolean hasActual = actual.next(actualRecord);
+            if (!hasExpected || !hasActual) {
+                if (hasExpected != hasActual) {
+                    differences++;
+                    output.printf("%s log ends after %d records\n", hasExpected ? "The actual" : "The expected", records);
+                }
+                break;
+            }
+            records++;
+
+            difference.setLength(0);
+            describe(expectedRecord, actualRecord, difference);
+            if (difference.length() > 0) {
+                differences++;
+                if (differences <= maxReported) {
+                    output.printf("record %d (step %X):%s\n", records, expectedRecord.index, difference);
+                }
+            }
+        }
+
+        if (differences > maxReported) {
+            output.printf("%d more records differ\n", differences - maxReported);
+        }
+        output.printf("# Compared %d records, %d differ\n", records, differences);
+        output.flush();
+        return differences;
+    }
+
+    private static void describe(CheckerRecord expected, CheckerRecord actual, StringBuilder difference) {
+        if (expected.level != actual.level) {
+            difference.append(String.format(" level expected %s, found %s;", expected.level, actual.level));
+        }
+        if (expected.index != actual.index) {
+            difference.append(String.format(" step expected %X, found %X;", expected.index, actual.index));
+        }
+        int fields = Math.min(expected.level.fields, actual.level.fields);
+        for (int i = 0; i < fields; i++) {
+            if (expected.values[i] != actual.values[i]) {
+                difference.append(String.format(" %s expected %08X, found %08X;",
+                        CheckerRecord.FIELDS[i], expected.values[i], actual.values[i]));
+            }
+        }
+        if (difference.length() > 0) {
+            difference.setLength(difference.length() - 1);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package uk.co.transputersystems.transputer.simulator.checker;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Constants and variable-length integers shared by the binary checker log writer and reader.
+ * <p>
+ * A binary log starts with {@link #MAGIC}, a version byte, the level and a byte that is 1 if records are delta
+ * encoded. A plain record is the transputer as a short, the step index as a long and then each value, as an int for
+ * a register or a byte for a status bit. A delta record is the transputer, the change in step index since the
+ * transputer's last record, a mask of the values that changed, and the change in each of those values, all as
+ * variable-length integers.
+ */
+final class CheckerLogFormat {
+    static final int MAGIC = 0x5453434B; // "TSCK"
+    static final byte VERSION = 1;
+
+    private CheckerLogFormat() {
+    }
+
+    static void writeVarint(DataOutput output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    static long readVarint(DataInput input, int first) throws IOException {
+        long value = first & 0x7F;
+        int shift = 7;
+        int b = first;
+        while ((b & 0x80) != 0) {
+            if (shift > 63) {
+                throw new IOException("Malformed checker log: variable-length integer is too long.");
+            }
+            b = input.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+
+    static long readVarint(DataInput input) throws IOException {
+        return readVarint(input, input.readUnsignedByte());
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,49 @@
+package uk.co.transputersystems.transputer.simulator.checker;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a checker log one record at a time, so that logs of any size can be read in constant memory.
+ */
+public abstract class CheckerLogReader implements Closeable {
+
+    /**
+     * Open a log written in any format, by the simulator or by a hardware testbench.
+     */
+    public static CheckerLogReader open(@Nonnull File file) throws IOException {
+        return open(new FileInputStream(file));
+    }
+
+    public static CheckerLogReader open(@Nonnull InputStream input) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(input, 1 << 16);
+        buffered.mark(4);
+        int magic = 0;
+        for (int i = 0; i < 4; i++) {
+            int b = buffered.read();
+            magic = (magic << 8) | (b & 0xFF);
+            if (b < 0) {
+                magic = 0;
+                break;
+            }
+        }
+        buffered.reset();
+        if (magic == CheckerLogFormat.MAGIC) {
+            return new BinaryCheckerLogReader(buffered);
+        }
+        return new TextCheckerLogReader(new InputStreamReader(buffered, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Read the next record.
+     * @return false if there are no more records
+     */
+    public abstract boolean next(@Nonnull CheckerRecord record) throws IOException;
+}
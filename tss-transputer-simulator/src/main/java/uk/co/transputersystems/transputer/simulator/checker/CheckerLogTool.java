@@ -0,0 +1,104 @@
+package uk.co.transputersystems.transputer.simulator.checker;
+
+import joptsimple.OptionException;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.List;
+
+/**
+ * Command line entry point for converting checker logs to text and comparing them. The exit status is 0 on success
+ * or if the logs match, 1 if they differ, and 2 if the options were wrong or a log could not be read.
+ */
+public class CheckerLogTool {
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    public static int run(String[] args) {
+        OptionParser optionParser = new OptionParser();
+
+        OptionSpec<File> textArg = optionParser
+                .accepts("text")
+                .withRequiredArg()
+                .ofType(File.class)
+                .describedAs("print a checker log in the text format");
+
+        OptionSpec<File> outputArg = optionParser
+                .accepts("output")
+                .withRequiredArg()
+                .ofType(File.class)
+                .describedAs("write the text to a file instead of standard output");
+
+        OptionSpec<Void> compareArg = optionParser.accepts("compare", "compare the expected log with the actual log");
+
+        OptionSpec<Long> maxDifferencesArg = optionParser
+                .accepts("max-differences")
+                .withRequiredArg()
+                .ofType(Long.class)
+                .defaultsTo(20L)
+                .describedAs("differing records to describe when comparing");
+
+        OptionSpec<File> logsArg = optionParser
+                .nonOptions()
+                .ofType(File.class)
+                .describedAs("logs to compare: expected then actual");
+
+        OptionSet options;
+        List<File> logs;
+        try {
+            options = optionParser.parse(args);
+            logs = options.valuesOf(logsArg);
+            if (options.has(textArg) == options.has(compareArg)) {
+                throw new IllegalArgumentException("Either --text or --compare must be given.");
+            }
+            if (options.has(compareArg) && logs.size() != 2) {
+                throw new IllegalArgumentException("--compare needs an expected and an actual log.");
+            }
+        } catch (OptionException | IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            try {
+                optionParser.printHelpOn(System.err);
+            } catch (IOException ignored) {
+            }
+            return 2;
+        }
+
+        try {
+            if (options.has(textArg)) {
+                PrintWriter output = options.has(outputArg)
+                        ? new PrintWriter(new BufferedWriter(new FileWriter(options.valueOf(outputArg)), 1 << 16))
+                        : new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16));
+                try (CheckerLogReader reader = CheckerLogReader.open(options.valueOf(textArg))) {
+                    CheckerRecord record = new CheckerRecord();
+                    while (reader.next(record)) {
+                        record.print(output);
+                    }
+                } finally {
+                    output.flush();
+                    if (options.has(outputArg)) {
+                        output.close();
+                    }
+                }
+                return 0;
+            } else {
+                PrintWriter output = new PrintWriter(new OutputStreamWriter(System.out));
+                try (CheckerLogReader expected = CheckerLogReader.open(logs.get(0));
+                     CheckerLogReader actual = CheckerLogReader.open(logs.get(1))) {
+                    return CheckerLogComparator.compare(expected, actual, output, options.valueOf(maxDifferencesArg)) == 0 ? 0 : 1;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not read checker log: " + e.getMessage());
+            return 2;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package uk.co.transputersystems.transputer.simulator.checker;
+
+import uk.co.transputersystems.transputer.simulator.Transputer;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Writes the register state of transputers step by step, for checking the simulator against the hardware.
+ */
+public abstract class CheckerLogWriter implements Closeable {
+
+    protected final CheckerLevel level;
+    private final CheckerRecord record = new CheckerRecord();
+
+    protected CheckerLogWriter(@Nonnull CheckerLevel level) {
+        this.level = level;
+    }
+
+    public static CheckerLogWriter open(@Nonnull File file, @Nonnull CheckerLevel level, @Nonnull CheckerFormat format) throws IOException {
+        switch (format) {
+            case TEXT:
+                return new TextCheckerLogWriter(new FileWriter(file, false), level);
+            default:
+                return new BinaryCheckerLogWriter(new FileOutputStream(file), level, format == CheckerFormat.DELTA);
+        }
+    }
+
+    public CheckerLevel getLevel() {
+        return level;
+    }
+
+    /**
+     * Record the state of a transputer after the given step.
+     */
+    public void log(int id, @Nonnull Transputer transputer, long index) throws IOException {
+        record.level = level;
+        record.transputer = id;
+        transputer.captureChecker(index, record);
+        write(record);
+    }
+
+    /**
+     * Write a record, up to the level of this log.
+     */
+    public abstract void write(@Nonnull CheckerRecord record) throws IOException;
+}
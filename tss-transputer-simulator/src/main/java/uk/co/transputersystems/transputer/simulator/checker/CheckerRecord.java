@@ -0,0 +1,54 @@
+package uk.co.transputersystems.transputer.simulator.checker;
+
+import java.io.PrintWriter;
+
+/**
+ * The registers of one transputer after one step, as recorded in a checker log. Values are held in the order they
+ * are printed, with status bits as 0 or 1.
+ */
+public class CheckerRecord {
+
+    public static final String[] FIELDS = {
+            "Areg", "Breg", "Creg", "Oreg", "Iptr", "Wptr", "ErrorFlag", "HaltOnErr",
+            "FptrReg0", "BptrReg0", "FptrReg1", "BptrReg1", "Ereg", "GotoStartNewProcess", "MoveBit", "IoBit",
+            "TNextReg0", "TNextReg1", "TEnabled0", "TEnabled1", "TimeIns", "TimeDel"
+    };
+
+    // Bit i is set if value i is a status bit rather than a register
+    static final int FLAGS = 1 << 6 | 1 << 7 | 1 << 13 | 1 << 14 | 1 << 15 | 1 << 18 | 1 << 19 | 1 << 20 | 1 << 21;
+
+    public CheckerLevel level = CheckerLevel.STATE;
+    // The transputer the record came from, or -1 if the log does not say
+    public int transputer = -1;
+    public long index;
+    public final int[] values = new int[CheckerLevel.TIMER.fields];
+
+    public static boolean isFlag(int field) {
+        return (FLAGS & (1 << field)) != 0;
+    }
+
+    public void copyFrom(CheckerRecord other) {
+        level = other.level;
+        transputer = other.transputer;
+        index = other.index;
+        System.arraycopy(other.values, 0, values, 0, values.length);
+    }
+
+    /**
+     * Print the record in the text format read by the Verilog testbench, with status bits as 1 or 0.
+     */
+    public void print(PrintWriter wr) {
+        int[] v = values;
+        wr.printf("%10X %08X %08X %08X %08X %08X %08X %d %d\n",
+                index, v[0], v[1], v[2], v[3], v[4], v[5], v[6], v[7]);
+        if (level.includes(CheckerLevel.SCHEDULER)) {
+            wr.printf("%08X %08X %08X %08X %08X %d %d %d\n",
+                    v[8], v[9], v[10], v[11], v[12], v[13], v[14], v[15]);
+        }
+        if (level.includes(CheckerLevel.TIMER)) {
+            // The timer enable bits are printed as 8 binary digits
+            wr.printf("%08X %08X %08d %08d %d %d\n",
+                    v[16], v[17], v[18], v[19], v[20], v[21]);
+        }
+    }
+}
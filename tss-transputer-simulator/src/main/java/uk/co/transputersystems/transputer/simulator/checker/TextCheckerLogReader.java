@@ -0,0 +1,111 @@
+package uk.co.transputersystems.transputer.simulator.checker;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads checker logs in the text format, as written by the simulator or by the Verilog testbench. The level of each
+ * record is worked out from the lines that follow its first, which have a different number of values at each level.
+ * Status bits may be written as binary digits, or as true and false.
+ */
+public class TextCheckerLogReader extends CheckerLogReader {
+
+    private static final int STATE_VALUES = 9;
+    private static final int SCHEDULER_VALUES = 8;
+    private static final int TIMER_VALUES = 6;
+
+    private final BufferedReader input;
+    // A line read while looking for the end of the last record, which starts the next one
+    @Nullable private String[] pending;
+    private long lineNumber;
+
+    public TextCheckerLogReader(@Nonnull Reader input) {
+        this.input = input instanceof BufferedReader ? (BufferedReader) input : new BufferedReader(input, 1 << 16);
+    }
+
+    @Override
+    public boolean next(@Nonnull CheckerRecord record) throws IOException {
+        String[] line = pending != null ? pending : readLine();
+        pending = null;
+        if (line == null) {
+            return false;
+        }
+        if (line.length != STATE_VALUES) {
+            throw new IOException("Malformed checker log at line " + lineNumber + ": expected " + STATE_VALUES + " values, found " + line.length + ".");
+        }
+        record.transputer = -1;
+        record.index = parseHex(line[0]);
+        parse(line, 1, record, 0);
+        record.level = CheckerLevel.STATE;
+
+        line = readLine();
+        if (line != null && line.length == SCHEDULER_VALUES) {
+            parse(line, 0, record, CheckerLevel.STATE.fields);
+            record.level = CheckerLevel.SCHEDULER;
+            line = readLine();
+            if (line != null && line.length == TIMER_VALUES) {
+                parse(line, 0, record, CheckerLevel.SCHEDULER.fields);
+                record.level = CheckerLevel.TIMER;
+                line = readLine();
+            }
+        }
+        pending = line;
+        return true;
+    }
+
+    @Nullable
+    private String[] readLine() throws IOException {
+        String line;
+        do {
+            line = input.readLine();
+            lineNumber++;
+            if (line == null) {
+                return null;
+            }
+            line = line.trim();
+        } while (line.isEmpty());
+        return line.split("\\s+");
+    }
+
+    private void parse(String[] line, int from, CheckerRecord record, int field) throws IOException {
+        for (int i = from; i < line.length; i++, field++) {
+            if (CheckerRecord.isFlag(field)) {
+                record.values[field] = parseFlag(line[i]);
+            } else {
+                record.values[field] = (int) parseHex(line[i]);
+            }
+        }
+    }
+
+    private long parseHex(String value) throws IOException {
+        try {
+            return Long.parseLong(value, 16);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed checker log at line " + lineNumber + ": " + value + " is not a hexadecimal value.");
+        }
+    }
+
+    private int parseFlag(String value) throws IOException {
+        if (value.equals("true")) {
+            return 1;
+        } else if (value.equals("false")) {
+            return 0;
+        }
+        try {
+            int flag = Integer.parseInt(value, 2);
+            if (flag == 0 || flag == 1) {
+                return flag;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IOException("Malformed checker log at line " + lineNumber + ": " + value + " is not a status bit.");
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
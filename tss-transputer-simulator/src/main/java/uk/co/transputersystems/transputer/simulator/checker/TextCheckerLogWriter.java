@@ -0,0 +1,52 @@
+package uk.co.transputersystems.transputer.simulator.checker;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * Writes checker logs in the text format read by the Verilog testbench.
+ */
+public class TextCheckerLogWriter extends CheckerLogWriter {
+
+    // Checking for an error flushes the buffer, so it is only done every so many records
+    private static final int RECORDS_PER_CHECK = 4096;
+
+    private final PrintWriter output;
+    private final CheckerRecord levelled = new CheckerRecord();
+    private int unchecked;
+
+    public TextCheckerLogWriter(@Nonnull Writer output, @Nonnull CheckerLevel level) {
+        super(level);
+        this.output = new PrintWriter(new BufferedWriter(output, 1 << 16));
+    }
+
+    @Override
+    public void write(@Nonnull CheckerRecord record) throws IOException {
+        if (record.level == level) {
+            record.print(output);
+        } else {
+            levelled.copyFrom(record);
+            levelled.level = level;
+            levelled.print(output);
+        }
+        if (++unchecked == RECORDS_PER_CHECK) {
+            unchecked = 0;
+            checkError();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+        checkError();
+    }
+
+    private void checkError() throws IOException {
+        if (output.checkError()) {
+            throw new IOException("Could not write checker log.");
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package uk.co.transputersystems.transputer.simulator.coverage;
+
+/**
+ * Records which addresses of one transputer's memory instructions have been executed from, one bit per byte.
+ */
+public class Coverage {
+    private final long[] bits;
+    private final int memorySize;
+
+    public Coverage(int memorySize) {
+        this.memorySize = memorySize;
+        this.bits = new long[(memorySize + 63) >>> 6];
+    }
+
+    public void mark(int address) {
+        if (address >= 0 && address < memorySize) {
+            bits[address >>> 6] |= 1L << address;
+        }
+    }
+
+    /**
+     * Mark every address from `start` up to but not including `end`.
+     */
+    public void markRange(int start, int end) {
+        for (int address = Math.max(start, 0); address < Math.min(end, memorySize); address++) {
+            bits[address >>> 6] |= 1L << address;
+        }
+    }
+
+    public boolean isMarked(int address) {
+        return address >= 0 && address < memorySize && (bits[address >>> 6] & (1L << address)) != 0;
+    }
+
+    /**
+     * @return true if any address from `start` up to but not including `end` is marked
+     */
+    public boolean isAnyMarked(int start, int end) {
+        for (int address = Math.max(start, 0); address < Math.min(end, memorySize); address++) {
+            if ((bits[address >>> 6] & (1L << address)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getMemorySize() {
+        return memorySize;
+    }
+}
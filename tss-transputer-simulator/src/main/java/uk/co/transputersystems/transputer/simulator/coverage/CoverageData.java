@@ -0,0 +1,200 @@
+package uk.co.transputersystems.transputer.simulator.coverage;
+
+import uk.co.transputersystems.transputer.utils.ProgramImage;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Line coverage of assembly and occam source files, read from and written as LCOV tracefiles. A line's hit count is
+ * the number of runs of a transputer that executed it, so the data from separate runs can be merged by adding.
+ * Each TSIL op is recorded as an LCOV function at the occam line it was generated from.
+ */
+public class CoverageData {
+
+    public static class FileCoverage {
+        // Hits per line, in line order
+        private final TreeMap<Integer, Long> lines = new TreeMap<>();
+        private final Map<String, Integer> functionLines = new LinkedHashMap<>();
+        private final Map<String, Long> functionHits = new LinkedHashMap<>();
+
+        public SortedMap<Integer, Long> getLines() {
+            return Collections.unmodifiableSortedMap(lines);
+        }
+
+        public Map<String, Integer> getFunctionLines() {
+            return Collections.unmodifiableMap(functionLines);
+        }
+
+        public long getFunctionHits(@Nonnull String function) {
+            return functionHits.getOrDefault(function, 0L);
+        }
+
+        public int getLinesHit() {
+            return (int) lines.values().stream().filter(hits -> hits > 0).count();
+        }
+
+        public int getFunctionsHit() {
+            return (int) functionHits.values().stream().filter(hits -> hits > 0).count();
+        }
+
+        private void addLine(int line, long hits) {
+            lines.merge(line, hits, Long::sum);
+        }
+
+        private void addFunction(@Nonnull String function, int line, long hits) {
+            functionLines.putIfAbsent(function, line);
+            functionHits.merge(function, hits, Long::sum);
+        }
+    }
+
+    private final Map<String, FileCoverage> files = new TreeMap<>();
+
+    public synchronized Map<String, FileCoverage> getFiles() {
+        return Collections.unmodifiableMap(new TreeMap<>(files));
+    }
+
+    @Nullable
+    public synchronized FileCoverage getFile(@Nonnull String file) {
+        return files.get(file);
+    }
+
+    private FileCoverage file(String file) {
+        return files.computeIfAbsent(file, name -> new FileCoverage());
+    }
+
+    /**
+     * Add one run of a transputer loaded with `image` at `codeStart`, counting an instruction as executed if any of
+     * its bytes were.
+     * @return false if the image has no line table to map addresses with
+     */
+    public synchronized boolean add(@Nonnull Coverage coverage, @Nonnull ProgramImage image, int codeStart) {
+        if (image.lines.isEmpty()) {
+            return false;
+        }
+        // A line is hit once per run however many of its instructions were executed
+        Map<String, Map<Integer, Boolean>> lineHits = new LinkedHashMap<>();
+        Map<String, Map<String, Integer>> tsilLines = new LinkedHashMap<>();
+        Map<String, Boolean> tsilHits = new HashMap<>();
+        List<ProgramImage.Line> lines = image.lines;
+        for (int i = 0; i < lines.size(); i++) {
+            ProgramImage.Line line = lines.get(i);
+            int end = i + 1 < lines.size() ? lines.get(i + 1).address : image.getEnd();
+            boolean hit = coverage.isAnyMarked(codeStart + line.address, codeStart + Math.max(end, line.address + 1));
+            if (image.assemblyFile != null) {
+                lineHits.computeIfAbsent(image.assemblyFile, name -> new TreeMap<>()).merge(line.line, hit, Boolean::logicalOr);
+            }
+            if (line.source != null && line.sourceLine > 0) {
+                lineHits.computeIfAbsent(line.source, name -> new TreeMap<>()).merge(line.sourceLine, hit, Boolean::logicalOr);
+                if (line.tsil != null) {
+                    tsilLines.computeIfAbsent(line.source, name -> new LinkedHashMap<>()).putIfAbsent(line.tsil, line.sourceLine);
+                    tsilHits.merge(line.tsil, hit, Boolean::logicalOr);
+                }
+            }
+        }
+        for (Map.Entry<String, Map<Integer, Boolean>> entry : lineHits.entrySet()) {
+            FileCoverage file = file(entry.getKey());
+            for (Map.Entry<Integer, Boolean> line : entry.getValue().entrySet()) {
+                file.addLine(line.getKey(), line.getValue() ? 1 : 0);
+            }
+        }
+        for (Map.Entry<String, Map<String, Integer>> entry : tsilLines.entrySet()) {
+            FileCoverage file = file(entry.getKey());
+            for (Map.Entry<String, Integer> tsil : entry.getValue().entrySet()) {
+                file.addFunction(tsil.getKey(), tsil.getValue(), tsilHits.get(tsil.getKey()) ? 1 : 0);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Add the hits of another set of runs to these.
+     */
+    public synchronized void merge(@Nonnull CoverageData other) {
+        for (Map.Entry<String, FileCoverage> entry : other.getFiles().entrySet()) {
+            FileCoverage file = file(entry.getKey());
+            for (Map.Entry<Integer, Long> line : entry.getValue().lines.entrySet()) {
+                file.addLine(line.getKey(), line.getValue());
+            }
+            for (Map.Entry<String, Integer> function : entry.getValue().functionLines.entrySet()) {
+                file.addFunction(function.getKey(), function.getValue(), entry.getValue().getFunctionHits(function.getKey()));
+            }
+        }
+    }
+
+    public synchronized void writeLcov(@Nonnull Writer writer) {
+        PrintWriter output = new PrintWriter(writer);
+        for (Map.Entry<String, FileCoverage> entry : files.entrySet()) {
+            FileCoverage file = entry.getValue();
+            output.printf("TN:\n");
+            output.printf("SF:%s\n", entry.getKey());
+            for (Map.Entry<String, Integer> function : file.functionLines.entrySet()) {
+                output.printf("FN:%d,%s\n", function.getValue(), function.getKey());
+            }
+            for (String function : file.functionLines.keySet()) {
+                output.printf("FNDA:%d,%s\n", file.getFunctionHits(function), function);
+            }
+            output.printf("FNF:%d\n", file.functionLines.size());
+            output.printf("FNH:%d\n", file.getFunctionsHit());
+            for (Map.Entry<Integer, Long> line : file.lines.entrySet()) {
+                output.printf("DA:%d,%d\n", line.getKey(), line.getValue());
+            }
+            output.printf("LF:%d\n", file.lines.size());
+            output.printf("LH:%d\n", file.getLinesHit());
+            output.printf("end_of_record\n");
+        }
+        output.flush();
+    }
+
+    /**
+     * Read an LCOV tracefile. Records other than source files, functions and lines are ignored, and a file that
+     * appears more than once has its hits added together.
+     */
+    public static CoverageData readLcov(@Nonnull Reader reader) throws IOException {
+        CoverageData data = new CoverageData();
+        BufferedReader input = new BufferedReader(reader);
+        FileCoverage file = null;
+        Map<String, Long> functionHits = new HashMap<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = input.readLine()) != null) {
+            lineNumber++;
+            int colon = line.indexOf(':');
+            String key = colon < 0 ? line : line.substring(0, colon);
+            String value = colon < 0 ? "" : line.substring(colon + 1);
+            try {
+                if (key.equals("SF")) {
+                    file = data.file(value);
+                    functionHits.clear();
+                } else if (key.equals("end_of_record")) {
+                    if (file != null) {
+                        for (Map.Entry<String, Long> function : functionHits.entrySet()) {
+                            file.addFunction(function.getKey(), file.functionLines.getOrDefault(function.getKey(), 0), function.getValue());
+                        }
+                    }
+                    file = null;
+                } else if (file != null && key.equals("DA")) {
+                    String[] fields = value.split(",");
+                    file.addLine(Integer.parseInt(fields[0]), Long.parseLong(fields[1]));
+                } else if (file != null && key.equals("FN")) {
+                    int comma = value.indexOf(',');
+                    String function = value.substring(comma + 1);
+                    file.functionLines.putIfAbsent(function, Integer.parseInt(value.substring(0, comma)));
+                    functionHits.putIfAbsent(function, 0L);
+                } else if (file != null && key.equals("FNDA")) {
+                    int comma = value.indexOf(',');
+                    functionHits.merge(value.substring(comma + 1), Long.parseLong(value.substring(0, comma)), Long::sum);
+                }
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                throw new IOException("Malformed LCOV record on line " + lineNumber + ": " + line, e);
+            }
+        }
+        return data;
+    }
+}
@@ -0,0 +1,96 @@
+package uk.co.transputersystems.transputer.simulator.coverage;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Writes coverage data as a directory of HTML pages: an index of every file with its line and TSIL op coverage,
+ * and a page per file listing its source with executed lines in green and missed lines in red. Source files that
+ * cannot be read are listed by line number only.
+ */
+public final class CoverageHtml {
+
+    private static final String STYLE = "body{font-family:sans-serif}table{border-collapse:collapse}"
+            + "td,th{padding:0 .5em;text-align:left}pre{margin:0}.hit{background:#cfc}.miss{background:#fcc}"
+            + ".ops{font-size:small;color:#555}";
+
+    private CoverageHtml() {
+    }
+
+    public static void write(@Nonnull CoverageData data, @Nonnull File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        Map<String, CoverageData.FileCoverage> files = data.getFiles();
+        try (PrintWriter index = new PrintWriter(new BufferedWriter(new FileWriter(new File(directory, "index.html"))))) {
+            header(index, "Coverage");
+            index.printf("<table>\n<tr><th>File</th><th>Lines</th><th></th><th>TSIL ops</th><th></th></tr>\n");
+            int page = 0;
+            for (Map.Entry<String, CoverageData.FileCoverage> entry : files.entrySet()) {
+                CoverageData.FileCoverage file = entry.getValue();
+                String name = String.format("file%d.html", page++);
+                writeFile(entry.getKey(), file, new File(directory, name));
+                index.printf("<tr><td><a href=\"%s\">%s</a></td><td>%d / %d</td><td>%s</td><td>%d / %d</td><td>%s</td></tr>\n",
+                        name, escape(entry.getKey()), file.getLinesHit(), file.getLines().size(),
+                        percent(file.getLinesHit(), file.getLines().size()), file.getFunctionsHit(),
+                        file.getFunctionLines().size(), percent(file.getFunctionsHit(), file.getFunctionLines().size()));
+            }
+            index.printf("</table>\n</body>\n</html>\n");
+        }
+    }
+
+    private static void writeFile(String path, CoverageData.FileCoverage file, File page) throws IOException {
+        List<String> source = Collections.emptyList();
+        File sourceFile = new File(path);
+        if (sourceFile.isFile()) {
+            source = Files.readAllLines(sourceFile.toPath(), StandardCharsets.UTF_8);
+        }
+        Map<Integer, List<String>> functions = new TreeMap<>();
+        for (Map.Entry<String, Integer> function : file.getFunctionLines().entrySet()) {
+            functions.computeIfAbsent(function.getValue(), line -> new ArrayList<>()).add(function.getKey());
+        }
+
+        try (PrintWriter output = new PrintWriter(new BufferedWriter(new FileWriter(page)))) {
+            header(output, path);
+            output.printf("<p><a href=\"index.html\">index</a>: %d of %d lines executed</p>\n",
+                    file.getLinesHit(), file.getLines().size());
+            output.printf("<table>\n<tr><th>Line</th><th>Hits</th><th>Source</th></tr>\n");
+            int last = Math.max(source.size(), file.getLines().isEmpty() ? 0 : file.getLines().lastKey());
+            for (int line = 1; line <= last; line++) {
+                Long hits = file.getLines().get(line);
+                if (source.isEmpty() && hits == null) {
+                    continue;
+                }
+                output.printf("<tr%s><td>%d</td><td>%s</td><td><pre>%s</pre>",
+                        hits == null ? "" : hits > 0 ? " class=\"hit\"" : " class=\"miss\"", line,
+                        hits == null ? "" : hits.toString(), line <= source.size() ? escape(source.get(line - 1)) : "");
+                for (String function : functions.getOrDefault(line, Collections.emptyList())) {
+                    output.printf("<div class=\"ops %s\">%s: %d</div>", file.getFunctionHits(function) > 0 ? "hit" : "miss",
+                            escape(function), file.getFunctionHits(function));
+                }
+                output.printf("</td></tr>\n");
+            }
+            output.printf("</table>\n</body>\n</html>\n");
+        }
+    }
+
+    private static void header(PrintWriter output, String title) {
+        output.printf("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"utf-8\">\n<title>%s</title>\n<style>%s</style>\n</head>\n<body>\n<h1>%s</h1>\n",
+                escape(title), STYLE, escape(title));
+    }
+
+    private static String percent(int hit, int total) {
+        return total == 0 ? "" : String.format("%.1f%%", 100.0 * hit / total);
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
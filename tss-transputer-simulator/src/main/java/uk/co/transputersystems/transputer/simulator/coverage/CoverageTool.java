@@ -0,0 +1,97 @@
+package uk.co.transputersystems.transputer.simulator.coverage;
+
+import joptsimple.OptionException;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Command line entry point for merging the LCOV tracefiles written by separate simulator or batch runs and turning
+ * them into an HTML report. The exit status is 0 on success and 2 if the options were wrong or a file could not be
+ * read or written.
+ */
+public class CoverageTool {
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    public static int run(String[] args) {
+        OptionParser optionParser = new OptionParser();
+
+        OptionSpec<File> outputArg = optionParser
+                .accepts("output")
+                .withRequiredArg()
+                .ofType(File.class)
+                .describedAs("write the merged tracefile to a file instead of standard output");
+
+        OptionSpec<File> htmlArg = optionParser
+                .accepts("html")
+                .withRequiredArg()
+                .ofType(File.class)
+                .describedAs("write an HTML report to a directory");
+
+        OptionSpec<File> tracefilesArg = optionParser
+                .nonOptions()
+                .ofType(File.class)
+                .describedAs("LCOV tracefiles to merge");
+
+        OptionSet options;
+        List<File> tracefiles;
+        try {
+            options = optionParser.parse(args);
+            tracefiles = options.valuesOf(tracefilesArg);
+            if (tracefiles.isEmpty()) {
+                throw new IllegalArgumentException("At least one tracefile must be given.");
+            }
+        } catch (OptionException | IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            try {
+                optionParser.printHelpOn(System.err);
+            } catch (IOException ignored) {
+            }
+            return 2;
+        }
+
+        CoverageData merged = new CoverageData();
+        try {
+            for (File tracefile : tracefiles) {
+                try (Reader reader = new FileReader(tracefile)) {
+                    merged.merge(CoverageData.readLcov(reader));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not read tracefile: " + e.getMessage());
+            return 2;
+        }
+
+        try {
+            if (options.has(outputArg)) {
+                try (Writer writer = new BufferedWriter(new FileWriter(options.valueOf(outputArg)))) {
+                    merged.writeLcov(writer);
+                }
+            } else if (!options.has(htmlArg)) {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(System.out));
+                merged.writeLcov(writer);
+                writer.flush();
+            }
+            if (options.has(htmlArg)) {
+                CoverageHtml.write(merged, options.valueOf(htmlArg));
+            }
+        } catch (IOException e) {
+            System.err.println("Could not write report: " + e.getMessage());
+            return 2;
+        }
+        return 0;
+    }
+}
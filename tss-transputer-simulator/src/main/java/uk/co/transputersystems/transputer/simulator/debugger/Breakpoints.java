@@ -0,0 +1,108 @@
+package uk.co.transputersystems.transputer.simulator.debugger;
+
+import uk.co.transputersystems.transputer.simulator.Transputer;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The instruction breakpoints of one transputer. A bitmap with one bit per byte of memory is checked before the
+ * breakpoint itself is looked up, so runs without breakpoints, or away from them, only test a bit.
+ */
+public class Breakpoints {
+
+    public static class Breakpoint {
+        public final int address;
+        @Nullable public final Condition condition;
+        private long hits;
+
+        public Breakpoint(int address, @Nullable Condition condition) {
+            this.address = address;
+            this.condition = condition;
+        }
+
+        /**
+         * @return the number of times the breakpoint has stopped the simulator
+         */
+        public long getHits() {
+            return hits;
+        }
+    }
+
+    private final long[] bits;
+    private final Map<Integer, Breakpoint> byAddress = new TreeMap<>();
+
+    public Breakpoints(int memSize) {
+        bits = new long[(memSize + 63) >> 6];
+    }
+
+    public boolean isEmpty() {
+        return byAddress.isEmpty();
+    }
+
+    public boolean contains(int address) {
+        return address >= 0 && (address >> 6) < bits.length && (bits[address >> 6] & (1L << address)) != 0;
+    }
+
+    @Nullable
+    public Breakpoint get(int address) {
+        return contains(address) ? byAddress.get(address) : null;
+    }
+
+    /**
+     * Add a breakpoint, replacing any other at the same address.
+     */
+    public void add(Breakpoint breakpoint) {
+        byAddress.put(breakpoint.address, breakpoint);
+        bits[breakpoint.address >> 6] |= 1L << breakpoint.address;
+    }
+
+    /**
+     * @return false if there was no breakpoint at the address
+     */
+    public boolean remove(int address) {
+        if (byAddress.remove(address) == null) {
+            return false;
+        }
+        bits[address >> 6] &= ~(1L << address);
+        return true;
+    }
+
+    /**
+     * @return the breakpoints in address order
+     */
+    public Collection<Breakpoint> getAll() {
+        return Collections.unmodifiableCollection(byAddress.values());
+    }
+
+    /**
+     * @return true if the transputer is at a breakpoint whose condition holds. The hit is counted.
+     */
+    public boolean hit(Transputer transputer) {
+        Breakpoint breakpoint = matching(transputer);
+        if (breakpoint == null) {
+            return false;
+        }
+        breakpoint.hits++;
+        return true;
+    }
+
+    /**
+     * @return true if the transputer is at a breakpoint whose condition holds, without counting a hit
+     */
+    public boolean isAt(Transputer transputer) {
+        return matching(transputer) != null;
+    }
+
+    @Nullable
+    private Breakpoint matching(Transputer transputer) {
+        Breakpoint breakpoint = get(transputer.registers.Iptr);
+        if (breakpoint == null || (breakpoint.condition != null && !breakpoint.condition.test(transputer))) {
+            return null;
+        }
+        return breakpoint;
+    }
+}
@@ -5,10 +5,17 @@ import org.antlr.v4.runtime.tree.ParseTree;
 import uk.co.transputersystems.transputer.simulator.DebuggerCommandBaseVisitor;
 import uk.co.transputersystems.transputer.simulator.DebuggerCommandParser;
 import uk.co.transputersystems.transputer.simulator.Transputer;
-import uk.co.transputersystems.transputer.simulator.TransputerConstants;
+import uk.co.transputersystems.transputer.simulator.metrics.MetricsFormat;
+import uk.co.transputersystems.transputer.simulator.metrics.MetricsReport;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.Writer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -17,6 +24,8 @@ public class CommandExecutor extends DebuggerCommandBaseVisitor<CommandResult> {
     public final PrintWriter output;
     public final PrintWriter errOutput;
     public final Transputer[] transputers;
+    // Needed to save and restore checkpoints; null if they are unavailable
+    @Nullable public final SimulationState state;
     public final NumberListParser numberListParser = new NumberListParser();
 
     public CommandExecutor(Transputer[] transputers, PrintWriter output, PrintWriter errOutput) {
@@ -24,6 +33,15 @@ public class CommandExecutor extends DebuggerCommandBaseVisitor<CommandResult> {
         this.output = output;
         this.errOutput = errOutput;
         this.transputers = transputers;
+        this.state = null;
+    }
+
+    public CommandExecutor(@Nonnull SimulationState state, PrintWriter output, PrintWriter errOutput) {
+        super();
+        this.output = output;
+        this.errOutput = errOutput;
+        this.transputers = state.transputers;
+        this.state = state;
     }
 
     @Override
@@ -39,24 +57,43 @@ public class CommandExecutor extends DebuggerCommandBaseVisitor<CommandResult> {
         output.printf("Debugger commands\n");
         output.printf("<trps>\tlist of transputers\n");
         output.printf("\t\te.g. 0,1,3\n");
-        output.printf("<brk>\tbreakpoint address\n\n");
+        output.printf("<brk>\tbreakpoint address\n");
+        output.printf("<cond>\tcondition comparing registers, [addresses] or numbers\n");
+        output.printf("\t\te.g. areg == 3, [0x1448] > wptr\n\n");
         output.printf("\thelp                Display this message\n");
         output.printf("\t<trps> info mem     Print the last written memory locations\n");
+        output.printf("\t<trps> info changed Print memory written since execution last resumed\n");
         output.printf("\t<trps> info reg     Print all register values\n");
         output.printf("\t<trps> info s-reg   Print the contents of the status register\n");
         output.printf("\t<trps> info c-reg   Print the contents of the control registers\n");
         output.printf("\t<trps> info link    Print the contents of the external links\n");
         output.printf("\t<trps> info break   Print list of breakpoints\n");
-        output.printf("\t<trps> break <brk>  Set a breakpoint\n");
+        output.printf("\t<trps> info watch   Print list of watchpoints\n");
+        output.printf("\t<trps> break <brk> [if <cond>]  Set a breakpoint\n");
         output.printf("\t<trps> delete <brk> Unset a breakpoint\n");
+        output.printf("\t<trps> watch <addr> [<len>] [if <cond>]  Stop after writes to memory\n");
+        output.printf("\t<trps> rwatch <addr> [<len>] [if <cond>] Stop after reads of memory\n");
+        output.printf("\t<trps> awatch <addr> [<len>] [if <cond>] Stop after reads or writes of memory\n");
+        output.printf("\t<trps> unwatch <addr> Unset a watchpoint\n");
+        output.printf("\tcheckpoint save \"<file>\"    Save the state of every transputer\n");
+        output.printf("\tcheckpoint restore \"<file>\" Resume from a saved checkpoint\n");
+        output.printf("\tmetrics [\"<file>\"]  Print the runtime metrics, or write them to a file\n");
         output.printf("\tstep                Execute the next instruction\n");
         output.printf("\tcontinue            Execute all remaining instructions\n");
+        output.printf("\treverse-step        Undo the last step\n");
+        output.printf("\treverse-continue    Undo steps until a breakpoint is reached\n");
         return CommandResult.REMAIN;
     }
 
     @Override
     public CommandResult visitInfo_memsize(DebuggerCommandParser.Info_memsizeContext ctx) {
-        output.print(TransputerConstants.MEMSIZE);
+        for (int n : numberListParser.visit(ctx.transputer_list())) {
+            if (0 <= n && n < transputers.length) {
+                output.printf("## Transputer %d\n%d\n", n, transputers[n].getMemory().size());
+            } else {
+                output.printf("There is no transputer %d\n", n);
+            }
+        }
         return CommandResult.REMAIN;
     }
 
@@ -128,7 +165,7 @@ public class CommandExecutor extends DebuggerCommandBaseVisitor<CommandResult> {
 
     public int tryParseAddress(String str, int defaultResult) {
         // An address can be either hexadecimal or decimal
-        if ("0x".equals(str.substring(0, 2))) {
+        if (str.startsWith("0x")) {
             return tryParseInt(str.substring(2), defaultResult, 16);
         } else {
             return tryParseInt(str, defaultResult, 10);
@@ -157,6 +194,18 @@ public class CommandExecutor extends DebuggerCommandBaseVisitor<CommandResult> {
         }
     }
 
+    @Override
+    public CommandResult visitInfo_changed(DebuggerCommandParser.Info_changedContext ctx) {
+        for (int n : numberListParser.visit(ctx.transputer_list())) {
+            if (0 <= n && n < transputers.length) {
+                transputers[n].printChangedMemory(output);
+            } else {
+                output.printf("There is no transputer %d\n", n);
+            }
+        }
+        return CommandResult.REMAIN;
+    }
+
     @Override
     public CommandResult visitInfo_mem(DebuggerCommandParser.Info_memContext ctx) {
         for (int n : numberListParser.visit(ctx.transputer_list())) {
@@ -250,12 +299,25 @@ public class CommandExecutor extends DebuggerCommandBaseVisitor<CommandResult> {
         return CommandResult.REMAIN;
     }
 
+    @Override
+    public CommandResult visitInfo_watch(DebuggerCommandParser.Info_watchContext ctx) {
+        for (int n : numberListParser.visit(ctx.transputer_list())) {
+            if (0 <= n && n < transputers.length) {
+                transputers[n].printWatchpoints(output);
+            } else {
+                output.printf("There is no transputer %d\n", n);
+            }
+        }
+        return CommandResult.REMAIN;
+    }
+
     @Override
     public CommandResult visitBreak(DebuggerCommandParser.BreakContext ctx) {
         Integer breakpoint = tryParseAddress(ctx.address().getText(), 0);
+        Condition condition = ctx.condition() == null ? null : parseCondition(ctx.condition());
         for (int n : numberListParser.visit(ctx.transputer_list())) {
             if (0 <= n && n <= transputers.length) {
-                transputers[n].setBreakpoint(breakpoint, output);
+                transputers[n].setBreakpoint(breakpoint, condition, output);
             } else {
                 output.printf("There is no transputer %d\n", n);
             }
@@ -276,11 +338,171 @@ public class CommandExecutor extends DebuggerCommandBaseVisitor<CommandResult> {
         return CommandResult.REMAIN;
     }
 
+    @Override
+    public CommandResult visitWatch(DebuggerCommandParser.WatchContext ctx) {
+        int start = tryParseAddress(ctx.address().getText(), 0);
+        int length = ctx.NUMBER() == null ? 1 : tryParseInt(ctx.NUMBER().getText(), 1, 10);
+        Watchpoints.Kind kind;
+        if (ctx.watch_kind().RWATCH() != null) {
+            kind = Watchpoints.Kind.READ;
+        } else if (ctx.watch_kind().AWATCH() != null) {
+            kind = Watchpoints.Kind.ACCESS;
+        } else {
+            kind = Watchpoints.Kind.WRITE;
+        }
+        Condition condition = ctx.condition() == null ? null : parseCondition(ctx.condition());
+        for (int n : numberListParser.visit(ctx.transputer_list())) {
+            if (0 <= n && n < transputers.length) {
+                transputers[n].setWatchpoint(start, length, kind, condition, output);
+            } else {
+                output.printf("There is no transputer %d\n", n);
+            }
+        }
+        return CommandResult.REMAIN;
+    }
+
+    @Override
+    public CommandResult visitUnwatch(DebuggerCommandParser.UnwatchContext ctx) {
+        int start = tryParseAddress(ctx.address().getText(), 0);
+        for (int n : numberListParser.visit(ctx.transputer_list())) {
+            if (0 <= n && n < transputers.length) {
+                transputers[n].unsetWatchpoint(start, output);
+            } else {
+                output.printf("There is no transputer %d\n", n);
+            }
+        }
+        return CommandResult.REMAIN;
+    }
+
+    public Condition parseCondition(DebuggerCommandParser.ConditionContext ctx) {
+        return new Condition(parseOperand(ctx.operand(0)),
+                Condition.Comparison.parse(ctx.COMPARISON().getText()),
+                parseOperand(ctx.operand(1)));
+    }
+
+    private Condition.Operand parseOperand(DebuggerCommandParser.OperandContext ctx) {
+        if (ctx.REGISTER() != null) {
+            return Condition.Operand.register(ctx.REGISTER().getText());
+        }
+        int value = tryParseAddress(ctx.address().getText(), 0);
+        // A bracketed address stands for the word stored there
+        return ctx.getChildCount() > 1 ? Condition.Operand.memory(value) : Condition.Operand.constant(value);
+    }
+
+    @Override
+    public CommandResult visitCheckpoint_save(DebuggerCommandParser.Checkpoint_saveContext ctx) {
+        if (state == null) {
+            output.printf("Checkpoints are not available\n");
+            return CommandResult.REMAIN;
+        }
+        File file = new File(unquote(ctx.STRING().getText()));
+        try {
+            Checkpoint.save(state, file, true);
+            output.printf("Saved checkpoint at step %d to %s\n", state.loopCount, file);
+        } catch (IOException e) {
+            errOutput.printf("Could not save checkpoint: %s\n", e.getMessage());
+        }
+        return CommandResult.REMAIN;
+    }
+
+    @Override
+    public CommandResult visitCheckpoint_restore(DebuggerCommandParser.Checkpoint_restoreContext ctx) {
+        if (state == null) {
+            output.printf("Checkpoints are not available\n");
+            return CommandResult.REMAIN;
+        }
+        for (Transputer transputer : transputers) {
+            if (transputer.getIoPins() != null) {
+                errOutput.printf("Checkpoints do not hold the state of I/O pins, so cannot be restored\n");
+                return CommandResult.REMAIN;
+            }
+        }
+        File file = new File(unquote(ctx.STRING().getText()));
+        try {
+            Checkpoint.restore(state, file);
+            output.printf("Restored checkpoint from step %d\n", state.loopCount);
+        } catch (IOException e) {
+            errOutput.printf("Could not restore checkpoint: %s\n", e.getMessage());
+        }
+        return CommandResult.REMAIN;
+    }
+
+    @Override
+    public CommandResult visitMetrics(DebuggerCommandParser.MetricsContext ctx) {
+        boolean collected = false;
+        for (Transputer transputer : transputers) {
+            collected |= transputer.getMetrics() != null;
+        }
+        if (!collected) {
+            output.printf("Metrics are not being collected; start the simulator with --metrics\n");
+            return CommandResult.REMAIN;
+        }
+        try {
+            if (ctx.STRING() == null) {
+                MetricsReport.writePrometheus(transputers, output);
+            } else {
+                File file = new File(unquote(ctx.STRING().getText()));
+                try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+                    MetricsReport.write(transputers, writer, MetricsFormat.forFile(file));
+                }
+                output.printf("Wrote metrics to %s\n", file);
+            }
+        } catch (IOException e) {
+            errOutput.printf("Could not write metrics: %s\n", e.getMessage());
+        }
+        return CommandResult.REMAIN;
+    }
+
+    private static String unquote(String string) {
+        return string.substring(1, string.length() - 1);
+    }
+
     @Override
     public CommandResult visitStep(DebuggerCommandParser.StepContext ctx) {
         return CommandResult.STEP;
     }
 
+    @Override
+    public CommandResult visitReverse_step(DebuggerCommandParser.Reverse_stepContext ctx) {
+        if (state == null || state.history == null) {
+            output.printf("Reverse execution needs --reverse-history\n");
+        } else if (state.history.stepBack()) {
+            output.printf("Stepped back to step %d\n", state.loopCount);
+        } else {
+            output.printf("No earlier steps were recorded\n");
+        }
+        return CommandResult.REMAIN;
+    }
+
+    @Override
+    public CommandResult visitReverse_continue(DebuggerCommandParser.Reverse_continueContext ctx) {
+        if (state == null || state.history == null) {
+            output.printf("Reverse execution needs --reverse-history\n");
+            return CommandResult.REMAIN;
+        }
+        if (!state.history.stepBack()) {
+            output.printf("No earlier steps were recorded\n");
+            return CommandResult.REMAIN;
+        }
+        while (!atBreakpoint()) {
+            if (!state.history.stepBack()) {
+                output.printf("Reached the earliest recorded step, %d\n", state.loopCount);
+                return CommandResult.REMAIN;
+            }
+        }
+        output.printf("Stopped at a breakpoint at step %d\n", state.loopCount);
+        return CommandResult.REMAIN;
+    }
+
+    private boolean atBreakpoint() {
+        for (int i = 0; i < transputers.length; i++) {
+            if (state.active[i] && transputers[i].debuggerState.breakpoints.isAt(transputers[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public CommandResult visitContinue(DebuggerCommandParser.ContinueContext ctx) {
         return CommandResult.CONTINUE;
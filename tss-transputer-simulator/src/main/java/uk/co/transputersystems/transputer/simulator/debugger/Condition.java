@@ -0,0 +1,154 @@
+package uk.co.transputersystems.transputer.simulator.debugger;
+
+import uk.co.transputersystems.transputer.simulator.Transputer;
+import uk.co.transputersystems.transputer.simulator.TransputerConstants;
+import uk.co.transputersystems.transputer.simulator.models.Registers;
+
+import javax.annotation.Nonnull;
+import java.util.function.ToIntFunction;
+
+/**
+ * A comparison between two registers, memory words or constants, which a breakpoint or watchpoint must satisfy
+ * before it stops the simulator.
+ */
+public class Condition {
+
+    public enum Comparison {
+        EQUAL("=="), NOT_EQUAL("!="), LESS("<"), LESS_OR_EQUAL("<="), GREATER(">"), GREATER_OR_EQUAL(">=");
+
+        public final String symbol;
+
+        Comparison(String symbol) {
+            this.symbol = symbol;
+        }
+
+        public static Comparison parse(String symbol) {
+            for (Comparison comparison : values()) {
+                if (comparison.symbol.equals(symbol)) {
+                    return comparison;
+                }
+            }
+            throw new IllegalArgumentException(String.format("Unknown comparison %s.", symbol));
+        }
+    }
+
+    /**
+     * A value read from a transputer when the condition is tested.
+     */
+    public static abstract class Operand {
+        abstract int value(Transputer transputer);
+
+        /**
+         * @param name Areg, Breg, Creg, Oreg, Wptr or Iptr, in any case
+         */
+        public static Operand register(String name) {
+            switch (name.toLowerCase()) {
+                case "areg":
+                    return new RegisterOperand(name, registers -> registers.Areg);
+                case "breg":
+                    return new RegisterOperand(name, registers -> registers.Breg);
+                case "creg":
+                    return new RegisterOperand(name, registers -> registers.Creg);
+                case "oreg":
+                    return new RegisterOperand(name, registers -> registers.Oreg);
+                case "wptr":
+                    return new RegisterOperand(name, registers -> registers.Wptr);
+                case "iptr":
+                    return new RegisterOperand(name, registers -> registers.Iptr);
+                default:
+                    throw new IllegalArgumentException(String.format("Unknown register %s.", name));
+            }
+        }
+
+        public static Operand constant(int value) {
+            return new Operand() {
+                @Override
+                int value(Transputer transputer) {
+                    return value;
+                }
+
+                @Override
+                public String toString() {
+                    return String.format("0x%X", value);
+                }
+            };
+        }
+
+        /**
+         * The word at an address. Addresses outside memory read as 0.
+         */
+        public static Operand memory(int address) {
+            return new Operand() {
+                @Override
+                int value(Transputer transputer) {
+                    if (address < 0 || address > transputer.getMemory().size() - TransputerConstants.BYTESPERWORD) {
+                        return 0;
+                    }
+                    return transputer.getMemory().readWord(address);
+                }
+
+                @Override
+                public String toString() {
+                    return String.format("[0x%08X]", address);
+                }
+            };
+        }
+    }
+
+    private static class RegisterOperand extends Operand {
+        private final String name;
+        private final ToIntFunction<Registers> register;
+
+        RegisterOperand(String name, ToIntFunction<Registers> register) {
+            this.name = name;
+            this.register = register;
+        }
+
+        @Override
+        int value(Transputer transputer) {
+            return register.applyAsInt(transputer.registers);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    @Nonnull private final Operand left;
+    @Nonnull private final Comparison comparison;
+    @Nonnull private final Operand right;
+
+    public Condition(@Nonnull Operand left, @Nonnull Comparison comparison, @Nonnull Operand right) {
+        this.left = left;
+        this.comparison = comparison;
+        this.right = right;
+    }
+
+    /**
+     * Compare the operands as signed words.
+     */
+    public boolean test(Transputer transputer) {
+        int a = left.value(transputer);
+        int b = right.value(transputer);
+        switch (comparison) {
+            case EQUAL:
+                return a == b;
+            case NOT_EQUAL:
+                return a != b;
+            case LESS:
+                return a < b;
+            case LESS_OR_EQUAL:
+                return a <= b;
+            case GREATER:
+                return a > b;
+            default:
+                return a >= b;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s %s", left, comparison.symbol, right);
+    }
+}
@@ -1,15 +1,16 @@
 package uk.co.transputersystems.transputer.simulator.debugger;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
-
 public class DebuggerRecordedState {
-    public final Set<Integer> memAccessed = new HashSet<>();
-    public final Set<Integer> breakpoints = new HashSet<>();
-    public final List<Process> processes = new ArrayList<>();
+    public final DirtyMemory memAccessed;
+    public final Breakpoints breakpoints;
+    public final Watchpoints watchpoints;
+    public final ProcessTable processes;
+    public final SymbolTable symbols = new SymbolTable();
 
-    public DebuggerRecordedState() {
+    public DebuggerRecordedState(int memSize) {
+        memAccessed = new DirtyMemory(memSize);
+        breakpoints = new Breakpoints(memSize);
+        watchpoints = new Watchpoints(memSize);
+        processes = new ProcessTable(memSize);
     }
 }
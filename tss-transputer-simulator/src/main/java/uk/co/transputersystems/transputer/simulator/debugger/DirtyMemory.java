@@ -0,0 +1,142 @@
+package uk.co.transputersystems.transputer.simulator.debugger;
+
+import uk.co.transputersystems.transputer.simulator.TransputerConstants;
+
+import java.util.Arrays;
+
+/**
+ * Records which words of a transputer's memory have been written, one bit per word. Two sets of bits are kept:
+ * words written since they were last printed by `info mem`, and words written since the last snapshot, which the
+ * debugger takes whenever execution resumes.
+ */
+public class DirtyMemory {
+    private static final int WORD_SHIFT = 2;
+
+    private final int words;
+    private final long[] recent;
+    private final long[] changed;
+    private boolean enabled = true;
+
+    public DirtyMemory(int memSize) {
+        words = (memSize + TransputerConstants.BYTESPERWORD - 1) >> WORD_SHIFT;
+        recent = new long[(words + 63) >> 6];
+        changed = new long[(words + 63) >> 6];
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Stop (or restart) recording writes. While disabled, nothing is reported as written.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            Arrays.fill(recent, 0);
+            Arrays.fill(changed, 0);
+        }
+    }
+
+    /**
+     * Record a write to the byte at an address.
+     */
+    public void markByte(int address) {
+        if (enabled) {
+            mark(address >> WORD_SHIFT);
+        }
+    }
+
+    /**
+     * Record a write to the four bytes starting at an address, which need not be word aligned.
+     */
+    public void markWord(int address) {
+        if (enabled) {
+            mark(address >> WORD_SHIFT);
+            mark((address + TransputerConstants.BYTESPERWORD - 1) >> WORD_SHIFT);
+        }
+    }
+
+    /**
+     * Record a write to `length` bytes starting at an address.
+     */
+    public void markRange(int address, int length) {
+        if (enabled && length > 0) {
+            for (int word = address >> WORD_SHIFT; word <= (address + length - 1) >> WORD_SHIFT; word++) {
+                mark(word);
+            }
+        }
+    }
+
+    private void mark(int word) {
+        if (word >= 0 && word < words) {
+            recent[word >> 6] |= 1L << word;
+            changed[word >> 6] |= 1L << word;
+        }
+    }
+
+    /**
+     * @return the address of the first word at or after `address` written since it was last cleared, or -1
+     */
+    public int nextRecent(int address) {
+        return next(recent, address);
+    }
+
+    /**
+     * Forget every recent write, e.g. once a program has been loaded.
+     */
+    public void clearRecent() {
+        Arrays.fill(recent, 0);
+    }
+
+    /**
+     * Forget that the word containing an address was written, once it has been printed.
+     */
+    public void clearRecent(int address) {
+        int word = address >> WORD_SHIFT;
+        recent[word >> 6] &= ~(1L << word);
+    }
+
+    /**
+     * Forget every write recorded so far, e.g. after the whole memory has been replaced.
+     */
+    public void clear() {
+        Arrays.fill(recent, 0);
+        Arrays.fill(changed, 0);
+    }
+
+    /**
+     * Start a new snapshot: forget which words have changed so far.
+     */
+    public void snapshot() {
+        Arrays.fill(changed, 0);
+    }
+
+    public boolean changedSinceSnapshot(int address) {
+        int word = address >> WORD_SHIFT;
+        return word >= 0 && word < words && (changed[word >> 6] & (1L << word)) != 0;
+    }
+
+    /**
+     * @return the address of the first word at or after `address` written since the last snapshot, or -1
+     */
+    public int nextChanged(int address) {
+        return next(changed, address);
+    }
+
+    private int next(long[] bits, int address) {
+        int word = Math.max(address, 0) >> WORD_SHIFT;
+        if (word >= words) {
+            return -1;
+        }
+        int index = word >> 6;
+        long current = bits[index] & (-1L << word);
+        while (current == 0) {
+            if (++index == bits.length) {
+                return -1;
+            }
+            current = bits[index];
+        }
+        return ((index << 6) + Long.numberOfTrailingZeros(current)) << WORD_SHIFT;
+    }
+}
@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class Process {
+    private final int id;
     private List<Integer> Wptrs = new ArrayList<>();
     @Nonnull private Integer topWptr;
     public ProcessStatus status;
@@ -30,9 +31,21 @@ public class Process {
         return Wptrs.get(Wptrs.size() - 1);
     }
 
-    public Process(int Wptr, ProcessStatus status) {
+    public int getId() {
+        return id;
+    }
+
+    public Process(int id, int Wptr, ProcessStatus status) {
+        this.id = id;
         this.Wptrs.add(Wptr);
         this.topWptr = Wptr;
         this.status = status;
     }
+
+    Process(int id, List<Integer> Wptrs, int topWptr, ProcessStatus status) {
+        this.id = id;
+        this.Wptrs.addAll(Wptrs);
+        this.topWptr = topWptr;
+        this.status = status;
+    }
 }
@@ -0,0 +1,243 @@
+package uk.co.transputersystems.transputer.simulator.debugger;
+
+import uk.co.transputersystems.transputer.simulator.TransputerHelpers;
+
+import javax.annotation.Nullable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The processes the debugger knows about on one transputer, indexed by workspace so that every lookup and status
+ * change is O(1). Processes are retired from the table when they terminate; if history is enabled they are kept
+ * in a separate log so they can still be listed.
+ */
+public class ProcessTable {
+    private static final int WORD_SHIFT = 2;
+
+    /**
+     * Told when a process first appears in the table and when it is retired.
+     */
+    public interface Listener {
+        void started(Process process);
+
+        void terminated(Process process);
+    }
+
+    // Live processes by the word their current workspace pointer points at
+    private final Process[] byWorkspace;
+    // Live processes in the order they were created
+    private final Set<Process> live = new LinkedHashSet<>();
+    @Nullable private List<Process> history;
+    @Nullable private Listener listener;
+    private int nextId;
+
+    public ProcessTable(int memSize) {
+        byWorkspace = new Process[memSize >> WORD_SHIFT];
+    }
+
+    /**
+     * Keep terminated processes in a history log rather than forgetting them.
+     */
+    public void setHistoryEnabled(boolean enabled) {
+        history = enabled ? new ArrayList<>() : null;
+    }
+
+    public boolean isHistoryEnabled() {
+        return history != null;
+    }
+
+    public void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return the process whose current workspace is `Wdesc` (the priority bit is ignored), or null
+     */
+    @Nullable
+    public Process get(int Wdesc) {
+        int slot = slot(Wdesc);
+        return slot < 0 ? null : byWorkspace[slot];
+    }
+
+    /**
+     * Record that the process with workspace `Wdesc` has been scheduled. A live process already using the workspace
+     * is rescheduled rather than duplicated.
+     */
+    public Process schedule(int Wdesc, ProcessStatus status) {
+        Process process = get(Wdesc);
+        if (process == null) {
+            process = new Process(nextId++, Wdesc, status);
+            live.add(process);
+            index(process);
+            if (listener != null) {
+                listener.started(process);
+            }
+        } else {
+            process.status = status;
+        }
+        return process;
+    }
+
+    /**
+     * Change the status of the process with workspace `Wdesc`, if there is one and its status is `from`.
+     */
+    public void transition(int Wdesc, ProcessStatus from, ProcessStatus to) {
+        Process process = get(Wdesc);
+        if (process != null && process.status == from) {
+            process.status = to;
+        }
+    }
+
+    /**
+     * Record that a process has moved its workspace, e.g. with `ajw` or `call`.
+     */
+    public void move(Process process, int Wdesc) {
+        unindex(process);
+        process.updateWptr(Wdesc);
+        index(process);
+    }
+
+    /**
+     * Mark the process with workspace `Wdesc` as terminated and retire it from the table.
+     */
+    public void terminate(int Wdesc) {
+        Process process = get(Wdesc);
+        if (process != null) {
+            terminate(process);
+        }
+    }
+
+    public void terminate(Process process) {
+        process.status = ProcessStatus.TERMINATED;
+        unindex(process);
+        live.remove(process);
+        if (history != null) {
+            history.add(process);
+        }
+        if (listener != null) {
+            listener.terminated(process);
+        }
+    }
+
+    /**
+     * Forget every process, live or terminated. Ids start again from 0.
+     */
+    public void clear() {
+        Arrays.fill(byWorkspace, null);
+        live.clear();
+        if (history != null) {
+            history.clear();
+        }
+        nextId = 0;
+    }
+
+    /**
+     * Write every process, live and terminated, with the workspaces each has used.
+     */
+    public void save(DataOutput output) throws IOException {
+        output.writeInt(nextId);
+        output.writeInt(live.size());
+        for (Process process : live) {
+            write(output, process);
+        }
+        List<Process> terminated = getHistory();
+        output.writeInt(terminated.size());
+        for (Process process : terminated) {
+            write(output, process);
+        }
+    }
+
+    /**
+     * Replace every process with those written by `save`. Terminated processes are only kept if history is enabled.
+     */
+    public void restore(DataInput input) throws IOException {
+        clear();
+        int savedNextId = input.readInt();
+        int liveCount = input.readInt();
+        for (int i = 0; i < liveCount; i++) {
+            Process process = read(input);
+            live.add(process);
+            index(process);
+            if (listener != null) {
+                listener.started(process);
+            }
+        }
+        int terminatedCount = input.readInt();
+        for (int i = 0; i < terminatedCount; i++) {
+            Process process = read(input);
+            if (history != null) {
+                history.add(process);
+            }
+        }
+        nextId = savedNextId;
+    }
+
+    private static void write(DataOutput output, Process process) throws IOException {
+        output.writeInt(process.getId());
+        output.writeByte(process.status.ordinal());
+        output.writeInt(process.getTopWptr());
+        List<Integer> Wptrs = process.getWptrs();
+        output.writeInt(Wptrs.size());
+        for (int Wptr : Wptrs) {
+            output.writeInt(Wptr);
+        }
+    }
+
+    private static Process read(DataInput input) throws IOException {
+        int id = input.readInt();
+        ProcessStatus status = ProcessStatus.values()[input.readUnsignedByte()];
+        int topWptr = input.readInt();
+        int count = input.readInt();
+        List<Integer> Wptrs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Wptrs.add(input.readInt());
+        }
+        return new Process(id, Wptrs, topWptr, status);
+    }
+
+    /**
+     * @return the live processes, oldest first
+     */
+    public Collection<Process> getLive() {
+        return Collections.unmodifiableCollection(live);
+    }
+
+    /**
+     * @return the terminated processes, oldest first, or an empty list if history is disabled
+     */
+    public List<Process> getHistory() {
+        return history == null ? Collections.emptyList() : Collections.unmodifiableList(history);
+    }
+
+    private void index(Process process) {
+        int slot = slot(process.getCurrentWptr());
+        if (slot >= 0) {
+            Process previous = byWorkspace[slot];
+            if (previous != null && previous != process) {
+                // Two processes cannot share a workspace, so the old one must have finished unnoticed
+                terminate(previous);
+            }
+            byWorkspace[slot] = process;
+        }
+    }
+
+    private void unindex(Process process) {
+        int slot = slot(process.getCurrentWptr());
+        if (slot >= 0 && byWorkspace[slot] == process) {
+            byWorkspace[slot] = null;
+        }
+    }
+
+    private int slot(int Wdesc) {
+        int slot = TransputerHelpers.extractWorkspacePointer(Wdesc) >> WORD_SHIFT;
+        return slot >= 0 && slot < byWorkspace.length ? slot : -1;
+    }
+}
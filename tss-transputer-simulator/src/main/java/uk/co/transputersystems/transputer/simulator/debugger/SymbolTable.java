@@ -0,0 +1,74 @@
+package uk.co.transputersystems.transputer.simulator.debugger;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * The labels of the program loaded into a transputer, by address. Where several labels share an address the first
+ * one added is used.
+ */
+public class SymbolTable {
+    // Labels the occam compiler makes for jumps, e.g. `L12`, which do not start a function
+    private static final Pattern LOCAL_LABEL = Pattern.compile("L[0-9]+");
+    // Separates a function name from the name of an IL label within it, e.g. `main~IL_3`
+    private static final char FUNCTION_SEPARATOR = '~';
+
+    private final TreeMap<Integer, String> byAddress = new TreeMap<>();
+
+    public void add(String name, int address) {
+        byAddress.putIfAbsent(address, name);
+    }
+
+    public void clear() {
+        byAddress.clear();
+    }
+
+    public boolean isEmpty() {
+        return byAddress.isEmpty();
+    }
+
+    /**
+     * @return the nearest label at or before an address, or null if there is none
+     */
+    @Nullable
+    public String labelAt(int address) {
+        Map.Entry<Integer, String> entry = byAddress.floorEntry(address);
+        return entry == null ? null : entry.getValue();
+    }
+
+    /**
+     * @return an address as the nearest label before it plus an offset, e.g. `loop+0x3`, or in hex if there is no
+     * label before it
+     */
+    public String describe(int address) {
+        Map.Entry<Integer, String> entry = byAddress.floorEntry(address);
+        if (entry == null) {
+            return String.format("0x%08X", address);
+        } else if (entry.getKey() == address) {
+            return entry.getValue();
+        } else {
+            return String.format("%s+0x%X", entry.getValue(), address - entry.getKey());
+        }
+    }
+
+    /**
+     * @return the function holding an address: the part of the nearest label before `~`, skipping the compiler's
+     * jump labels. Null if there is no such label.
+     */
+    @Nullable
+    public String functionAt(int address) {
+        for (Map.Entry<Integer, String> entry = byAddress.floorEntry(address); entry != null;
+             entry = byAddress.lowerEntry(entry.getKey())) {
+            String name = entry.getValue();
+            int separator = name.indexOf(FUNCTION_SEPARATOR);
+            if (separator > 0) {
+                return name.substring(0, separator);
+            } else if (!LOCAL_LABEL.matcher(name).matches()) {
+                return name;
+            }
+        }
+        return null;
+    }
+}
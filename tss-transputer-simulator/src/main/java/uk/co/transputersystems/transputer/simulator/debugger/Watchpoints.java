@@ -0,0 +1,155 @@
+package uk.co.transputersystems.transputer.simulator.debugger;
+
+import uk.co.transputersystems.transputer.simulator.Transputer;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The data watchpoints of one transputer. Memory is divided into pages with one bit each, set while any watchpoint
+ * covers part of the page; only accesses to marked pages are compared with the watchpoints. Watchpoints that fire
+ * during a step are kept until the simulator takes them after the step.
+ */
+public class Watchpoints {
+    private static final int PAGE_SHIFT = 6;
+
+    public enum Kind {
+        READ("read"), WRITE("write"), ACCESS("access");
+
+        public final String description;
+
+        Kind(String description) {
+            this.description = description;
+        }
+    }
+
+    public static class Watchpoint {
+        public final int start;
+        public final int length;
+        public final Kind kind;
+        @Nullable public final Condition condition;
+        private long hits;
+        private int lastAddress;
+        private boolean lastWrite;
+
+        public Watchpoint(int start, int length, Kind kind, @Nullable Condition condition) {
+            this.start = start;
+            this.length = length;
+            this.kind = kind;
+            this.condition = condition;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * @return the address of the access that last fired the watchpoint
+         */
+        public int getLastAddress() {
+            return lastAddress;
+        }
+
+        public boolean wasLastWrite() {
+            return lastWrite;
+        }
+
+        private boolean overlaps(int address, int count) {
+            return address < start + length && start < address + count;
+        }
+    }
+
+    private final long[] pages;
+    private final List<Watchpoint> watchpoints = new ArrayList<>();
+    private final List<Watchpoint> fired = new ArrayList<>();
+
+    public Watchpoints(int memSize) {
+        pages = new long[((memSize >> PAGE_SHIFT) + 64) >> 6];
+    }
+
+    /**
+     * @return true if any watchpoint is set, so that memory accesses need checking
+     */
+    public boolean isWatching() {
+        return !watchpoints.isEmpty();
+    }
+
+    /**
+     * Add a watchpoint, replacing any other that starts at the same address.
+     */
+    public void add(Watchpoint watchpoint) {
+        remove(watchpoint.start);
+        watchpoints.add(watchpoint);
+        markPages();
+    }
+
+    /**
+     * @return false if no watchpoint starts at the address
+     */
+    public boolean remove(int start) {
+        boolean removed = watchpoints.removeIf(watchpoint -> watchpoint.start == start);
+        markPages();
+        return removed;
+    }
+
+    /**
+     * @return the watchpoints in the order they were set
+     */
+    public List<Watchpoint> getAll() {
+        return Collections.unmodifiableList(watchpoints);
+    }
+
+    /**
+     * Check an access to `count` bytes of memory against the watchpoints.
+     */
+    public void access(Transputer transputer, int address, int count, boolean write) {
+        int first = address >> PAGE_SHIFT;
+        int last = (address + count - 1) >> PAGE_SHIFT;
+        boolean marked = false;
+        for (int page = first; page <= last && !marked; page++) {
+            marked = page >= 0 && (page >> 6) < pages.length && (pages[page >> 6] & (1L << page)) != 0;
+        }
+        if (!marked) {
+            return;
+        }
+        for (Watchpoint watchpoint : watchpoints) {
+            if (watchpoint.overlaps(address, count) &&
+                    (watchpoint.kind == Kind.ACCESS || (watchpoint.kind == Kind.WRITE) == write) &&
+                    (watchpoint.condition == null || watchpoint.condition.test(transputer))) {
+                watchpoint.hits++;
+                watchpoint.lastAddress = address;
+                watchpoint.lastWrite = write;
+                if (!fired.contains(watchpoint)) {
+                    fired.add(watchpoint);
+                }
+            }
+        }
+    }
+
+    public boolean hasFired() {
+        return !fired.isEmpty();
+    }
+
+    /**
+     * @return the watchpoints that have fired since this was last called
+     */
+    public List<Watchpoint> takeFired() {
+        List<Watchpoint> result = new ArrayList<>(fired);
+        fired.clear();
+        return result;
+    }
+
+    private void markPages() {
+        Arrays.fill(pages, 0);
+        for (Watchpoint watchpoint : watchpoints) {
+            for (int page = watchpoint.start >> PAGE_SHIFT; page <= (watchpoint.start + watchpoint.length - 1) >> PAGE_SHIFT; page++) {
+                if (page >= 0 && (page >> 6) < pages.length) {
+                    pages[page >> 6] |= 1L << page;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package uk.co.transputersystems.transputer.simulator.io;
+
+import java.util.Random;
+
+/**
+ * Drives an input pin from a function of the step, so that a workload can run for as long as needed without a file.
+ */
+public class Generator implements PinDevice {
+
+    public enum Waveform {
+        CONSTANT,   // Always `high`
+        SQUARE,     // `low` for the first half of each period and `high` for the second
+        COUNTER,    // Counts up by one every period, starting from `low`
+        RANDOM      // A new value from `low` to `high` inclusive every period, the same for any given seed
+    }
+
+    private final Waveform waveform;
+    private final long period;
+    private final int low;
+    private final int high;
+    private final long seed;
+
+    public Generator(Waveform waveform, long period, int low, int high, long seed) {
+        if (period < 1) {
+            throw new IllegalArgumentException("The period of a generator must be at least 1 step.");
+        }
+        this.waveform = waveform;
+        this.period = period;
+        this.low = low;
+        this.high = high;
+        this.seed = seed;
+    }
+
+    @Override
+    public int read(long step) {
+        switch (waveform) {
+            case SQUARE:
+                return step % period < (period + 1) / 2 ? low : high;
+            case COUNTER:
+                return low + (int) (step / period);
+            case RANDOM:
+                // Seeded from the period rather than drawn in turn, so the value does not depend on when pins are read
+                Random random = new Random(seed * 0x9E3779B97F4A7C15L + step / period);
+                return low + (int) ((random.nextLong() >>> 1) % ((long) high - low + 1));
+            default:
+                return high;
+        }
+    }
+}
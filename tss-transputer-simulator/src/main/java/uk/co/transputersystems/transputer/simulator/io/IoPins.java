@@ -0,0 +1,154 @@
+package uk.co.transputersystems.transputer.simulator.io;
+
+import uk.co.transputersystems.transputer.assembler.Assembler;
+import uk.co.transputersystems.transputer.assembler.config.AssemblerConfig;
+import uk.co.transputersystems.transputer.assembler.config.IOPin;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The memory-mapped I/O pins of one transputer. A pin is addressed like a channel: `in` and `out` on its address
+ * complete at once, reading from or writing to the pin's device. Pins come from the `iopins` of an assembler
+ * configuration, or are made by `confio`; a pin without a device reads as 0 and ignores writes.
+ */
+public class IoPins implements Closeable {
+
+    public static class Pin {
+        public final int address;
+        @Nullable public final String name;
+        public boolean output;
+        @Nullable public final PinDevice device;
+        // The last value written, which is what an output pin reads as
+        public int value;
+
+        Pin(int address, @Nullable String name, boolean output, @Nullable PinDevice device) {
+            this.address = address;
+            this.name = name;
+            this.output = output;
+            this.device = device;
+        }
+    }
+
+    private final Map<Integer, Pin> pins = new LinkedHashMap<>();
+    // The transputer the pins belong to
+    public final int processor;
+
+    public IoPins(int processor) {
+        this.processor = processor;
+    }
+
+    /**
+     * Load the pins and their devices from an assembler configuration `yaml` file.
+     */
+    public static IoPins load(File file) throws IOException {
+        AssemblerConfig config;
+        try (Reader reader = Files.newBufferedReader(file.toPath())) {
+            config = Assembler.loadConfig(reader);
+        }
+        if (config == null) {
+            throw new IOException("The configuration is empty.");
+        }
+        File directory = file.getAbsoluteFile().getParentFile();
+        IoPins ioPins = new IoPins(config.getProcessor().getProcessor_id());
+        try {
+            for (IOPin pin : config.getProcessor().getIopins()) {
+                PinDevice device = pin.getDevice() == null ? null : PinDevices.create(pin.getDevice(), directory);
+                ioPins.add(pin.getAddr(), pin.getChannel(), pin.getConfig() == 1, device);
+            }
+        } catch (IOException | RuntimeException e) {
+            ioPins.close();
+            throw e;
+        }
+        return ioPins;
+    }
+
+    public void add(int address, @Nullable String name, boolean output, @Nullable PinDevice device) {
+        if (pins.containsKey(address)) {
+            throw new IllegalArgumentException(String.format("There is already a pin at address %d.", address));
+        }
+        pins.put(address, new Pin(address, name, output, device));
+    }
+
+    /**
+     * Set the direction of the pin at the address, as `confio` does, adding the pin if there is none.
+     */
+    public void configure(int address, boolean output) {
+        Pin pin = pins.get(address);
+        if (pin == null) {
+            pins.put(address, new Pin(address, null, output, null));
+        } else {
+            pin.output = output;
+        }
+    }
+
+    public boolean isPin(int address) {
+        return pins.containsKey(address);
+    }
+
+    public Collection<Pin> getPins() {
+        return pins.values();
+    }
+
+    /**
+     * @return the value on an input pin, or the last value written to an output pin
+     */
+    public int read(int address, long step) {
+        Pin pin = pins.get(address);
+        if (!pin.output) {
+            try {
+                pin.value = pin.device == null ? 0 : pin.device.read(step);
+            } catch (IOException e) {
+                throw new UncheckedIOException(describe(pin), e);
+            }
+        }
+        return pin.value;
+    }
+
+    /**
+     * Write to an output pin. Writes to input pins are ignored.
+     */
+    public void write(int address, long step, int value) {
+        Pin pin = pins.get(address);
+        if (!pin.output) {
+            return;
+        }
+        pin.value = value;
+        if (pin.device != null) {
+            try {
+                pin.device.write(step, value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(describe(pin), e);
+            }
+        }
+    }
+
+    private static String describe(Pin pin) {
+        return pin.name != null ? String.format("Pin %s (%d)", pin.name, pin.address) : String.format("Pin %d", pin.address);
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Pin pin : pins.values()) {
+            if (pin.device != null) {
+                try {
+                    pin.device.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
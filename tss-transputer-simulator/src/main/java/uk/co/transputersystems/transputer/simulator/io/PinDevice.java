@@ -0,0 +1,32 @@
+package uk.co.transputersystems.transputer.simulator.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A model of what is wired to one memory-mapped I/O pin. Input pins are read and output pins written by the program
+ * with `in` and `out` on the pin's address; both happen at once, at the step given.
+ *
+ * Devices other than those built in are named in the configuration by class name, and need a public constructor
+ * taking the device's options (`Map<String, Object>`) and the directory holding the configuration (`File`).
+ */
+public interface PinDevice extends Closeable {
+
+    /**
+     * @return the value on the pin at the step
+     */
+    default int read(long step) throws IOException {
+        throw new IOException("The device cannot be read.");
+    }
+
+    /**
+     * Take a value written to the pin at the step.
+     */
+    default void write(long step, int value) throws IOException {
+        throw new IOException("The device cannot be written.");
+    }
+
+    @Override
+    default void close() throws IOException {
+    }
+}
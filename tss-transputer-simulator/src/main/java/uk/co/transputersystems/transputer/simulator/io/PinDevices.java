@@ -0,0 +1,81 @@
+package uk.co.transputersystems.transputer.simulator.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+
+/**
+ * Creates the device for a pin from its `device` entry in an assembler configuration.
+ */
+public class PinDevices {
+
+    private PinDevices() {
+    }
+
+    /**
+     * @param options the `device` entry; `type` names a built-in device or a class implementing {@link PinDevice}
+     * @param directory the directory holding the configuration, which file names are relative to
+     */
+    public static PinDevice create(Map<String, Object> options, File directory) throws IOException {
+        Object type = options.get("type");
+        if (type == null) {
+            throw new IllegalArgumentException("A pin device needs a type.");
+        }
+        switch (type.toString()) {
+            case "file":
+                return new StimulusFile(file(options, directory), integer(options, "initial", 0));
+            case "log":
+                return new PinLog(file(options, directory), Boolean.TRUE.equals(options.get("every_write")));
+            case "constant":
+                return new Generator(Generator.Waveform.CONSTANT, 1, 0, integer(options, "value", 0), 0);
+            case "square":
+            case "counter":
+            case "random":
+                return new Generator(Generator.Waveform.valueOf(type.toString().toUpperCase()),
+                        integer(options, "period", 1), integer(options, "low", 0), integer(options, "high", 1),
+                        integer(options, "seed", 0));
+            default:
+                return custom(type.toString(), options, directory);
+        }
+    }
+
+    private static PinDevice custom(String className, Map<String, Object> options, File directory) throws IOException {
+        try {
+            Class<?> deviceClass = Class.forName(className);
+            if (!PinDevice.class.isAssignableFrom(deviceClass)) {
+                throw new IllegalArgumentException(className + " is not a pin device.");
+            }
+            return (PinDevice) deviceClass.getConstructor(Map.class, File.class).newInstance(options, directory);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Unknown pin device: " + className);
+        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Could not create pin device " + className + ": " + e);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalArgumentException("Could not create pin device " + className + ": " + e.getCause());
+        }
+    }
+
+    private static File file(Map<String, Object> options, File directory) {
+        Object name = options.get("file");
+        if (name == null) {
+            throw new IllegalArgumentException("A " + options.get("type") + " pin device needs a file.");
+        }
+        File file = new File(name.toString());
+        return file.isAbsolute() ? file : new File(directory, name.toString());
+    }
+
+    private static int integer(Map<String, Object> options, String name, int otherwise) {
+        Object value = options.get(name);
+        if (value == null) {
+            return otherwise;
+        }
+        if (!(value instanceof Number)) {
+            throw new IllegalArgumentException("The " + name + " of a pin device must be a number.");
+        }
+        return ((Number) value).intValue();
+    }
+}
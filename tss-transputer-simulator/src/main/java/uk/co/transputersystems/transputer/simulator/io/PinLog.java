@@ -0,0 +1,41 @@
+package uk.co.transputersystems.transputer.simulator.io;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Records an output pin as `step value` lines in the format read by {@link StimulusFile}. Only writes that change
+ * the value are recorded, unless every write is asked for, so logs of pins that are refreshed in a loop stay small.
+ */
+public class PinLog implements PinDevice {
+
+    private final PrintWriter writer;
+    private final boolean everyWrite;
+    private boolean written;
+    private int value;
+
+    public PinLog(File file, boolean everyWrite) throws IOException {
+        this.writer = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+        this.everyWrite = everyWrite;
+    }
+
+    @Override
+    public void write(long step, int value) throws IOException {
+        if (everyWrite || !written || value != this.value) {
+            writer.printf("%d %d\n", step, value);
+            if (writer.checkError()) {
+                throw new IOException("Could not write to pin log.");
+            }
+        }
+        written = true;
+        this.value = value;
+    }
+
+    @Override
+    public void close() {
+        writer.close();
+    }
+}
@@ -0,0 +1,70 @@
+package uk.co.transputersystems.transputer.simulator.io;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Drives an input pin from a file of `step value` lines in step order, e.g. recorded from a sensor. The pin holds
+ * each value from its step until the next. Lines starting with `#` are ignored, and values may be given in hex with
+ * `0x`. The file is read as the simulation reaches it, so it may be much larger than memory.
+ */
+public class StimulusFile implements PinDevice {
+
+    private final File file;
+    private final BufferedReader reader;
+    private int value;
+    private long nextStep = -1;
+    private int nextValue;
+    private long line;
+
+    public StimulusFile(File file, int initial) throws IOException {
+        this.file = file;
+        this.reader = Files.newBufferedReader(file.toPath());
+        this.value = initial;
+        advance();
+    }
+
+    @Override
+    public int read(long step) throws IOException {
+        while (nextStep >= 0 && nextStep <= step) {
+            value = nextValue;
+            advance();
+        }
+        return value;
+    }
+
+    private void advance() throws IOException {
+        long previous = nextStep;
+        String text;
+        do {
+            text = reader.readLine();
+            line++;
+            if (text == null) {
+                nextStep = -1;
+                return;
+            }
+            text = text.trim();
+        } while (text.isEmpty() || text.startsWith("#"));
+
+        String[] fields = text.split("\\s+");
+        if (fields.length != 2) {
+            throw new IOException(String.format("%s:%d: expected a step and a value", file, line));
+        }
+        try {
+            nextStep = Long.parseLong(fields[0]);
+            nextValue = (int) (long) Long.decode(fields[1]);
+        } catch (NumberFormatException e) {
+            throw new IOException(String.format("%s:%d: %s", file, line, e.getMessage()));
+        }
+        if (nextStep < previous) {
+            throw new IOException(String.format("%s:%d: steps must not go backwards", file, line));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,83 @@
+package uk.co.transputersystems.transputer.simulator.jit;
+
+import uk.co.transputersystems.transputer.simulator.MemoryModel;
+import uk.co.transputersystems.transputer.simulator.timing.TimingModel;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * The translated blocks of one transputer, keyed by entry address. Each address is counted as the interpreter reaches
+ * it, and the block starting there is translated once the count reaches the threshold. Blocks are thrown away when
+ * any of the code they cover is written.
+ */
+public class BlockCache {
+    // A count that never reaches the threshold, for blocks that could not be translated
+    private static final int UNTRANSLATABLE = Integer.MIN_VALUE;
+
+    private final MemoryModel mem;
+    private final int threshold;
+    private final BlockTranslator translator = new BlockTranslator();
+    private final int[] counts;
+    private final CompiledBlock[] blocks;
+    @Nullable private TimingModel timing;
+
+    public BlockCache(MemoryModel mem, int threshold) {
+        this.mem = mem;
+        this.threshold = threshold;
+        this.counts = new int[mem.size()];
+        this.blocks = new CompiledBlock[mem.size()];
+    }
+
+    /**
+     * Count the cycles of translated blocks with a timing model.
+     */
+    public void setTimingModel(@Nullable TimingModel timing) {
+        this.timing = timing;
+        invalidateAll();
+    }
+
+    /**
+     * Count an entry to an address.
+     * @return the block starting at the address, or null if it is not yet hot or cannot be translated
+     */
+    @Nullable
+    public CompiledBlock lookup(int address) {
+        CompiledBlock block = blocks[address];
+        if (block == null && ++counts[address] == threshold) {
+            block = translator.translate(mem, address, timing);
+            if (block == null) {
+                counts[address] = UNTRANSLATABLE;
+            }
+            blocks[address] = block;
+        }
+        return block;
+    }
+
+    /**
+     * Forget the blocks that overlap the given bytes of memory, and start counting entries to them again.
+     */
+    public void invalidate(int address, int count) {
+        int first = Math.max(address - BlockTranslator.MAX_LENGTH + 1, 0);
+        int last = Math.min(address + count, blocks.length);
+        for (int i = first; i < last; i++) {
+            CompiledBlock block = blocks[i];
+            if (block != null ? i + block.length > address : counts[i] == UNTRANSLATABLE) {
+                blocks[i] = null;
+                counts[i] = 0;
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        Arrays.fill(blocks, null);
+        Arrays.fill(counts, 0);
+    }
+
+    /**
+     * @return the number of blocks translated so far
+     */
+    public int getTranslated() {
+        return translator.getTranslated();
+    }
+}
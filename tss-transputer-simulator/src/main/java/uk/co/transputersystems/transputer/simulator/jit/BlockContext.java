@@ -0,0 +1,57 @@
+package uk.co.transputersystems.transputer.simulator.jit;
+
+import uk.co.transputersystems.transputer.simulator.TransputerConstants;
+import uk.co.transputersystems.transputer.simulator.TransputerHelpers;
+import uk.co.transputersystems.transputer.simulator.UnexpectedOverflowException;
+
+/**
+ * What translated code needs from the transputer running it. Memory is reached through the transputer so that writes
+ * are still recorded for the debugger, reverse execution and watchpoints. The static methods give the instructions
+ * that would otherwise need branches in the generated code the same results as the interpreter.
+ */
+public abstract class BlockContext {
+
+    /**
+     * @return the workspace pointer of the running process, without its priority bit
+     */
+    public abstract int workspace();
+
+    public abstract int readWord(int base, int nth);
+
+    /**
+     * Write a word for a store instruction. The registers are passed as they will be once the instruction is
+     * complete, so that if the write changes code later in the running block, the transputer can leave the block by
+     * throwing a {@link BlockExit} and carry on in the interpreter from the next instruction.
+     * @param next the address of the instruction after the store
+     */
+    public abstract void writeWord(int base, int nth, int value, int areg, int breg, int creg, int next);
+
+    /**
+     * Set the error flag if the operation would overflow, as the interpreter does.
+     */
+    public abstract void overflowCheck(int opcode, int a, int b) throws UnexpectedOverflowException;
+
+    public static int atWord(int base, int nth) {
+        return TransputerHelpers.extractWordSelector(base) + nth * TransputerConstants.BYTESPERWORD;
+    }
+
+    public static int eqc(int a, int constant) {
+        return a == constant ? 1 : 0;
+    }
+
+    public static int gt(int b, int a) {
+        return b > a ? 1 : 0;
+    }
+
+    public static int shl(int b, int a) {
+        return a < TransputerConstants.BITSPERWORD ? b << a : 0;
+    }
+
+    public static int shr(int b, int a) {
+        return a < TransputerConstants.BITSPERWORD ? b >> a : 0;
+    }
+
+    public static int byteSelector(int a) {
+        return TransputerHelpers.extractByteSelector(a);
+    }
+}
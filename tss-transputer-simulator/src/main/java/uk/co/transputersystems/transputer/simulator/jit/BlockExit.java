@@ -0,0 +1,22 @@
+package uk.co.transputersystems.transputer.simulator.jit;
+
+/**
+ * Thrown by a {@link BlockContext} to leave a translated block part way through, after a store has overwritten code
+ * the block has yet to run. Holds the registers and instruction pointer to carry on from in the interpreter.
+ */
+public class BlockExit extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public final int Iptr;
+    public final int Areg;
+    public final int Breg;
+    public final int Creg;
+
+    public BlockExit(int Iptr, int Areg, int Breg, int Creg) {
+        super(null, null, false, false);
+        this.Iptr = Iptr;
+        this.Areg = Areg;
+        this.Breg = Breg;
+        this.Creg = Creg;
+    }
+}
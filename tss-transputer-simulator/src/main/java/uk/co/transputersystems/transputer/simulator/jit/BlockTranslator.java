@@ -0,0 +1,411 @@
+package uk.co.transputersystems.transputer.simulator.jit;
+
+import uk.co.transputersystems.transputer.simulator.MemoryModel;
+import uk.co.transputersystems.transputer.simulator.TransputerConstants;
+import uk.co.transputersystems.transputer.simulator.TransputerHelpers;
+import uk.co.transputersystems.transputer.simulator.timing.TimingModel;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * Translates straight-line runs of transputer instructions into JVM classes. A block starts at any instruction and
+ * takes in every following instruction that only works on the evaluation stack, the workspace or memory: loads,
+ * stores, arithmetic and logic. It stops before anything that jumps, calls, changes Wptr or reaches the scheduler,
+ * timers or links, which are left to the interpreter.
+ *
+ * In the generated code Areg, Breg, Creg and the workspace pointer live in JVM locals, so HotSpot can compile each
+ * block down to a few machine instructions per transputer instruction.
+ */
+public class BlockTranslator {
+
+    /**
+     * The most bytes of transputer code one block will cover.
+     */
+    public static final int MAX_LENGTH = 256;
+
+    /**
+     * Blocks of fewer instructions than this are not worth translating.
+     */
+    public static final int MIN_INSTRUCTIONS = 2;
+
+    private static final String CONTEXT = "uk/co/transputersystems/transputer/simulator/jit/BlockContext";
+    private static final String REGISTERS = "uk/co/transputersystems/transputer/simulator/models/Registers";
+    private static final String BLOCK = "uk/co/transputersystems/transputer/simulator/jit/TranslatedBlock";
+
+    // JVM locals of the generated method
+    private static final int REGISTERS_LOCAL = 1;
+    private static final int CONTEXT_LOCAL = 2;
+    private static final int A = 3;
+    private static final int B = 4;
+    private static final int C = 5;
+    private static final int W = 6;
+    private static final int LOCALS = 7;
+    private static final int MAX_STACK = 8;
+
+    private final Loader loader = new Loader(BlockTranslator.class.getClassLoader());
+    private int translated;
+
+    private static class Loader extends ClassLoader {
+        Loader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] classFile) {
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+
+    /**
+     * Translate the block starting at an address.
+     * @param timing the timing model to count the block's cycles with, or null
+     * @return the translated block, or null if too few instructions could be translated
+     */
+    @Nullable
+    public CompiledBlock translate(MemoryModel mem, int start, @Nullable TimingModel timing) {
+        ClassBuilder code = new ClassBuilder();
+        prologue(code);
+
+        int address = start;
+        int instructions = 0;
+        long cycles = 0;
+        int[] ends = new int[MAX_LENGTH];
+        long[] cyclesTo = new long[MAX_LENGTH];
+        while (address < mem.size() && address - start < MAX_LENGTH) {
+            // Fold any prefixes, as the interpreter would build up Oreg
+            int operand = 0;
+            int length = 0;
+            long prefixCycles = 0;
+            byte opcode;
+            while (true) {
+                if (address + length >= mem.size() || address + length - start >= MAX_LENGTH) {
+                    opcode = -1;
+                    break;
+                }
+                byte instruction = mem.readByte(address + length);
+                opcode = TransputerHelpers.extractOpcode(instruction);
+                operand |= TransputerHelpers.extractDirectOperand(instruction);
+                length++;
+                if (opcode == TransputerConstants.PFIX) {
+                    operand = operand << 4;
+                } else if (opcode == TransputerConstants.NFIX) {
+                    operand = (~operand) << 4;
+                } else {
+                    break;
+                }
+                if (timing != null) {
+                    prefixCycles += timing.primaryCycles(opcode);
+                }
+            }
+            int next = address + length;
+            if (opcode < 0 || !emit(code, opcode, operand, next)) {
+                break;
+            }
+            if (timing != null) {
+                cycles += prefixCycles + (opcode == TransputerConstants.OPR ?
+                        timing.secondaryCycles((byte) (operand & 0xFF)) : timing.primaryCycles(opcode));
+            }
+            ends[instructions] = next;
+            cyclesTo[instructions] = cycles;
+            instructions++;
+            address = next;
+        }
+
+        if (instructions < MIN_INSTRUCTIONS) {
+            return null;
+        }
+        epilogue(code);
+
+        String name = String.format("uk/co/transputersystems/transputer/simulator/jit/Block_%08X_%d", start, translated++);
+        byte[] classFile = code.build(name, BLOCK, "run", "(L" + REGISTERS + ";L" + CONTEXT + ";)V", MAX_STACK, LOCALS);
+        try {
+            TranslatedBlock block = (TranslatedBlock) loader.define(name.replace('/', '.'), classFile).getDeclaredConstructor().newInstance();
+            return new CompiledBlock(block, start, Arrays.copyOf(ends, instructions), Arrays.copyOf(cyclesTo, instructions));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not load translated block at " + Integer.toHexString(start), e);
+        }
+    }
+
+    /**
+     * @return the number of blocks translated so far
+     */
+    public int getTranslated() {
+        return translated;
+    }
+
+    private static void prologue(ClassBuilder code) {
+        getRegister(code, "Areg", A);
+        getRegister(code, "Breg", B);
+        getRegister(code, "Creg", C);
+        code.local(ClassBuilder.ALOAD, CONTEXT_LOCAL);
+        code.method(ClassBuilder.INVOKEVIRTUAL, CONTEXT, "workspace", "()I");
+        code.local(ClassBuilder.ISTORE, W);
+    }
+
+    private static void epilogue(ClassBuilder code) {
+        putRegister(code, "Areg", A);
+        putRegister(code, "Breg", B);
+        putRegister(code, "Creg", C);
+        code.op(ClassBuilder.RETURN);
+    }
+
+    private static void getRegister(ClassBuilder code, String name, int local) {
+        code.local(ClassBuilder.ALOAD, REGISTERS_LOCAL);
+        code.field(ClassBuilder.GETFIELD, REGISTERS, name, "I");
+        code.local(ClassBuilder.ISTORE, local);
+    }
+
+    private static void putRegister(ClassBuilder code, String name, int local) {
+        code.local(ClassBuilder.ALOAD, REGISTERS_LOCAL);
+        code.local(ClassBuilder.ILOAD, local);
+        code.field(ClassBuilder.PUTFIELD, REGISTERS, name, "I");
+    }
+
+    /**
+     * Emit the code for one instruction.
+     * @param next the address of the byte after the instruction
+     * @return false if the instruction cannot be translated
+     */
+    private static boolean emit(ClassBuilder code, byte opcode, int operand, int next) {
+        switch (opcode) {
+            case TransputerConstants.LDC:
+                push(code);
+                code.pushInt(operand);
+                code.local(ClassBuilder.ISTORE, A);
+                return true;
+            case TransputerConstants.LDL:
+                push(code);
+                readWord(code, W, operand);
+                code.local(ClassBuilder.ISTORE, A);
+                return true;
+            case TransputerConstants.STL:
+                writeWord(code, W, operand, A, B, C, C, next);
+                pop(code);
+                return true;
+            case TransputerConstants.LDLP:
+                push(code);
+                atWord(code, W, operand);
+                code.local(ClassBuilder.ISTORE, A);
+                return true;
+            case TransputerConstants.ADC:
+                overflowCheckConstant(code, TransputerConstants.ADD, operand, A);
+                code.local(ClassBuilder.ILOAD, A);
+                code.pushInt(operand);
+                code.op(ClassBuilder.IADD);
+                code.local(ClassBuilder.ISTORE, A);
+                return true;
+            case TransputerConstants.EQC:
+                code.local(ClassBuilder.ILOAD, A);
+                code.pushInt(operand);
+                code.method(ClassBuilder.INVOKESTATIC, CONTEXT, "eqc", "(II)I");
+                code.local(ClassBuilder.ISTORE, A);
+                return true;
+            case TransputerConstants.LDNL:
+                readWord(code, A, operand);
+                code.local(ClassBuilder.ISTORE, A);
+                return true;
+            case TransputerConstants.STNL:
+                writeWord(code, A, operand, B, C, B, C, next);
+                code.local(ClassBuilder.ILOAD, C);
+                code.local(ClassBuilder.ISTORE, A);
+                return true;
+            case TransputerConstants.LDNLP:
+                atWord(code, A, operand);
+                code.local(ClassBuilder.ISTORE, A);
+                return true;
+            case TransputerConstants.OPR:
+                return emitSecondary(code, (byte) (operand & 0xFF), next);
+            default:
+                return false;
+        }
+    }
+
+    private static boolean emitSecondary(ClassBuilder code, byte opcode, int next) {
+        switch (opcode) {
+            case TransputerConstants.REV:
+                code.local(ClassBuilder.ILOAD, A);
+                code.local(ClassBuilder.ILOAD, B);
+                code.local(ClassBuilder.ISTORE, A);
+                code.local(ClassBuilder.ISTORE, B);
+                return true;
+            case TransputerConstants.ADD:
+                overflowCheck(code, TransputerConstants.ADD, B, A);
+                binary(code, A, B, ClassBuilder.IADD);
+                return true;
+            case TransputerConstants.SUB:
+                overflowCheck(code, TransputerConstants.SUB, B, A);
+                binary(code, B, A, ClassBuilder.ISUB);
+                return true;
+            case TransputerConstants.MUL:
+                overflowCheck(code, TransputerConstants.MUL, B, A);
+                binary(code, B, A, ClassBuilder.IMUL);
+                return true;
+            case TransputerConstants.DIFF:
+                binary(code, B, A, ClassBuilder.ISUB);
+                return true;
+            case TransputerConstants.SUM:
+                binary(code, B, A, ClassBuilder.IADD);
+                return true;
+            case TransputerConstants.AND:
+                binary(code, A, B, ClassBuilder.IAND);
+                return true;
+            case TransputerConstants.OR:
+                binary(code, A, B, ClassBuilder.IOR);
+                return true;
+            case TransputerConstants.XOR:
+                binary(code, A, B, ClassBuilder.IXOR);
+                return true;
+            case TransputerConstants.NOT:
+                code.local(ClassBuilder.ILOAD, A);
+                code.pushInt(-1);
+                code.op(ClassBuilder.IXOR);
+                code.local(ClassBuilder.ISTORE, A);
+                return true;
+            case TransputerConstants.SHL:
+                helper(code, "shl");
+                return true;
+            case TransputerConstants.SHR:
+                helper(code, "shr");
+                return true;
+            case TransputerConstants.GT:
+                helper(code, "gt");
+                return true;
+            case TransputerConstants.BSUB:
+                binary(code, A, B, ClassBuilder.IADD);
+                return true;
+            case TransputerConstants.WSUB:
+                code.local(ClassBuilder.ILOAD, A);
+                code.local(ClassBuilder.ILOAD, B);
+                code.method(ClassBuilder.INVOKESTATIC, CONTEXT, "atWord", "(II)I");
+                code.local(ClassBuilder.ISTORE, A);
+                code.local(ClassBuilder.ILOAD, C);
+                code.local(ClassBuilder.ISTORE, B);
+                return true;
+            case TransputerConstants.BCNT:
+                code.local(ClassBuilder.ILOAD, A);
+                code.pushInt(TransputerConstants.BYTESPERWORD);
+                code.op(ClassBuilder.IMUL);
+                code.local(ClassBuilder.ISTORE, A);
+                return true;
+            case TransputerConstants.WCNT:
+                code.local(ClassBuilder.ILOAD, B);
+                code.local(ClassBuilder.ISTORE, C);
+                code.local(ClassBuilder.ILOAD, A);
+                code.method(ClassBuilder.INVOKESTATIC, CONTEXT, "byteSelector", "(I)I");
+                code.local(ClassBuilder.ISTORE, B);
+                code.local(ClassBuilder.ILOAD, A);
+                code.pushInt(TransputerConstants.BYTESELLEN);
+                code.op(ClassBuilder.ISHR);
+                code.local(ClassBuilder.ISTORE, A);
+                return true;
+            case TransputerConstants.MINT:
+                push(code);
+                code.pushInt(TransputerConstants.MININT);
+                code.local(ClassBuilder.ISTORE, A);
+                return true;
+            case TransputerConstants.LDPI:
+                code.local(ClassBuilder.ILOAD, A);
+                code.pushInt(next);
+                code.op(ClassBuilder.IADD);
+                code.local(ClassBuilder.ISTORE, A);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * C = B; B = A, ready for a new value of A.
+     */
+    private static void push(ClassBuilder code) {
+        code.local(ClassBuilder.ILOAD, B);
+        code.local(ClassBuilder.ISTORE, C);
+        code.local(ClassBuilder.ILOAD, A);
+        code.local(ClassBuilder.ISTORE, B);
+    }
+
+    /**
+     * A = B; B = C.
+     */
+    private static void pop(ClassBuilder code) {
+        code.local(ClassBuilder.ILOAD, B);
+        code.local(ClassBuilder.ISTORE, A);
+        code.local(ClassBuilder.ILOAD, C);
+        code.local(ClassBuilder.ISTORE, B);
+    }
+
+    /**
+     * A = first op second; B = C.
+     */
+    private static void binary(ClassBuilder code, int first, int second, int op) {
+        code.local(ClassBuilder.ILOAD, first);
+        code.local(ClassBuilder.ILOAD, second);
+        code.op(op);
+        code.local(ClassBuilder.ISTORE, A);
+        code.local(ClassBuilder.ILOAD, C);
+        code.local(ClassBuilder.ISTORE, B);
+    }
+
+    /**
+     * A = helper(B, A); B = C.
+     */
+    private static void helper(ClassBuilder code, String name) {
+        code.local(ClassBuilder.ILOAD, B);
+        code.local(ClassBuilder.ILOAD, A);
+        code.method(ClassBuilder.INVOKESTATIC, CONTEXT, name, "(II)I");
+        code.local(ClassBuilder.ISTORE, A);
+        code.local(ClassBuilder.ILOAD, C);
+        code.local(ClassBuilder.ISTORE, B);
+    }
+
+    private static void readWord(ClassBuilder code, int baseLocal, int nth) {
+        code.local(ClassBuilder.ALOAD, CONTEXT_LOCAL);
+        code.local(ClassBuilder.ILOAD, baseLocal);
+        code.pushInt(nth);
+        code.method(ClassBuilder.INVOKEVIRTUAL, CONTEXT, "readWord", "(II)I");
+    }
+
+    /**
+     * Write a word, passing the locals that will hold Areg, Breg and Creg once the store is complete.
+     */
+    private static void writeWord(ClassBuilder code, int baseLocal, int nth, int valueLocal,
+                                  int aAfter, int bAfter, int cAfter, int next) {
+        code.local(ClassBuilder.ALOAD, CONTEXT_LOCAL);
+        code.local(ClassBuilder.ILOAD, baseLocal);
+        code.pushInt(nth);
+        code.local(ClassBuilder.ILOAD, valueLocal);
+        code.local(ClassBuilder.ILOAD, aAfter);
+        code.local(ClassBuilder.ILOAD, bAfter);
+        code.local(ClassBuilder.ILOAD, cAfter);
+        code.pushInt(next);
+        code.method(ClassBuilder.INVOKEVIRTUAL, CONTEXT, "writeWord", "(IIIIIII)V");
+    }
+
+    private static void atWord(ClassBuilder code, int baseLocal, int nth) {
+        code.local(ClassBuilder.ILOAD, baseLocal);
+        code.pushInt(nth);
+        code.method(ClassBuilder.INVOKESTATIC, CONTEXT, "atWord", "(II)I");
+    }
+
+    /**
+     * Check an operation on two locals for overflow.
+     */
+    private static void overflowCheck(ClassBuilder code, int opcode, int aLocal, int bLocal) {
+        code.local(ClassBuilder.ALOAD, CONTEXT_LOCAL);
+        code.pushInt(opcode);
+        code.local(ClassBuilder.ILOAD, aLocal);
+        code.local(ClassBuilder.ILOAD, bLocal);
+        code.method(ClassBuilder.INVOKEVIRTUAL, CONTEXT, "overflowCheck", "(III)V");
+    }
+
+    /**
+     * Check an operation on a constant and a local for overflow.
+     */
+    private static void overflowCheckConstant(ClassBuilder code, int opcode, int constant, int bLocal) {
+        code.local(ClassBuilder.ALOAD, CONTEXT_LOCAL);
+        code.pushInt(opcode);
+        code.pushInt(constant);
+        code.local(ClassBuilder.ILOAD, bLocal);
+        code.method(ClassBuilder.INVOKEVIRTUAL, CONTEXT, "overflowCheck", "(III)V");
+    }
+}
@@ -0,0 +1,222 @@
+package uk.co.transputersystems.transputer.simulator.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the class files for translated blocks: a public final class with a no-argument constructor and one
+ * public method. Only the JVM instructions the translator needs are supported. The method body may not branch,
+ * which is what lets the class be written without stack map frames.
+ */
+class ClassBuilder {
+    static final int ILOAD = 0x15;
+    static final int ISTORE = 0x36;
+    static final int ALOAD = 0x19;
+    static final int IADD = 0x60;
+    static final int ISUB = 0x64;
+    static final int IMUL = 0x68;
+    static final int ISHL = 0x78;
+    static final int ISHR = 0x7A;
+    static final int IAND = 0x7E;
+    static final int IOR = 0x80;
+    static final int IXOR = 0x82;
+    static final int RETURN = 0xB1;
+    static final int GETFIELD = 0xB4;
+    static final int PUTFIELD = 0xB5;
+    static final int INVOKEVIRTUAL = 0xB6;
+    static final int INVOKESPECIAL = 0xB7;
+    static final int INVOKESTATIC = 0xB8;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+    private static final int JAVA_8 = 52;
+
+    private final ByteArrayOutputStream constantBytes = new ByteArrayOutputStream();
+    private final DataOutputStream constants = new DataOutputStream(constantBytes);
+    private final Map<String, Integer> constantIndices = new HashMap<>();
+    private int constantCount = 1;
+
+    private final ByteArrayOutputStream codeBytes = new ByteArrayOutputStream();
+    private final DataOutputStream code = new DataOutputStream(codeBytes);
+
+    /**
+     * Emit an instruction with no operands.
+     */
+    void op(int opcode) {
+        codeBytes.write(opcode);
+    }
+
+    /**
+     * Emit a load or store of a local variable.
+     */
+    void local(int opcode, int index) {
+        codeBytes.write(opcode);
+        codeBytes.write(index);
+    }
+
+    void pushInt(int value) {
+        try {
+            if (value >= -1 && value <= 5) {
+                code.writeByte(0x03 + value);           // iconst_<n>
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                code.writeByte(0x10);                   // bipush
+                code.writeByte(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                code.writeByte(0x11);                   // sipush
+                code.writeShort(value);
+            } else {
+                code.writeByte(0x13);                   // ldc_w
+                code.writeShort(integer(value));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Emit a field access, e.g. `field(GETFIELD, "a/B", "c", "I")`.
+     */
+    void field(int opcode, String owner, String name, String descriptor) {
+        member(opcode, 9, owner, name, descriptor);
+    }
+
+    /**
+     * Emit a method call, e.g. `method(INVOKEVIRTUAL, "a/B", "c", "(I)I")`.
+     */
+    void method(int opcode, String owner, String name, String descriptor) {
+        member(opcode, 10, owner, name, descriptor);
+    }
+
+    private void member(int opcode, int tag, String owner, String name, String descriptor) {
+        try {
+            code.writeByte(opcode);
+            code.writeShort(reference(tag, owner, name, descriptor));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Write the class, with the code emitted so far as the body of its method.
+     * @param name the binary name of the class, with '/' separators
+     */
+    byte[] build(String name, String interfaceName, String methodName, String methodDescriptor,
+                 int maxStack, int maxLocals) {
+        try {
+            int thisClass = classConstant(name);
+            int superClass = classConstant("java/lang/Object");
+            int interfaceClass = classConstant(interfaceName);
+            int codeName = utf8("Code");
+            int constructorName = utf8("<init>");
+            int constructorDescriptor = utf8("()V");
+            int objectConstructor = reference(10, "java/lang/Object", "<init>", "()V");
+            int methodNameIndex = utf8(methodName);
+            int methodDescriptorIndex = utf8(methodDescriptor);
+
+            ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(classBytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(JAVA_8);
+            out.writeShort(constantCount);
+            constants.flush();
+            constantBytes.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(interfaceClass);
+            out.writeShort(0);                          // fields
+
+            out.writeShort(2);                          // methods
+            // aload_0; invokespecial Object.<init>; return
+            byte[] constructor = {0x2A, (byte) INVOKESPECIAL, (byte) (objectConstructor >> 8), (byte) objectConstructor,
+                    (byte) RETURN};
+            writeMethod(out, constructorName, constructorDescriptor, codeName, 1, 1, constructor);
+            code.flush();
+            writeMethod(out, methodNameIndex, methodDescriptorIndex, codeName, maxStack, maxLocals,
+                    codeBytes.toByteArray());
+
+            out.writeShort(0);                          // attributes
+            out.flush();
+            return classBytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeMethod(DataOutputStream out, int name, int descriptor, int codeName,
+                                    int maxStack, int maxLocals, byte[] body) throws IOException {
+        out.writeShort(ACC_PUBLIC);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(12 + body.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(body.length);
+        out.write(body);
+        out.writeShort(0);                              // exception table
+        out.writeShort(0);                              // attributes
+    }
+
+    private int utf8(String value) throws IOException {
+        Integer index = constantIndices.get("U" + value);
+        if (index == null) {
+            constants.writeByte(1);
+            constants.writeUTF(value);
+            index = add("U" + value);
+        }
+        return index;
+    }
+
+    private int integer(int value) throws IOException {
+        Integer index = constantIndices.get("I" + value);
+        if (index == null) {
+            constants.writeByte(3);
+            constants.writeInt(value);
+            index = add("I" + value);
+        }
+        return index;
+    }
+
+    private int classConstant(String name) throws IOException {
+        Integer index = constantIndices.get("C" + name);
+        if (index == null) {
+            int nameIndex = utf8(name);
+            constants.writeByte(7);
+            constants.writeShort(nameIndex);
+            index = add("C" + name);
+        }
+        return index;
+    }
+
+    private int reference(int tag, String owner, String name, String descriptor) throws IOException {
+        String key = tag + owner + "." + name + descriptor;
+        Integer index = constantIndices.get(key);
+        if (index == null) {
+            int ownerIndex = classConstant(owner);
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            constants.writeByte(12);                    // NameAndType
+            constants.writeShort(nameIndex);
+            constants.writeShort(descriptorIndex);
+            int nameAndType = add("N" + key);
+            constants.writeByte(tag);
+            constants.writeShort(ownerIndex);
+            constants.writeShort(nameAndType);
+            index = add(key);
+        }
+        return index;
+    }
+
+    private int add(String key) {
+        constantIndices.put(key, constantCount);
+        return constantCount++;
+    }
+}
@@ -0,0 +1,40 @@
+package uk.co.transputersystems.transputer.simulator.jit;
+
+/**
+ * A translated block together with what the interpreter needs to account for running it: how many bytes (and so
+ * architectural steps) it covers and how many cycles they take.
+ */
+public class CompiledBlock {
+    public final TranslatedBlock code;
+    public final int start;
+    public final int length;
+    public final long cycles;
+    // The address after each instruction and the cycles taken up to it, for leaving the block early
+    private final int[] ends;
+    private final long[] cyclesTo;
+
+    public CompiledBlock(TranslatedBlock code, int start, int[] ends, long[] cyclesTo) {
+        this.code = code;
+        this.start = start;
+        this.ends = ends;
+        this.cyclesTo = cyclesTo;
+        this.length = ends[ends.length - 1] - start;
+        this.cycles = cyclesTo[cyclesTo.length - 1];
+    }
+
+    public int getInstructions() {
+        return ends.length;
+    }
+
+    /**
+     * @return the cycles taken by the instructions before an address within the block
+     */
+    public long cyclesBefore(int address) {
+        for (int i = 0; i < ends.length; i++) {
+            if (ends[i] == address) {
+                return cyclesTo[i];
+            }
+        }
+        throw new IllegalArgumentException("No instruction ends at " + Integer.toHexString(address));
+    }
+}
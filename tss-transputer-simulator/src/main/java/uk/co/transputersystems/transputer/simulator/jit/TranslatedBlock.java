@@ -0,0 +1,12 @@
+package uk.co.transputersystems.transputer.simulator.jit;
+
+import uk.co.transputersystems.transputer.simulator.UnexpectedOverflowException;
+import uk.co.transputersystems.transputer.simulator.models.Registers;
+
+/**
+ * Implemented by the classes generated for translated blocks. Running one has the same effect on Areg, Breg, Creg
+ * and memory as interpreting the block's instructions; the caller moves Iptr on.
+ */
+public interface TranslatedBlock {
+    void run(Registers registers, BlockContext context) throws UnexpectedOverflowException;
+}
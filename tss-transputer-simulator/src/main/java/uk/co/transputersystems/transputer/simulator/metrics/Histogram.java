@@ -0,0 +1,51 @@
+package uk.co.transputersystems.transputer.simulator.metrics;
+
+/**
+ * Counts non-negative values in buckets whose bounds are powers of two: bucket 0 holds 0, and bucket b holds values
+ * from 2^(b-1) to 2^b - 1.
+ */
+public class Histogram {
+    private final long[] buckets = new long[64];
+    private long count;
+    private long sum;
+    private long max;
+
+    public void record(long value) {
+        buckets[64 - Long.numberOfLeadingZeros(value)]++;
+        count++;
+        sum += value;
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return the number of buckets up to and including the last that holds a value
+     */
+    public int getBucketCount() {
+        return 64 - Long.numberOfLeadingZeros(max) + 1;
+    }
+
+    public long getBucket(int bucket) {
+        return buckets[bucket];
+    }
+
+    /**
+     * @return the largest value that falls in the bucket
+     */
+    public static long upperBound(int bucket) {
+        return bucket == 0 ? 0 : (1L << bucket) - 1;
+    }
+}
@@ -0,0 +1,178 @@
+package uk.co.transputersystems.transputer.simulator.metrics;
+
+import uk.co.transputersystems.transputer.simulator.TransputerConstants;
+
+/**
+ * Counts what one transputer spends its steps on: scheduling, the timer queues, block moves, links and each
+ * instruction. The counts are only updated while the transputer is stepped or its links switched, which never
+ * happen at once, so nothing is locked; read them between steps, e.g. from the debugger or once the run has ended. Priorities are indexed by priority bit, 0 being high.
+ */
+public class Metrics {
+
+    private final long[] processSwitches = new long[2];
+    private final Histogram[] runQueueLengths = {new Histogram(), new Histogram()};
+    private final int[] runQueueLength = new int[2];
+
+    private final Histogram timerInsertSteps = new Histogram();
+    private final Histogram timerDeleteSteps = new Histogram();
+    private int timerInsertStep;
+    private int timerDeleteStep;
+    private final long[] timerFires = new long[2];
+
+    private long blockMoves;
+    private long blockMoveBytes;
+
+    // Indexed by port: the input port for bytes in, and the port at the receiving end for bytes out
+    private final long[] linkBytesIn = new long[TransputerConstants.IN_PORTS];
+    private final long[] linkBytesOut = new long[TransputerConstants.IN_PORTS];
+    private final long[] linkAckStalls = new long[TransputerConstants.IN_PORTS];
+
+    private final long[] primaryInstructions = new long[16];
+    private final long[] secondaryInstructions = new long[256];
+    // Prefixes executed together with the instruction they prefix by the decode cache
+    private long foldedPrefixes;
+    // Steps taken in translated blocks, whose instructions are not counted one by one
+    private long translatedSteps;
+
+    public void processSwitch(int priority) {
+        processSwitches[priority]++;
+    }
+
+    /**
+     * Record a process joining the back of a run queue.
+     * @param wasEmpty true if the queue held no process before it
+     */
+    public void enqueued(int priority, boolean wasEmpty) {
+        int length = wasEmpty ? 1 : runQueueLength[priority] + 1;
+        runQueueLength[priority] = length;
+        runQueueLengths[priority].record(length);
+    }
+
+    /**
+     * Record a process leaving the front of a run queue.
+     * @param nowEmpty true if the queue holds no process after it
+     */
+    public void dequeued(int priority, boolean nowEmpty) {
+        runQueueLength[priority] = nowEmpty ? 0 : Math.max(1, runQueueLength[priority] - 1);
+    }
+
+    /**
+     * Record a step spent inserting a process into a timer queue.
+     */
+    public void timerInsertStep() {
+        timerInsertStep++;
+    }
+
+    public void timerInsertDone() {
+        timerInsertSteps.record(timerInsertStep);
+        timerInsertStep = 0;
+    }
+
+    /**
+     * Record a step spent deleting a process from a timer queue.
+     */
+    public void timerDeleteStep() {
+        timerDeleteStep++;
+    }
+
+    public void timerDeleteDone() {
+        timerDeleteSteps.record(timerDeleteStep);
+        timerDeleteStep = 0;
+    }
+
+    public void timerFired(int priority) {
+        timerFires[priority]++;
+    }
+
+    public void blockMove(int length) {
+        blockMoves++;
+        blockMoveBytes += length;
+    }
+
+    public void linkBytesIn(int port, int count) {
+        linkBytesIn[port] += count;
+    }
+
+    public void linkBytesOut(int port, int count) {
+        linkBytesOut[port] += count;
+    }
+
+    /**
+     * Record a step in which the output link has a byte in flight to the port and no acknowledgement for it.
+     */
+    public void linkAckStall(int port) {
+        linkAckStalls[port]++;
+    }
+
+    public void primaryInstruction(int opcode) {
+        primaryInstructions[opcode]++;
+    }
+
+    public void secondaryInstruction(int opcode) {
+        secondaryInstructions[opcode]++;
+    }
+
+    public void foldedPrefixes(int count) {
+        foldedPrefixes += count;
+    }
+
+    public void translatedSteps(int count) {
+        translatedSteps += count;
+    }
+
+    public long getProcessSwitches(int priority) {
+        return processSwitches[priority];
+    }
+
+    public Histogram getRunQueueLengths(int priority) {
+        return runQueueLengths[priority];
+    }
+
+    public Histogram getTimerInsertSteps() {
+        return timerInsertSteps;
+    }
+
+    public Histogram getTimerDeleteSteps() {
+        return timerDeleteSteps;
+    }
+
+    public long getTimerFires(int priority) {
+        return timerFires[priority];
+    }
+
+    public long getBlockMoves() {
+        return blockMoves;
+    }
+
+    public long getBlockMoveBytes() {
+        return blockMoveBytes;
+    }
+
+    public long getLinkBytesIn(int port) {
+        return linkBytesIn[port];
+    }
+
+    public long getLinkBytesOut(int port) {
+        return linkBytesOut[port];
+    }
+
+    public long getLinkAckStalls(int port) {
+        return linkAckStalls[port];
+    }
+
+    public long getPrimaryInstructions(int opcode) {
+        return primaryInstructions[opcode];
+    }
+
+    public long getSecondaryInstructions(int opcode) {
+        return secondaryInstructions[opcode];
+    }
+
+    public long getFoldedPrefixes() {
+        return foldedPrefixes;
+    }
+
+    public long getTranslatedSteps() {
+        return translatedSteps;
+    }
+}
@@ -0,0 +1,26 @@
+package uk.co.transputersystems.transputer.simulator.metrics;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+
+/**
+ * How metrics are written out.
+ */
+public enum MetricsFormat {
+    JSON,           // One object per transputer
+    PROMETHEUS;     // The Prometheus text exposition format, labelled by transputer
+
+    /**
+     * Parse a format name as given on the command line, ignoring case.
+     */
+    public static MetricsFormat parse(String name) {
+        return MetricsFormat.valueOf(name.trim().toUpperCase());
+    }
+
+    /**
+     * @return JSON for files ending in .json, otherwise Prometheus
+     */
+    public static MetricsFormat forFile(@Nonnull File file) {
+        return file.getName().toLowerCase().endsWith(".json") ? JSON : PROMETHEUS;
+    }
+}
@@ -0,0 +1,251 @@
+package uk.co.transputersystems.transputer.simulator.metrics;
+
+import uk.co.transputersystems.transputer.simulator.Transputer;
+import uk.co.transputersystems.transputer.simulator.TransputerConstants;
+import uk.co.transputersystems.transputer.simulator.trace.Mnemonics;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * Writes the metrics collected by each transputer. Transputers without metrics are left out.
+ */
+public class MetricsReport {
+
+    private static final String[] PRIORITIES = {"high", "low"};
+
+    private MetricsReport() {
+    }
+
+    public static void write(@Nonnull Transputer[] transputers, @Nonnull Writer writer, @Nonnull MetricsFormat format) throws IOException {
+        if (format == MetricsFormat.JSON) {
+            writeJson(transputers, writer);
+        } else {
+            writePrometheus(transputers, writer);
+        }
+    }
+
+    public static void writeJson(@Nonnull Transputer[] transputers, @Nonnull Writer writer) throws IOException {
+        PrintWriter output = new PrintWriter(writer);
+        output.printf("{\n  \"transputers\": [");
+        boolean first = true;
+        for (int id = 0; id < transputers.length; id++) {
+            Metrics metrics = transputers[id].getMetrics();
+            if (metrics == null) {
+                continue;
+            }
+            output.printf(first ? "\n" : ",\n");
+            first = false;
+            output.printf("    {\n");
+            output.printf("      \"id\": %d,\n", id);
+            output.printf("      \"steps\": %d,\n", transputers[id].getSteps());
+            output.printf("      \"processSwitches\": {\"high\": %d, \"low\": %d},\n",
+                    metrics.getProcessSwitches(0), metrics.getProcessSwitches(1));
+            output.printf("      \"runQueueLength\": {\"high\": %s, \"low\": %s},\n",
+                    json(metrics.getRunQueueLengths(0)), json(metrics.getRunQueueLengths(1)));
+            output.printf("      \"timerInsertSteps\": %s,\n", json(metrics.getTimerInsertSteps()));
+            output.printf("      \"timerDeleteSteps\": %s,\n", json(metrics.getTimerDeleteSteps()));
+            output.printf("      \"timerFires\": {\"high\": %d, \"low\": %d},\n",
+                    metrics.getTimerFires(0), metrics.getTimerFires(1));
+            output.printf("      \"blockMoves\": {\"count\": %d, \"bytes\": %d},\n",
+                    metrics.getBlockMoves(), metrics.getBlockMoveBytes());
+            output.printf("      \"links\": [");
+            for (int port = 0; port < TransputerConstants.IN_PORTS; port++) {
+                output.printf("%s\n        {\"port\": %d, \"bytesIn\": %d, \"bytesOut\": %d, \"ackStalls\": %d}",
+                        port == 0 ? "" : ",", port, metrics.getLinkBytesIn(port), metrics.getLinkBytesOut(port),
+                        metrics.getLinkAckStalls(port));
+            }
+            output.printf("\n      ],\n");
+            output.printf("      \"instructions\": {");
+            boolean firstInstruction = true;
+            for (int opcode = 0; opcode < 16; opcode++) {
+                if (opcode != TransputerConstants.OPR && metrics.getPrimaryInstructions(opcode) > 0) {
+                    output.printf("%s\"%s\": %d", firstInstruction ? "" : ", ", Mnemonics.primary(opcode), metrics.getPrimaryInstructions(opcode));
+                    firstInstruction = false;
+                }
+            }
+            for (int opcode = 0; opcode < 256; opcode++) {
+                if (metrics.getSecondaryInstructions(opcode) > 0) {
+                    output.printf("%s\"%s\": %d", firstInstruction ? "" : ", ", Mnemonics.secondary(opcode), metrics.getSecondaryInstructions(opcode));
+                    firstInstruction = false;
+                }
+            }
+            output.printf("},\n");
+            output.printf("      \"foldedPrefixes\": %d,\n", metrics.getFoldedPrefixes());
+            output.printf("      \"translatedSteps\": %d\n", metrics.getTranslatedSteps());
+            output.printf("    }");
+        }
+        output.printf(first ? "]\n}\n" : "\n  ]\n}\n");
+        output.flush();
+        if (output.checkError()) {
+            throw new IOException("Could not write metrics.");
+        }
+    }
+
+    private static String json(Histogram histogram) {
+        StringBuilder json = new StringBuilder();
+        json.append(String.format("{\"count\": %d, \"sum\": %d, \"max\": %d, \"buckets\": {",
+                histogram.getCount(), histogram.getSum(), histogram.getMax()));
+        if (histogram.getCount() > 0) {
+            for (int bucket = 0; bucket < histogram.getBucketCount(); bucket++) {
+                json.append(String.format("%s\"%d\": %d", bucket == 0 ? "" : ", ", Histogram.upperBound(bucket), histogram.getBucket(bucket)));
+            }
+        }
+        return json.append("}}").toString();
+    }
+
+    public static void writePrometheus(@Nonnull Transputer[] transputers, @Nonnull Writer writer) throws IOException {
+        PrintWriter output = new PrintWriter(writer);
+
+        family(output, "tss_steps_total", "counter", "Steps taken");
+        for (int id = 0; id < transputers.length; id++) {
+            if (transputers[id].getMetrics() != null) {
+                output.printf("tss_steps_total{transputer=\"%d\"} %d\n", id, transputers[id].getSteps());
+            }
+        }
+
+        family(output, "tss_process_switches_total", "counter", "Processes activated");
+        for (int id = 0; id < transputers.length; id++) {
+            Metrics metrics = transputers[id].getMetrics();
+            for (int priority = 0; metrics != null && priority < 2; priority++) {
+                output.printf("tss_process_switches_total{transputer=\"%d\",priority=\"%s\"} %d\n",
+                        id, PRIORITIES[priority], metrics.getProcessSwitches(priority));
+            }
+        }
+
+        family(output, "tss_run_queue_length", "histogram", "Length of the run queue when a process joins it");
+        for (int id = 0; id < transputers.length; id++) {
+            Metrics metrics = transputers[id].getMetrics();
+            for (int priority = 0; metrics != null && priority < 2; priority++) {
+                histogram(output, "tss_run_queue_length",
+                        String.format("transputer=\"%d\",priority=\"%s\"", id, PRIORITIES[priority]), metrics.getRunQueueLengths(priority));
+            }
+        }
+
+        family(output, "tss_timer_insert_steps", "histogram", "Steps taken to insert a process into a timer queue");
+        for (int id = 0; id < transputers.length; id++) {
+            Metrics metrics = transputers[id].getMetrics();
+            if (metrics != null) {
+                histogram(output, "tss_timer_insert_steps", String.format("transputer=\"%d\"", id), metrics.getTimerInsertSteps());
+            }
+        }
+
+        family(output, "tss_timer_delete_steps", "histogram", "Steps taken to delete a process from a timer queue");
+        for (int id = 0; id < transputers.length; id++) {
+            Metrics metrics = transputers[id].getMetrics();
+            if (metrics != null) {
+                histogram(output, "tss_timer_delete_steps", String.format("transputer=\"%d\"", id), metrics.getTimerDeleteSteps());
+            }
+        }
+
+        family(output, "tss_timer_fires_total", "counter", "Processes woken by a timer");
+        for (int id = 0; id < transputers.length; id++) {
+            Metrics metrics = transputers[id].getMetrics();
+            for (int priority = 0; metrics != null && priority < 2; priority++) {
+                output.printf("tss_timer_fires_total{transputer=\"%d\",priority=\"%s\"} %d\n",
+                        id, PRIORITIES[priority], metrics.getTimerFires(priority));
+            }
+        }
+
+        family(output, "tss_block_moves_total", "counter", "Block moves started");
+        for (int id = 0; id < transputers.length; id++) {
+            Metrics metrics = transputers[id].getMetrics();
+            if (metrics != null) {
+                output.printf("tss_block_moves_total{transputer=\"%d\"} %d\n", id, metrics.getBlockMoves());
+            }
+        }
+
+        family(output, "tss_block_move_bytes_total", "counter", "Bytes copied by block moves");
+        for (int id = 0; id < transputers.length; id++) {
+            Metrics metrics = transputers[id].getMetrics();
+            if (metrics != null) {
+                output.printf("tss_block_move_bytes_total{transputer=\"%d\"} %d\n", id, metrics.getBlockMoveBytes());
+            }
+        }
+
+        family(output, "tss_link_bytes_in_total", "counter", "Bytes received on each input port");
+        for (int id = 0; id < transputers.length; id++) {
+            Metrics metrics = transputers[id].getMetrics();
+            for (int port = 0; metrics != null && port < TransputerConstants.IN_PORTS; port++) {
+                output.printf("tss_link_bytes_in_total{transputer=\"%d\",port=\"%d\"} %d\n", id, port, metrics.getLinkBytesIn(port));
+            }
+        }
+
+        family(output, "tss_link_bytes_out_total", "counter", "Bytes sent to each port at the receiving end");
+        for (int id = 0; id < transputers.length; id++) {
+            Metrics metrics = transputers[id].getMetrics();
+            for (int port = 0; metrics != null && port < TransputerConstants.IN_PORTS; port++) {
+                output.printf("tss_link_bytes_out_total{transputer=\"%d\",port=\"%d\"} %d\n", id, port, metrics.getLinkBytesOut(port));
+            }
+        }
+
+        family(output, "tss_link_ack_stalls_total", "counter", "Steps spent waiting for the acknowledgement of a byte sent to each port");
+        for (int id = 0; id < transputers.length; id++) {
+            Metrics metrics = transputers[id].getMetrics();
+            for (int port = 0; metrics != null && port < TransputerConstants.IN_PORTS; port++) {
+                output.printf("tss_link_ack_stalls_total{transputer=\"%d\",port=\"%d\"} %d\n", id, port, metrics.getLinkAckStalls(port));
+            }
+        }
+
+        family(output, "tss_instructions_total", "counter", "Instructions executed, not counting folded prefixes or translated blocks");
+        for (int id = 0; id < transputers.length; id++) {
+            Metrics metrics = transputers[id].getMetrics();
+            if (metrics == null) {
+                continue;
+            }
+            for (int opcode = 0; opcode < 16; opcode++) {
+                if (opcode != TransputerConstants.OPR && metrics.getPrimaryInstructions(opcode) > 0) {
+                    output.printf("tss_instructions_total{transputer=\"%d\",instruction=\"%s\"} %d\n",
+                            id, Mnemonics.primary(opcode), metrics.getPrimaryInstructions(opcode));
+                }
+            }
+            for (int opcode = 0; opcode < 256; opcode++) {
+                if (metrics.getSecondaryInstructions(opcode) > 0) {
+                    output.printf("tss_instructions_total{transputer=\"%d\",instruction=\"%s\"} %d\n",
+                            id, Mnemonics.secondary(opcode), metrics.getSecondaryInstructions(opcode));
+                }
+            }
+        }
+
+        family(output, "tss_folded_prefixes_total", "counter", "Prefixes executed together with the instruction they prefix");
+        for (int id = 0; id < transputers.length; id++) {
+            Metrics metrics = transputers[id].getMetrics();
+            if (metrics != null) {
+                output.printf("tss_folded_prefixes_total{transputer=\"%d\"} %d\n", id, metrics.getFoldedPrefixes());
+            }
+        }
+
+        family(output, "tss_translated_steps_total", "counter", "Steps taken in translated blocks");
+        for (int id = 0; id < transputers.length; id++) {
+            Metrics metrics = transputers[id].getMetrics();
+            if (metrics != null) {
+                output.printf("tss_translated_steps_total{transputer=\"%d\"} %d\n", id, metrics.getTranslatedSteps());
+            }
+        }
+
+        output.flush();
+        if (output.checkError()) {
+            throw new IOException("Could not write metrics.");
+        }
+    }
+
+    private static void family(PrintWriter output, String name, String type, String help) {
+        output.printf("# HELP %s %s\n", name, help);
+        output.printf("# TYPE %s %s\n", name, type);
+    }
+
+    private static void histogram(PrintWriter output, String name, String labels, Histogram histogram) {
+        long cumulative = 0;
+        if (histogram.getCount() > 0) {
+            for (int bucket = 0; bucket < histogram.getBucketCount(); bucket++) {
+                cumulative += histogram.getBucket(bucket);
+                output.printf("%s_bucket{%s,le=\"%d\"} %d\n", name, labels, Histogram.upperBound(bucket), cumulative);
+            }
+        }
+        output.printf("%s_bucket{%s,le=\"+Inf\"} %d\n", name, labels, histogram.getCount());
+        output.printf("%s_sum{%s} %d\n", name, labels, histogram.getSum());
+        output.printf("%s_count{%s} %d\n", name, labels, histogram.getCount());
+    }
+}
@@ -36,4 +36,9 @@ public class InputLink {
     public boolean enabled;
 
     public byte ack;
+
+    /**
+     * The port number of this link on its transputer.
+     */
+    public int port;
 }
@@ -0,0 +1,130 @@
+package uk.co.transputersystems.transputer.simulator.profile;
+
+import uk.co.transputersystems.transputer.simulator.Transputer;
+import uk.co.transputersystems.transputer.simulator.debugger.SymbolTable;
+
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * Writes the counts of the profilers attached to a network of transputers, with addresses resolved to the labels
+ * of the programs they were loaded with.
+ */
+public final class ProfileReport {
+
+    private ProfileReport() {
+    }
+
+    /**
+     * Write a table per transputer of the functions, instructions and processes that took the most steps.
+     * @param limit the most instructions to list for each transputer
+     */
+    public static void writeHotSpots(Transputer[] transputers, PrintWriter output, int limit) {
+        for (int i = 0; i < transputers.length; i++) {
+            Profiler profiler = transputers[i].getProfiler();
+            if (profiler == null) {
+                continue;
+            }
+            SymbolTable symbols = transputers[i].debuggerState.symbols;
+            String unit = profiler.isExact() ? "steps" : "samples";
+
+            output.printf("## Transputer %d: %d %s, %d idle", i, profiler.getTotal(), unit, profiler.getIdleCount());
+            if (!profiler.isExact()) {
+                output.printf(" (one sample every %d steps)", profiler.getInterval());
+            }
+            output.printf("\n");
+
+            Map<String, Long> functions = new HashMap<>();
+            List<long[]> addresses = new ArrayList<>();
+            for (int address = 0; address < profiler.getMemorySize(); address++) {
+                long count = profiler.getAddressCount(address);
+                if (count > 0) {
+                    functions.merge(function(symbols, address), count, Long::sum);
+                    addresses.add(new long[]{address, count});
+                }
+            }
+
+            output.printf("### Functions\n");
+            output.printf("%12s %7s  %s\n", unit, "%", "function");
+            for (Map.Entry<String, Long> entry : sortByCount(functions)) {
+                writeRow(output, entry.getValue(), profiler.getTotal(), entry.getKey());
+            }
+
+            output.printf("### Instructions\n");
+            output.printf("%12s %7s  %-10s  %s\n", unit, "%", "address", "location");
+            addresses.sort((a, b) -> a[1] != b[1] ? Long.compare(b[1], a[1]) : Long.compare(a[0], b[0]));
+            for (long[] entry : addresses.subList(0, Math.min(limit, addresses.size()))) {
+                writeRow(output, entry[1], profiler.getTotal(),
+                        String.format("0x%08X  %s", entry[0], symbols.describe((int) entry[0])));
+            }
+
+            output.printf("### Processes\n");
+            output.printf("%12s %7s  %s\n", unit, "%", "process");
+            Map<String, Long> processes = new LinkedHashMap<>();
+            for (int id = 0; id < profiler.getProcessLimit(); id++) {
+                if (profiler.getProcessCount(id) > 0) {
+                    processes.put(String.format("%d (workspace 0x%08X)", id, profiler.getProcessWorkspace(id)),
+                            profiler.getProcessCount(id));
+                }
+            }
+            if (profiler.getUnknownProcessCount() > 0) {
+                processes.put("unknown", profiler.getUnknownProcessCount());
+            }
+            if (profiler.getIdleCount() > 0) {
+                processes.put("idle", profiler.getIdleCount());
+            }
+            for (Map.Entry<String, Long> entry : sortByCount(processes)) {
+                writeRow(output, entry.getValue(), profiler.getTotal(), entry.getKey());
+            }
+            output.printf("\n");
+        }
+        output.flush();
+    }
+
+    /**
+     * Write the counts as collapsed stacks, one `transputer;function;label count` line per label, which flame
+     * graph tools such as `flamegraph.pl` accept.
+     */
+    public static void writeCollapsedStacks(Transputer[] transputers, PrintWriter output) {
+        for (int i = 0; i < transputers.length; i++) {
+            Profiler profiler = transputers[i].getProfiler();
+            if (profiler == null) {
+                continue;
+            }
+            SymbolTable symbols = transputers[i].debuggerState.symbols;
+
+            Map<String, Long> stacks = new TreeMap<>();
+            for (int address = 0; address < profiler.getMemorySize(); address++) {
+                long count = profiler.getAddressCount(address);
+                if (count > 0) {
+                    String function = function(symbols, address);
+                    String label = symbols.labelAt(address);
+                    String stack = label == null || label.equals(function) ? function : function + ";" + label;
+                    stacks.merge(String.format("T%d;%s", i, stack), count, Long::sum);
+                }
+            }
+            if (profiler.getIdleCount() > 0) {
+                stacks.put(String.format("T%d;idle", i), profiler.getIdleCount());
+            }
+            for (Map.Entry<String, Long> entry : stacks.entrySet()) {
+                output.printf("%s %d\n", entry.getKey(), entry.getValue());
+            }
+        }
+        output.flush();
+    }
+
+    private static String function(SymbolTable symbols, int address) {
+        String function = symbols.functionAt(address);
+        return function != null ? function : String.format("0x%08X", address);
+    }
+
+    private static List<Map.Entry<String, Long>> sortByCount(Map<String, Long> counts) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(counts.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        return entries;
+    }
+
+    private static void writeRow(PrintWriter output, long count, long total, String name) {
+        output.printf("%12d %6.2f%%  %s\n", count, total == 0 ? 0.0 : 100.0 * count / total, name);
+    }
+}
@@ -0,0 +1,138 @@
+package uk.co.transputersystems.transputer.simulator.profile;
+
+import uk.co.transputersystems.transputer.simulator.TransputerHelpers;
+import uk.co.transputersystems.transputer.simulator.debugger.Process;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * Counts the steps one transputer spends at each instruction address and in each process. In exact mode every step
+ * is counted. In sampled mode only one step in every `interval` is, which is cheaper on long runs; counts are then
+ * numbers of samples.
+ */
+public class Profiler {
+    private final int interval;
+    private final long[] addressCounts;
+    // Indexed by process id, with the workspace each process was first seen in
+    private long[] processCounts = new long[16];
+    private int[] processWorkspaces = new int[16];
+    private int processes;
+    private long unknownProcessCount;
+    private long idleCount;
+    private long total;
+    private long untilSample;
+
+    /**
+     * @param interval count one step in every `interval`, or every step if 1
+     */
+    public Profiler(int memSize, int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Sampling interval must be at least 1.");
+        }
+        this.interval = interval;
+        this.addressCounts = new long[memSize];
+        this.untilSample = interval;
+    }
+
+    /**
+     * Record a step of `length` architectural steps taken by the instruction at `Iptr`.
+     * @param process the process that was running, or null if the debugger does not know it
+     */
+    public void record(int Iptr, @Nullable Process process, int length) {
+        long count = sample(length);
+        if (count == 0) {
+            return;
+        }
+        total += count;
+        if (Iptr >= 0 && Iptr < addressCounts.length) {
+            addressCounts[Iptr] += count;
+        }
+        if (process == null) {
+            unknownProcessCount += count;
+        } else {
+            int id = process.getId();
+            if (id >= processCounts.length) {
+                int size = Math.max(processCounts.length * 2, id + 1);
+                processCounts = Arrays.copyOf(processCounts, size);
+                processWorkspaces = Arrays.copyOf(processWorkspaces, size);
+            }
+            if (processCounts[id] == 0) {
+                processWorkspaces[id] = TransputerHelpers.extractWorkspacePointer(process.getWptrs().get(0));
+            }
+            processCounts[id] += count;
+            processes = Math.max(processes, id + 1);
+        }
+    }
+
+    /**
+     * Record steps taken with no process to run.
+     */
+    public void recordIdle(long length) {
+        long count = sample(length);
+        total += count;
+        idleCount += count;
+    }
+
+    private long sample(long length) {
+        if (interval == 1) {
+            return length;
+        }
+        untilSample -= length;
+        long count = 0;
+        while (untilSample <= 0) {
+            count++;
+            untilSample += interval;
+        }
+        return count;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public boolean isExact() {
+        return interval == 1;
+    }
+
+    /**
+     * @return steps (or samples) counted, including idle ones
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    public long getIdleCount() {
+        return idleCount;
+    }
+
+    public long getUnknownProcessCount() {
+        return unknownProcessCount;
+    }
+
+    public int getMemorySize() {
+        return addressCounts.length;
+    }
+
+    public long getAddressCount(int address) {
+        return addressCounts[address];
+    }
+
+    /**
+     * @return one more than the highest process id counted
+     */
+    public int getProcessLimit() {
+        return processes;
+    }
+
+    public long getProcessCount(int id) {
+        return processCounts[id];
+    }
+
+    /**
+     * @return the workspace the process was in when it was first counted
+     */
+    public int getProcessWorkspace(int id) {
+        return processWorkspaces[id];
+    }
+}
@@ -0,0 +1,25 @@
+package uk.co.transputersystems.transputer.simulator.session;
+
+/**
+ * A whole message was passed over a link and taken in by the receiving process. The event belongs to the
+ * receiving transputer.
+ */
+public class ChannelMessageEvent extends SimulationEvent {
+    public final int source;
+    public final int port;
+    // Where the message was stored on the receiving transputer
+    public final int address;
+    private final byte[] data;
+
+    public ChannelMessageEvent(int transputer, long iteration, int source, int port, int address, byte[] data) {
+        super(transputer, iteration);
+        this.source = source;
+        this.port = port;
+        this.address = address;
+        this.data = data.clone();
+    }
+
+    public byte[] getData() {
+        return data.clone();
+    }
+}
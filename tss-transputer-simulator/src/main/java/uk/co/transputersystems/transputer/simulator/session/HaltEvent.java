@@ -0,0 +1,21 @@
+package uk.co.transputersystems.transputer.simulator.session;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A transputer stopped and will not be stepped again.
+ */
+public class HaltEvent extends SimulationEvent {
+
+    public enum Reason {
+        LEFT_PROGRAM,   // Iptr moved outside the program, as it does when the main process returns
+        NO_WORK         // No process could run and no timer was waiting, so it has finished or deadlocked
+    }
+
+    @Nonnull public final Reason reason;
+
+    public HaltEvent(int transputer, long iteration, @Nonnull Reason reason) {
+        super(transputer, iteration);
+        this.reason = reason;
+    }
+}
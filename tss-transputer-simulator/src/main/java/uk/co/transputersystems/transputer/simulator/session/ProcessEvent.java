@@ -0,0 +1,17 @@
+package uk.co.transputersystems.transputer.simulator.session;
+
+/**
+ * A process was started or terminated.
+ */
+public class ProcessEvent extends SimulationEvent {
+    // The id the debugger gives the process, unique on its transputer
+    public final int processId;
+    // The workspace descriptor the process was started with, or last had
+    public final int workspace;
+
+    public ProcessEvent(int transputer, long iteration, int processId, int workspace) {
+        super(transputer, iteration);
+        this.processId = processId;
+        this.workspace = workspace;
+    }
+}
@@ -0,0 +1,16 @@
+package uk.co.transputersystems.transputer.simulator.session;
+
+/**
+ * Something that happened on one transputer of a {@link SimulationSession}.
+ */
+public abstract class SimulationEvent {
+    // The transputer the event happened on
+    public final int transputer;
+    // The loop iteration during which it happened, counting from 1
+    public final long iteration;
+
+    protected SimulationEvent(int transputer, long iteration) {
+        this.transputer = transputer;
+        this.iteration = iteration;
+    }
+}
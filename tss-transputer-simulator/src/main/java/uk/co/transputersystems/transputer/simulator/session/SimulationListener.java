@@ -0,0 +1,23 @@
+package uk.co.transputersystems.transputer.simulator.session;
+
+/**
+ * Receives the events of a {@link SimulationSession} as they happen, from the thread that is running the session.
+ * Every method does nothing unless overridden.
+ */
+public interface SimulationListener {
+
+    default void processStarted(ProcessEvent event) {
+    }
+
+    default void processTerminated(ProcessEvent event) {
+    }
+
+    default void channelMessage(ChannelMessageEvent event) {
+    }
+
+    default void timerFired(TimerEvent event) {
+    }
+
+    default void halted(HaltEvent event) {
+    }
+}
@@ -0,0 +1,384 @@
+package uk.co.transputersystems.transputer.simulator.session;
+
+import uk.co.transputersystems.transputer.simulator.ByteBufferMemory;
+import uk.co.transputersystems.transputer.simulator.SimulationState;
+import uk.co.transputersystems.transputer.simulator.Simulator;
+import uk.co.transputersystems.transputer.simulator.StepListener;
+import uk.co.transputersystems.transputer.simulator.Transputer;
+import uk.co.transputersystems.transputer.simulator.TransputerConstants;
+import uk.co.transputersystems.transputer.simulator.UnexpectedOverflowException;
+import uk.co.transputersystems.transputer.simulator.UnimplementedInstructionException;
+import uk.co.transputersystems.transputer.simulator.UnlinkedChannelException;
+import uk.co.transputersystems.transputer.simulator.debugger.Process;
+import uk.co.transputersystems.transputer.simulator.debugger.ProcessTable;
+import uk.co.transputersystems.transputer.simulator.models.InputLink;
+import uk.co.transputersystems.transputer.simulator.models.Priority;
+import uk.co.transputersystems.transputer.simulator.models.Registers;
+import uk.co.transputersystems.transputer.simulator.timing.CycleTable;
+import uk.co.transputersystems.transputer.simulator.timing.TimingModel;
+import uk.co.transputersystems.transputer.simulator.topology.Network;
+import uk.co.transputersystems.transputer.simulator.topology.RoutingTable;
+import uk.co.transputersystems.transputer.simulator.trace.SchedulerEvent;
+import uk.co.transputersystems.transputer.simulator.trace.TraceLevel;
+import uk.co.transputersystems.transputer.simulator.trace.TraceSink;
+import uk.co.transputersystems.transputer.utils.ProgramImage;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A network of transputers run by another program rather than from the command line. The network is advanced by
+ * loop iterations, by simulated cycles or until a condition holds, exactly as the simulator's main loop would
+ * advance it, and what happens is reported to listeners as typed events. Nothing is read from or written to the
+ * console: anything the simulator would have printed is kept until it is read with {@link #getOutput()}. A
+ * transputer reaching an instruction the simulator does not implement throws an
+ * {@link UnimplementedInstructionException} from the method running the network, and one using a channel to a
+ * processor it is not linked to throws an {@link UnlinkedChannelException}; either halts the session.
+ * <p>
+ * Sessions share no state, so any number can be run in one JVM, but each must only be used by one thread at a time.
+ */
+public class SimulationSession {
+
+    @Nullable private static volatile TimingModel unitTiming;
+
+    private final Transputer[] transputers;
+    private final TransputerView[] views;
+    private final RoutingTable routing;
+    private final SimulationState state;
+    private final StringWriter output = new StringWriter();
+    private final List<SimulationListener> listeners = new ArrayList<>();
+    private final EventSink sink = new EventSink();
+    private final StepListener haltListener = this::stepped;
+
+    // Link ports with a message on the way, by transputer and port: the sending transputer plus one, or 0
+    private final int[][] incoming;
+    // Set once the receiving process has asked for the message on that port
+    private final boolean[][] requested;
+
+    private boolean running = true;
+
+    /**
+     * Load a fully connected network from program images or text object code, one per transputer.
+     */
+    public static SimulationSession fromBytes(@Nonnull List<byte[]> programs) throws IOException {
+        List<ProgramImage> images = new ArrayList<>();
+        for (byte[] program : programs) {
+            images.add(parse(program));
+        }
+        return new SimulationSession(images, RoutingTable.fullyConnected(images.size()), defaultMemorySizes(images.size()), null);
+    }
+
+    /**
+     * Load a fully connected network from binaries, one per transputer.
+     */
+    public static SimulationSession fromFiles(@Nonnull List<File> binaries) throws IOException {
+        return fromNetwork(Network.fullyConnected(binaries));
+    }
+
+    /**
+     * Load a network described by a topology, as given to the simulator with `--topology`.
+     */
+    public static SimulationSession fromNetwork(@Nonnull Network network) throws IOException {
+        List<ProgramImage> images = new ArrayList<>();
+        for (File binary : network.binaries) {
+            images.add(ProgramImage.load(binary));
+        }
+        return new SimulationSession(images, network.routing, network.memorySizes, null);
+    }
+
+    /**
+     * @param timing the model to count cycles with, or null to count one cycle per step
+     * @throws IOException if a program does not fit in its transputer's memory
+     */
+    public SimulationSession(@Nonnull List<ProgramImage> images, @Nonnull RoutingTable routing, @Nonnull int[] memorySizes,
+                             @Nullable TimingModel timing) throws IOException {
+        if (images.isEmpty()) {
+            throw new IllegalArgumentException("At least one program is needed.");
+        }
+        if (routing.getSize() != images.size() || memorySizes.length != images.size()) {
+            throw new IllegalArgumentException("The routing table and memory sizes must cover every program.");
+        }
+        this.routing = routing;
+        transputers = new Transputer[images.size()];
+        views = new TransputerView[images.size()];
+        state = new SimulationState(transputers);
+        incoming = new int[images.size()][TransputerConstants.IN_PORTS];
+        requested = new boolean[images.size()][TransputerConstants.IN_PORTS];
+
+        PrintWriter writer = new PrintWriter(output);
+        for (int i = 0; i < transputers.length; i++) {
+            transputers[i] = new Transputer(i, writer, writer, sink, new ByteBufferMemory(memorySizes[i]));
+            transputers[i].setTimingModel(timing != null ? timing : unitTiming());
+            transputers[i].debuggerState.processes.setListener(new ProcessListener(i));
+            if (transputers[i].loadProgram(images.get(i)) != TransputerConstants.SUCCESS) {
+                writer.flush();
+                throw new IOException("Could not load the program for transputer " + i + ": " + output.toString().trim());
+            }
+            views[i] = new TransputerView(this, transputers[i], i);
+            state.active[i] = true;
+        }
+    }
+
+    public void addListener(@Nonnull SimulationListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(@Nonnull SimulationListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Run up to `count` loop iterations, stopping early if the network halts.
+     * @return the number of iterations run
+     */
+    public long step(long count) throws UnexpectedOverflowException {
+        long start = state.loopCount;
+        while (running && state.loopCount - start < count) {
+            iterate();
+        }
+        return state.loopCount - start;
+    }
+
+    /**
+     * Run until the condition holds or the network halts. The condition is tested before the first iteration and
+     * after every one.
+     * @return true if the condition holds
+     */
+    public boolean runUntil(@Nonnull Predicate<SimulationSession> condition) throws UnexpectedOverflowException {
+        while (!condition.test(this)) {
+            if (!running) {
+                return false;
+            }
+            iterate();
+        }
+        return true;
+    }
+
+    /**
+     * Run until the busiest transputer has taken at least `cycles` more cycles, or the network halts.
+     * @return the number of cycles the busiest transputer took
+     */
+    public long runFor(long cycles) throws UnexpectedOverflowException {
+        long start = getCycles();
+        while (running && getCycles() - start < cycles) {
+            iterate();
+        }
+        return getCycles() - start;
+    }
+
+    /**
+     * @return true once every transputer has halted, or one has reached an unimplemented instruction, and the network
+     * can run no further
+     */
+    public boolean isHalted() {
+        return !running;
+    }
+
+    /**
+     * @return the number of loop iterations run so far
+     */
+    public long getIterations() {
+        return state.loopCount;
+    }
+
+    /**
+     * @return the cycles taken by the busiest transputer, which is how long the network has run for
+     */
+    public long getCycles() {
+        long cycles = 0;
+        for (Transputer transputer : transputers) {
+            cycles = Math.max(cycles, transputer.getCycles());
+        }
+        return cycles;
+    }
+
+    public int getTransputerCount() {
+        return transputers.length;
+    }
+
+    public TransputerView getTransputer(int index) {
+        return views[index];
+    }
+
+    public List<TransputerView> getTransputers() {
+        return Collections.unmodifiableList(Arrays.asList(views));
+    }
+
+    /**
+     * @return anything the simulator has printed since the output was last read, which is then discarded
+     */
+    public String getOutput() {
+        StringBuffer buffer = output.getBuffer();
+        String text = buffer.toString();
+        buffer.setLength(0);
+        return text;
+    }
+
+    boolean isActive(int index) {
+        return state.active[index];
+    }
+
+    /**
+     * One iteration of the simulator's main loop, followed by any messages that arrived in it.
+     */
+    private void iterate() throws UnexpectedOverflowException {
+        try {
+            running = Simulator.iterate(state, routing, sink, true, haltListener);
+        } catch (UnimplementedInstructionException | UnlinkedChannelException e) {
+            // The rest of the iteration cannot be run, so neither can anything after it
+            running = false;
+            throw e;
+        }
+        findMessages();
+    }
+
+    private void stepped(int index, Transputer transputer, boolean worked, boolean inRange) {
+        if (!inRange) {
+            halt(index, HaltEvent.Reason.LEFT_PROGRAM);
+        } else if (!worked && transputer.hasNothingToDo()) {
+            halt(index, HaltEvent.Reason.NO_WORK);
+        }
+    }
+
+    private void halt(int index, HaltEvent.Reason reason) {
+        HaltEvent event = new HaltEvent(index, state.loopCount, reason);
+        for (SimulationListener listener : listeners) {
+            listener.halted(event);
+        }
+    }
+
+    /**
+     * Report the link messages that the receiving process has taken in since the last iteration. A message is known
+     * to be on its way once the switch passes its first byte, and has arrived once the input that asked for it is
+     * no longer waiting for bytes.
+     */
+    private void findMessages() {
+        for (int i = 0; i < transputers.length; i++) {
+            for (int port = 0; port < TransputerConstants.IN_PORTS; port++) {
+                if (incoming[i][port] == 0) {
+                    continue;
+                }
+                InputLink link = transputers[i].inputLinks[port];
+                if (link.requested) {
+                    requested[i][port] = true;
+                } else if (requested[i][port] && link.count == 0) {
+                    ChannelMessageEvent event = new ChannelMessageEvent(i, state.loopCount, incoming[i][port] - 1, port,
+                            link.messagePointer, views[i].read(link.messagePointer, link.messageLength));
+                    incoming[i][port] = 0;
+                    requested[i][port] = false;
+                    for (SimulationListener listener : listeners) {
+                        listener.channelMessage(event);
+                    }
+                }
+            }
+        }
+    }
+
+    private static ProgramImage parse(byte[] program) throws IOException {
+        if (program.length >= ProgramImage.MAGIC.length &&
+                Arrays.equals(Arrays.copyOf(program, ProgramImage.MAGIC.length), ProgramImage.MAGIC)) {
+            return ProgramImage.read(ByteBuffer.wrap(program));
+        }
+        return ProgramImage.fromText(new String(program, StandardCharsets.US_ASCII));
+    }
+
+    private static int[] defaultMemorySizes(int count) {
+        int[] memorySizes = new int[count];
+        Arrays.fill(memorySizes, TransputerConstants.MEMSIZE);
+        return memorySizes;
+    }
+
+    private static TimingModel unitTiming() throws IOException {
+        TimingModel timing = unitTiming;
+        if (timing == null) {
+            timing = CycleTable.forName("unit", 0);
+            unitTiming = timing;
+        }
+        return timing;
+    }
+
+    private class ProcessListener implements ProcessTable.Listener {
+        private final int index;
+
+        ProcessListener(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void started(Process process) {
+            ProcessEvent event = new ProcessEvent(index, state.loopCount, process.getId(), process.getCurrentWptr());
+            for (SimulationListener listener : listeners) {
+                listener.processStarted(event);
+            }
+        }
+
+        @Override
+        public void terminated(Process process) {
+            ProcessEvent event = new ProcessEvent(index, state.loopCount, process.getId(), process.getCurrentWptr());
+            for (SimulationListener listener : listeners) {
+                listener.processTerminated(event);
+            }
+        }
+    }
+
+    /**
+     * Turns the scheduler and switch events that the simulator always reports into session events. Its level is
+     * OFF, so instructions are not traced and translated blocks can still run.
+     */
+    private class EventSink implements TraceSink {
+        @Override
+        public TraceLevel getLevel() {
+            return TraceLevel.OFF;
+        }
+
+        @Override
+        public void instruction(int id, int iptr, int opcode, boolean secondary) {
+        }
+
+        @Override
+        public void scheduler(int id, SchedulerEvent event) {
+            Priority priority;
+            if (event == SchedulerEvent.STEP_TIMER_HIGH || event == SchedulerEvent.STEP_TIMER_HIGH_FROM_LOW) {
+                priority = Priority.HIGH;
+            } else if (event == SchedulerEvent.STEP_TIMER_LOW) {
+                priority = Priority.LOW;
+            } else {
+                return;
+            }
+            TimerEvent timerEvent = new TimerEvent(id, state.loopCount, priority);
+            for (SimulationListener listener : listeners) {
+                listener.timerFired(timerEvent);
+            }
+        }
+
+        @Override
+        public void blockMove(int id, int source, int destination, int length) {
+        }
+
+        @Override
+        public void link(int sourceId, int targetId, int targetPort) {
+            if (incoming[targetId][targetPort] == 0) {
+                incoming[targetId][targetPort] = sourceId + 1;
+            }
+        }
+
+        @Override
+        public void registers(int id, Registers registers) {
+        }
+
+        @Override
+        public void flush() {
+        }
+    }
+}
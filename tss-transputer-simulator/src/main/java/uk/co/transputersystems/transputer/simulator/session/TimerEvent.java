@@ -0,0 +1,18 @@
+package uk.co.transputersystems.transputer.simulator.session;
+
+import uk.co.transputersystems.transputer.simulator.models.Priority;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The first process on a timer queue became due and was woken.
+ */
+public class TimerEvent extends SimulationEvent {
+    // The timer queue the process was on
+    @Nonnull public final Priority priority;
+
+    public TimerEvent(int transputer, long iteration, @Nonnull Priority priority) {
+        super(transputer, iteration);
+        this.priority = priority;
+    }
+}
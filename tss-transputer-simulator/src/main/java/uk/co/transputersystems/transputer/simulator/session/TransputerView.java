@@ -0,0 +1,118 @@
+package uk.co.transputersystems.transputer.simulator.session;
+
+import uk.co.transputersystems.transputer.simulator.Transputer;
+import uk.co.transputersystems.transputer.simulator.debugger.Process;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A read-only view of one transputer in a {@link SimulationSession}. Every method reads the current state, so a
+ * view can be kept and read again after the session has run on.
+ */
+public class TransputerView {
+    private final SimulationSession session;
+    private final Transputer transputer;
+    private final int index;
+
+    TransputerView(SimulationSession session, Transputer transputer, int index) {
+        this.session = session;
+        this.transputer = transputer;
+        this.index = index;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return false once the transputer has halted
+     */
+    public boolean isActive() {
+        return session.isActive(index);
+    }
+
+    public int getIptr() {
+        return transputer.registers.Iptr;
+    }
+
+    public int getWptr() {
+        return transputer.registers.Wptr;
+    }
+
+    public int getAreg() {
+        return transputer.registers.Areg;
+    }
+
+    public int getBreg() {
+        return transputer.registers.Breg;
+    }
+
+    public int getCreg() {
+        return transputer.registers.Creg;
+    }
+
+    public int getOreg() {
+        return transputer.registers.Oreg;
+    }
+
+    public boolean hasError() {
+        return transputer.hasError();
+    }
+
+    /**
+     * @return the number of architectural steps taken, including any that were skipped or folded together
+     */
+    public long getSteps() {
+        return transputer.getSteps();
+    }
+
+    public long getCycles() {
+        return transputer.getCycles();
+    }
+
+    /**
+     * @return the address the program was loaded at
+     */
+    public int getCodeStart() {
+        return transputer.getCodeStart();
+    }
+
+    public int getMemorySize() {
+        return transputer.getMemory().size();
+    }
+
+    public int readWord(int address) {
+        return transputer.getMemory().readWord(address);
+    }
+
+    public byte readByte(int address) {
+        return transputer.getMemory().readByte(address);
+    }
+
+    public byte[] read(int address, int length) {
+        byte[] data = new byte[length];
+        transputer.getMemory().read(address, data, 0, length);
+        return data;
+    }
+
+    /**
+     * @return the ids of the processes that have started and not yet terminated, oldest first
+     */
+    public List<Integer> getLiveProcesses() {
+        List<Integer> ids = new ArrayList<>();
+        for (Process process : transputer.debuggerState.processes.getLive()) {
+            ids.add(process.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * @return the name of the function containing the address, if the program has symbols
+     */
+    @Nullable
+    public String functionAt(int address) {
+        return transputer.debuggerState.symbols.functionAt(address);
+    }
+}
@@ -0,0 +1,150 @@
+package uk.co.transputersystems.transputer.simulator.timing;
+
+import org.yaml.snakeyaml.Yaml;
+import uk.co.transputersystems.transputer.simulator.TransputerConstants;
+import uk.co.transputersystems.transputer.simulator.trace.Mnemonics;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A timing model that looks costs up in a table of cycles per opcode, loaded from a timing `yaml` file or one of
+ * the tables built into the simulator.
+ */
+public class CycleTable implements TimingModel {
+
+    private final String name;
+    private final double clockMhz;
+    private final int[] primary = new int[16];
+    private final int[] secondary = new int[256];
+    private final int processSwitch;
+    private final int schedulerStep;
+    private final int blockMoveStep;
+    private final int linkByte;
+    private final int idleStep;
+
+    public CycleTable(TimingConfig config) {
+        this(config, config.getClock_mhz());
+    }
+
+    /**
+     * @param clockMhz the clock frequency to use instead of the one in the config
+     */
+    public CycleTable(TimingConfig config, double clockMhz) {
+        if (clockMhz <= 0) {
+            throw new IllegalArgumentException("Clock frequency must be positive.");
+        }
+        this.name = config.getName();
+        this.clockMhz = clockMhz;
+
+        Arrays.fill(primary, config.getDefault_primary());
+        primary[TransputerConstants.PFIX] = config.getPrefix();
+        primary[TransputerConstants.NFIX] = config.getPrefix();
+        for (Map.Entry<String, Integer> entry : config.getPrimary().entrySet()) {
+            int opcode = Mnemonics.primaryOpcode(entry.getKey());
+            if (opcode < 0) {
+                throw new IllegalArgumentException(String.format("Unknown primary instruction '%s'.", entry.getKey()));
+            }
+            if (opcode == TransputerConstants.PFIX || opcode == TransputerConstants.NFIX) {
+                throw new IllegalArgumentException("Give the cost of pfix and nfix as prefix.");
+            }
+            primary[opcode] = entry.getValue();
+        }
+
+        Arrays.fill(secondary, config.getDefault_secondary());
+        for (Map.Entry<String, Integer> entry : config.getSecondary().entrySet()) {
+            int opcode = Mnemonics.secondaryOpcode(entry.getKey());
+            if (opcode < 0) {
+                throw new IllegalArgumentException(String.format("Unknown secondary instruction '%s'.", entry.getKey()));
+            }
+            secondary[opcode] = entry.getValue();
+        }
+
+        this.processSwitch = config.getProcess_switch();
+        this.schedulerStep = config.getScheduler_step();
+        this.blockMoveStep = config.getBlock_move_step();
+        this.linkByte = config.getLink_byte();
+        this.idleStep = config.getIdle_step();
+    }
+
+    /**
+     * Load a table from a timing `yaml` file.
+     */
+    public static CycleTable load(File file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file.toPath())) {
+            return new CycleTable(parse(reader));
+        }
+    }
+
+    /**
+     * Load one of the tables built into the simulator, or a timing `yaml` file if there is no built in table with
+     * that name.
+     * @param clockMhz the clock frequency to use, or 0 for the one in the table
+     */
+    public static CycleTable forName(String name, double clockMhz) throws IOException {
+        TimingConfig config;
+        InputStream builtIn = CycleTable.class.getResourceAsStream("/timing/" + name + ".yaml");
+        if (builtIn != null) {
+            try (Reader reader = new InputStreamReader(builtIn, StandardCharsets.UTF_8)) {
+                config = parse(reader);
+            }
+        } else {
+            try (Reader reader = Files.newBufferedReader(new File(name).toPath())) {
+                config = parse(reader);
+            }
+        }
+        return new CycleTable(config, clockMhz > 0 ? clockMhz : config.getClock_mhz());
+    }
+
+    private static TimingConfig parse(Reader reader) {
+        TimingConfig config = new Yaml().loadAs(reader, TimingConfig.class);
+        return config != null ? config : new TimingConfig();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int primaryCycles(int opcode) {
+        return primary[opcode & 0xF];
+    }
+
+    @Override
+    public int secondaryCycles(int opcode) {
+        return secondary[opcode & 0xFF];
+    }
+
+    @Override
+    public int processSwitchCycles() {
+        return processSwitch;
+    }
+
+    @Override
+    public int schedulerStepCycles() {
+        return schedulerStep;
+    }
+
+    @Override
+    public int blockMoveStepCycles() {
+        return blockMoveStep;
+    }
+
+    @Override
+    public int linkByteCycles() {
+        return linkByte;
+    }
+
+    @Override
+    public int idleStepCycles() {
+        return idleStep;
+    }
+
+    @Override
+    public double clockMhz() {
+        return clockMhz;
+    }
+}
@@ -0,0 +1,145 @@
+package uk.co.transputersystems.transputer.simulator.timing;
+
+import javax.annotation.Nonnull;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A cycle table as written in a timing `yaml` file. Costs that are not given default to one cycle.
+ */
+public class TimingConfig {
+    private String name;
+    private double clock_mhz;
+    private int prefix;
+    private int default_primary;
+    private int default_secondary;
+    @Nonnull private Map<String, Integer> primary;
+    @Nonnull private Map<String, Integer> secondary;
+    private int process_switch;
+    private int scheduler_step;
+    private int block_move_step;
+    private int link_byte;
+    private int idle_step;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public double getClock_mhz() {
+        return clock_mhz;
+    }
+
+    public void setClock_mhz(double clock_mhz) {
+        this.clock_mhz = clock_mhz;
+    }
+
+    /**
+     * Cycles for pfix and nfix.
+     */
+    public int getPrefix() {
+        return prefix;
+    }
+
+    public void setPrefix(int prefix) {
+        this.prefix = prefix;
+    }
+
+    public int getDefault_primary() {
+        return default_primary;
+    }
+
+    public void setDefault_primary(int default_primary) {
+        this.default_primary = default_primary;
+    }
+
+    public int getDefault_secondary() {
+        return default_secondary;
+    }
+
+    public void setDefault_secondary(int default_secondary) {
+        this.default_secondary = default_secondary;
+    }
+
+    /**
+     * Cycles by mnemonic, e.g. `ldc`.
+     */
+    @Nonnull
+    public Map<String, Integer> getPrimary() {
+        return primary;
+    }
+
+    public void setPrimary(@Nonnull Map<String, Integer> primary) {
+        this.primary = primary;
+    }
+
+    /**
+     * Cycles by mnemonic, e.g. `mul`.
+     */
+    @Nonnull
+    public Map<String, Integer> getSecondary() {
+        return secondary;
+    }
+
+    public void setSecondary(@Nonnull Map<String, Integer> secondary) {
+        this.secondary = secondary;
+    }
+
+    public int getProcess_switch() {
+        return process_switch;
+    }
+
+    public void setProcess_switch(int process_switch) {
+        this.process_switch = process_switch;
+    }
+
+    public int getScheduler_step() {
+        return scheduler_step;
+    }
+
+    public void setScheduler_step(int scheduler_step) {
+        this.scheduler_step = scheduler_step;
+    }
+
+    public int getBlock_move_step() {
+        return block_move_step;
+    }
+
+    public void setBlock_move_step(int block_move_step) {
+        this.block_move_step = block_move_step;
+    }
+
+    public int getLink_byte() {
+        return link_byte;
+    }
+
+    public void setLink_byte(int link_byte) {
+        this.link_byte = link_byte;
+    }
+
+    public int getIdle_step() {
+        return idle_step;
+    }
+
+    public void setIdle_step(int idle_step) {
+        this.idle_step = idle_step;
+    }
+
+    public TimingConfig() {
+        name = "unit";
+        clock_mhz = 20;
+        prefix = 1;
+        default_primary = 1;
+        default_secondary = 1;
+        primary = new HashMap<>();
+        secondary = new HashMap<>();
+        process_switch = 1;
+        scheduler_step = 1;
+        block_move_step = 1;
+        link_byte = 1;
+        idle_step = 1;
+    }
+}
@@ -0,0 +1,49 @@
+package uk.co.transputersystems.transputer.simulator.timing;
+
+/**
+ * The number of processor cycles taken by each kind of step the simulator makes. A transputer given a timing model
+ * with `Transputer.setTimingModel` counts simulated cycles as well as steps.
+ */
+public interface TimingModel {
+
+    /**
+     * @return the cycles taken by a primary instruction. pfix and nfix must cost the same, as a prefix chain folded
+     * by the decode cache is charged as a number of pfix instructions.
+     */
+    int primaryCycles(int opcode);
+
+    /**
+     * @return the cycles taken by a secondary instruction, including the opr that executes it
+     */
+    int secondaryCycles(int opcode);
+
+    /**
+     * @return the cycles taken to start the next process from a scheduling list
+     */
+    int processSwitchCycles();
+
+    /**
+     * @return the cycles taken by one step of timer queue or channel request microcode
+     */
+    int schedulerStepCycles();
+
+    /**
+     * @return the cycles taken by one step of a block move, which moves up to a word
+     */
+    int blockMoveStepCycles();
+
+    /**
+     * @return the cycles taken to send one byte over a link
+     */
+    int linkByteCycles();
+
+    /**
+     * @return the cycles that pass during a step with no process to run
+     */
+    int idleStepCycles();
+
+    /**
+     * @return the processor clock frequency used to turn cycles into time
+     */
+    double clockMhz();
+}
@@ -0,0 +1,35 @@
+package uk.co.transputersystems.transputer.simulator.topology;
+
+/**
+ * A pair of processors wired together. Links carry data in both directions.
+ */
+public class Link {
+    private int from;
+    private int to;
+
+    public int getFrom() {
+        return from;
+    }
+
+    public void setFrom(int from) {
+        this.from = from;
+    }
+
+    public int getTo() {
+        return to;
+    }
+
+    public void setTo(int to) {
+        this.to = to;
+    }
+
+    public Link() {
+        from = 0;
+        to = 0;
+    }
+
+    public Link(int from, int to) {
+        this.from = from;
+        this.to = to;
+    }
+}
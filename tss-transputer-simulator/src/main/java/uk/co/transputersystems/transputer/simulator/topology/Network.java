@@ -0,0 +1,170 @@
+package uk.co.transputersystems.transputer.simulator.topology;
+
+import org.yaml.snakeyaml.Yaml;
+import uk.co.transputersystems.transputer.simulator.TransputerConstants;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A network of transputers: the binary each one runs, how much memory it has and how they are wired together.
+ */
+public class Network {
+    public final File[] binaries;
+    public final RoutingTable routing;
+    public final int[] memorySizes;
+
+    public Network(File[] binaries, RoutingTable routing) {
+        this(binaries, routing, sizes(binaries.length, TransputerConstants.MEMSIZE));
+    }
+
+    public Network(File[] binaries, RoutingTable routing, int[] memorySizes) {
+        this.binaries = binaries;
+        this.routing = routing;
+        this.memorySizes = memorySizes;
+    }
+
+    /**
+     * One transputer per binary, each able to talk to all the others.
+     */
+    public static Network fullyConnected(List<File> binaries) {
+        return fullyConnected(binaries, TransputerConstants.MEMSIZE);
+    }
+
+    public static Network fullyConnected(List<File> binaries, int memorySize) {
+        return new Network(binaries.toArray(new File[binaries.size()]), RoutingTable.fullyConnected(binaries.size()),
+                sizes(binaries.size(), memorySize));
+    }
+
+    /**
+     * Load a network from a topology `yaml` file. Binary paths are relative to the directory holding the file.
+     */
+    public static Network load(File file) throws IOException {
+        return load(file, TransputerConstants.MEMSIZE);
+    }
+
+    /**
+     * @param memorySize the memory size of processors the file does not give one for
+     */
+    public static Network load(File file, int memorySize) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file.toPath())) {
+            Yaml yaml = new Yaml();
+            NetworkConfig config = yaml.loadAs(reader, NetworkConfig.class);
+            File directory = file.getAbsoluteFile().getParentFile();
+            return fromTopology(config.getTopology(), directory, memorySize);
+        }
+    }
+
+    public static Network fromTopology(Topology topology, File directory) {
+        return fromTopology(topology, directory, TransputerConstants.MEMSIZE);
+    }
+
+    public static Network fromTopology(Topology topology, File directory, int memorySize) {
+        int size = size(topology);
+        if (size <= 0) {
+            throw new IllegalArgumentException("Topology must contain at least one processor.");
+        }
+
+        List<Link> links = generateLinks(topology);
+        links.addAll(topology.getLinks());
+
+        String[] names = new String[size];
+        int[] memorySizes = sizes(size, topology.getMemory_size() > 0 ? topology.getMemory_size() : memorySize);
+        for (int i = 0; i < size; i++) {
+            names[i] = topology.getBinary();
+        }
+        for (Node node : topology.getNodes()) {
+            if (node.getProcessor_id() < 0 || node.getProcessor_id() >= size) {
+                throw new IllegalArgumentException(String.format("Node %d is outside the topology (0-%d).",
+                        node.getProcessor_id(), size - 1));
+            }
+            if (node.getBinary() != null) {
+                names[node.getProcessor_id()] = node.getBinary();
+            }
+            if (node.getMemory_size() > 0) {
+                memorySizes[node.getProcessor_id()] = node.getMemory_size();
+            }
+        }
+
+        File[] binaries = new File[size];
+        for (int i = 0; i < size; i++) {
+            if (names[i] == null) {
+                throw new IllegalArgumentException(String.format("No binary given for processor %d.", i));
+            }
+            File binary = new File(names[i]);
+            binaries[i] = binary.isAbsolute() ? binary : new File(directory, names[i]);
+        }
+
+        return new Network(binaries, RoutingTable.fromLinks(size, links), memorySizes);
+    }
+
+    private static int[] sizes(int count, int memorySize) {
+        int[] memorySizes = new int[count];
+        Arrays.fill(memorySizes, memorySize);
+        return memorySizes;
+    }
+
+    /**
+     * @return the number of processors in the topology
+     */
+    public static int size(Topology topology) {
+        switch (topology.getType()) {
+            case "mesh":
+            case "torus":
+                return topology.getWidth() * topology.getHeight();
+            case "hypercube":
+                return 1 << topology.getDimensions();
+            case "custom":
+                return topology.getProcessors();
+            default:
+                throw new IllegalArgumentException("Unknown topology type: " + topology.getType());
+        }
+    }
+
+    /**
+     * Generate the links of a regular topology. Mesh and torus processors are numbered row by row.
+     */
+    public static List<Link> generateLinks(Topology topology) {
+        List<Link> links = new ArrayList<>();
+        int width = topology.getWidth();
+        int height = topology.getHeight();
+        switch (topology.getType()) {
+            case "mesh":
+            case "torus":
+                boolean wrap = topology.getType().equals("torus");
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        int node = y * width + x;
+                        if (x + 1 < width) {
+                            links.add(new Link(node, node + 1));
+                        } else if (wrap && width > 2) {
+                            links.add(new Link(node, y * width));
+                        }
+                        if (y + 1 < height) {
+                            links.add(new Link(node, node + width));
+                        } else if (wrap && height > 2) {
+                            links.add(new Link(node, x));
+                        }
+                    }
+                }
+                break;
+            case "hypercube":
+                int size = 1 << topology.getDimensions();
+                for (int node = 0; node < size; node++) {
+                    for (int d = 0; d < topology.getDimensions(); d++) {
+                        int neighbour = node ^ (1 << d);
+                        if (neighbour > node) {
+                            links.add(new Link(node, neighbour));
+                        }
+                    }
+                }
+                break;
+        }
+        return links;
+    }
+}
@@ -0,0 +1,17 @@
+package uk.co.transputersystems.transputer.simulator.topology;
+
+public class NetworkConfig {
+    private Topology topology;
+
+    public Topology getTopology() {
+        return topology;
+    }
+
+    public void setTopology(Topology topology) {
+        this.topology = topology;
+    }
+
+    public NetworkConfig() {
+        topology = new Topology();
+    }
+}
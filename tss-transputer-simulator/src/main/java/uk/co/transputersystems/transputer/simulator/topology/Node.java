@@ -0,0 +1,40 @@
+package uk.co.transputersystems.transputer.simulator.topology;
+
+public class Node {
+    private int processor_id;
+    private String binary;
+    private int memory_size;
+
+    public int getProcessor_id() {
+        return processor_id;
+    }
+
+    public void setProcessor_id(int processor_id) {
+        this.processor_id = processor_id;
+    }
+
+    public String getBinary() {
+        return binary;
+    }
+
+    public void setBinary(String binary) {
+        this.binary = binary;
+    }
+
+    /**
+     * Bytes of memory, or 0 for the default.
+     */
+    public int getMemory_size() {
+        return memory_size;
+    }
+
+    public void setMemory_size(int memory_size) {
+        this.memory_size = memory_size;
+    }
+
+    public Node() {
+        processor_id = 0;
+        binary = null;
+        memory_size = 0;
+    }
+}
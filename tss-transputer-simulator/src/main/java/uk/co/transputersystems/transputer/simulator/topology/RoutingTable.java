@@ -0,0 +1,80 @@
+package uk.co.transputersystems.transputer.simulator.topology;
+
+import uk.co.transputersystems.transputer.simulator.UnlinkedChannelException;
+
+import javax.annotation.Nullable;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Link routes for a network of transputers. The processor number encoded in a hard channel is the index of the
+ * transputer at the other end of the link, so only which processors are wired to each other is kept.
+ */
+public class RoutingTable {
+    private final int size;
+    // Null when every processor is wired to every other one
+    @Nullable private final BitSet[] links;
+
+    private RoutingTable(int size, @Nullable BitSet[] links) {
+        this.size = size;
+        this.links = links;
+    }
+
+    /**
+     * A network in which any processor can talk to any other, as when binaries are given on the command line.
+     */
+    public static RoutingTable fullyConnected(int size) {
+        return new RoutingTable(size, null);
+    }
+
+    /**
+     * A network of `size` processors wired only by the given links. Every processor may also talk to itself.
+     */
+    public static RoutingTable fromLinks(int size, List<Link> links) {
+        BitSet[] wired = new BitSet[size];
+        for (int i = 0; i < size; i++) {
+            wired[i] = new BitSet(size);
+            wired[i].set(i);
+        }
+        for (Link link : links) {
+            if (link.getFrom() < 0 || link.getFrom() >= size || link.getTo() < 0 || link.getTo() >= size) {
+                throw new IllegalArgumentException(String.format("Link %d-%d refers to a processor outside 0-%d.",
+                        link.getFrom(), link.getTo(), size - 1));
+            }
+            wired[link.getFrom()].set(link.getTo());
+            wired[link.getTo()].set(link.getFrom());
+        }
+        return new RoutingTable(size, wired);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public boolean isConnected(int source, int processor) {
+        if (processor < 0 || processor >= size) {
+            return false;
+        }
+        return links == null || links[source].get(processor);
+    }
+
+    /**
+     * @return the index of the transputer that `source` reaches when it uses a channel on `processor`
+     */
+    public int route(int source, int processor) {
+        if (!isConnected(source, processor)) {
+            throw new UnlinkedChannelException(source, processor);
+        }
+        return processor;
+    }
+
+    /**
+     * @return the number of processors `source` is linked to, not counting itself
+     */
+    public int degree(int source) {
+        if (links == null) {
+            return size - 1;
+        }
+        return links[source].cardinality() - 1;
+    }
+}
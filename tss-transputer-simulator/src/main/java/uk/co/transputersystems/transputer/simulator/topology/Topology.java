@@ -0,0 +1,116 @@
+package uk.co.transputersystems.transputer.simulator.topology;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+
+public class Topology {
+    private String type;
+    private int width;
+    private int height;
+    private int dimensions;
+    private int processors;
+    private String binary;
+    private int memory_size;
+    @Nonnull private List<Node> nodes;
+    @Nonnull private List<Link> links;
+
+    /**
+     * One of mesh, torus, hypercube or custom.
+     */
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public void setWidth(int width) {
+        this.width = width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    public void setDimensions(int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    /**
+     * The number of processors in a custom topology.
+     */
+    public int getProcessors() {
+        return processors;
+    }
+
+    public void setProcessors(int processors) {
+        this.processors = processors;
+    }
+
+    /**
+     * The binary run by every processor that is not given its own in `nodes`.
+     */
+    public String getBinary() {
+        return binary;
+    }
+
+    public void setBinary(String binary) {
+        this.binary = binary;
+    }
+
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(List<Node> nodes) {
+        this.nodes = nodes == null ? new ArrayList<>() : nodes;
+    }
+
+    /**
+     * Extra links, added to those generated for a mesh, torus or hypercube.
+     */
+    public List<Link> getLinks() {
+        return links;
+    }
+
+    public void setLinks(List<Link> links) {
+        this.links = links == null ? new ArrayList<>() : links;
+    }
+
+    /**
+     * Bytes of memory, or 0 for the default.
+     */
+    public int getMemory_size() {
+        return memory_size;
+    }
+
+    public void setMemory_size(int memory_size) {
+        this.memory_size = memory_size;
+    }
+
+    public Topology() {
+        type = "custom";
+        width = 0;
+        height = 0;
+        dimensions = 0;
+        processors = 0;
+        binary = null;
+        memory_size = 0;
+        nodes = new ArrayList<>();
+        links = new ArrayList<>();
+    }
+}
@@ -0,0 +1,189 @@
+package uk.co.transputersystems.transputer.simulator.trace;
+
+import uk.co.transputersystems.transputer.simulator.models.Registers;
+
+import java.io.*;
+
+/**
+ * Writes trace events as compact fixed-size binary records. Use {@link #replay(InputStream, TraceSink)} to turn a
+ * recorded trace back into events, e.g. to print it with a {@link TextTraceSink}.
+ */
+public class BinaryTraceSink implements TraceSink, Closeable {
+
+    private static final int MAGIC = 0x54535452; // "TSTR"
+    private static final byte VERSION = 1;
+
+    private static final byte PRIMARY_INSTRUCTION = 1;
+    private static final byte SECONDARY_INSTRUCTION = 2;
+    private static final byte SCHEDULER = 3;
+    private static final byte BLOCK_MOVE = 4;
+    private static final byte LINK = 5;
+    private static final byte REGISTERS = 6;
+
+    private static final SchedulerEvent[] EVENTS = SchedulerEvent.values();
+
+    private final DataOutputStream output;
+    private final TraceLevel level;
+    private final boolean instructions;
+    private final boolean scheduler;
+    private final boolean links;
+    private final boolean full;
+
+    public BinaryTraceSink(OutputStream output, TraceLevel level) throws IOException {
+        this.output = new DataOutputStream(new BufferedOutputStream(output, 1 << 16));
+        this.level = level;
+        this.instructions = level.includes(TraceLevel.INSTRUCTION);
+        this.scheduler = level.includes(TraceLevel.SCHEDULER);
+        this.links = level.includes(TraceLevel.LINKS);
+        this.full = level.includes(TraceLevel.FULL);
+
+        this.output.writeInt(MAGIC);
+        this.output.writeByte(VERSION);
+        this.output.writeByte(level.ordinal());
+    }
+
+    @Override
+    public TraceLevel getLevel() {
+        return level;
+    }
+
+    @Override
+    public void instruction(int id, int iptr, int opcode, boolean secondary) {
+        if (instructions) {
+            try {
+                output.writeByte(secondary ? SECONDARY_INSTRUCTION : PRIMARY_INSTRUCTION);
+                output.writeByte(id);
+                output.writeInt(iptr);
+                output.writeByte(opcode);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public void scheduler(int id, SchedulerEvent event) {
+        if (scheduler) {
+            try {
+                output.writeByte(SCHEDULER);
+                output.writeByte(id);
+                output.writeByte(event.ordinal());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public void blockMove(int id, int source, int destination, int length) {
+        if (scheduler) {
+            try {
+                output.writeByte(BLOCK_MOVE);
+                output.writeByte(id);
+                output.writeInt(source);
+                output.writeInt(destination);
+                output.writeInt(length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public void link(int sourceId, int targetId, int targetPort) {
+        if (links) {
+            try {
+                output.writeByte(LINK);
+                output.writeByte(sourceId);
+                output.writeByte(targetId);
+                output.writeByte(targetPort);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public void registers(int id, Registers registers) {
+        if (full) {
+            try {
+                output.writeByte(REGISTERS);
+                output.writeByte(id);
+                output.writeInt(registers.Areg);
+                output.writeInt(registers.Breg);
+                output.writeInt(registers.Creg);
+                output.writeInt(registers.Oreg);
+                output.writeInt(registers.Wptr);
+                output.writeInt(registers.Iptr);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+
+    /**
+     * Read a binary trace and pass each recorded event on to another sink.
+     * @return the level the trace was recorded at
+     */
+    public static TraceLevel replay(InputStream input, TraceSink sink) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(input));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a binary trace file");
+        }
+        if (data.readByte() != VERSION) {
+            throw new IOException("Unsupported binary trace version");
+        }
+        TraceLevel recordedLevel = TraceLevel.values()[data.readByte()];
+        Registers registers = new Registers();
+
+        int tag;
+        while ((tag = data.read()) != -1) {
+            switch (tag) {
+                case PRIMARY_INSTRUCTION:
+                case SECONDARY_INSTRUCTION:
+                    int id = data.readUnsignedByte();
+                    int iptr = data.readInt();
+                    sink.instruction(id, iptr, data.readUnsignedByte(), tag == SECONDARY_INSTRUCTION);
+                    break;
+                case SCHEDULER:
+                    id = data.readUnsignedByte();
+                    sink.scheduler(id, EVENTS[data.readUnsignedByte()]);
+                    break;
+                case BLOCK_MOVE:
+                    sink.blockMove(data.readUnsignedByte(), data.readInt(), data.readInt(), data.readInt());
+                    break;
+                case LINK:
+                    sink.link(data.readUnsignedByte(), data.readUnsignedByte(), data.readUnsignedByte());
+                    break;
+                case REGISTERS:
+                    id = data.readUnsignedByte();
+                    registers.Areg = data.readInt();
+                    registers.Breg = data.readInt();
+                    registers.Creg = data.readInt();
+                    registers.Oreg = data.readInt();
+                    registers.Wptr = data.readInt();
+                    registers.Iptr = data.readInt();
+                    sink.registers(id, registers);
+                    break;
+                default:
+                    throw new IOException(String.format("Unknown trace record type %02X", tag));
+            }
+        }
+        sink.flush();
+        return recordedLevel;
+    }
+}
@@ -0,0 +1,131 @@
+package uk.co.transputersystems.transputer.simulator.trace;
+
+import static uk.co.transputersystems.transputer.simulator.TransputerConstants.*;
+
+/**
+ * Opcode to mnemonic lookup for human-readable traces.
+ */
+public final class Mnemonics {
+
+    private static final String[] PRIMARY = new String[16];
+    private static final String[] SECONDARY = new String[256];
+
+    static {
+        PRIMARY[PFIX] = "pfix";
+        PRIMARY[NFIX] = "nfix";
+        PRIMARY[OPR] = "opr";
+        PRIMARY[LDC] = "ldc";
+        PRIMARY[LDL] = "ldl";
+        PRIMARY[STL] = "stl";
+        PRIMARY[LDLP] = "ldlp";
+        PRIMARY[ADC] = "adc";
+        PRIMARY[EQC] = "eqc";
+        PRIMARY[J] = "j";
+        PRIMARY[CJ] = "cj";
+        PRIMARY[LDNL] = "ldnl";
+        PRIMARY[STNL] = "stnl";
+        PRIMARY[LDNLP] = "ldnlp";
+        PRIMARY[CALL] = "call";
+        PRIMARY[AJW] = "ajw";
+
+        SECONDARY[REV] = "rev";
+        SECONDARY[ADD] = "add";
+        SECONDARY[SUB] = "sub";
+        SECONDARY[MUL] = "mul";
+        SECONDARY[DIV] = "div";
+        SECONDARY[DIFF] = "diff";
+        SECONDARY[SUM] = "sum";
+        SECONDARY[AND] = "and";
+        SECONDARY[OR] = "or";
+        SECONDARY[XOR] = "xor";
+        SECONDARY[NOT] = "not";
+        SECONDARY[SHL] = "shl";
+        SECONDARY[SHR] = "shr";
+        SECONDARY[GT] = "gt";
+        SECONDARY[LEND] = "lend";
+        SECONDARY[BSUB] = "bsub";
+        SECONDARY[WSUB] = "wsub";
+        SECONDARY[BCNT] = "bcnt";
+        SECONDARY[WCNT] = "wcnt";
+        SECONDARY[LDPI] = "ldpi";
+        SECONDARY[MOVE] = "move";
+        SECONDARY[GCALL] = "gcall";
+        SECONDARY[GAJW] = "gajw";
+        SECONDARY[RET] = "ret";
+        SECONDARY[STARTP] = "startp";
+        SECONDARY[ENDP] = "endp";
+        SECONDARY[RUNP] = "runp";
+        SECONDARY[STOPP] = "stopp";
+        SECONDARY[LDPRI] = "ldpri";
+        SECONDARY[MINT] = "mint";
+        SECONDARY[ALT] = "alt";
+        SECONDARY[ALTWT] = "altwt";
+        SECONDARY[ALTEND] = "altend";
+        SECONDARY[LDTIMER] = "ldtimer";
+        SECONDARY[TIN] = "tin";
+        SECONDARY[TALT] = "talt";
+        SECONDARY[TALTWT] = "taltwt";
+        SECONDARY[ENBS] = "enbs";
+        SECONDARY[DISS] = "diss";
+        SECONDARY[ENBC] = "enbc";
+        SECONDARY[DISC] = "disc";
+        SECONDARY[ENBT] = "enbt";
+        SECONDARY[DIST] = "dist";
+        SECONDARY[CSUB] = "csub";
+        SECONDARY[CCNT] = "ccnt";
+        SECONDARY[TESTERR] = "testerr";
+        SECONDARY[SETERR] = "seterr";
+        SECONDARY[STOPERR] = "stoperr";
+        SECONDARY[CLRHALTERR] = "clrhalterr";
+        SECONDARY[SETHALTERR] = "sethalterr";
+        SECONDARY[TESTHALTERR] = "testhalterr";
+        SECONDARY[RESETCH] = "resetch";
+        SECONDARY[STHF] = "sthf";
+        SECONDARY[STLF] = "stlf";
+        SECONDARY[STTIMER] = "sttimer";
+        SECONDARY[STHB] = "sthb";
+        SECONDARY[STLB] = "stlb";
+        SECONDARY[SAVEH] = "saveh";
+        SECONDARY[SAVEL] = "savel";
+        SECONDARY[IN] = "in";
+        SECONDARY[OUT] = "out";
+        SECONDARY[CONFIO] = "confio";
+        SECONDARY[OUTWORD] = "outword";
+    }
+
+    private Mnemonics() {
+    }
+
+    public static String primary(int opcode) {
+        String name = PRIMARY[opcode & 0xF];
+        return name != null ? name : String.format("%01X", opcode & 0xF);
+    }
+
+    public static String secondary(int opcode) {
+        String name = SECONDARY[opcode & 0xFF];
+        return name != null ? name : String.format("%02X", opcode & 0xFF);
+    }
+
+    /**
+     * @return the primary opcode with the given mnemonic, or -1 if there is none
+     */
+    public static int primaryOpcode(String name) {
+        return indexOf(PRIMARY, name);
+    }
+
+    /**
+     * @return the secondary opcode with the given mnemonic, or -1 if there is none
+     */
+    public static int secondaryOpcode(String name) {
+        return indexOf(SECONDARY, name);
+    }
+
+    private static int indexOf(String[] names, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (name.equals(names[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
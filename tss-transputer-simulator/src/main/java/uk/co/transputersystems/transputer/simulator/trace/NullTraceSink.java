@@ -0,0 +1,43 @@
+package uk.co.transputersystems.transputer.simulator.trace;
+
+import uk.co.transputersystems.transputer.simulator.models.Registers;
+
+/**
+ * A sink that discards every event. This is the default for the simulator.
+ */
+public final class NullTraceSink implements TraceSink {
+
+    public static final NullTraceSink INSTANCE = new NullTraceSink();
+
+    private NullTraceSink() {
+    }
+
+    @Override
+    public TraceLevel getLevel() {
+        return TraceLevel.OFF;
+    }
+
+    @Override
+    public void instruction(int id, int iptr, int opcode, boolean secondary) {
+    }
+
+    @Override
+    public void scheduler(int id, SchedulerEvent event) {
+    }
+
+    @Override
+    public void blockMove(int id, int source, int destination, int length) {
+    }
+
+    @Override
+    public void link(int sourceId, int targetId, int targetPort) {
+    }
+
+    @Override
+    public void registers(int id, Registers registers) {
+    }
+
+    @Override
+    public void flush() {
+    }
+}
@@ -0,0 +1,63 @@
+package uk.co.transputersystems.transputer.simulator.trace;
+
+/**
+ * Steps taken by the scheduler, timer queue, channel and block move microcode. Each event carries the message the
+ * simulator has always printed for it, so text traces read the same as before.
+ */
+public enum SchedulerEvent {
+    BLOCK_MOVE_MIDDLE_STEP("Block_move_middle_step"),
+    BLOCK_MOVE_FINAL_STEP("Block_move_final_step"),
+
+    SOFT_INPUT("channelNumber >= LINKCHANS"),
+    SOFT_INPUT_WAIT("processDescriptor == NOTPROCESS_P"),
+    SOFT_INPUT_READY("ready to transfer"),
+
+    RUN_PROCESS("run_proc"),
+    RUN_PROCESS_ENQUEUE_HIGH("run_proc.enqueue_pri0"),
+    RUN_PROCESS_CHANGE_PRIORITY("run_proc changing priority"),
+    RUN_PROCESS_LOW("run_proc.proc_pri==1"),
+    RUN_PROCESS_IDLE("run_proc-.No proc running"),
+    RUN_PROCESS_ENQUEUE_LOW("runproc.enqueue_pri1"),
+    RESTORE_REGISTERS("restore_registers"),
+
+    START_HIGH("priority 0"),
+    START_HIGH_DEQUEUE("!=NOTPROCESS_P"),
+    START_HIGH_EMPTY("NOTPROCESS_P"),
+    START_NO_INTERRUPTED_PROCESS("no interrupted process"),
+    START_LOW("priority 1"),
+    START_LOW_EMPTY("Wptr = NOTPROCESS_P"),
+
+    IS_THIS_SELECTED_PROCESS("is_this_sel_proc"),
+    NONE_SELECTED("Noneselected"),
+    ALREADY_SELECTED("else"),
+
+    DISABLE_CHANNEL("Breg != FALSE"),
+    DISABLE_SOFT_CHANNEL("Soft channel"),
+    DISABLE_CHANNEL_EMPTY("Breg == NOTPROCESS_P"),
+    DISABLE_CHANNEL_SELF("Breg == Wdescreg"),
+    DISABLE_CHANNEL_OTHER("Breg else"),
+
+    TIMER_INSERT_FIRST_STEP("insert_first_step"),
+    TIMER_INSERT_MIDDLE_STEP("insert_middle_step"),
+    TIMER_INSERT_TEST("insert_test"),
+    TIMER_INSERT_FINAL_STEP("insert_final_step"),
+    TIMER_DELETE_FIRST_STEP("delete_first_step"),
+    TIMER_DELETE_MIDDLE_STEP("delete_middle_step"),
+    TIMER_DELETE_TEST("delete_test"),
+    TIMER_DELETE_FINAL_STEP("delete_final_step"),
+    TIMER_SECOND_PROCESS("secondproc != NOTPROCESS_P"),
+
+    END_PROCESS_WAIT("ENDP elseA"),
+
+    STEP_START_NEW_PROCESS("performStep => startNewProcess"),
+    STEP_TIMER_HIGH("performStep => handleTimerRequest(0), PRIORITY(0)"),
+    STEP_TIMER_HIGH_FROM_LOW("performStep => transputer_handle_timer_reg(0), PRIORITY(1)"),
+    STEP_TIMER_LOW("performStep => transputer_handle_timer_reg(1), PRIORITY(1)"),
+    STEP_NO_PROCESS("WARNING: performStep() 'Wptr' == NOTPROCESS_P");
+
+    public final String message;
+
+    SchedulerEvent(String message) {
+        this.message = message;
+    }
+}
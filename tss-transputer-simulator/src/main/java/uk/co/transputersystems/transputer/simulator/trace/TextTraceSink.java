@@ -0,0 +1,86 @@
+package uk.co.transputersystems.transputer.simulator.trace;
+
+import uk.co.transputersystems.transputer.simulator.TransputerHelpers;
+import uk.co.transputersystems.transputer.simulator.models.Registers;
+
+import java.io.Closeable;
+import java.io.PrintWriter;
+
+/**
+ * Writes trace events as text, in the format the simulator has always used for its console output.
+ */
+public class TextTraceSink implements TraceSink, Closeable {
+
+    private final PrintWriter output;
+    private final TraceLevel level;
+    private final boolean instructions;
+    private final boolean scheduler;
+    private final boolean links;
+    private final boolean full;
+
+    public TextTraceSink(PrintWriter output, TraceLevel level) {
+        this.output = output;
+        this.level = level;
+        this.instructions = level.includes(TraceLevel.INSTRUCTION);
+        this.scheduler = level.includes(TraceLevel.SCHEDULER);
+        this.links = level.includes(TraceLevel.LINKS);
+        this.full = level.includes(TraceLevel.FULL);
+    }
+
+    @Override
+    public TraceLevel getLevel() {
+        return level;
+    }
+
+    @Override
+    public void instruction(int id, int iptr, int opcode, boolean secondary) {
+        if (instructions) {
+            if (secondary) {
+                output.printf("Executed opr %s\n", Mnemonics.secondary(opcode));
+            } else {
+                output.printf("Executed %s\n", Mnemonics.primary(opcode));
+            }
+        }
+    }
+
+    @Override
+    public void scheduler(int id, SchedulerEvent event) {
+        if (scheduler) {
+            output.println(event.message);
+        }
+    }
+
+    @Override
+    public void blockMove(int id, int source, int destination, int length) {
+        if (scheduler) {
+            output.printf("move_first_step=> src:%08X dest:%08X len:%08X\n", source, destination, length);
+        }
+    }
+
+    @Override
+    public void link(int sourceId, int targetId, int targetPort) {
+        if (links) {
+            output.printf("Switch passed information from transputer %d to %d port %d\n", sourceId, targetId, targetPort);
+        }
+    }
+
+    @Override
+    public void registers(int id, Registers registers) {
+        if (full) {
+            output.printf("ID: %d \tAreg: %08X \tBreg: %08X \tCreg: %08X\n\t\tOreg: %08X \tWptr: %08X \tIptr: %08X \tPriority: %01X\n\n",
+                    id, registers.Areg, registers.Breg, registers.Creg, registers.Oreg,
+                    TransputerHelpers.extractWorkspacePointer(registers.Wptr), registers.Iptr,
+                    TransputerHelpers.extractPriorityBit(registers.Wptr));
+        }
+    }
+
+    @Override
+    public void flush() {
+        output.flush();
+    }
+
+    @Override
+    public void close() {
+        output.close();
+    }
+}
@@ -0,0 +1,26 @@
+package uk.co.transputersystems.transputer.simulator.trace;
+
+/**
+ * How much detail a {@link TraceSink} records. Each level includes everything recorded by the levels before it.
+ */
+public enum TraceLevel {
+    OFF,            // Record nothing
+    INSTRUCTION,    // Every executed instruction
+    SCHEDULER,      // Process scheduling, timer queue and block move steps
+    LINKS,          // Bytes passed between transputers by the switch
+    FULL;           // Register dump after every step
+
+    /**
+     * @return true if a sink running at this level should record events of the given level
+     */
+    public boolean includes(TraceLevel level) {
+        return level != OFF && this.compareTo(level) >= 0;
+    }
+
+    /**
+     * Parse a level name as given on the command line, ignoring case.
+     */
+    public static TraceLevel parse(String name) {
+        return TraceLevel.valueOf(name.trim().toUpperCase());
+    }
+}
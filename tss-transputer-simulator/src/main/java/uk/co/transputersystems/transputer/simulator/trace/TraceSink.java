@@ -0,0 +1,42 @@
+package uk.co.transputersystems.transputer.simulator.trace;
+
+import uk.co.transputersystems.transputer.simulator.models.Registers;
+
+/**
+ * Receives trace events from the simulator. Implementations decide which events to keep based on their
+ * {@link TraceLevel}; callers never format anything themselves, so a sink that records nothing costs nothing.
+ */
+public interface TraceSink {
+
+    TraceLevel getLevel();
+
+    /**
+     * An instruction is about to be executed.
+     * @param id the transputer executing the instruction
+     * @param iptr the address of the instruction byte
+     * @param opcode the primary opcode, or the secondary opcode if `secondary` is set
+     */
+    void instruction(int id, int iptr, int opcode, boolean secondary);
+
+    /**
+     * The scheduler, timer queue or block move microcode took a step.
+     */
+    void scheduler(int id, SchedulerEvent event);
+
+    /**
+     * A block move has started.
+     */
+    void blockMove(int id, int source, int destination, int length);
+
+    /**
+     * The switch passed a byte from one transputer to a port on another.
+     */
+    void link(int sourceId, int targetId, int targetPort);
+
+    /**
+     * A transputer finished a step with the given register values.
+     */
+    void registers(int id, Registers registers);
+
+    void flush();
+}
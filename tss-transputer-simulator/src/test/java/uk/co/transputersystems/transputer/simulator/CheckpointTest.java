@@ -0,0 +1,95 @@
+package uk.co.transputersystems.transputer.simulator;
+
+import org.junit.Test;
+import uk.co.transputersystems.transputer.simulator.trace.NullTraceSink;
+
+import java.io.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static uk.co.transputersystems.transputer.simulator.TestNetworks.*;
+
+public class CheckpointTest {
+
+    private static File[] network() throws Exception {
+        return new File[]{
+                assemble(String.format(SENDER, (1 << 5) | 1)),
+                assemble(RECEIVER),
+                assemble(String.format(COUNTER, 30))
+        };
+    }
+
+    @Test
+    public void testRestoredRunMatchesUninterruptedRun() throws Exception {
+        File[] binaries = network();
+        PrintWriter quiet = new PrintWriter(new StringWriter());
+
+        for (boolean compress : new boolean[]{false, true}) {
+            for (long checkpointStep : new long[]{1, 9, 20}) {
+                SimulationState original = load(quiet, binaries);
+                run(original, checkpointStep);
+                ByteArrayOutputStream checkpoint = new ByteArrayOutputStream();
+                Checkpoint.save(original, checkpoint, compress);
+                run(original, Long.MAX_VALUE);
+
+                SimulationState restored = load(quiet, binaries);
+                Checkpoint.restore(restored, new ByteArrayInputStream(checkpoint.toByteArray()));
+                assertEquals(checkpointStep, restored.loopCount);
+                run(restored, Long.MAX_VALUE);
+
+                assertEquals(describe(original), describe(restored));
+            }
+        }
+    }
+
+    private static String workspaces(SimulationState state) {
+        StringWriter output = new StringWriter();
+        PrintWriter writer = new PrintWriter(output);
+        state.transputers[0].printWorkspaceMemory(writer);
+        writer.flush();
+        return output.toString();
+    }
+
+    @Test
+    public void testTerminatedProcessesAreRestored() throws Exception {
+        PrintWriter quiet = new PrintWriter(new StringWriter());
+        // The child stops, and the main process is left waiting for a link nothing sends on
+        File binary = assemble(String.format(BUSY_RECEIVER, 1, 5));
+
+        SimulationState original = load(quiet, binary);
+        original.transputers[0].debuggerState.processes.setHistoryEnabled(true);
+        run(original, Long.MAX_VALUE);
+        assertEquals(1, original.transputers[0].debuggerState.processes.getHistory().size());
+        ByteArrayOutputStream checkpoint = new ByteArrayOutputStream();
+        Checkpoint.save(original, checkpoint, false);
+
+        SimulationState restored = load(quiet, binary);
+        restored.transputers[0].debuggerState.processes.setHistoryEnabled(true);
+        Checkpoint.restore(restored, new ByteArrayInputStream(checkpoint.toByteArray()));
+        assertEquals(workspaces(original), workspaces(restored));
+    }
+
+    @Test
+    public void testMismatchedMemorySizeIsRejectedBeforeAnythingChanges() throws Exception {
+        PrintWriter quiet = new PrintWriter(new StringWriter());
+        File binary = assemble(String.format(COUNTER, 5));
+
+        SimulationState small = new SimulationState(new Transputer[]{
+                new Transputer(0, quiet, quiet, NullTraceSink.INSTANCE, new ByteBufferMemory(8192))});
+        small.transputers[0].loadProgram(binary);
+        small.active[0] = true;
+        ByteArrayOutputStream checkpoint = new ByteArrayOutputStream();
+        Checkpoint.save(small, checkpoint, false);
+
+        SimulationState large = load(quiet, binary);
+        String before = describe(large);
+        try {
+            Checkpoint.restore(large, new ByteArrayInputStream(checkpoint.toByteArray()));
+            fail("Restoring into a different memory size should fail");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("bytes of memory"));
+        }
+        assertEquals(before, describe(large));
+    }
+}
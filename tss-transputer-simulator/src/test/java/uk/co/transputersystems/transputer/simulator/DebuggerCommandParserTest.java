@@ -90,6 +90,28 @@ public class DebuggerCommandParserTest {
         ParseTree info3 = parseCommand("99,0 dELETE 0");
     }
 
+    @Test
+    public void testConditionalBreakCommand() {
+        ParseTree info1 = parseCommand("1 break 0x1480 if areg == 3");
+        ParseTree info2 = parseCommand("1,2 B 270 IF [0x1448] >= Wptr");
+        ParseTree info3 = parseCommand("0 b 0 if iptr != 0x10");
+    }
+
+    @Test
+    public void testWatchCommands() {
+        ParseTree info1 = parseCommand("0 watch 0x1448 4");
+        ParseTree info2 = parseCommand("0 rwatch 100");
+        ParseTree info3 = parseCommand("0,1 AWATCH 0x10 8 if [0x1448] > 2");
+        ParseTree info4 = parseCommand("0 unwatch 0x1448");
+        ParseTree info5 = parseCommand("0 info watch");
+    }
+
+    @Test
+    public void testMetricsCommand() {
+        ParseTree info1 = parseCommand("metrics");
+        ParseTree info2 = parseCommand("METRICS \"metrics.json\"");
+    }
+
     @Test
     public void testStepCommand() {
         ParseTree info1 = parseCommand("s");
@@ -0,0 +1,54 @@
+package uk.co.transputersystems.transputer.simulator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DecodeCacheTest {
+
+    private static MemoryModel memory(int address, int... bytes) {
+        MemoryModel mem = new ByteBufferMemory(TransputerConstants.MEMSIZE);
+        for (int i = 0; i < bytes.length; i++) {
+            mem.writeByte(address + i, (byte) bytes[i]);
+        }
+        return mem;
+    }
+
+    @Test
+    public void testFoldsPrefixChains() {
+        // pfix 1; pfix 2; ldc 3 => ldc 0x123, then nfix 0; ldc 0 => ldc -16
+        MemoryModel mem = memory(0, 0x21, 0x22, 0x43, 0x60, 0x40);
+        DecodeCache cache = new DecodeCache(mem);
+
+        assertEquals(3, cache.decode(0));
+        assertEquals(TransputerConstants.LDC, cache.opcode(0));
+        assertEquals(0x123, cache.operand(0));
+
+        assertEquals(2, cache.decode(1));
+        assertEquals(0x23, cache.operand(1));
+
+        assertEquals(2, cache.decode(3));
+        assertEquals(-16, cache.operand(3));
+    }
+
+    @Test
+    public void testWritesInvalidateOverlappingInstructions() {
+        MemoryModel mem = memory(0, 0x21, 0x22, 0x43);
+        DecodeCache cache = new DecodeCache(mem);
+        cache.decode(0);
+        assertEquals(0x123, cache.operand(0));
+
+        mem.writeByte(2, (byte) 0x44);
+        cache.invalidate(2, 1);
+        cache.decode(0);
+        assertEquals(0x124, cache.operand(0));
+    }
+
+    @Test
+    public void testUnterminatedChainIsNotFolded() {
+        // A chain running off the end of memory
+        MemoryModel mem = memory(TransputerConstants.MEMSIZE - 2, 0x21, 0x22);
+        DecodeCache cache = new DecodeCache(mem);
+        assertEquals(0, cache.decode(TransputerConstants.MEMSIZE - 2));
+    }
+}
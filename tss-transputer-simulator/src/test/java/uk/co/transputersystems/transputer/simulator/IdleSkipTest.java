@@ -0,0 +1,81 @@
+package uk.co.transputersystems.transputer.simulator;
+
+import org.junit.Test;
+import uk.co.transputersystems.transputer.simulator.topology.RoutingTable;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static uk.co.transputersystems.transputer.simulator.TestNetworks.*;
+
+public class IdleSkipTest {
+
+    private static final String SLEEPER =
+            "init:\najw -10\nldc 3\nstl 1\nloop:\nldtimer\nadc %d\ntin\nldtimer\nstl 2\nldl 1\nadc -1\nstl 1\nldl 1\ncj done-$0\nj loop-$0\ndone:\najw 10\nret\n";
+
+    private static class Run {
+        long iterations;
+        String output;
+        Transputer[] transputers;
+    }
+
+    private static Run run(boolean idleSkip, File... binaries) throws Exception {
+        StringWriter output = new StringWriter();
+        PrintWriter writer = new PrintWriter(output);
+        SimulationState state = load(writer, binaries);
+        TestNetworks.run(state, Long.MAX_VALUE, RoutingTable.fullyConnected(binaries.length), idleSkip);
+        for (Transputer transputer : state.transputers) {
+            transputer.printRegisters(writer);
+            transputer.printRecentMemory(writer);
+        }
+        writer.flush();
+
+        Run run = new Run();
+        run.iterations = state.loopCount;
+        run.output = output.toString();
+        run.transputers = state.transputers;
+        return run;
+    }
+
+    @Test
+    public void skippingMatchesSteppingThroughIdleTime() throws Exception {
+        File sleeper = assemble(String.format(SLEEPER, 500));
+        Run stepped = run(false, sleeper);
+        Run skipped = run(true, sleeper);
+
+        assertEquals(stepped.output, skipped.output);
+        assertEquals(stepped.transputers[0].getSteps(), skipped.transputers[0].getSteps());
+        assertEquals(stepped.transputers[0].getSteps(), skipped.iterations + skipped.transputers[0].getIdleSteps());
+        // Three waits of 500 low priority ticks each take at least 6000 steps
+        assertTrue(stepped.iterations > 6000);
+        assertTrue(skipped.iterations < 200);
+    }
+
+    @Test
+    public void busyTransputerPreventsSkipping() throws Exception {
+        File sleeper = assemble(String.format(SLEEPER, 100));
+        Run stepped = run(false, sleeper, assemble(String.format(COUNTER, 2000)));
+        Run skipped = run(true, sleeper, assemble(String.format(COUNTER, 2000)));
+
+        assertEquals(stepped.output, skipped.output);
+        assertEquals(stepped.iterations, skipped.iterations);
+        assertEquals(0, skipped.transputers[0].getIdleSteps());
+    }
+
+    @Test
+    public void checkerLogsAndSchedulerTracesStepThroughIdleTime() throws Exception {
+        String binary = assemble(String.format(SLEEPER, 100)).getPath();
+        File log = File.createTempFile("idle", ".log");
+        log.deleteOnExit();
+
+        assertTrue(Simulator.parseOptions(new String[]{"--binaries", binary}).idleSkip);
+        assertTrue(Simulator.parseOptions(new String[]{"--binaries", binary, "--trace", "instruction"}).idleSkip);
+        assertFalse(Simulator.parseOptions(new String[]{"--binaries", binary, "--timer-test", log.getPath()}).idleSkip);
+        assertFalse(Simulator.parseOptions(new String[]{"--binaries", binary, "--verilog-testbench-gen", log.getPath()}).idleSkip);
+        assertFalse(Simulator.parseOptions(new String[]{"--binaries", binary, "--trace", "scheduler"}).idleSkip);
+    }
+}
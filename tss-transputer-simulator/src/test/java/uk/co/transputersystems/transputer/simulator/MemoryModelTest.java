@@ -0,0 +1,43 @@
+package uk.co.transputersystems.transputer.simulator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class MemoryModelTest {
+
+    @Test
+    public void testWordsAreLittleEndian() {
+        MemoryModel mem = new ByteBufferMemory(TransputerConstants.MEMSIZE);
+        mem.writeWord(8, 0x12345678);
+        assertEquals(0x78, mem.readByte(8));
+        assertEquals(0x12, mem.readByte(11));
+        mem.writeByte(9, (byte) 0xAB);
+        assertEquals(0x1234AB78, mem.readWord(8));
+    }
+
+    @Test
+    public void testSizeIsConfigurable() {
+        MemoryModel mem = new ByteBufferMemory(65536, true);
+        assertEquals(65536, mem.size());
+        mem.writeWord(65532, -1);
+        assertEquals(-1, mem.readWord(65532));
+        assertEquals(TransputerConstants.MEMSTART + (65536 - TransputerConstants.MEMSTART) / 2,
+                TransputerHelpers.codeStart(mem.size()));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testWordStraddlingTheEndIsRejected() {
+        new ByteBufferMemory(TransputerConstants.MEMSIZE).readWord(TransputerConstants.MEMSIZE - 2);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testNegativeAddressIsRejected() {
+        new ByteBufferMemory(TransputerConstants.MEMSIZE).writeByte(-1, (byte) 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPartialWordSizeIsRejected() {
+        new ByteBufferMemory(TransputerConstants.MEMSIZE + 1);
+    }
+}
@@ -0,0 +1,84 @@
+package uk.co.transputersystems.transputer.simulator;
+
+import org.junit.Test;
+import uk.co.transputersystems.transputer.assembler.Assembler;
+
+import java.io.*;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MessageLinksTest {
+
+    private static final int WORDS = 32;
+
+    // Starts a process that sleeps on the timer until long after the message has been sent, so the main loop keeps
+    // stepping a transputer whose main process is waiting on its link
+    private static final String START_SLEEPER = "ldc sleeper-$2\nldlp -40\nstartp\n";
+
+    private static final String SLEEPER = "sleeper:\nldtimer\nadc 100000\ntin\nstopp\n";
+
+    // Waits for a while, then inputs a message from transputer 0 into its locals
+    private static final String RECEIVER =
+            "init:\najw -40\n" + START_SLEEPER + "ldc %d\nstl 0\nwait:\nldl 0\ncj receive-$0\nldl 0\nadc -1\nstl 0\nj wait-$0\n" +
+            "receive:\nldlp 1\nldc 1\nldc " + WORDS * 4 + "\nin\najw 40\nret\n" + SLEEPER;
+
+    private static String sender() {
+        StringBuilder source = new StringBuilder("init:\najw -40\n" + START_SLEEPER);
+        for (int i = 1; i <= WORDS; i++) {
+            source.append(String.format("ldc %d\nstl %d\n", i * 0x01020304, i));
+        }
+        source.append("ldlp 1\nldc 33\nldc ").append(WORDS * 4).append("\nout\najw 40\nret\n").append(SLEEPER);
+        return source.toString();
+    }
+
+    private static Transputer[] run(boolean messageLinks, int receiverDelay) throws Exception {
+        PrintWriter writer = new PrintWriter(new StringWriter());
+        PrintStream quiet = new PrintStream(new ByteArrayOutputStream());
+        SimulationState state = new SimulationState(new Transputer[]{new Transputer(0, writer, writer), new Transputer(1, writer, writer)});
+        state.transputers[0].loadProgram(Assembler.assembleImage(sender(), null, quiet, false));
+        state.transputers[1].loadProgram(Assembler.assembleImage(String.format(RECEIVER, receiverDelay), null, quiet, false));
+        for (int i = 0; i < state.transputers.length; i++) {
+            state.transputers[i].setMessageLinks(messageLinks);
+            state.active[i] = true;
+        }
+        TestNetworks.run(state, Long.MAX_VALUE);
+        return state.transputers;
+    }
+
+    private static byte[] memory(Transputer transputer) {
+        byte[] data = new byte[transputer.getMemory().size()];
+        transputer.getMemory().read(0, data, 0, data.length);
+        return data;
+    }
+
+    private static void assertSameMessage(int receiverDelay) throws Exception {
+        Transputer[] bytes = run(false, receiverDelay);
+        Transputer[] messages = run(true, receiverDelay);
+
+        assertArrayEquals(memory(bytes[1]), memory(messages[1]));
+        assertEquals(bytes[0].registers.Iptr, messages[0].registers.Iptr);
+        assertEquals(bytes[1].registers.Iptr, messages[1].registers.Iptr);
+
+        Transputer loaded = new Transputer(1, new PrintWriter(new StringWriter()), new PrintWriter(new StringWriter()));
+        loaded.loadProgram(Assembler.assembleImage(String.format(RECEIVER, 0), null, new PrintStream(new ByteArrayOutputStream()), false));
+        int locals = TransputerHelpers.extractWorkspacePointer(loaded.registers.Wptr) - 40 * TransputerConstants.BYTESPERWORD;
+        for (int i = 1; i <= WORDS; i++) {
+            assertEquals(i * 0x01020304, messages[1].getMemory().readWord(locals + i * TransputerConstants.BYTESPERWORD));
+        }
+
+        // Each byte takes several steps to cross the link and be acknowledged
+        assertTrue(messages[0].getSteps() + 2 * WORDS * 4 < bytes[0].getSteps());
+    }
+
+    @Test
+    public void messageArrivesWholeWhenReceiverIsWaiting() throws Exception {
+        assertSameMessage(0);
+    }
+
+    @Test
+    public void messageArrivesWholeWhenSenderIsWaiting() throws Exception {
+        assertSameMessage(200);
+    }
+}
@@ -0,0 +1,86 @@
+package uk.co.transputersystems.transputer.simulator;
+
+import org.junit.Test;
+import uk.co.transputersystems.transputer.simulator.topology.Link;
+import uk.co.transputersystems.transputer.simulator.topology.RoutingTable;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static uk.co.transputersystems.transputer.simulator.TestNetworks.*;
+
+public class PdesEngineTest {
+
+    private static final String SEND =
+            "ldc 305419896\nstl 1\nldc 1432778632\nstl 2\nldlp 1\nldc %d\nldc 8\nout\nldc 7\nstl 3\najw 20\nret\n" + CHILD;
+
+    private static final String BUSY_SENDER = "init:\najw -20\n" + START_CHILD + SEND;
+
+    // Sleeps on the timer before sending, so its idle time can be skipped while the others run
+    private static final String SLEEPY_SENDER = "init:\najw -20\nldtimer\nadc %d\ntin\n" + START_CHILD + SEND;
+
+    private static File[] network() throws Exception {
+        return new File[]{
+                assemble(String.format(BUSY_SENDER, (1 << 5) | 1, 100)),
+                assemble(String.format(BUSY_RECEIVER, 1, 150)),
+                assemble(String.format(COUNTER, 40)),
+                assemble(String.format(SLEEPY_SENDER, 30, (5 << 5) | 1, 60)),
+                assemble(String.format(COUNTER, 300)),
+                assemble(String.format(BUSY_RECEIVER, (3 << 5) | 1, 20))
+        };
+    }
+
+    private static String print(Transputer[] transputers, long iterations, StringWriter output, PrintWriter writer) {
+        writer.printf("%d iterations\n", iterations);
+        for (Transputer transputer : transputers) {
+            writer.printf("%d steps\n", transputer.getSteps());
+            transputer.printRegisters(writer);
+            transputer.printSRegisters(writer);
+            transputer.printLinks(writer);
+            transputer.printRecentMemory(writer);
+        }
+        writer.flush();
+        return output.toString();
+    }
+
+    private static String runSequential(File[] binaries, RoutingTable routing) throws Exception {
+        StringWriter output = new StringWriter();
+        PrintWriter writer = new PrintWriter(output);
+        SimulationState state = load(writer, binaries);
+        run(state, Long.MAX_VALUE, routing, false);
+        return print(state.transputers, state.loopCount, output, writer);
+    }
+
+    private static String runPdes(File[] binaries, RoutingTable routing, int threads, boolean idleSkip) throws Exception {
+        StringWriter output = new StringWriter();
+        PrintWriter writer = new PrintWriter(output);
+        SimulationState state = load(writer, binaries);
+
+        long iterations = new PdesEngine(state.transputers, routing, threads, idleSkip).run(state.active, 0);
+        return print(state.transputers, iterations, output, writer);
+    }
+
+    @Test
+    public void matchesSequentialLoop() throws Exception {
+        File[] binaries = network();
+        RoutingTable routing = RoutingTable.fullyConnected(binaries.length);
+        String expected = runSequential(binaries, routing);
+
+        for (int threads = 1; threads <= 4; threads++) {
+            assertEquals(expected, runPdes(binaries, routing, threads, false));
+            assertEquals(expected, runPdes(binaries, routing, threads, true));
+        }
+    }
+
+    @Test
+    public void matchesSequentialLoopOnSparseNetwork() throws Exception {
+        File[] binaries = network();
+        RoutingTable routing = RoutingTable.fromLinks(binaries.length, Arrays.asList(new Link(0, 1), new Link(3, 5)));
+        String expected = runSequential(binaries, routing);
+
+        assertEquals(expected, runPdes(binaries, routing, 3, true));
+    }
+}
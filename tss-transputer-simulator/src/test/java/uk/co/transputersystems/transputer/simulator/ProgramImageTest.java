@@ -0,0 +1,90 @@
+package uk.co.transputersystems.transputer.simulator;
+
+import org.junit.Test;
+import uk.co.transputersystems.transputer.assembler.Assembler;
+import uk.co.transputersystems.transputer.utils.ProgramImage;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ProgramImageTest {
+
+    private static final String PROGRAM =
+            "init:\najw -10\nldc 20\nstl 1\nloop:\nldl 1\nadc -1\nstl 1\nldl 1\ncj done-$0\nj loop-$0\ndone:\najw 10\nret\n";
+
+    private static PrintStream quietLogger() {
+        return new PrintStream(new ByteArrayOutputStream());
+    }
+
+    private static String run(File binary) throws Exception {
+        StringWriter output = new StringWriter();
+        PrintWriter writer = new PrintWriter(output);
+        SimulationState state = new SimulationState(new Transputer[]{new Transputer(0, writer, writer)});
+        assertEquals(TransputerConstants.SUCCESS, state.transputers[0].loadProgram(binary));
+        state.active[0] = true;
+        TestNetworks.run(state, Long.MAX_VALUE);
+
+        state.transputers[0].printRegisters(writer);
+        state.transputers[0].printRecentMemory(writer);
+        writer.flush();
+        return output.toString();
+    }
+
+    @Test
+    public void testImageRoundTripsThroughFile() throws Exception {
+        ProgramImage image = Assembler.assembleImage(PROGRAM, null, quietLogger(), false);
+        File file = File.createTempFile("image", ".bin");
+        file.deleteOnExit();
+        image.write(file);
+
+        assertTrue(ProgramImage.isImage(file));
+        ProgramImage read = ProgramImage.load(file);
+        assertEquals(image.entryPoint, read.entryPoint);
+        assertArrayEquals(image.flatten(), read.flatten());
+        assertEquals(image.symbols, read.symbols);
+        assertEquals(image.entryPoint, (int) read.symbols.get("init"));
+    }
+
+    @Test
+    public void testImageMatchesTextObjectCode() throws Exception {
+        ProgramImage image = Assembler.assembleImage(PROGRAM, null, quietLogger(), false);
+        assertEquals(Assembler.assemble(PROGRAM, null, quietLogger(), false), image.toText());
+
+        File imageFile = File.createTempFile("image", ".bin");
+        imageFile.deleteOnExit();
+        image.write(imageFile);
+        File textFile = File.createTempFile("image", ".o");
+        textFile.deleteOnExit();
+        Files.write(textFile.toPath(), image.toText());
+
+        assertEquals(run(textFile), run(imageFile));
+    }
+
+    @Test
+    public void testOversizedImageIsRejected() {
+        StringWriter errors = new StringWriter();
+        PrintWriter writer = new PrintWriter(errors);
+        Transputer transputer = new Transputer(0, writer, writer);
+        ProgramImage image = new ProgramImage(0, new byte[TransputerConstants.MEMSIZE]);
+        assertEquals(TransputerConstants.ERROR, transputer.loadProgram(image));
+        writer.flush();
+        assertTrue(errors.toString().contains("does not fit in memory"));
+    }
+
+    @Test
+    public void testNegativeSectionOffsetIsRejected() {
+        StringWriter errors = new StringWriter();
+        PrintWriter writer = new PrintWriter(errors);
+        Transputer transputer = new Transputer(0, writer, writer);
+        ProgramImage image = new ProgramImage(0, Collections.singletonList(new ProgramImage.Section(ProgramImage.CODE_SECTION, -4, new byte[8])), Collections.emptyMap());
+        assertEquals(TransputerConstants.ERROR, transputer.loadProgram(image));
+        writer.flush();
+        assertTrue(errors.toString().contains("## Transputer 0"));
+        assertTrue(errors.toString().contains("negative offset"));
+    }
+}
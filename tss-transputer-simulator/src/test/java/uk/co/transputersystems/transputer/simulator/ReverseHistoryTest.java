@@ -0,0 +1,81 @@
+package uk.co.transputersystems.transputer.simulator;
+
+import org.junit.Test;
+import uk.co.transputersystems.transputer.simulator.topology.RoutingTable;
+import uk.co.transputersystems.transputer.simulator.trace.NullTraceSink;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static uk.co.transputersystems.transputer.simulator.TestNetworks.*;
+
+public class ReverseHistoryTest {
+
+    private static SimulationState load() throws Exception {
+        return TestNetworks.load(new PrintWriter(new StringWriter()),
+                assemble(String.format(SENDER, (1 << 5) | 1)),
+                assemble(RECEIVER),
+                assemble(String.format(COUNTER, 30)));
+    }
+
+    /**
+     * Make one iteration of the simulation loop.
+     * @return whether any transputer is still running
+     */
+    private static boolean step(SimulationState state) throws Exception {
+        return Simulator.iterate(state, RoutingTable.fullyConnected(state.transputers.length), NullTraceSink.INSTANCE,
+                false, null);
+    }
+
+    @Test
+    public void testSteppingBackRetracesEveryStep() throws Exception {
+        SimulationState state = load();
+        state.history = new ReverseHistory(state, 1 << 20);
+
+        List<String> states = new ArrayList<>();
+        states.add(describe(state));
+        while (step(state)) {
+            states.add(describe(state));
+        }
+        states.add(describe(state));
+
+        assertEquals(states.size() - 1, state.history.size());
+        for (int i = states.size() - 2; i >= 0; i--) {
+            assertTrue(state.history.stepBack());
+            assertEquals(states.get(i), describe(state));
+        }
+        assertFalse(state.history.stepBack());
+
+        // Running forwards again from the start gives the same steps
+        for (int i = 1; i < states.size(); i++) {
+            step(state);
+            assertEquals(states.get(i), describe(state));
+        }
+    }
+
+    @Test
+    public void testBudgetKeepsOnlyTheMostRecentSteps() throws Exception {
+        SimulationState state = load();
+        state.history = new ReverseHistory(state, 4096);
+
+        List<String> states = new ArrayList<>();
+        states.add(describe(state));
+        while (step(state)) {
+            states.add(describe(state));
+        }
+        states.add(describe(state));
+
+        int kept = state.history.size();
+        assertTrue(kept > 0 && kept < states.size() - 1);
+        for (int i = 0; i < kept; i++) {
+            assertTrue(state.history.stepBack());
+            assertEquals(states.get(states.size() - 2 - i), describe(state));
+        }
+        assertFalse(state.history.stepBack());
+    }
+}
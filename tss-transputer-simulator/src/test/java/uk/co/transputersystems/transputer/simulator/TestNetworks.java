@@ -0,0 +1,126 @@
+package uk.co.transputersystems.transputer.simulator;
+
+import uk.co.transputersystems.transputer.assembler.Assembler;
+import uk.co.transputersystems.transputer.simulator.topology.RoutingTable;
+import uk.co.transputersystems.transputer.simulator.trace.NullTraceSink;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Small programs for the tests that run networks of transputers, and helpers to assemble, load and run them through
+ * the simulator's main loop.
+ */
+public final class TestNetworks {
+
+    // Sends two words on the channel given as the argument
+    public static final String SENDER =
+            "init:\najw -20\nldc 305419896\nstl 1\nldc 1432778632\nstl 2\nldlp 1\nldc %d\nldc 8\nout\nldc 7\nstl 3\najw 20\nret\n";
+
+    // Receives two words on link 0
+    public static final String RECEIVER =
+            "init:\najw -20\nldlp 1\nldc 1\nldc 8\nin\nldl 1\nstl 4\najw 20\nret\n";
+
+    // Counts down from the argument
+    public static final String COUNTER =
+            "init:\najw -10\nldc %d\nstl 1\nloop:\nldl 1\nadc -1\nstl 1\nldl 1\ncj done-$0\nj loop-$0\ndone:\najw 10\nret\n";
+
+    // Starts a child process that keeps the transputer busy while the main process waits on its link
+    public static final String START_CHILD = "ldc child-$2\nldlp -40\nstartp\n";
+
+    // The child process, which counts down from the argument
+    public static final String CHILD =
+            "child:\nldc %d\nstl 1\ncl:\nldl 1\nadc -1\nstl 1\nldl 1\ncj cd-$0\nj cl-$0\ncd:\nstopp\n";
+
+    // Receives two words on the channel given as the first argument while a child counts down from the second
+    public static final String BUSY_RECEIVER = "init:\najw -20\n" + START_CHILD +
+            "ldlp 1\nldc %d\nldc 8\nin\nldl 1\nstl 4\najw 20\nret\n" + CHILD;
+
+    private TestNetworks() {
+    }
+
+    public static File assemble(String source) throws Exception {
+        File binary = File.createTempFile("network", ".o");
+        binary.deleteOnExit();
+        Files.write(binary.toPath(), Assembler.assemble(source, null, new PrintStream(new ByteArrayOutputStream()), false));
+        return binary;
+    }
+
+    /**
+     * @return the text object code of a program, as a session loads it
+     */
+    public static byte[] objectCode(String source) throws Exception {
+        List<String> lines = Assembler.assemble(source, null, new PrintStream(new ByteArrayOutputStream()), false);
+        return String.join("\n", lines).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Load one binary on each transputer, all of them active.
+     */
+    public static SimulationState load(PrintWriter writer, File... binaries) throws Exception {
+        SimulationState state = new SimulationState(new Transputer[binaries.length]);
+        for (int i = 0; i < binaries.length; i++) {
+            state.transputers[i] = new Transputer(i, writer, writer);
+            state.transputers[i].loadProgram(binaries[i]);
+            state.active[i] = true;
+        }
+        return state;
+    }
+
+    /**
+     * Run a fully connected network, stepping through idle time, until it stops or `limit` loop iterations have been
+     * made.
+     */
+    public static void run(SimulationState state, long limit) throws Exception {
+        run(state, limit, RoutingTable.fullyConnected(state.transputers.length), false);
+    }
+
+    /**
+     * Run the simulator's main loop until the network stops or `limit` loop iterations have been made.
+     */
+    public static void run(SimulationState state, long limit, RoutingTable routing, boolean idleSkip) throws Exception {
+        boolean anyActive = true;
+        while (anyActive && state.loopCount < limit) {
+            anyActive = Simulator.iterate(state, routing, NullTraceSink.INSTANCE, idleSkip, null);
+        }
+    }
+
+    /**
+     * Run one loaded transputer through the simulator's main loop until it stops.
+     * @param listener told about every step, or null
+     */
+    public static void runAlone(Transputer transputer, @Nullable StepListener listener) throws Exception {
+        SimulationState state = new SimulationState(new Transputer[]{transputer});
+        state.active[0] = true;
+        while (Simulator.iterate(state, RoutingTable.fullyConnected(1), NullTraceSink.INSTANCE, false, listener)) {
+        }
+    }
+
+    /**
+     * @return the loop count, which transputers are active, and the registers, links and a hash of the memory of
+     * every transputer
+     */
+    public static String describe(SimulationState state) {
+        StringWriter output = new StringWriter();
+        PrintWriter writer = new PrintWriter(output);
+        writer.printf("steps %d active %s\n", state.loopCount, Arrays.toString(state.active));
+        for (Transputer transputer : state.transputers) {
+            transputer.printRegisters(writer);
+            transputer.printSRegisters(writer);
+            transputer.printLinks(writer);
+            byte[] memory = new byte[transputer.getMemory().size()];
+            transputer.getMemory().read(0, memory, 0, memory.length);
+            writer.printf("memory %08x\n", Arrays.hashCode(memory));
+        }
+        writer.flush();
+        return output.toString();
+    }
+}
@@ -0,0 +1,76 @@
+package uk.co.transputersystems.transputer.simulator.batch;
+
+import org.junit.Test;
+import uk.co.transputersystems.transputer.assembler.Assembler;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BatchRunnerTest {
+
+    private static final String COUNTER =
+            "init:\najw -10\nldc %d\nstl 1\nloop:\nldl 1\nadc -1\nstl 1\nldl 1\ncj done-$0\nj loop-$0\ndone:\najw 10\nret\n";
+
+    private static final String STORE = "init:\najw -10\nldc %d\nldc 0\nstl 1\najw 10\nret\n";
+
+    private static void assemble(File binary, String source) throws Exception {
+        Files.write(binary.toPath(), Assembler.assemble(source, null, new PrintStream(new ByteArrayOutputStream()), false));
+    }
+
+    private static File corpus() throws Exception {
+        File directory = Files.createTempDirectory("batch").toFile();
+        directory.deleteOnExit();
+        assemble(new File(directory, "short.o"), String.format(COUNTER, 10));
+        assemble(new File(directory, "long.o"), String.format(COUNTER, 1000000));
+        assemble(new File(directory, "changed.o"), String.format(STORE, 1));
+        return directory;
+    }
+
+    @Test
+    public void testRecordThenCompare() throws Exception {
+        File directory = corpus();
+        List<BatchJob> jobs = BatchRunner.fromDirectory(directory);
+        assertEquals(Arrays.asList("changed.o", "long.o", "short.o"), Arrays.asList(jobs.stream().map(job -> job.name).toArray()));
+
+        List<BatchResult> recorded = new BatchRunner.Builder().threads(2).stepBudget(1000).record(true).build().run(jobs);
+        assertTrue(new File(directory, "short.o" + BatchRunner.EXPECTED_SUFFIX).exists());
+        assertEquals(BatchStatus.PASSED, recorded.get(2).status);
+
+        assemble(new File(directory, "changed.o"), String.format(STORE, 2));
+        List<BatchResult> results = new BatchRunner.Builder().threads(2).stepBudget(1000).build().run(BatchRunner.fromDirectory(directory));
+        assertEquals(BatchStatus.FAILED, results.get(0).status);
+        assertEquals(BatchStatus.BUDGET_EXCEEDED, results.get(1).status);
+        assertEquals(1000, results.get(1).steps);
+        assertEquals(BatchStatus.PASSED, results.get(2).status);
+        assertEquals(recorded.get(2).output, results.get(2).output);
+
+        StringWriter json = new StringWriter();
+        BatchReport.writeJson(results, json);
+        assertTrue(json.toString().contains("\"passed\": 1,"));
+        assertTrue(json.toString().contains("\"name\": \"long.o\", \"status\": \"BUDGET_EXCEEDED\""));
+
+        StringWriter xml = new StringWriter();
+        BatchReport.writeJUnitXml(results, xml, "corpus");
+        assertTrue(xml.toString().contains("tests=\"3\" failures=\"2\" errors=\"0\""));
+    }
+
+    @Test
+    public void testUnimplementedInstructionOnlyStopsItsJob() throws Exception {
+        File directory = Files.createTempDirectory("batch").toFile();
+        directory.deleteOnExit();
+        // pfix 15, opr 15 is secondary instruction FF, which does not exist
+        Files.write(new File(directory, "bad.o").toPath(), "Start address: 00000000\n2f\nff\n".getBytes(StandardCharsets.US_ASCII));
+        assemble(new File(directory, "good.o"), String.format(COUNTER, 10));
+
+        List<BatchResult> results = new BatchRunner.Builder().threads(2).stepBudget(1000).record(true).build().run(BatchRunner.fromDirectory(directory));
+        assertEquals(BatchStatus.ERROR, results.get(0).status);
+        assertTrue(results.get(0).message, results.get(0).message.contains("opcode 'FF' not implemented"));
+        assertEquals(BatchStatus.PASSED, results.get(1).status);
+    }
+}
@@ -0,0 +1,160 @@
+package uk.co.transputersystems.transputer.simulator.checker;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CheckerLogTest {
+
+    private static List<CheckerRecord> records(CheckerLevel level) {
+        Random random = new Random(42);
+        List<CheckerRecord> records = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            CheckerRecord record = new CheckerRecord();
+            record.level = level;
+            record.transputer = i % 3;
+            record.index = i / 3;
+            if (i >= 3) {
+                record.values[4] = records.get(i - 3).values[4] + random.nextInt(4);
+            }
+            for (int field = 0; field < level.fields; field++) {
+                if (CheckerRecord.isFlag(field)) {
+                    record.values[field] = random.nextInt(2);
+                } else if (field != 4 && random.nextInt(4) == 0) {
+                    record.values[field] = random.nextInt();
+                }
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static String text(List<CheckerRecord> records) {
+        StringWriter output = new StringWriter();
+        PrintWriter writer = new PrintWriter(output);
+        for (CheckerRecord record : records) {
+            record.print(writer);
+        }
+        writer.flush();
+        return output.toString();
+    }
+
+    private static List<CheckerRecord> read(CheckerLogReader reader) throws Exception {
+        List<CheckerRecord> records = new ArrayList<>();
+        CheckerRecord record = new CheckerRecord();
+        while (reader.next(record)) {
+            CheckerRecord copy = new CheckerRecord();
+            copy.copyFrom(record);
+            records.add(copy);
+        }
+        return records;
+    }
+
+    private static byte[] binary(List<CheckerRecord> records, CheckerLevel level, boolean delta) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (BinaryCheckerLogWriter writer = new BinaryCheckerLogWriter(output, level, delta)) {
+            for (CheckerRecord record : records) {
+                writer.write(record);
+            }
+        }
+        return output.toByteArray();
+    }
+
+    @Test
+    public void binaryLogsConvertToTheTextFormat() throws Exception {
+        for (CheckerLevel level : CheckerLevel.values()) {
+            List<CheckerRecord> records = records(level);
+            String expected = text(records);
+            for (boolean delta : new boolean[]{false, true}) {
+                byte[] log = binary(records, level, delta);
+                assertEquals(expected, text(read(CheckerLogReader.open(new ByteArrayInputStream(log)))));
+            }
+        }
+    }
+
+    @Test
+    public void deltaLogsAreSmaller() throws Exception {
+        List<CheckerRecord> records = records(CheckerLevel.TIMER);
+        int text = text(records).length();
+        int plain = binary(records, CheckerLevel.TIMER, false).length;
+        int delta = binary(records, CheckerLevel.TIMER, true).length;
+        assertTrue(plain < text);
+        assertTrue(delta < plain);
+    }
+
+    @Test
+    public void textLogsAreWrittenInLargeBlocks() throws Exception {
+        StringWriter output = new StringWriter();
+        int[] writes = new int[1];
+        Writer counting = new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) {
+                writes[0]++;
+                output.write(buffer, offset, length);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        StringBuilder expected = new StringBuilder();
+        try (TextCheckerLogWriter writer = new TextCheckerLogWriter(counting, CheckerLevel.SCHEDULER)) {
+            for (int i = 0; i < 5; i++) {
+                List<CheckerRecord> records = records(CheckerLevel.SCHEDULER);
+                for (CheckerRecord record : records) {
+                    writer.write(record);
+                }
+                expected.append(text(records));
+            }
+        }
+        assertEquals(expected.toString(), output.toString());
+        assertTrue("1000 records took " + writes[0] + " writes", writes[0] < 10);
+    }
+
+    @Test
+    public void textLogsAreReadBack() throws Exception {
+        for (CheckerLevel level : CheckerLevel.values()) {
+            String expected = text(records(level));
+            List<CheckerRecord> records = read(CheckerLogReader.open(new ByteArrayInputStream(expected.getBytes(StandardCharsets.US_ASCII))));
+            assertEquals(200, records.size());
+            assertEquals(level, records.get(0).level);
+            assertEquals(expected, text(records));
+        }
+    }
+
+    @Test
+    public void comparesSimulatorLogWithHardwareCapture() throws Exception {
+        List<CheckerRecord> records = records(CheckerLevel.SCHEDULER);
+        byte[] simulator = binary(records, CheckerLevel.SCHEDULER, true);
+
+        records.get(10).values[2] ^= 1;
+        records.get(20).values[13] ^= 1;
+        String hardware = text(records.subList(0, 199));
+
+        StringWriter output = new StringWriter();
+        long differences = CheckerLogComparator.compare(
+                CheckerLogReader.open(new ByteArrayInputStream(simulator)),
+                CheckerLogReader.open(new ByteArrayInputStream(hardware.getBytes(StandardCharsets.US_ASCII))),
+                new PrintWriter(output), 20);
+
+        assertEquals(3, differences);
+        assertTrue(output.toString(), output.toString().contains("record 11 (step 3): Creg expected"));
+        assertTrue(output.toString(), output.toString().contains("record 21 (step 6): GotoStartNewProcess expected"));
+        assertTrue(output.toString(), output.toString().contains("The actual log ends after 199 records"));
+    }
+}
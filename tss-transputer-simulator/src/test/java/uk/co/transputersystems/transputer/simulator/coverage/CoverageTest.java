@@ -0,0 +1,126 @@
+package uk.co.transputersystems.transputer.simulator.coverage;
+
+import org.junit.Test;
+import uk.co.transputersystems.transputer.assembler.Assembler;
+import uk.co.transputersystems.transputer.simulator.TestNetworks;
+import uk.co.transputersystems.transputer.simulator.Transputer;
+import uk.co.transputersystems.transputer.simulator.TransputerConstants;
+import uk.co.transputersystems.transputer.simulator.batch.BatchRunner;
+import uk.co.transputersystems.transputer.utils.ProgramImage;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class CoverageTest {
+
+    // With a value of 0 the store on lines 8 and 9 (occam line 3) is skipped
+    private static final String PROGRAM =
+            "-- @source prog.occ:1 main~IL_0 MethodStart\n" +
+            "init:\n" +
+            "ajw -10\n" +
+            "ldc %d\n" +
+            "-- @source prog.occ:2 main~IL_1 BranchEqZero\n" +
+            "cj done-$0\n" +
+            "-- @source prog.occ:3 main~IL_2 StoreLocal\n" +
+            "ldc 5\n" +
+            "stl 1\n" +
+            "\n" +
+            "-- @source prog.occ:4 main~IL_3 MethodEnd\n" +
+            "done:\n" +
+            "ajw 10\n" +
+            "ret\n";
+
+    private static ProgramImage assemble(int value) throws Exception {
+        return Assembler.assembleImage(String.format(PROGRAM, value), "prog.s", null, new PrintStream(new ByteArrayOutputStream()), false);
+    }
+
+    private static Transputer run(ProgramImage image, boolean jit) throws Exception {
+        StringWriter output = new StringWriter();
+        PrintWriter writer = new PrintWriter(output);
+        Transputer transputer = new Transputer(0, writer, writer);
+        transputer.setCoverage(new Coverage(TransputerConstants.MEMSIZE));
+        if (jit) {
+            transputer.enableJit(1);
+        }
+        assertEquals(TransputerConstants.SUCCESS, transputer.loadProgram(image));
+        TestNetworks.runAlone(transputer, null);
+        return transputer;
+    }
+
+    private static CoverageData coverage(ProgramImage image, boolean jit) throws Exception {
+        Transputer transputer = run(image, jit);
+        CoverageData data = new CoverageData();
+        assertTrue(data.add(transputer.getCoverage(), image, transputer.getCodeStart()));
+        return data;
+    }
+
+    @Test
+    public void mapsExecutedAddressesToAssemblyOccamAndTsil() throws Exception {
+        ProgramImage image = assemble(0);
+        File file = File.createTempFile("coverage", ".bin");
+        file.deleteOnExit();
+        image.write(file);
+        ProgramImage read = ProgramImage.load(file);
+        assertEquals("prog.s", read.assemblyFile);
+        assertEquals(image.lines.size(), read.lines.size());
+        assertEquals("main~IL_2 StoreLocal", read.lines.stream().filter(line -> line.line == 8).findFirst().get().tsil);
+
+        for (boolean jit : new boolean[]{false, true}) {
+            CoverageData data = coverage(read, jit);
+
+            CoverageData.FileCoverage assembly = data.getFile("prog.s");
+            assertEquals(Long.valueOf(1), assembly.getLines().get(6));
+            assertEquals(Long.valueOf(0), assembly.getLines().get(8));
+            assertEquals(Long.valueOf(0), assembly.getLines().get(9));
+            assertEquals(Long.valueOf(1), assembly.getLines().get(13));
+            assertNull(assembly.getLines().get(2));
+
+            CoverageData.FileCoverage occam = data.getFile("prog.occ");
+            assertEquals(Arrays.asList(1, 2, 3, 4), Arrays.asList(occam.getLines().keySet().toArray()));
+            assertEquals(3, occam.getLinesHit());
+            assertEquals(1, occam.getFunctionHits("main~IL_1 BranchEqZero"));
+            assertEquals(0, occam.getFunctionHits("main~IL_2 StoreLocal"));
+            assertEquals(Integer.valueOf(3), occam.getFunctionLines().get("main~IL_2 StoreLocal"));
+        }
+    }
+
+    @Test
+    public void tracefilesMergeByAddingHits() throws Exception {
+        CoverageData first = coverage(assemble(0), false);
+        CoverageData second = coverage(assemble(1), false);
+
+        StringWriter lcov = new StringWriter();
+        first.writeLcov(lcov);
+        assertTrue(lcov.toString(), lcov.toString().contains("SF:prog.occ\nFN:1,main~IL_0 MethodStart\n"));
+        assertTrue(lcov.toString(), lcov.toString().contains("DA:3,0\nDA:4,1\nLF:4\nLH:3\nend_of_record\n"));
+
+        CoverageData merged = CoverageData.readLcov(new StringReader(lcov.toString()));
+        merged.merge(second);
+        CoverageData.FileCoverage occam = merged.getFile("prog.occ");
+        assertEquals(Long.valueOf(2), occam.getLines().get(1));
+        assertEquals(Long.valueOf(1), occam.getLines().get(3));
+        assertEquals(4, occam.getLinesHit());
+        assertEquals(1, merged.getFile("prog.occ").getFunctionHits("main~IL_2 StoreLocal"));
+
+        File html = Files.createTempDirectory("coverage").toFile();
+        CoverageHtml.write(merged, html);
+        assertTrue(new String(Files.readAllBytes(new File(html, "index.html").toPath())).contains("prog.occ"));
+    }
+
+    @Test
+    public void batchJobsAreMerged() throws Exception {
+        File directory = Files.createTempDirectory("coverage").toFile();
+        directory.deleteOnExit();
+        assemble(0).write(new File(directory, "skipped.bin"));
+        assemble(1).write(new File(directory, "stored.bin"));
+
+        BatchRunner runner = new BatchRunner.Builder().threads(2).stepBudget(1000).coverage(true).build();
+        runner.run(BatchRunner.fromDirectory(directory));
+        CoverageData.FileCoverage assembly = runner.getCoverage().getFile("prog.s");
+        assertEquals(Long.valueOf(2), assembly.getLines().get(3));
+        assertEquals(Long.valueOf(1), assembly.getLines().get(8));
+    }
+}
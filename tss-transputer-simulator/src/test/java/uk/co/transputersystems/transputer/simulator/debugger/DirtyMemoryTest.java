@@ -0,0 +1,82 @@
+package uk.co.transputersystems.transputer.simulator.debugger;
+
+import org.junit.Test;
+import uk.co.transputersystems.transputer.simulator.SimulationState;
+import uk.co.transputersystems.transputer.simulator.TestNetworks;
+import uk.co.transputersystems.transputer.simulator.Transputer;
+import uk.co.transputersystems.transputer.simulator.TransputerHelpers;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class DirtyMemoryTest {
+
+    @Test
+    public void testWritesAreTrackedPerWord() {
+        DirtyMemory dirty = new DirtyMemory(1024);
+        dirty.markByte(9);
+        dirty.markWord(510);
+        dirty.markWord(1020);
+
+        assertEquals(8, dirty.nextRecent(0));
+        assertEquals(508, dirty.nextRecent(12));
+        assertEquals(512, dirty.nextRecent(512));
+        assertEquals(1020, dirty.nextRecent(516));
+
+        dirty.clearRecent(508);
+        assertEquals(512, dirty.nextRecent(12));
+        dirty.clearRecent(8);
+        dirty.clearRecent(512);
+        dirty.clearRecent(1020);
+        assertEquals(-1, dirty.nextRecent(0));
+    }
+
+    @Test
+    public void testSnapshotForgetsEarlierChanges() {
+        DirtyMemory dirty = new DirtyMemory(1024);
+        dirty.markWord(100);
+        dirty.snapshot();
+        assertFalse(dirty.changedSinceSnapshot(100));
+        assertEquals(100, dirty.nextRecent(0));
+
+        dirty.markByte(201);
+        assertTrue(dirty.changedSinceSnapshot(200));
+        assertEquals(200, dirty.nextChanged(0));
+        assertEquals(-1, dirty.nextChanged(204));
+    }
+
+    @Test
+    public void testDisabledTrackingRecordsNothing() {
+        DirtyMemory dirty = new DirtyMemory(1024);
+        dirty.markWord(100);
+        dirty.setEnabled(false);
+        dirty.markWord(200);
+        assertEquals(-1, dirty.nextRecent(0));
+        assertEquals(-1, dirty.nextChanged(0));
+    }
+
+    @Test
+    public void testWritesOutsideMemoryAreIgnored() {
+        DirtyMemory dirty = new DirtyMemory(64);
+        dirty.markWord(-8);
+        dirty.markWord(64);
+        assertEquals(-1, dirty.nextRecent(0));
+    }
+
+    @Test
+    public void testStoresMarkTheWordTheyWrite() throws Exception {
+        SimulationState state = TestNetworks.load(new PrintWriter(new StringWriter()),
+                TestNetworks.assemble("init:\najw -10\nldc 7\nstl 3\najw 10\nret\n"));
+        Transputer transputer = state.transputers[0];
+        int workspace = TransputerHelpers.extractWorkspacePointer(transputer.registers.Wptr) - 40;
+        DirtyMemory dirty = transputer.debuggerState.memAccessed;
+        dirty.snapshot();
+
+        TestNetworks.run(state, Long.MAX_VALUE);
+
+        assertEquals(workspace + 12, dirty.nextChanged(0));
+        assertEquals(-1, dirty.nextChanged(workspace + 16));
+    }
+}
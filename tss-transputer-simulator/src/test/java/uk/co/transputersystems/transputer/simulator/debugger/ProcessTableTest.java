@@ -0,0 +1,66 @@
+package uk.co.transputersystems.transputer.simulator.debugger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ProcessTableTest {
+
+    @Test
+    public void testReschedulingDoesNotDuplicate() {
+        ProcessTable table = new ProcessTable(1024);
+        Process process = table.schedule(0x201, ProcessStatus.RUNNING);
+        assertSame(process, table.schedule(0x201, ProcessStatus.QUEUED));
+        assertEquals(ProcessStatus.QUEUED, process.status);
+        assertEquals(1, table.getLive().size());
+
+        table.transition(0x201, ProcessStatus.QUEUED, ProcessStatus.RUNNING);
+        assertEquals(ProcessStatus.RUNNING, process.status);
+        table.transition(0x201, ProcessStatus.QUEUED, ProcessStatus.TERMINATED);
+        assertEquals(ProcessStatus.RUNNING, process.status);
+    }
+
+    @Test
+    public void testMovingReindexesByNewWorkspace() {
+        ProcessTable table = new ProcessTable(1024);
+        Process process = table.schedule(0x201, ProcessStatus.RUNNING);
+        table.move(process, 0x1F1);
+        assertNull(table.get(0x201));
+        assertSame(process, table.get(0x1F1));
+        assertSame(process, table.get(0x1F0));
+        assertEquals(Integer.valueOf(0x1F1), process.getTopWptr());
+    }
+
+    @Test
+    public void testTerminatedProcessesAreRetired() {
+        ProcessTable table = new ProcessTable(1024);
+        Process first = table.schedule(0x201, ProcessStatus.RUNNING);
+        table.schedule(0x301, ProcessStatus.QUEUED);
+        table.terminate(0x201);
+        assertNull(table.get(0x201));
+        assertEquals(ProcessStatus.TERMINATED, first.status);
+        assertEquals(1, table.getLive().size());
+        assertTrue(table.getHistory().isEmpty());
+    }
+
+    @Test
+    public void testHistoryKeepsTerminatedProcesses() {
+        ProcessTable table = new ProcessTable(1024);
+        table.setHistoryEnabled(true);
+        Process first = table.schedule(0x201, ProcessStatus.RUNNING);
+        table.terminate(first);
+        Process second = table.schedule(0x201, ProcessStatus.RUNNING);
+        assertNotSame(first, second);
+        assertEquals(1, second.getId());
+        assertEquals(1, table.getHistory().size());
+        assertSame(first, table.getHistory().get(0));
+    }
+
+    @Test
+    public void testWorkspacesOutsideMemoryAreNotIndexed() {
+        ProcessTable table = new ProcessTable(1024);
+        table.schedule(0x80000001, ProcessStatus.RUNNING);
+        assertNull(table.get(0x80000001));
+        table.terminate(0x80000001);
+    }
+}
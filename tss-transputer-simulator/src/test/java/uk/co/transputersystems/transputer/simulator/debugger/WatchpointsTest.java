@@ -0,0 +1,96 @@
+package uk.co.transputersystems.transputer.simulator.debugger;
+
+import org.junit.Test;
+import uk.co.transputersystems.transputer.assembler.Assembler;
+import uk.co.transputersystems.transputer.simulator.TestNetworks;
+import uk.co.transputersystems.transputer.simulator.Transputer;
+import uk.co.transputersystems.transputer.simulator.TransputerConstants;
+import uk.co.transputersystems.transputer.simulator.TransputerHelpers;
+
+import java.io.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WatchpointsTest {
+
+    // Counts local 1 down from 100 to 0
+    private static final String PROGRAM =
+            "init:\najw -10\nldc 100\nstl 1\nloop:\nldl 1\nadc -1\nstl 1\nldl 1\ncj done-$0\nj loop-$0\ndone:\najw 10\nret\n";
+
+    private static Transputer load() throws Exception {
+        PrintWriter writer = new PrintWriter(new StringWriter());
+        Transputer transputer = new Transputer(0, writer, writer);
+        transputer.loadProgram(Assembler.assembleImage(PROGRAM, null, new PrintStream(new ByteArrayOutputStream()), false));
+        return transputer;
+    }
+
+    private static int local1(Transputer transputer) {
+        return TransputerHelpers.extractWorkspacePointer(transputer.registers.Wptr) + (1 - 10) * TransputerConstants.BYTESPERWORD;
+    }
+
+    /**
+     * Run to completion, counting the steps after which a watchpoint had fired.
+     */
+    private static int run(Transputer transputer) throws Exception {
+        PrintWriter output = new PrintWriter(new StringWriter());
+        int[] stops = new int[1];
+        TestNetworks.runAlone(transputer, (index, stepped, worked, inRange) -> {
+            if (stepped.printFiredWatchpoints(output)) {
+                stops[0]++;
+            }
+        });
+        return stops[0];
+    }
+
+    @Test
+    public void writeWatchpointFiresOnEveryStore() throws Exception {
+        Transputer transputer = load();
+        PrintWriter output = new PrintWriter(new StringWriter());
+        transputer.setWatchpoint(local1(transputer), 4, Watchpoints.Kind.WRITE, null, output);
+        assertEquals(101, run(transputer));
+        assertEquals(101, transputer.debuggerState.watchpoints.getAll().get(0).getHits());
+    }
+
+    @Test
+    public void conditionsFilterHits() throws Exception {
+        Transputer transputer = load();
+        PrintWriter output = new PrintWriter(new StringWriter());
+        int address = local1(transputer);
+        transputer.setWatchpoint(address, 1, Watchpoints.Kind.READ,
+                new Condition(Condition.Operand.memory(address), Condition.Comparison.LESS, Condition.Operand.constant(3)),
+                output);
+        // ldl 1 reads the local twice per iteration; the condition holds while it is 2, 1 and 0
+        assertEquals(5, run(transputer));
+    }
+
+    @Test
+    public void breakpointsCountHitsOnlyWhenTheirConditionHolds() throws Exception {
+        Transputer transputer = load();
+        int loop = -1;
+        for (int address = 0; address < transputer.getMemory().size() && loop < 0; address++) {
+            if ("loop".equals(transputer.debuggerState.symbols.labelAt(address))) {
+                loop = address;
+            }
+        }
+        Breakpoints breakpoints = transputer.debuggerState.breakpoints;
+        assertTrue(breakpoints.isEmpty());
+        transputer.setBreakpoint(loop, new Condition(Condition.Operand.memory(local1(transputer)),
+                Condition.Comparison.LESS_OR_EQUAL, Condition.Operand.constant(10)), new PrintWriter(new StringWriter()));
+
+        // Checked after each step, where the main loop checks before the next; the program does not start at the loop
+        int[] stops = new int[1];
+        TestNetworks.runAlone(transputer, (index, stepped, worked, inRange) -> {
+            if (breakpoints.hit(stepped)) {
+                stops[0]++;
+            }
+        });
+
+        assertEquals(10, stops[0]);
+        assertEquals(10, breakpoints.get(loop).getHits());
+        breakpoints.remove(loop);
+        assertFalse(breakpoints.contains(loop));
+        assertTrue(breakpoints.isEmpty());
+    }
+}
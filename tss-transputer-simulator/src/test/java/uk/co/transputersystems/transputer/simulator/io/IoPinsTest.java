@@ -0,0 +1,132 @@
+package uk.co.transputersystems.transputer.simulator.io;
+
+import org.junit.Test;
+import uk.co.transputersystems.transputer.assembler.Assembler;
+import uk.co.transputersystems.transputer.simulator.TestNetworks;
+import uk.co.transputersystems.transputer.simulator.Transputer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class IoPinsTest {
+
+    // Copies the sensor pin to the LED pin 20 times
+    private static final String COPY = "init:\najw -10\nldc 20\nstl 1\nloop:\n" +
+            "ldlp 2\nldc @sensor\nldc 4\nin\nldlp 2\nldc @led0\nldc 4\nout\n" +
+            "ldl 1\nadc -1\nstl 1\nldl 1\ncj done-$0\nj loop-$0\ndone:\najw 10\nret\n";
+
+    private static final String CONFIG = "processor:\n  processor_id: 0\n  iopins:\n" +
+            "    - addr: 70\n      channel: sensor\n      config: 0\n%s" +
+            "    - addr: 74\n      channel: led0\n      config: 1\n%s";
+
+    /**
+     * Records the values written to it, to check that devices can be named by class
+     */
+    public static class Recorder implements PinDevice {
+        static final List<Integer> values = new ArrayList<>();
+
+        public Recorder(Map<String, Object> options, File directory) {
+            values.clear();
+        }
+
+        @Override
+        public void write(long step, int value) {
+            values.add(value);
+        }
+    }
+
+    private static Transputer run(String config, boolean insertIOConfiguration, IoPins ioPins) throws Exception {
+        PrintWriter writer = new PrintWriter(new StringWriter());
+        Transputer transputer = new Transputer(0, writer, writer);
+        transputer.loadProgram(Assembler.assembleImage(COPY, Assembler.loadConfig(new StringReader(config)),
+                new PrintStream(new ByteArrayOutputStream()), insertIOConfiguration));
+        transputer.setIoPins(ioPins);
+        TestNetworks.runAlone(transputer, null);
+        return transputer;
+    }
+
+    @Test
+    public void inputsFollowStimulusAndOutputsAreLogged() throws Exception {
+        File directory = Files.createTempDirectory("pins").toFile();
+        directory.deleteOnExit();
+        Files.write(new File(directory, "sensor.txt").toPath(),
+                "# step value\n0 5\n30 7\n100 0x10\n".getBytes(StandardCharsets.US_ASCII));
+        String config = String.format(CONFIG,
+                "      device:\n        type: file\n        file: sensor.txt\n",
+                "      device:\n        type: log\n        file: led0.txt\n");
+        File configFile = new File(directory, "pins.config");
+        Files.write(configFile.toPath(), config.getBytes(StandardCharsets.US_ASCII));
+
+        IoPins ioPins = IoPins.load(configFile);
+        assertEquals(0, ioPins.processor);
+        run(config, false, ioPins);
+        ioPins.close();
+
+        List<String> log = Files.readAllLines(new File(directory, "led0.txt").toPath());
+        assertEquals(3, log.size());
+        long[] steps = new long[3];
+        for (int i = 0; i < log.size(); i++) {
+            String[] fields = log.get(i).split(" ");
+            steps[i] = Long.parseLong(fields[0]);
+            assertEquals(new int[]{5, 7, 16}[i], Integer.parseInt(fields[1]));
+        }
+        assertTrue(steps[0] < 30);
+        assertTrue(steps[1] >= 30 && steps[1] < 100);
+        assertTrue(steps[2] >= 100);
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void confioMakesPinsForDevicesNamedByClass() throws Exception {
+        String config = String.format(CONFIG, "", "");
+        IoPins ioPins = new IoPins(0);
+        Map<String, Object> options = new HashMap<>();
+        options.put("type", Recorder.class.getName());
+        ioPins.add(74, "led0", false, PinDevices.create(options, new File(".")));
+        options.put("type", "counter");
+        options.put("period", 50);
+        options.put("low", 3);
+        ioPins.add(70, "sensor", false, PinDevices.create(options, new File(".")));
+
+        // The LED pin starts as an input, so only outputs after confio makes it an output are seen
+        Transputer transputer = run(config, true, ioPins);
+        assertTrue(ioPins.getPins().stream().filter(pin -> pin.address == 74).findFirst().get().output);
+        assertEquals(20, Recorder.values.size());
+        assertEquals(3, (int) Recorder.values.get(0));
+        assertTrue(Recorder.values.get(19) > 3);
+        assertFalse(transputer.hasError());
+
+        // Without any devices, confio still makes the pins, which read as 0
+        run(config, true, null);
+    }
+
+    @Test
+    public void generatorsDependOnlyOnTheStep() {
+        Generator square = new Generator(Generator.Waveform.SQUARE, 4, 0, 1, 0);
+        assertEquals(Arrays.asList(0, 0, 1, 1, 0), Arrays.asList(square.read(0), square.read(1), square.read(2), square.read(3), square.read(4)));
+        Generator counter = new Generator(Generator.Waveform.COUNTER, 10, 100, 0, 0);
+        assertEquals(102, counter.read(25));
+        Generator random = new Generator(Generator.Waveform.RANDOM, 3, -5, 5, 42);
+        for (long step = 0; step < 100; step++) {
+            int value = random.read(step);
+            assertTrue(value >= -5 && value <= 5);
+            assertEquals(value, new Generator(Generator.Waveform.RANDOM, 3, -5, 5, 42).read(step));
+            assertEquals(value, random.read(step - step % 3));
+        }
+    }
+}
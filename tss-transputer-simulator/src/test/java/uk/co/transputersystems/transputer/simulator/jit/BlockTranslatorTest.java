@@ -0,0 +1,114 @@
+package uk.co.transputersystems.transputer.simulator.jit;
+
+import org.junit.Test;
+import uk.co.transputersystems.transputer.assembler.Assembler;
+import uk.co.transputersystems.transputer.simulator.TestNetworks;
+import uk.co.transputersystems.transputer.simulator.Transputer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BlockTranslatorTest {
+
+    private static final String[] STACK_OPS = {"rev", "add", "sub", "mul", "diff", "sum", "and", "or", "xor", "not",
+            "shl", "shr", "gt", "bsub", "wsub", "bcnt", "wcnt", "mint", "ldpi"};
+
+    /**
+     * Run a program to completion, with or without translation.
+     */
+    private static Transputer run(String body, int jitThreshold) throws Exception {
+        PrintWriter writer = new PrintWriter(new StringWriter());
+        Transputer transputer = new Transputer(0, writer, writer);
+        if (jitThreshold > 0) {
+            transputer.enableJit(jitThreshold);
+        }
+        String source = "init:\najw -20\n" + body + "stl 17\nstl 18\nstl 19\ntesterr\nstl 16\najw 20\nret\n";
+        transputer.loadProgram(Assembler.assembleImage(source, null, new PrintStream(new ByteArrayOutputStream()), false));
+
+        TestNetworks.runAlone(transputer, null);
+        return transputer;
+    }
+
+    private static byte[] memory(Transputer transputer) {
+        byte[] data = new byte[transputer.getMemory().size()];
+        transputer.getMemory().read(0, data, 0, data.length);
+        return data;
+    }
+
+    private static Transputer assertSameAsInterpreter(String body, int jitThreshold) throws Exception {
+        Transputer interpreted = run(body, 0);
+        Transputer translated = run(body, jitThreshold);
+        assertArrayEquals(body, memory(interpreted), memory(translated));
+        assertEquals(body, interpreted.registers.Iptr, translated.registers.Iptr);
+        assertEquals(body, interpreted.getSteps(), translated.getSteps());
+        return translated;
+    }
+
+    private static String randomProgram(Random random) {
+        StringBuilder body = new StringBuilder("ldc 0\nldc 0\nldc 0\n");
+        for (int i = 0; i < 40; i++) {
+            switch (random.nextInt(8)) {
+                case 0:
+                    // Small, large and negative constants, so that pfix and nfix chains are folded
+                    body.append("ldc ").append(random.nextBoolean() ? random.nextInt(32) - 16 : random.nextInt()).append('\n');
+                    break;
+                case 1:
+                    body.append("ldl ").append(random.nextInt(16)).append('\n');
+                    break;
+                case 2:
+                    body.append("stl ").append(random.nextInt(16)).append('\n');
+                    break;
+                case 3:
+                    body.append("adc ").append(random.nextInt(2000) - 1000).append('\n');
+                    break;
+                case 4:
+                    body.append("eqc ").append(random.nextInt(4)).append('\n');
+                    break;
+                case 5:
+                    body.append("ldlp ").append(random.nextInt(8)).append("\nldnl ").append(random.nextInt(8)).append('\n');
+                    break;
+                case 6:
+                    body.append("ldlp ").append(random.nextInt(8)).append("\nstnl ").append(random.nextInt(8)).append('\n');
+                    break;
+                default:
+                    body.append(STACK_OPS[random.nextInt(STACK_OPS.length)]).append('\n');
+                    break;
+            }
+        }
+        return body.toString();
+    }
+
+    @Test
+    public void randomBlocksMatchInterpreter() throws Exception {
+        Random random = new Random(18);
+        for (int i = 0; i < 50; i++) {
+            Transputer translated = assertSameAsInterpreter(randomProgram(random), 1);
+            assertTrue(translated.getTranslatedBlocks() > 0);
+        }
+    }
+
+    @Test
+    public void hotLoopIsTranslatedAfterThreshold() throws Exception {
+        String body = "ldc 50\nstl 1\nldc 0\nstl 2\n" +
+                "loop:\nldl 2\nldl 1\nadd\nldc 3\nmul\nstl 2\nldl 1\nadc -1\nstl 1\nldl 1\ncj done-$0\nj loop-$0\ndone:\n" +
+                "ldl 2\nldc 0\nldc 0\n";
+        assertEquals(0, run(body, 1000).getTranslatedBlocks());
+        Transputer translated = assertSameAsInterpreter(body, 10);
+        assertTrue(translated.getTranslatedBlocks() > 0);
+    }
+
+    @Test
+    public void storeIntoRunningBlockLeavesIt() throws Exception {
+        // Overwrite a word of the ldc/add run below with ldc 7 instructions, from within the same block
+        String body = "ldc 0\nldc 1195853639\nldc target-$1\nldpi\nadc 3\nstnl 0\n" +
+                "target:\nldc 1\nadd\nldc 1\nadd\nldc 1\nadd\nldc 1\nadd\n";
+        assertSameAsInterpreter(body, 1);
+    }
+}
@@ -0,0 +1,112 @@
+package uk.co.transputersystems.transputer.simulator.metrics;
+
+import org.junit.Test;
+import uk.co.transputersystems.transputer.assembler.Assembler;
+import uk.co.transputersystems.transputer.simulator.SimulationState;
+import uk.co.transputersystems.transputer.simulator.TestNetworks;
+import uk.co.transputersystems.transputer.simulator.Transputer;
+import uk.co.transputersystems.transputer.simulator.TransputerConstants;
+import uk.co.transputersystems.transputer.simulator.topology.RoutingTable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+
+    private static final String START_CHILD = "ldc child-$2\nldlp -40\nstartp\n";
+
+    // Counts down from the argument, keeping the transputer busy while its main process waits for the link
+    private static final String CHILD =
+            "child:\nldc %d\nstl 1\ncl:\nldl 1\nadc -1\nstl 1\nldl 1\ncj cd-$0\nj cl-$0\ncd:\nstopp\n";
+
+    // Waits on the timer, starts a child process, then outputs 8 bytes to transputer 1
+    private static final String SENDER = "init:\najw -20\nldtimer\nadc 10\ntin\n" + START_CHILD +
+            "ldc 305419896\nstl 1\nldc 1432778632\nstl 2\nldlp 1\nldc 33\nldc 8\nout\najw 20\nret\n" +
+            String.format(CHILD, 20);
+
+    // Starts a child process that outlasts the sender's wait, then inputs 8 bytes from transputer 0
+    private static final String RECEIVER = "init:\najw -20\n" + START_CHILD + "ldlp 1\nldc 1\nldc 8\nin\najw 20\nret\n" +
+            String.format(CHILD, 200);
+
+    private static Transputer[] run(boolean messageLinks) throws Exception {
+        PrintWriter writer = new PrintWriter(new StringWriter());
+        PrintStream quiet = new PrintStream(new ByteArrayOutputStream());
+        SimulationState state = new SimulationState(new Transputer[]{new Transputer(0, writer, writer), new Transputer(1, writer, writer)});
+        state.transputers[0].loadProgram(Assembler.assembleImage(SENDER, null, quiet, false));
+        state.transputers[1].loadProgram(Assembler.assembleImage(RECEIVER, null, quiet, false));
+        for (int i = 0; i < state.transputers.length; i++) {
+            state.transputers[i].setMessageLinks(messageLinks);
+            state.transputers[i].setMetrics(new Metrics());
+            state.active[i] = true;
+        }
+        TestNetworks.run(state, Long.MAX_VALUE, RoutingTable.fullyConnected(2), true);
+        return state.transputers;
+    }
+
+    @Test
+    public void countsSchedulerTimerAndLinks() throws Exception {
+        for (boolean messageLinks : new boolean[]{false, true}) {
+            Transputer[] transputers = run(messageLinks);
+            Metrics sender = transputers[0].getMetrics();
+            Metrics receiver = transputers[1].getMetrics();
+
+            assertEquals(8, sender.getLinkBytesOut(0));
+            assertEquals(8, receiver.getLinkBytesIn(0));
+            assertEquals(0, receiver.getLinkBytesOut(0));
+            assertTrue(sender.getLinkAckStalls(0) > 0);
+
+            assertEquals(1, sender.getTimerFires(1));
+            assertEquals(1, sender.getTimerInsertSteps().getCount());
+            assertEquals(0, receiver.getTimerInsertSteps().getCount());
+
+            // The child is queued when started; the parent runs again when the timer and then the link wake it
+            assertEquals(3, sender.getProcessSwitches(1));
+            assertEquals(1, sender.getRunQueueLengths(1).getCount());
+            assertEquals(1, sender.getSecondaryInstructions(TransputerConstants.TIN));
+            assertEquals(1, sender.getSecondaryInstructions(TransputerConstants.STARTP));
+            assertEquals(1, sender.getSecondaryInstructions(TransputerConstants.OUT));
+            assertEquals(20, sender.getPrimaryInstructions(TransputerConstants.CJ));
+        }
+    }
+
+    @Test
+    public void histogramBuckets() {
+        Histogram histogram = new Histogram();
+        for (long value : new long[]{0, 1, 2, 3, 4, 100}) {
+            histogram.record(value);
+        }
+        assertEquals(6, histogram.getCount());
+        assertEquals(110, histogram.getSum());
+        assertEquals(100, histogram.getMax());
+        assertEquals(8, histogram.getBucketCount());
+        assertEquals(1, histogram.getBucket(0));
+        assertEquals(1, histogram.getBucket(1));
+        assertEquals(2, histogram.getBucket(2));
+        assertEquals(1, histogram.getBucket(3));
+        assertEquals(1, histogram.getBucket(7));
+        assertEquals(127, Histogram.upperBound(7));
+    }
+
+    @Test
+    public void writesReports() throws Exception {
+        Transputer[] transputers = run(false);
+
+        StringWriter prometheus = new StringWriter();
+        MetricsReport.writePrometheus(transputers, prometheus);
+        String text = prometheus.toString();
+        assertTrue(text, text.contains("# TYPE tss_link_bytes_in_total counter\n"));
+        assertTrue(text, text.contains("tss_link_bytes_in_total{transputer=\"1\",port=\"0\"} 8\n"));
+        assertTrue(text, text.contains("tss_timer_fires_total{transputer=\"0\",priority=\"low\"} 1\n"));
+        assertTrue(text, text.contains("tss_timer_insert_steps_bucket{transputer=\"0\",le=\"+Inf\"} 1\n"));
+        assertTrue(text, text.contains("tss_instructions_total{transputer=\"0\",instruction=\"out\"} 1\n"));
+
+        StringWriter json = new StringWriter();
+        MetricsReport.writeJson(transputers, json);
+        assertTrue(json.toString(), json.toString().contains("{\"port\": 0, \"bytesIn\": 8, \"bytesOut\": 0, \"ackStalls\": 0}"));
+        assertTrue(json.toString(), json.toString().contains("\"timerFires\": {\"high\": 0, \"low\": 1}"));
+    }
+}
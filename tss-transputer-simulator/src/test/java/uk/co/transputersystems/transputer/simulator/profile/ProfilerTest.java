@@ -0,0 +1,70 @@
+package uk.co.transputersystems.transputer.simulator.profile;
+
+import org.junit.Test;
+import uk.co.transputersystems.transputer.assembler.Assembler;
+import uk.co.transputersystems.transputer.simulator.TestNetworks;
+import uk.co.transputersystems.transputer.simulator.Transputer;
+import uk.co.transputersystems.transputer.simulator.debugger.SymbolTable;
+
+import java.io.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ProfilerTest {
+
+    private static final String PROGRAM =
+            "init:\najw -10\nldc 100\nstl 1\nloop:\nldl 1\nadc -1\nstl 1\nldl 1\ncj done-$0\nj loop-$0\ndone:\najw 10\nret\n";
+
+    private static Transputer[] run(int interval) throws Exception {
+        PrintWriter writer = new PrintWriter(new StringWriter());
+        Transputer transputer = new Transputer(0, writer, writer);
+        transputer.setProfiler(new Profiler(transputer.getMemory().size(), interval));
+        transputer.loadProgram(Assembler.assembleImage(PROGRAM, null, new PrintStream(new ByteArrayOutputStream()), false));
+        TestNetworks.runAlone(transputer, null);
+        return new Transputer[]{transputer};
+    }
+
+    @Test
+    public void exactProfileCountsEveryStep() throws Exception {
+        Transputer transputer = run(1)[0];
+        Profiler profiler = transputer.getProfiler();
+        assertEquals(transputer.getSteps(), profiler.getTotal());
+
+        long inLoop = 0;
+        for (int address = 0; address < profiler.getMemorySize(); address++) {
+            if ("loop".equals(transputer.debuggerState.symbols.labelAt(address))) {
+                inLoop += profiler.getAddressCount(address);
+            }
+        }
+        // Almost all of the time is spent going round the loop
+        assertTrue(inLoop > profiler.getTotal() * 9 / 10);
+
+        StringWriter stacks = new StringWriter();
+        ProfileReport.writeCollapsedStacks(run(1), new PrintWriter(stacks));
+        assertTrue(stacks.toString().contains("T0;loop " + inLoop + "\n"));
+
+        StringWriter hotSpots = new StringWriter();
+        ProfileReport.writeHotSpots(run(1), new PrintWriter(hotSpots), 5);
+        assertTrue(hotSpots.toString().contains("loop"));
+    }
+
+    @Test
+    public void sampledProfileCountsOneStepInEach() throws Exception {
+        long steps = run(1)[0].getSteps();
+        assertEquals(steps / 10, run(10)[0].getProfiler().getTotal());
+    }
+
+    @Test
+    public void functionsSkipCompilerLabels() {
+        SymbolTable symbols = new SymbolTable();
+        symbols.add("main", 100);
+        symbols.add("main~IL_3", 110);
+        symbols.add("L4", 120);
+        assertEquals("main", symbols.functionAt(125));
+        assertEquals("main", symbols.functionAt(115));
+        assertEquals("L4+0x2", symbols.describe(122));
+        assertNull(symbols.functionAt(99));
+    }
+}
@@ -0,0 +1,160 @@
+package uk.co.transputersystems.transputer.simulator.session;
+
+import org.junit.Test;
+import uk.co.transputersystems.transputer.simulator.SimulationState;
+import uk.co.transputersystems.transputer.simulator.Transputer;
+import uk.co.transputersystems.transputer.simulator.UnimplementedInstructionException;
+import uk.co.transputersystems.transputer.simulator.models.Priority;
+import uk.co.transputersystems.transputer.simulator.topology.RoutingTable;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static uk.co.transputersystems.transputer.simulator.TestNetworks.*;
+
+public class SimulationSessionTest {
+
+    // Sleeps on the timer, then sends while a child process keeps the transputer busy
+    private static final String SENDER = "init:\najw -20\nldtimer\nadc 10\ntin\n" + START_CHILD +
+            "ldc 305419896\nstl 1\nldc 1432778632\nstl 2\nldlp 1\nldc %d\nldc 8\nout\najw 20\nret\n" + CHILD;
+
+    private static List<byte[]> network() throws Exception {
+        return Arrays.asList(
+                objectCode(String.format(SENDER, (1 << 5) | 1, 100)),
+                objectCode(String.format(BUSY_RECEIVER, 1, 150)),
+                objectCode(String.format(COUNTER, 40)));
+    }
+
+    private static class Recorder implements SimulationListener {
+        final List<ProcessEvent> started = new ArrayList<>();
+        final List<ProcessEvent> terminated = new ArrayList<>();
+        final List<ChannelMessageEvent> messages = new ArrayList<>();
+        final List<TimerEvent> timers = new ArrayList<>();
+        final List<HaltEvent> halts = new ArrayList<>();
+
+        @Override
+        public void processStarted(ProcessEvent event) {
+            started.add(event);
+        }
+
+        @Override
+        public void processTerminated(ProcessEvent event) {
+            terminated.add(event);
+        }
+
+        @Override
+        public void channelMessage(ChannelMessageEvent event) {
+            messages.add(event);
+        }
+
+        @Override
+        public void timerFired(TimerEvent event) {
+            timers.add(event);
+        }
+
+        @Override
+        public void halted(HaltEvent event) {
+            halts.add(event);
+        }
+    }
+
+    @Test
+    public void reportsEvents() throws Exception {
+        SimulationSession session = SimulationSession.fromBytes(network());
+        Recorder recorder = new Recorder();
+        session.addListener(recorder);
+        session.runUntil(SimulationSession::isHalted);
+
+        assertEquals(1, recorder.messages.size());
+        ChannelMessageEvent message = recorder.messages.get(0);
+        assertEquals(1, message.transputer);
+        assertEquals(0, message.source);
+        assertEquals(0, message.port);
+        assertArrayEquals(new byte[]{0x78, 0x56, 0x34, 0x12, (byte) 0x88, 0x77, 0x66, 0x55}, message.getData());
+
+        assertEquals(1, recorder.timers.size());
+        assertEquals(0, recorder.timers.get(0).transputer);
+        assertEquals(Priority.LOW, recorder.timers.get(0).priority);
+
+        assertEquals(4, recorder.started.size());
+        assertEquals(2, recorder.terminated.size());
+
+        assertEquals(3, recorder.halts.size());
+        for (HaltEvent halt : recorder.halts) {
+            assertEquals(HaltEvent.Reason.LEFT_PROGRAM, halt.reason);
+        }
+        assertEquals(1, recorder.halts.get(0).transputer);
+        assertEquals(message.iteration + 5, recorder.halts.get(0).iteration);
+        assertTrue(session.isHalted());
+        assertEquals("", session.getOutput());
+    }
+
+    @Test
+    public void matchesSimulatorLoop() throws Exception {
+        List<byte[]> programs = network();
+        File[] binaries = new File[programs.size()];
+        for (int i = 0; i < binaries.length; i++) {
+            binaries[i] = File.createTempFile("session", ".o");
+            binaries[i].deleteOnExit();
+            Files.write(binaries[i].toPath(), programs.get(i));
+        }
+
+        SimulationState state = load(new PrintWriter(new StringWriter()), binaries);
+        run(state, Long.MAX_VALUE, RoutingTable.fullyConnected(binaries.length), true);
+        Transputer[] transputers = state.transputers;
+
+        SimulationSession session = SimulationSession.fromFiles(Arrays.asList(binaries));
+        assertEquals(10, session.step(10));
+        assertEquals(10, session.getIterations());
+        session.runUntil(SimulationSession::isHalted);
+
+        assertEquals(state.loopCount, session.getIterations());
+        for (int i = 0; i < binaries.length; i++) {
+            TransputerView view = session.getTransputer(i);
+            assertFalse(view.isActive());
+            assertEquals(transputers[i].getSteps(), view.getSteps());
+            assertEquals(transputers[i].registers.Iptr, view.getIptr());
+            assertEquals(transputers[i].registers.Wptr, view.getWptr());
+            assertEquals(transputers[i].registers.Areg, view.getAreg());
+        }
+        assertEquals(0, session.step(10));
+    }
+
+    @Test
+    public void runsForCycles() throws Exception {
+        SimulationSession session = SimulationSession.fromBytes(
+                Arrays.asList(objectCode(String.format(COUNTER, 1000)), objectCode(String.format(COUNTER, 1))));
+        assertEquals(100, session.runFor(100));
+        assertEquals(100, session.getCycles());
+        assertTrue(session.getTransputer(0).isActive());
+        assertFalse(session.getTransputer(1).isActive());
+
+        assertFalse(session.runUntil(s -> s.getTransputer(0).getAreg() == -1));
+        assertTrue(session.isHalted());
+    }
+
+    @Test
+    public void unimplementedInstructionHaltsTheSession() throws Exception {
+        // pfix 15, opr 15 is secondary instruction FF, which does not exist
+        SimulationSession session = SimulationSession.fromBytes(Collections.singletonList(
+                "Start address: 00000000\n2f\nff\n".getBytes(StandardCharsets.US_ASCII)));
+        try {
+            session.step(100);
+            fail("The unimplemented instruction should be thrown");
+        } catch (UnimplementedInstructionException e) {
+            assertEquals(0, e.transputer);
+            assertEquals(0xFF, e.opcode);
+            assertEquals(session.getTransputer(0).getIptr(), e.iptr);
+        }
+        assertTrue(session.isHalted());
+        assertEquals(0, session.step(100));
+    }
+}
@@ -0,0 +1,61 @@
+package uk.co.transputersystems.transputer.simulator.timing;
+
+import org.junit.Test;
+import uk.co.transputersystems.transputer.assembler.Assembler;
+import uk.co.transputersystems.transputer.simulator.TestNetworks;
+import uk.co.transputersystems.transputer.simulator.Transputer;
+import uk.co.transputersystems.transputer.simulator.TransputerConstants;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CycleTableTest {
+
+    private static final String PROGRAM =
+            "init:\najw -10\nldc 1000\nstl 1\nloop:\nldl 1\nldc 300\nmul\nstl 2\nldl 1\nadc -1\nstl 1\nldl 1\ncj done-$0\nj loop-$0\ndone:\najw 10\nret\n";
+
+    private static Transputer run(TimingModel timing, boolean decodeCache) throws Exception {
+        File binary = File.createTempFile("timing", ".o");
+        binary.deleteOnExit();
+        Files.write(binary.toPath(), Assembler.assemble(PROGRAM, null, new PrintStream(new ByteArrayOutputStream()), false));
+
+        PrintWriter writer = new PrintWriter(new StringWriter());
+        Transputer transputer = new Transputer(0, writer, writer);
+        if (decodeCache) {
+            transputer.enableDecodeCache();
+        }
+        transputer.setTimingModel(timing);
+        transputer.loadProgram(binary);
+        TestNetworks.runAlone(transputer, null);
+        return transputer;
+    }
+
+    @Test
+    public void unitTableCountsSteps() throws Exception {
+        Transputer transputer = run(CycleTable.forName("unit", 0), false);
+        assertEquals(transputer.getSteps(), transputer.getCycles());
+    }
+
+    @Test
+    public void foldedPrefixesCostTheSame() throws Exception {
+        CycleTable t414 = CycleTable.forName("t414", 0);
+        assertEquals(38, t414.secondaryCycles(TransputerConstants.MUL));
+        assertEquals(20.0, t414.clockMhz(), 0);
+
+        long cycles = run(t414, false).getCycles();
+        assertEquals(cycles, run(t414, true).getCycles());
+        // Every iteration multiplies, so the loop costs far more than one cycle per step
+        assertTrue(cycles > run(CycleTable.forName("unit", 0), false).getCycles() * 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownInstructionIsRejected() {
+        TimingConfig config = new TimingConfig();
+        config.setSecondary(Collections.singletonMap("frobnicate", 3));
+        new CycleTable(config);
+    }
+}
@@ -0,0 +1,93 @@
+package uk.co.transputersystems.transputer.simulator.topology;
+
+import org.junit.Test;
+import uk.co.transputersystems.transputer.simulator.UnlinkedChannelException;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class NetworkTest {
+
+    private static Topology topology(String type, int width, int height, int dimensions) {
+        Topology topology = new Topology();
+        topology.setType(type);
+        topology.setWidth(width);
+        topology.setHeight(height);
+        topology.setDimensions(dimensions);
+        topology.setBinary("program.o");
+        return topology;
+    }
+
+    @Test
+    public void testMeshLinksNeighboursOnly() {
+        RoutingTable routing = Network.fromTopology(topology("mesh", 4, 3, 0), new File(".")).routing;
+        assertEquals(12, routing.getSize());
+        assertTrue(routing.isConnected(5, 4));
+        assertTrue(routing.isConnected(5, 6));
+        assertTrue(routing.isConnected(5, 1));
+        assertTrue(routing.isConnected(5, 9));
+        assertFalse(routing.isConnected(3, 4));
+        assertFalse(routing.isConnected(0, 3));
+        assertEquals(2, routing.degree(0));
+        assertEquals(4, routing.degree(5));
+    }
+
+    @Test
+    public void testTorusWrapsAround() {
+        RoutingTable routing = Network.fromTopology(topology("torus", 4, 3, 0), new File(".")).routing;
+        assertTrue(routing.isConnected(0, 3));
+        assertTrue(routing.isConnected(0, 8));
+        for (int i = 0; i < routing.getSize(); i++) {
+            assertEquals(4, routing.degree(i));
+        }
+    }
+
+    @Test
+    public void testHypercubeLinksDifferInOneBit() {
+        RoutingTable routing = Network.fromTopology(topology("hypercube", 0, 0, 7), new File(".")).routing;
+        assertEquals(128, routing.getSize());
+        assertTrue(routing.isConnected(0b1010101, 0b1010100));
+        assertTrue(routing.isConnected(0b1010101, 0b0010101));
+        assertFalse(routing.isConnected(0b1010101, 0b1010110));
+        assertEquals(7, routing.degree(42));
+    }
+
+    @Test
+    public void testRoutingToUnlinkedProcessorFails() {
+        RoutingTable routing = RoutingTable.fromLinks(3, Arrays.asList(new Link(0, 1)));
+        assertEquals(1, routing.route(0, 1));
+        try {
+            routing.route(0, 2);
+            fail();
+        } catch (UnlinkedChannelException e) {
+            assertEquals(0, e.transputer);
+            assertEquals(2, e.processor);
+        }
+    }
+
+    @Test
+    public void testLoadCustomTopology() throws Exception {
+        File file = File.createTempFile("topology", ".yaml");
+        file.deleteOnExit();
+        Files.write(file.toPath(), ("topology:\n" +
+                "  type: custom\n" +
+                "  processors: 3\n" +
+                "  binary: worker.o\n" +
+                "  nodes:\n" +
+                "    - processor_id: 0\n" +
+                "      binary: master.o\n" +
+                "  links:\n" +
+                "    - {from: 0, to: 1}\n" +
+                "    - {from: 0, to: 2}\n").getBytes());
+
+        Network network = Network.load(file);
+        assertEquals(new File(file.getParentFile(), "master.o"), network.binaries[0]);
+        assertEquals(new File(file.getParentFile(), "worker.o"), network.binaries[2]);
+        assertEquals(1, network.routing.route(0, 1));
+        assertEquals(0, network.routing.route(2, 0));
+        assertFalse(network.routing.isConnected(1, 2));
+    }
+}
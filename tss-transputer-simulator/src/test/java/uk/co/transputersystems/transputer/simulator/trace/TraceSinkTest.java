@@ -0,0 +1,63 @@
+package uk.co.transputersystems.transputer.simulator.trace;
+
+import org.junit.Test;
+import uk.co.transputersystems.transputer.simulator.TransputerConstants;
+import uk.co.transputersystems.transputer.simulator.models.Registers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TraceSinkTest {
+
+    private void writeEvents(TraceSink sink) {
+        Registers registers = new Registers();
+        registers.Areg = 1;
+        registers.Wptr = 0x1000 | 1;
+        registers.Iptr = 0x1480;
+        sink.instruction(0, 0x1480, TransputerConstants.LDC, false);
+        sink.instruction(0, 0x1481, TransputerConstants.ADD, true);
+        sink.scheduler(0, SchedulerEvent.RUN_PROCESS);
+        sink.blockMove(0, 0x100, 0x200, 8);
+        sink.link(0, 1, 2);
+        sink.registers(0, registers);
+        sink.flush();
+    }
+
+    @Test
+    public void testLevelsAreCumulative() {
+        assertFalse(TraceLevel.OFF.includes(TraceLevel.OFF));
+        assertTrue(TraceLevel.SCHEDULER.includes(TraceLevel.INSTRUCTION));
+        assertFalse(TraceLevel.SCHEDULER.includes(TraceLevel.LINKS));
+        assertTrue(TraceLevel.FULL.includes(TraceLevel.LINKS));
+        assertEquals(TraceLevel.LINKS, TraceLevel.parse("links"));
+    }
+
+    @Test
+    public void testTextSinkFiltersByLevel() {
+        StringWriter text = new StringWriter();
+        writeEvents(new TextTraceSink(new PrintWriter(text), TraceLevel.INSTRUCTION));
+        assertEquals("Executed ldc\nExecuted opr add\n", text.toString());
+    }
+
+    @Test
+    public void testBinaryTraceReplaysAsText() throws Exception {
+        StringWriter expected = new StringWriter();
+        writeEvents(new TextTraceSink(new PrintWriter(expected), TraceLevel.FULL));
+
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        writeEvents(new BinaryTraceSink(binary, TraceLevel.FULL));
+
+        StringWriter replayed = new StringWriter();
+        TraceLevel level = BinaryTraceSink.replay(new ByteArrayInputStream(binary.toByteArray()),
+                new TextTraceSink(new PrintWriter(replayed), TraceLevel.FULL));
+
+        assertEquals(TraceLevel.FULL, level);
+        assertEquals(expected.toString(), replayed.toString());
+    }
+}
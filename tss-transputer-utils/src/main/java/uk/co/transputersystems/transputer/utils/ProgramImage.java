@@ -0,0 +1,311 @@
+package uk.co.transputersystems.transputer.utils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A program ready to be loaded into a transputer: an entry point, one or more sections of bytes and an optional
+ * symbol table. All addresses are byte offsets from the start of the code area.
+ *
+ * The binary form is little-endian:
+ *
+ *     magic "TSPI", u16 version, u16 flags
+ *     u32 entry point, u32 section count, u32 symbol count
+ *     per section: u16 name length, name (UTF-8), u32 offset, u32 length, then the section's bytes
+ *     per symbol: u16 name length, name (UTF-8), u32 value
+ *
+ * If bit 0 of the flags is set a line table follows, mapping instruction addresses back to the assembly they came
+ * from. Strings are written once in a table and referred to by index, or -1 for none:
+ *
+ *     string assembly file, u32 string count, then each string
+ *     u32 line count, per line: u32 address, u32 assembly line, i32 source, u32 source line, i32 TSIL op
+ *
+ * Images can also be read from and written to the older text object code, a `Start address:` line followed by
+ * one hex byte per line.
+ */
+public class ProgramImage {
+    public static final byte[] MAGIC = {'T', 'S', 'P', 'I'};
+    public static final int VERSION = 1;
+    public static final String CODE_SECTION = ".text";
+    public static final int FLAG_LINES = 1;
+
+    public static class Section {
+        @Nonnull public final String name;
+        public final int offset;
+        @Nonnull public final byte[] data;
+
+        public Section(@Nonnull String name, int offset, @Nonnull byte[] data) {
+            this.name = name;
+            this.offset = offset;
+            this.data = data;
+        }
+    }
+
+    /**
+     * The first byte of an instruction and where it was written. The source line and TSIL op are known when the
+     * assembly was compiled from occam with source markers in it.
+     */
+    public static class Line {
+        public final int address;
+        public final int line;
+        @Nullable public final String source;
+        // 0 if the source line is not known
+        public final int sourceLine;
+        @Nullable public final String tsil;
+
+        public Line(int address, int line, @Nullable String source, int sourceLine, @Nullable String tsil) {
+            this.address = address;
+            this.line = line;
+            this.source = source;
+            this.sourceLine = sourceLine;
+            this.tsil = tsil;
+        }
+    }
+
+    public final int entryPoint;
+    @Nonnull public final List<Section> sections;
+    @Nonnull public final Map<String, Integer> symbols;
+    // The assembly file the lines refer to, if known
+    @Nullable public final String assemblyFile;
+    // Ordered by address, and empty if the image has no line table
+    @Nonnull public final List<Line> lines;
+
+    public ProgramImage(int entryPoint, @Nonnull List<Section> sections, @Nonnull Map<String, Integer> symbols) {
+        this(entryPoint, sections, symbols, null, Collections.emptyList());
+    }
+
+    public ProgramImage(int entryPoint, @Nonnull List<Section> sections, @Nonnull Map<String, Integer> symbols, @Nullable String assemblyFile, @Nonnull List<Line> lines) {
+        this.entryPoint = entryPoint;
+        this.sections = Collections.unmodifiableList(new ArrayList<>(sections));
+        this.symbols = Collections.unmodifiableMap(new LinkedHashMap<>(symbols));
+        this.assemblyFile = assemblyFile;
+        List<Line> sorted = new ArrayList<>(lines);
+        sorted.sort(Comparator.comparingInt(line -> line.address));
+        this.lines = Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * An image with a single code section starting at offset 0 and no symbols.
+     */
+    public ProgramImage(int entryPoint, @Nonnull byte[] code) {
+        this(entryPoint, Collections.singletonList(new Section(CODE_SECTION, 0, code)), Collections.emptyMap());
+    }
+
+    /**
+     * @return the offset just past the end of the last byte of any section
+     */
+    public int getEnd() {
+        int end = 0;
+        for (Section section : sections) {
+            end = Math.max(end, section.offset + section.data.length);
+        }
+        return end;
+    }
+
+    /**
+     * @return the contents of every section laid out at its offset, with gaps filled by zeros
+     */
+    public byte[] flatten() {
+        byte[] result = new byte[getEnd()];
+        for (Section section : sections) {
+            System.arraycopy(section.data, 0, result, section.offset, section.data.length);
+        }
+        return result;
+    }
+
+    public static boolean isImage(@Nonnull File file) throws IOException {
+        try (InputStream input = new FileInputStream(file)) {
+            byte[] magic = new byte[MAGIC.length];
+            return input.read(magic) == MAGIC.length && Arrays.equals(magic, MAGIC);
+        }
+    }
+
+    /**
+     * Load a program from either a binary image or text object code.
+     */
+    public static ProgramImage load(@Nonnull File file) throws IOException {
+        if (isImage(file)) {
+            return read(file);
+        } else {
+            return fromText(new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII));
+        }
+    }
+
+    /**
+     * Read a binary image by mapping the file into memory.
+     */
+    public static ProgramImage read(@Nonnull File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer);
+        }
+    }
+
+    public static ProgramImage read(@Nonnull ByteBuffer buffer) throws IOException {
+        try {
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a program image");
+            }
+            int version = buffer.getShort() & 0xFFFF;
+            if (version != VERSION) {
+                throw new IOException("Unsupported program image version " + version);
+            }
+            int flags = buffer.getShort() & 0xFFFF;
+
+            int entryPoint = buffer.getInt();
+            int sectionCount = buffer.getInt();
+            int symbolCount = buffer.getInt();
+
+            List<Section> sections = new ArrayList<>(sectionCount);
+            for (int i = 0; i < sectionCount; i++) {
+                String name = readString(buffer);
+                int offset = buffer.getInt();
+                byte[] data = new byte[buffer.getInt()];
+                buffer.get(data);
+                sections.add(new Section(name, offset, data));
+            }
+
+            Map<String, Integer> symbols = new LinkedHashMap<>();
+            for (int i = 0; i < symbolCount; i++) {
+                String name = readString(buffer);
+                symbols.put(name, buffer.getInt());
+            }
+
+            if ((flags & FLAG_LINES) == 0) {
+                return new ProgramImage(entryPoint, sections, symbols);
+            }
+
+            String assemblyFile = readString(buffer);
+            String[] strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString(buffer);
+            }
+            int lineCount = buffer.getInt();
+            List<Line> lines = new ArrayList<>(lineCount);
+            for (int i = 0; i < lineCount; i++) {
+                int address = buffer.getInt();
+                int line = buffer.getInt();
+                int source = buffer.getInt();
+                int sourceLine = buffer.getInt();
+                int tsil = buffer.getInt();
+                lines.add(new Line(address, line, source < 0 ? null : strings[source], sourceLine, tsil < 0 ? null : strings[tsil]));
+            }
+            return new ProgramImage(entryPoint, sections, symbols, assemblyFile.isEmpty() ? null : assemblyFile, lines);
+        } catch (BufferUnderflowException | NegativeArraySizeException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Truncated program image", e);
+        }
+    }
+
+    public void write(@Nonnull OutputStream output) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output));
+        data.write(MAGIC);
+        data.writeShort(Short.reverseBytes((short) VERSION));
+        data.writeShort(Short.reverseBytes((short) (lines.isEmpty() ? 0 : FLAG_LINES)));
+        data.writeInt(Integer.reverseBytes(entryPoint));
+        data.writeInt(Integer.reverseBytes(sections.size()));
+        data.writeInt(Integer.reverseBytes(symbols.size()));
+        for (Section section : sections) {
+            writeString(data, section.name);
+            data.writeInt(Integer.reverseBytes(section.offset));
+            data.writeInt(Integer.reverseBytes(section.data.length));
+            data.write(section.data);
+        }
+        for (Map.Entry<String, Integer> symbol : symbols.entrySet()) {
+            writeString(data, symbol.getKey());
+            data.writeInt(Integer.reverseBytes(symbol.getValue()));
+        }
+        if (!lines.isEmpty()) {
+            writeLines(data);
+        }
+        data.flush();
+    }
+
+    private void writeLines(DataOutputStream data) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        for (Line line : lines) {
+            if (line.source != null) {
+                strings.putIfAbsent(line.source, strings.size());
+            }
+            if (line.tsil != null) {
+                strings.putIfAbsent(line.tsil, strings.size());
+            }
+        }
+        writeString(data, assemblyFile == null ? "" : assemblyFile);
+        data.writeInt(Integer.reverseBytes(strings.size()));
+        for (String string : strings.keySet()) {
+            writeString(data, string);
+        }
+        data.writeInt(Integer.reverseBytes(lines.size()));
+        for (Line line : lines) {
+            data.writeInt(Integer.reverseBytes(line.address));
+            data.writeInt(Integer.reverseBytes(line.line));
+            data.writeInt(Integer.reverseBytes(line.source == null ? -1 : strings.get(line.source)));
+            data.writeInt(Integer.reverseBytes(line.sourceLine));
+            data.writeInt(Integer.reverseBytes(line.tsil == null ? -1 : strings.get(line.tsil)));
+        }
+    }
+
+    public void write(@Nonnull File file) throws IOException {
+        try (OutputStream output = new FileOutputStream(file)) {
+            write(output);
+        }
+    }
+
+    /**
+     * Parse text object code: a `Start address: XXXXXXXX` line followed by hex bytes.
+     */
+    public static ProgramImage fromText(@Nonnull String text) throws IOException {
+        Scanner scanner = new Scanner(text);
+        if (!scanner.hasNext("Start") || !"Start".equals(scanner.next()) || !scanner.hasNext("address:")) {
+            throw new IOException("Missing start address");
+        }
+        scanner.next();
+        if (!scanner.hasNextInt(16)) {
+            throw new IOException("Error reading start address");
+        }
+        int entryPoint = scanner.nextInt(16);
+
+        ByteArrayOutputStream code = new ByteArrayOutputStream();
+        while (scanner.hasNextInt(16)) {
+            code.write(scanner.nextInt(16));
+        }
+        return new ProgramImage(entryPoint, code.toByteArray());
+    }
+
+    /**
+     * @return the image as text object code, one line per element. Symbols and lines are not included.
+     */
+    public List<String> toText() {
+        List<String> lines = new ArrayList<>();
+        lines.add("Start address: " + String.format("%08x", entryPoint));
+        for (byte b : flatten()) {
+            lines.add(String.format("%02x", b));
+        }
+        return lines;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream data, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        data.writeShort(Short.reverseBytes((short) bytes.length));
+        data.write(bytes);
+    }
+}